@@ -165,7 +165,9 @@ public final class C1XCompilation {
         BlockMap map = new BlockMap(method, hir.numberOfBlocks());
         boolean isOsrCompilation = false;
         if (osrBCI >= 0) {
-            map.addEntrypoint(osrBCI, BlockBegin.BlockFlag.OsrEntry);
+            // the OSR entry block itself is created by the graph builder; it jumps to the
+            // loop header at osrBCI, so make sure that a block starts there
+            map.addEntrypoint(osrBCI, BlockBegin.BlockFlag.BackwardBranchTarget);
             isOsrCompilation = true;
         }
         if (!map.build(!isOsrCompilation && C1XOptions.PhiLoopStores)) {
@@ -49,6 +49,10 @@ public class C1XMetrics {
     public static int StoreCheckEliminations;
     public static int BoundsChecksElminations;
     public static int ConditionalEliminations;
+    public static int ScalarReplacedAllocations;
+    public static int LocksEliminated;
+    public static int LoopInvariantsHoisted;
+    public static int RangeCheckPredicates;
     public static int BlocksMerged;
     public static int BlocksSkipped;
     public static int BlocksDeleted;
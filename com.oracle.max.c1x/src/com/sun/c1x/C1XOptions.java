@@ -46,6 +46,11 @@ public final class C1XOptions {
     public static int     MaximumDesiredSize                 = 8000;
     public static int     MaximumShortLoopSize               = 5;
 
+    // profile-guided inlining settings
+    public static boolean OptProfileGuidedInlining           = ____;
+    public static int     ProfiledCallMinimumCount           = 100;
+    public static float   ProfiledTypeMinimumProbability     = 0.90f;
+
     // intrinsification settings
     public static boolean OptIntrinsify                      = ____;
 
@@ -118,6 +123,9 @@ public final class C1XOptions {
     public static boolean OptFlowSensitiveNCE;
     public static boolean OptDeadCodeElimination1;
     public static boolean OptDeadCodeElimination2;
+    public static boolean OptEscapeAnalysis;
+    public static boolean OptLoopInvariantCodeMotion;
+    public static boolean OptRangeCheckElimination;
     public static boolean OptControlFlow;
     public static boolean OptMoveElimination;
 
@@ -229,10 +237,14 @@ public final class C1XOptions {
         OptInlineSynchronized           = lll;
         UseStackMapTableLiveness        = lll;
         UseAssumptions                  = lll;
+        OptProfileGuidedInlining        = lll;
         OptIterativeNCE                 = lll;
         OptFlowSensitiveNCE             = lll;
         OptDeadCodeElimination1         = lll;
         OptDeadCodeElimination2         = lll;
+        OptEscapeAnalysis               = lll;
+        OptLoopInvariantCodeMotion      = lll;
+        OptRangeCheckElimination        = lll;
         OptGlobalValueNumbering         = lll;
         OptDiamondElimination           = lll;
         OptCEElimination                = lll;
@@ -2082,6 +2082,14 @@ public final class LinearScan {
     }
 
     CiValue toCiValue(int opId, Value value) {
+        if (value instanceof VirtualObject) {
+            VirtualObject vobj = (VirtualObject) value;
+            CiValue[] fieldValues = new CiValue[vobj.valueCount()];
+            for (int i = 0; i < fieldValues.length; i++) {
+                fieldValues[i] = toCiValue(opId, vobj.valueAt(i));
+            }
+            return CiVirtualObject.get(vobj.type(), fieldValues, vobj.objectId);
+        }
         if (value != null && value.operand() != CiValue.IllegalValue) {
             CiValue operand = value.operand();
             Constant con = null;
@@ -2164,6 +2172,9 @@ public final class LinearScan {
                 if (lock.isConstant()) {
                     // lock on class for synchronized static method
                     values[valueIndex++] = lock.asConstant();
+                } else if (lock instanceof VirtualObject || lock.checkFlag(Value.Flag.LockEliminated)) {
+                    // the monitor operations were removed by escape analysis: the lock must be re-acquired on deoptimization
+                    values[valueIndex++] = new CiMonitorValue(toCiValue(opId, lock), null, true);
                 } else {
                     values[valueIndex++] = toCiValue(opId, lock);
                 }
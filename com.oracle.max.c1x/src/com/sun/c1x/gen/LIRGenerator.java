@@ -190,6 +190,11 @@ public abstract class LIRGenerator extends ValueVisitor {
     final VolatileMemoryAccess vma;
     private ArrayList<DeoptimizationStub> deoptimizationStubs;
 
+    /**
+     * The variable holding the incoming pointer to the OSR buffer in an OSR compilation.
+     */
+    private CiVariable osrBuffer;
+
     public LIRGenerator(C1XCompilation compilation) {
         this.compilation = compilation;
         this.ir = compilation.hir();
@@ -215,9 +220,15 @@ public abstract class LIRGenerator extends ValueVisitor {
     public static class DeoptimizationStub {
         public final Label label = new Label();
         public final LIRDebugInfo info;
+        public final CiRuntimeCall runtimeCall;
 
         public DeoptimizationStub(FrameState state) {
+            this(state, CiRuntimeCall.Deoptimize);
+        }
+
+        public DeoptimizationStub(FrameState state, CiRuntimeCall runtimeCall) {
             info = new LIRDebugInfo(state, null);
+            this.runtimeCall = runtimeCall;
         }
     }
 
@@ -232,7 +243,7 @@ public abstract class LIRGenerator extends ValueVisitor {
         // (tw) TODO: Try to reuse an existing stub if possible.
         // It is only allowed if there are no LIR instructions in between that can modify registers.
 
-        DeoptimizationStub stub = new DeoptimizationStub(state);
+        DeoptimizationStub stub = new DeoptimizationStub(state, x.runtimeCall());
         deoptimizationStubs.add(stub);
         lir.branch(x.condition.negate(), stub.label, stub.info);
     }
@@ -271,8 +282,9 @@ public abstract class LIRGenerator extends ValueVisitor {
         moveToPhi(x.stateAfter());
 
         // all blocks with a successor must end with an unconditional jump
-        // to the successor even if they are consecutive
-        lir.jump(x.defaultSuccessor());
+        // to the successor even if they are consecutive. An OSR compilation
+        // is only ever entered through its OSR entry.
+        lir.jump(compilation.isOsrCompilation() ? x.osrEntry() : x.defaultSuccessor());
     }
 
     private void setOperandsForLocals(FrameState state) {
@@ -433,9 +445,7 @@ public abstract class LIRGenerator extends ValueVisitor {
         setNoResult(x);
 
         if (currentBlock.next() instanceof OsrEntry) {
-            // need to free up storage used for OSR entry point
-            CiValue osrBuffer = currentBlock.next().operand();
-            callRuntime(CiRuntimeCall.OSRMigrationEnd, null, osrBuffer);
+            // the OSR buffer is an ordinary heap object owned by the VM so there is nothing to free here
             emitXir(xir.genSafepointPoll(site(x)), x, stateFor(x, x.stateAfter()), null, false);
         } else if (x.isSafepointPoll()) {
             emitXir(xir.genSafepointPoll(site(x)), x, stateFor(x, x.stateAfter()), null, false);
@@ -992,11 +1002,10 @@ public abstract class LIRGenerator extends ValueVisitor {
 
     @Override
     public void visitOsrEntry(OsrEntry x) {
-        // construct our frame and model the production of incoming pointer
-        // to the OSR buffer.
-        lir.osrEntry(osrBufferPointer());
+        // the incoming pointer to the OSR buffer was saved in the start block
+        assert osrBuffer != null : "OSR buffer pointer not saved";
         CiValue result = createResultVariable(x);
-        lir.move(osrBufferPointer(), result);
+        lir.move(osrBuffer, result);
     }
 
     @Override
@@ -1466,6 +1475,11 @@ public abstract class LIRGenerator extends ValueVisitor {
             if (prologue != null) {
                 emitXir(prologue, null, null, null, false);
             }
+            if (compilation.isOsrCompilation()) {
+                // save the incoming pointer to the OSR buffer before the incoming arguments are moved
+                osrBuffer = newVariable(compilation.target.wordKind);
+                lir.move(osrBufferPointer(), osrBuffer);
+            }
             setOperandsForLocals(block.end().stateAfter());
         }
     }
@@ -2000,6 +2014,12 @@ public abstract class LIRGenerator extends ValueVisitor {
                     }
                 }
             }
+            for (int index = 0; index < s.locksSize(); index++) {
+                final Value value = s.lockAt(index);
+                if (value instanceof VirtualObject) {
+                    walkStateValue(value);
+                }
+            }
             bci = scope.callerBCI();
             s = s.callerState();
         }
@@ -2012,6 +2032,12 @@ public abstract class LIRGenerator extends ValueVisitor {
             if (value instanceof Phi && !value.isIllegal()) {
                 // phi's are special
                 operandForPhi((Phi) value);
+            } else if (value instanceof VirtualObject) {
+                // the fields of a virtual object are needed to rematerialize it
+                VirtualObject vobj = (VirtualObject) value;
+                for (int i = 0; i < vobj.valueCount(); i++) {
+                    walkStateValue(vobj.valueAt(i));
+                }
             } else if (value.operand().isIllegal() && !(value instanceof UnsafeCast)) {
                 // instruction doesn't have an operand yet
                 CiValue operand = makeOperand(value);
@@ -2250,6 +2276,26 @@ public abstract class LIRGenerator extends ValueVisitor {
         return invoke.operand();
     }
 
+    @Override
+    public void visitTypeGuard(TypeGuard x) {
+        XirArgument obj = toXirArgument(x.object());
+        XirArgument hub = XirArgument.forObject(x.types[0].getEncoding(RiType.Representation.ObjectHub).asObject());
+        XirSnippet snippet;
+        if (x.types.length == 1) {
+            snippet = xir.genTypeCheck(site(x), obj, hub, x.types[0]);
+        } else {
+            XirArgument otherHub = XirArgument.forObject(x.types[1].getEncoding(RiType.Representation.ObjectHub).asObject());
+            snippet = xir.genBimorphicTypeCheck(site(x), obj, hub, otherHub);
+        }
+        emitXir(snippet, x, stateFor(x), null, false);
+    }
+
+    @Override
+    public void visitVirtualObject(VirtualObject x) {
+        // virtual objects only appear in frame states
+        throw Util.shouldNotReachHere();
+    }
+
     @Override
     public void visitTypeEqualityCheck(TypeEqualityCheck typeEqualityCheck) {
         Value x = typeEqualityCheck.left();
@@ -123,7 +123,15 @@ public final class GraphBuilder {
         // 2. compute the block map and get the entrypoint(s)
         BlockMap blockMap = compilation.getBlockMap(scope.method, compilation.osrBCI);
         BlockBegin stdEntry = blockMap.get(0);
-        BlockBegin osrEntry = compilation.osrBCI < 0 ? null : blockMap.get(compilation.osrBCI);
+        BlockBegin osrEntry = null;
+        if (compilation.isOsrCompilation()) {
+            if (isSynchronized(rootMethod.accessFlags())) {
+                throw new CiBailout("cannot OSR a synchronized method");
+            }
+            // the OSR entry is a separate block that loads the locals from the OSR buffer and jumps to the loop header
+            osrEntry = new BlockBegin(compilation.osrBCI, ir.nextBlockNumber());
+            osrEntry.setOsrEntry(true);
+        }
         pushRootScope(scope, blockMap, startBlock);
         MutableFrameState initialState = stateAtEntry(rootMethod);
         startBlock.mergeOrClone(initialState);
@@ -205,13 +213,82 @@ public final class GraphBuilder {
             fillSyncHandler(rootMethodSynchronizedObject, syncHandler, false);
         }
 
-        if (compilation.osrBCI >= 0) {
-            BlockBegin osrBlock = blockMap.get(compilation.osrBCI);
-            assert osrBlock.wasVisited();
-            if (!osrBlock.stateBefore().stackEmpty()) {
-                throw new CiBailout("cannot OSR with non-empty stack");
+        if (osrEntry != null) {
+            setupOsrEntryBlock(osrEntry, blockMap.get(compilation.osrBCI));
+        }
+    }
+
+    /**
+     * Fills the OSR entry block. The OSR buffer holds one word per local variable of the interpreter (i.e. baseline)
+     * frame being replaced, indexed by local variable index. Each live local of the loop header is loaded from the
+     * buffer and flows into the corresponding phi of the loop header.
+     * <p>
+     * The VM enters the OSR entry with safepoints enabled, and relies on the block not polling for safepoints before
+     * it has loaded the buffer: until then, the buffer and the references it holds as raw words are not described by
+     * any frame state, and must not move. The only safepoint poll of the block is the one emitted for its final
+     * {@link Goto}, whose state holds the loaded locals.
+     *
+     * @param osrEntry the OSR entry block
+     * @param target the loop header at the OSR bytecode index
+     */
+    private void setupOsrEntryBlock(BlockBegin osrEntry, BlockBegin target) {
+        if (target == null || !target.wasVisited()) {
+            throw new CiBailout("OSR target is not reachable");
+        }
+        if (!target.isParserLoopHeader()) {
+            throw new CiBailout("OSR target is not a loop header");
+        }
+        FrameState targetState = target.stateBefore();
+        if (!targetState.stackEmpty()) {
+            throw new CiBailout("cannot OSR with non-empty stack");
+        }
+        if (targetState.locksSize() != 0) {
+            throw new CiBailout("cannot OSR with locked objects");
+        }
+
+        int bci = compilation.osrBCI;
+        killMemoryMap();
+        MutableFrameState state = targetState.copy();
+        state.clearLocals();
+        osrEntry.mergeOrClone(state);
+        osrEntry.setWasVisited(true);
+        curBlock = osrEntry;
+        curState = osrEntry.stateBefore().copy();
+        lastInstr = osrEntry;
+        osrEntry.setNext(null, -1);
+
+        Value buffer = appendWithoutOptimization(new OsrEntry(compilation.target.wordKind), bci);
+        int wordSize = compilation.target.wordSize;
+        for (int i = 0; i < targetState.localsSize(); i++) {
+            Value phi = targetState.localAt(i);
+            if (phi == null || phi.isIllegal()) {
+                continue;
             }
+            if (!(phi instanceof Phi) || ((Phi) phi).block() != target) {
+                throw new CiBailout("OSR target has no phi for local " + i);
+            }
+            Value offset = appendWithoutOptimization(Constant.forInt(i * wordSize), bci);
+            Value local = appendWithoutOptimization(new UnsafeGetRaw(phi.kind, buffer, offset, 0, false), bci);
+            curState.storeLocal(i, local);
         }
+
+        Goto end = new Goto(target, null, false);
+        lastInstr = lastInstr.setNext(end, bci);
+        end.setStateAfter(curState.immutableCopy(bci));
+        osrEntry.setEnd(end);
+        assert onlyLoadsOsrBuffer(osrEntry) : "OSR entry block must not poll for safepoints before it has loaded the OSR buffer";
+    }
+
+    /**
+     * Checks that the instructions of the OSR entry block preceding its end cannot poll for safepoints.
+     */
+    private static boolean onlyLoadsOsrBuffer(BlockBegin osrEntry) {
+        for (Instruction x = osrEntry.next(); x != osrEntry.end(); x = x.next()) {
+            if (!(x instanceof OsrEntry || x instanceof Constant || x instanceof UnsafeGetRaw)) {
+                return false;
+            }
+        }
+        return !osrEntry.end().isSafepointPoll();
     }
 
     private void closeAccessorScope(RiType accessor) {
@@ -1098,12 +1175,86 @@ public final class GraphBuilder {
                 assert result : "Inlining must succeed";
                 return;
             }
+            // 5. speculate on the receiver types recorded by the profile of the call site
+            if (C1XOptions.OptProfileGuidedInlining && tryProfiledInvoke(resolvedTarget, args, cpi, constantPool)) {
+                return;
+            }
         }
 
         // devirtualization failed, produce an actual invokevirtual
         appendInvoke(opcode, target, args, false, cpi, constantPool);
     }
 
+    /**
+     * Tries to inline a virtual or interface call whose receiver type profile is dominated either by a single type or by
+     * two types sharing the same implementation of the target method. The inlined code is guarded by a {@link TypeGuard}
+     * that deoptimizes, and re-executes the call in the baseline code, if the receiver turns out to be of another type.
+     */
+    private boolean tryProfiledInvoke(RiResolvedMethod target, Value[] args, int cpi, RiConstantPool constantPool) {
+        RiTypeProfile profile = scope().method.typeProfile(bci());
+        if (profile == null || profile.count < C1XOptions.ProfiledCallMinimumCount || profile.types == null || profile.types.length == 0) {
+            return false;
+        }
+        RiResolvedType[] types = profile.types;
+        float[] probabilities = profile.probabilities;
+        int first = 0;
+        for (int i = 1; i < types.length; i++) {
+            if (probabilities[i] > probabilities[first]) {
+                first = i;
+            }
+        }
+        RiResolvedMethod profiledTarget = profiledTarget(types[first], target);
+        if (profiledTarget == null) {
+            return false;
+        }
+        RiResolvedType[] guardedTypes;
+        if (probabilities[first] >= C1XOptions.ProfiledTypeMinimumProbability) {
+            guardedTypes = new RiResolvedType[] {types[first]};
+        } else if (types.length > 1) {
+            int second = first == 0 ? 1 : 0;
+            for (int i = 0; i < types.length; i++) {
+                if (i != first && probabilities[i] > probabilities[second]) {
+                    second = i;
+                }
+            }
+            if (probabilities[first] + probabilities[second] < C1XOptions.ProfiledTypeMinimumProbability || profiledTarget(types[second], target) != profiledTarget) {
+                return false;
+            }
+            guardedTypes = new RiResolvedType[] {types[first], types[second]};
+        } else {
+            return false;
+        }
+        if (!checkInliningConditions(profiledTarget)) {
+            return false;
+        }
+        if (C1XOptions.PrintAssumptions) {
+            TTY.println("Speculative invoke direct because of receiver type profile to " + profiledTarget);
+        }
+
+        // the deoptimized code re-executes the call, so the guard's state must still hold the arguments
+        MutableFrameState stateBefore = curState.copy(bci(), true, true, true);
+        stateBefore.pushArguments(args);
+        Value receiver = args[0];
+        if (!receiver.isNonNull()) {
+            receiver = append(new NullCheck(receiver, null));
+            args[0] = receiver;
+        }
+        append(new TypeGuard(receiver, guardedTypes, stateBefore));
+        invokeDirect(profiledTarget, args, guardedTypes.length == 1 ? guardedTypes[0] : null, cpi, constantPool);
+        return true;
+    }
+
+    private static RiResolvedMethod profiledTarget(RiResolvedType type, RiResolvedMethod target) {
+        if (!type.isSubtypeOf(target.holder())) {
+            return null;
+        }
+        RiResolvedMethod method = type.resolveMethodImpl(target);
+        if (method == null || isAbstract(method.accessFlags())) {
+            return null;
+        }
+        return method;
+    }
+
     private CiKind returnKind(RiMethod target) {
         return target.signature().returnKind(false);
     }
@@ -2103,7 +2254,7 @@ public final class GraphBuilder {
         while ((b = scopeData.removeFromWorkList()) != null) {
             if (!b.wasVisited()) {
                 if (b.isOsrEntry()) {
-                    // OSR not yet supported
+                    // the OSR entry block is filled once all other blocks have been parsed
                     Util.shouldNotReachHere();
                 }
                 b.setWasVisited(true);
@@ -119,6 +119,10 @@ public class IR {
             new NullCheckEliminator(this);
             observeCompilationEvent("After null check elimination");
         }
+        if (C1XOptions.OptEscapeAnalysis) {
+            new EscapeAnalyzer(this);
+            observeCompilationEvent("After escape analysis");
+        }
         if (C1XOptions.OptDeadCodeElimination1) {
             new LivenessMarker(this).removeDeadCode();
             observeCompilationEvent("After dead code elimination 1");
@@ -163,6 +167,11 @@ public class IR {
             new GlobalValueNumberer(this);
             observeCompilationEvent("After global value numbering");
         }
+        if (C1XOptions.OptLoopInvariantCodeMotion || C1XOptions.OptRangeCheckElimination) {
+            makeLinearScanOrder();
+            new LoopOptimizer(this);
+            observeCompilationEvent("After loop optimizations");
+        }
         if (C1XOptions.OptDeadCodeElimination2) {
             new LivenessMarker(this).removeDeadCode();
             observeCompilationEvent("After dead code elimination 2");
@@ -36,8 +36,19 @@ public final class BoundsCheck extends Guard {
     Value index;
     Value length;
 
+    /**
+     * Specifies if this check is a predicate hoisted out of a loop by the {@link com.sun.c1x.opt.LoopOptimizer}. It
+     * re-executes the loop entry when it fails and the failure disables loop predication for the compiled method.
+     */
+    public final boolean loopPredicate;
+
     public BoundsCheck(Value index, Value length, FrameState stateBefore, Condition condition) {
-        super(condition, stateBefore);
+        this(index, length, stateBefore, condition, false);
+    }
+
+    public BoundsCheck(Value index, Value length, FrameState stateBefore, Condition condition, boolean loopPredicate) {
+        super(condition, stateBefore, loopPredicate);
+        this.loopPredicate = loopPredicate;
         this.index = index;
         this.length = length;
         assert index.kind == CiKind.Int;
@@ -52,6 +63,11 @@ public final class BoundsCheck extends Guard {
         return length;
     }
 
+    @Override
+    public CiRuntimeCall runtimeCall() {
+        return loopPredicate ? CiRuntimeCall.DeoptimizeLoopPredicate : super.runtimeCall();
+    }
+
     @Override
     public void inputValuesDo(ValueClosure closure) {
         index = closure.apply(index);
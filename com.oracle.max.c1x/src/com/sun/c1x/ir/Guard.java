@@ -33,9 +33,26 @@ public abstract class Guard extends StateSplit {
 
     public final Condition condition;
 
+    /**
+     * Specifies if the deoptimized frame re-executes the bytecode at which {@link #stateBefore()} was captured.
+     */
+    public final boolean reexecute;
+
     public Guard(Condition condition, FrameState stateBefore) {
+        this(condition, stateBefore, false);
+    }
+
+    public Guard(Condition condition, FrameState stateBefore, boolean reexecute) {
         super(CiKind.Illegal, stateBefore);
 
         this.condition = condition;
+        this.reexecute = reexecute;
+    }
+
+    /**
+     * Gets the runtime call made when this guard fails.
+     */
+    public CiRuntimeCall runtimeCall() {
+        return reexecute ? CiRuntimeCall.DeoptimizeAndReexecute : CiRuntimeCall.Deoptimize;
     }
 }
@@ -32,10 +32,11 @@ public final class OsrEntry extends Instruction {
 
     /**
      * Constructs a new OsrEntry instruction.
+     *
+     * @param wordKind the kind of a machine word, i.e. of the pointer to the OSR buffer
      */
-    public OsrEntry() {
-        // TODO: this should be a CiKind.Word
-        super(CiKind.Jsr);
+    public OsrEntry(CiKind wordKind) {
+        super(wordKind);
     }
 
     @Override
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2009, 2011, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.c1x.ir;
+
+import com.oracle.max.criutils.*;
+import com.sun.c1x.util.*;
+import com.sun.cri.ci.*;
+import com.sun.cri.ri.*;
+
+/**
+ * The {@code VirtualObject} value stands for an allocation removed by {@linkplain com.sun.c1x.opt.EscapeAnalyzer escape analysis}.
+ * It only ever appears in frame states, where it records the field values the object would have at that point, so that
+ * the object can be rematerialized if the code is deoptimized.
+ */
+public final class VirtualObject extends Value {
+
+    private final RiResolvedType type;
+    private final RiResolvedField[] fields;
+    private final Value[] values;
+
+    /**
+     * Identifies this virtual object in the debug info of the compiled method, see {@link CiVirtualObject#id()}.
+     */
+    public final int objectId;
+
+    /**
+     * Creates a new virtual object.
+     * @param type the class of the removed allocation
+     * @param fields all instance fields of {@code type}, ordered as expected by {@link CiVirtualObject}
+     * @param values the value of each field, in the same order as {@code fields}
+     * @param objectId the identifier of this virtual object, unique within the compiled method
+     */
+    public VirtualObject(RiResolvedType type, RiResolvedField[] fields, Value[] values, int objectId) {
+        super(CiKind.Object);
+        assert fields.length == values.length;
+        this.type = type;
+        this.fields = fields;
+        this.values = values;
+        this.objectId = objectId;
+        setFlag(Flag.NonNull);
+    }
+
+    @Override
+    public BlockBegin block() {
+        return null;
+    }
+
+    public RiResolvedType type() {
+        return type;
+    }
+
+    public RiResolvedField[] fields() {
+        return fields;
+    }
+
+    public int valueCount() {
+        return values.length;
+    }
+
+    public Value valueAt(int i) {
+        return values[i];
+    }
+
+    @Override
+    public RiResolvedType exactType() {
+        return type;
+    }
+
+    @Override
+    public RiResolvedType declaredType() {
+        return type;
+    }
+
+    @Override
+    public void inputValuesDo(ValueClosure closure) {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = closure.apply(values[i]);
+        }
+    }
+
+    @Override
+    public void accept(ValueVisitor v) {
+        v.visitVirtualObject(this);
+    }
+
+    @Override
+    public void print(LogStream out) {
+        out.print("virtual ").print(CiUtil.toJavaName(type)).print(" {");
+        for (int i = 0; i < values.length; i++) {
+            if (i != 0) {
+                out.print(", ");
+            }
+            out.print(fields[i].name()).print('=').print(Util.valueString(values[i]));
+        }
+        out.print('}');
+    }
+}
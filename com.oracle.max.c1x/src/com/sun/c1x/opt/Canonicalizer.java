@@ -1513,6 +1513,18 @@ public class Canonicalizer extends DefaultValueVisitor {
         }
     }
 
+    @Override
+    public void visitTypeGuard(TypeGuard i) {
+        RiResolvedType exact = i.object().exactType();
+        if (exact != null) {
+            for (RiResolvedType type : i.types) {
+                if (type == exact) {
+                    setCanonical(null);
+                }
+            }
+        }
+    }
+
     @Override
     public void visitBoundsCheck(BoundsCheck b) {
         Value index = b.index();
@@ -0,0 +1,429 @@
+/*
+ * Copyright (c) 2009, 2011, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.c1x.opt;
+
+import java.util.*;
+
+import com.sun.c1x.*;
+import com.sun.c1x.graph.*;
+import com.sun.c1x.ir.*;
+import com.sun.cri.bytecode.*;
+import com.sun.cri.ci.*;
+import com.sun.cri.ri.*;
+
+/**
+ * This class implements an intraprocedural escape analysis over the HIR, run after inlining so that
+ * allocations passed to small constructors and accessors can be analyzed.
+ *
+ * An instance allocation does not escape if it is only used as the object of field loads and stores, as the
+ * object of monitor operations, or in frame states. Non-escaping allocations are optimized as follows:
+ * <ul>
+ * <li>If all the stores to the object are in the allocating block, and no instruction that remains between the allocation
+ * and the last of these stores needs a frame state referring to the object, the allocation is <i>scalar replaced</i>:
+ * loads are replaced by the stored values (truncated to the kinds of sub-int fields), and the allocation and the stores
+ * are removed. The object is replaced in frame states by a {@link VirtualObject} that records its final field values,
+ * from which the deoptimizer rematerializes it.</li>
+ * <li>Otherwise, the allocation is kept but monitor operations on the object are removed. Such locks are
+ * {@linkplain Value.Flag#LockEliminated flagged} so that the deoptimizer re-acquires them.</li>
+ * </ul>
+ * The analysis is deliberately conservative: an allocation flowing into a phi, a call, a comparison or a store to
+ * another object is considered to escape, and virtual objects never refer to other virtual objects.
+ */
+public final class EscapeAnalyzer {
+
+    /**
+     * An allocation considered by the analysis, along with its uses.
+     */
+    private static final class Candidate {
+        final NewInstance alloc;
+        final BlockBegin block;
+        final RiResolvedType type;
+        final List<NullCheck> nullChecks = new ArrayList<NullCheck>(2);
+        final List<LoadField> loads = new ArrayList<LoadField>();
+        final List<StoreField> stores = new ArrayList<StoreField>();
+        final List<AccessMonitor> monitors = new ArrayList<AccessMonitor>(2);
+        boolean escapes;
+        boolean storedOutsideBlock;
+
+        Candidate(NewInstance alloc, BlockBegin block, RiResolvedType type) {
+            this.alloc = alloc;
+            this.block = block;
+            this.type = type;
+        }
+    }
+
+    final IR ir;
+    final InstructionSubstituter subst;
+
+    /**
+     * Maps an allocation, or a null check of an allocation, to the corresponding candidate.
+     */
+    final IdentityHashMap<Value, Candidate> aliases = new IdentityHashMap<Value, Candidate>();
+
+    /**
+     * Instructions removed without a substitution (stores and monitor operations).
+     */
+    final IdentityHashMap<Instruction, Instruction> removed = new IdentityHashMap<Instruction, Instruction>();
+
+    final List<BlockBegin> blocks = new ArrayList<BlockBegin>();
+    final List<Candidate> candidates = new ArrayList<Candidate>();
+    final List<VirtualObject> virtualObjects = new ArrayList<VirtualObject>();
+
+    public EscapeAnalyzer(IR ir) {
+        this.ir = ir;
+        this.subst = new InstructionSubstituter(ir);
+        ir.startBlock.iterateAnyOrder(new BlockClosure() {
+            public void apply(BlockBegin block) {
+                blocks.add(block);
+            }
+        }, false);
+
+        findCandidates();
+        if (candidates.isEmpty()) {
+            return;
+        }
+        findUses();
+
+        for (Candidate c : candidates) {
+            if (!c.escapes) {
+                if (!scalarReplace(c)) {
+                    eliminateLocks(c);
+                }
+            }
+        }
+        if (!removed.isEmpty()) {
+            removeInstructions();
+        }
+        subst.finish();
+        // the substitution does not reach into virtual objects, which are not instructions
+        for (VirtualObject vobj : virtualObjects) {
+            vobj.inputValuesDo(subst);
+        }
+    }
+
+    private void findCandidates() {
+        for (BlockBegin block : blocks) {
+            for (Instruction i = block.next(); i != null; i = i.next()) {
+                if (i instanceof NewInstance) {
+                    NewInstance alloc = (NewInstance) i;
+                    RiResolvedType type = alloc.exactType();
+                    // removing the allocation must not skip class initialization or finalizer registration
+                    if (type != null && type.isInitialized() && !type.hasFinalizer()) {
+                        Candidate c = new Candidate(alloc, block, type);
+                        candidates.add(c);
+                        aliases.put(alloc, c);
+                    }
+                }
+            }
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+        // null checks of an allocation are aliases of the allocation
+        List<NullCheck> nullChecks = new ArrayList<NullCheck>();
+        for (BlockBegin block : blocks) {
+            for (Instruction i = block.next(); i != null; i = i.next()) {
+                if (i instanceof NullCheck) {
+                    nullChecks.add((NullCheck) i);
+                }
+            }
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (NullCheck nc : nullChecks) {
+                Candidate c = aliases.get(nc.object());
+                if (c != null && !aliases.containsKey(nc)) {
+                    aliases.put(nc, c);
+                    c.nullChecks.add(nc);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    private void findUses() {
+        final ValueClosure escapeMarker = new ValueClosure() {
+            public Value apply(Value v) {
+                Candidate c = aliases.get(v);
+                if (c != null) {
+                    c.escapes = true;
+                }
+                return v;
+            }
+        };
+        final ValueClosure phiInputMarker = new ValueClosure() {
+            public Value apply(Value v) {
+                if (v instanceof Phi && !v.isDeadPhi()) {
+                    Phi phi = (Phi) v;
+                    for (int j = 0; j < phi.inputCount(); j++) {
+                        escapeMarker.apply(phi.inputAt(j));
+                    }
+                }
+                return v;
+            }
+        };
+
+        for (BlockBegin block : blocks) {
+            block.stateBefore().valuesDo(phiInputMarker);
+            for (Instruction i = block.next(); i != null; i = i.next()) {
+                if (i instanceof NullCheck && aliases.containsKey(i)) {
+                    continue;
+                }
+                if (i instanceof LoadField) {
+                    LoadField load = (LoadField) i;
+                    Candidate c = aliases.get(load.object());
+                    if (c != null && !load.isStatic() && load.isLoaded()) {
+                        c.loads.add(load);
+                        continue;
+                    }
+                } else if (i instanceof StoreField) {
+                    StoreField store = (StoreField) i;
+                    Candidate c = aliases.get(store.object());
+                    if (c != null && !store.isStatic() && store.isLoaded()) {
+                        c.stores.add(store);
+                        if (block != c.block) {
+                            c.storedOutsideBlock = true;
+                        }
+                        escapeMarker.apply(store.value());
+                        continue;
+                    }
+                } else if (i instanceof AccessMonitor) {
+                    AccessMonitor monitor = (AccessMonitor) i;
+                    Candidate c = aliases.get(monitor.object());
+                    if (c != null) {
+                        c.monitors.add(monitor);
+                        continue;
+                    }
+                }
+                i.inputValuesDo(escapeMarker);
+            }
+        }
+    }
+
+    /**
+     * Gets the instance fields of a type, in the order expected by {@link CiVirtualObject}.
+     *
+     * @return the fields or {@code null} if the object cannot be described by a {@link CiVirtualObject}
+     */
+    private static RiResolvedField[] instanceFields(RiResolvedType type) {
+        List<RiResolvedField> fields = new ArrayList<RiResolvedField>();
+        for (RiResolvedType t = type; t != null; t = t.superType()) {
+            for (RiResolvedField field : t.declaredFields()) {
+                switch (field.kind(false).stackKind()) {
+                    case Int:
+                    case Long:
+                    case Float:
+                    case Double:
+                    case Object:
+                        fields.add(field);
+                        break;
+                    default:
+                        return null;
+                }
+            }
+        }
+        return fields.toArray(new RiResolvedField[fields.size()]);
+    }
+
+    private static int indexOf(RiResolvedField[] fields, RiField field) {
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i] == field) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Determines whether any frame state of an instruction refers to a candidate.
+     */
+    private boolean statesRefer(Instruction i, final Candidate c) {
+        final boolean[] result = {false};
+        ValueClosure closure = new ValueClosure() {
+            public Value apply(Value v) {
+                if (aliases.get(v) == c) {
+                    result[0] = true;
+                }
+                return v;
+            }
+        };
+        if (i.stateBefore() != null) {
+            i.stateBefore().valuesDo(closure);
+        }
+        if (i.stateAfter() != null) {
+            i.stateAfter().valuesDo(closure);
+        }
+        return result[0];
+    }
+
+    private boolean scalarReplace(Candidate c) {
+        if (c.storedOutsideBlock) {
+            return false;
+        }
+        RiResolvedField[] fields = instanceFields(c.type);
+        if (fields == null) {
+            return false;
+        }
+        for (LoadField load : c.loads) {
+            if (indexOf(fields, load.field()) < 0) {
+                return false;
+            }
+        }
+        for (StoreField store : c.stores) {
+            if (indexOf(fields, store.field()) < 0) {
+                return false;
+            }
+        }
+
+        // check that a single snapshot of the field values describes the object in all remaining frame states
+        int remainingStores = c.stores.size();
+        for (Instruction i = c.alloc.next(); i != null && remainingStores > 0; i = i.next()) {
+            if (i instanceof StoreField && c.stores.contains(i)) {
+                remainingStores--;
+            } else if (!isRemovedUse(c, i) && statesRefer(i, c)) {
+                return false;
+            }
+        }
+
+        // forward the stored values to the loads
+        Value[] current = new Value[fields.length];
+        Instruction insertionPoint = c.alloc;
+        for (Instruction i = c.alloc.next(); i != null; i = i.next()) {
+            if (i instanceof StoreField && c.stores.contains(i)) {
+                StoreField store = (StoreField) i;
+                int index = indexOf(fields, store.field());
+                current[index] = narrow(store, fields[index].kind(false), store.value());
+                removed.put(store, store);
+            } else if (i instanceof LoadField && c.loads.contains(i)) {
+                LoadField load = (LoadField) i;
+                int index = indexOf(fields, load.field());
+                if (current[index] == null) {
+                    insertionPoint = insertDefaultValue(insertionPoint, fields, current, index);
+                }
+                subst.setSubst(load, current[index]);
+            }
+        }
+        for (int index = 0; index < fields.length; index++) {
+            if (current[index] == null) {
+                insertionPoint = insertDefaultValue(insertionPoint, fields, current, index);
+            }
+        }
+        for (LoadField load : c.loads) {
+            if (!subst.hasSubst(load)) {
+                subst.setSubst(load, current[indexOf(fields, load.field())]);
+            }
+        }
+
+        VirtualObject vobj = new VirtualObject(c.type, fields, current, virtualObjects.size());
+        virtualObjects.add(vobj);
+        subst.setSubst(c.alloc, vobj);
+        for (NullCheck nc : c.nullChecks) {
+            subst.setSubst(nc, vobj);
+        }
+        for (AccessMonitor monitor : c.monitors) {
+            removed.put(monitor, monitor);
+        }
+        C1XMetrics.ScalarReplacedAllocations++;
+        C1XMetrics.LocksEliminated += c.monitors.size();
+        return true;
+    }
+
+    private boolean isRemovedUse(Candidate c, Instruction i) {
+        return c.loads.contains(i) || c.nullChecks.contains(i) || c.monitors.contains(i);
+    }
+
+    /**
+     * Truncates a value stored to a field whose kind is narrower than int, as the store would have, by inserting the
+     * conversion after the store.
+     *
+     * @return the value the field holds after the store
+     */
+    private static Value narrow(StoreField store, CiKind fieldKind, Value value) {
+        Instruction narrowed;
+        switch (fieldKind) {
+            case Boolean: {
+                Constant one = Constant.forInt(1);
+                insertAfter(store, one);
+                narrowed = new LogicOp(Bytecodes.IAND, value, one);
+                insertAfter(one, narrowed);
+                return narrowed;
+            }
+            case Byte:
+                narrowed = new Convert(Convert.Op.I2B, value, CiKind.Int);
+                break;
+            case Short:
+                narrowed = new Convert(Convert.Op.I2S, value, CiKind.Int);
+                break;
+            case Char:
+                narrowed = new Convert(Convert.Op.I2C, value, CiKind.Int);
+                break;
+            default:
+                return value;
+        }
+        insertAfter(store, narrowed);
+        return narrowed;
+    }
+
+    private static void insertAfter(Instruction insertionPoint, Instruction instruction) {
+        Instruction next = insertionPoint.next();
+        insertionPoint.setNext(instruction, insertionPoint.bci());
+        instruction.resetNext(next);
+    }
+
+    private static Instruction insertDefaultValue(Instruction insertionPoint, RiResolvedField[] fields, Value[] current, int index) {
+        Constant value = new Constant(CiConstant.defaultValue(fields[index].kind(false)));
+        Instruction next = insertionPoint.next();
+        insertionPoint.setNext(value, insertionPoint.bci());
+        value.resetNext(next);
+        current[index] = value;
+        return value;
+    }
+
+    private void eliminateLocks(Candidate c) {
+        if (c.monitors.isEmpty()) {
+            return;
+        }
+        for (AccessMonitor monitor : c.monitors) {
+            removed.put(monitor, monitor);
+        }
+        c.alloc.setFlag(Value.Flag.LockEliminated);
+        for (NullCheck nc : c.nullChecks) {
+            nc.setFlag(Value.Flag.LockEliminated);
+        }
+        C1XMetrics.LocksEliminated += c.monitors.size();
+    }
+
+    private void removeInstructions() {
+        for (BlockBegin block : blocks) {
+            Instruction last = block;
+            for (Instruction i = block.next(); i != null; i = i.next()) {
+                if (removed.containsKey(i)) {
+                    last.resetNext(i.next());
+                } else {
+                    last = i;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,406 @@
+/*
+ * Copyright (c) 2009, 2011, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.c1x.opt;
+
+import java.util.*;
+
+import com.sun.c1x.*;
+import com.sun.c1x.graph.*;
+import com.sun.c1x.ir.*;
+import com.sun.c1x.value.*;
+import com.sun.cri.bytecode.*;
+import com.sun.cri.ci.*;
+import com.sun.cri.ri.*;
+
+/**
+ * This class implements loop optimizations on the natural loops of the HIR. It must run after
+ * the {@linkplain IR#linearScanOrder() linear scan order} has been computed, so that critical edges are split
+ * and dominators are available.
+ * <ul>
+ * <li>Loop invariant code motion: instructions that cannot trap or have side effects and whose inputs are defined
+ * outside the loop are moved to the loop pre-header.</li>
+ * <li>Range check elimination: in a counted loop {@code for (i = init; i < limit; i++)}, the bounds checks of
+ * array accesses indexed by {@code i} are removed. If {@code limit} is the length of the accessed array, the checks are
+ * redundant. Otherwise, the checks are replaced by a guard in the pre-header that deoptimizes to the loop entry if
+ * {@code init < 0 || limit > array.length}, as long as the access executes on every iteration.</li>
+ * </ul>
+ * Loops are processed innermost first, so that invariants can be hoisted out of a loop nest one level at a time.
+ * Neither optimization is performed once a predicate of a previous compilation of the method
+ * {@linkplain RiResolvedMethod#loopPredicateFailed() failed}.
+ */
+public final class LoopOptimizer {
+
+    /**
+     * A natural loop with a unique pre-header.
+     */
+    private static final class Loop {
+        final BlockBegin header;
+        final BlockBegin preheader;
+        final List<BlockBegin> ends;
+        final List<BlockBegin> blocks;
+        final IdentityHashMap<BlockBegin, BlockBegin> members;
+
+        Loop(BlockBegin header, BlockBegin preheader, List<BlockBegin> ends, List<BlockBegin> blocks, IdentityHashMap<BlockBegin, BlockBegin> members) {
+            this.header = header;
+            this.preheader = preheader;
+            this.ends = ends;
+            this.blocks = blocks;
+            this.members = members;
+        }
+
+        boolean contains(BlockBegin block) {
+            return members.containsKey(block);
+        }
+    }
+
+    final IR ir;
+
+    public LoopOptimizer(IR ir) {
+        this.ir = ir;
+        if (ir.compilation.method.loopPredicateFailed()) {
+            return;
+        }
+        List<Loop> loops = findLoops();
+        Collections.sort(loops, new Comparator<Loop>() {
+            public int compare(Loop o1, Loop o2) {
+                return o2.header.loopDepth() - o1.header.loopDepth();
+            }
+        });
+        for (Loop loop : loops) {
+            if (C1XOptions.OptLoopInvariantCodeMotion) {
+                hoistInvariants(loop);
+            }
+            if (C1XOptions.OptRangeCheckElimination) {
+                eliminateRangeChecks(loop);
+            }
+        }
+    }
+
+    private static boolean dominates(BlockBegin dominator, BlockBegin block) {
+        for (BlockBegin b = block; b != null; b = b.dominator()) {
+            if (b == dominator) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<Loop> findLoops() {
+        List<Loop> loops = new ArrayList<Loop>();
+        for (BlockBegin header : ir.linearScanOrder()) {
+            if (!header.isLinearScanLoopHeader() || header.isExceptionEntry()) {
+                continue;
+            }
+            List<BlockBegin> ends = new ArrayList<BlockBegin>(2);
+            BlockBegin preheader = null;
+            int entries = 0;
+            for (BlockBegin pred : header.predecessors()) {
+                if (dominates(header, pred)) {
+                    ends.add(pred);
+                } else {
+                    preheader = pred;
+                    entries++;
+                }
+            }
+            if (ends.isEmpty() || entries != 1 || preheader.numberOfSux() != 1 || !(preheader.end() instanceof Goto)) {
+                continue;
+            }
+
+            // collect the loop body by walking backwards from the loop ends
+            IdentityHashMap<BlockBegin, BlockBegin> members = new IdentityHashMap<BlockBegin, BlockBegin>();
+            members.put(header, header);
+            ArrayList<BlockBegin> workList = new ArrayList<BlockBegin>(ends);
+            boolean reducible = true;
+            while (!workList.isEmpty()) {
+                BlockBegin block = workList.remove(workList.size() - 1);
+                if (members.put(block, block) == null) {
+                    if (!dominates(header, block)) {
+                        reducible = false;
+                        break;
+                    }
+                    workList.addAll(block.predecessors());
+                }
+            }
+            if (!reducible) {
+                continue;
+            }
+            List<BlockBegin> blocks = new ArrayList<BlockBegin>(members.size());
+            for (BlockBegin block : ir.linearScanOrder()) {
+                if (members.containsKey(block)) {
+                    blocks.add(block);
+                }
+            }
+            loops.add(new Loop(header, preheader, ends, blocks, members));
+        }
+        return loops;
+    }
+
+    /**
+     * Determines if a value is defined inside a loop.
+     *
+     * @param defined the instructions currently in the blocks of the loop
+     */
+    private static boolean isVariant(Loop loop, IdentityHashMap<Value, Value> defined, Value value) {
+        if (value instanceof Phi) {
+            return loop.contains(value.block());
+        }
+        return defined.containsKey(value);
+    }
+
+    private static IdentityHashMap<Value, Value> definedIn(Loop loop) {
+        IdentityHashMap<Value, Value> defined = new IdentityHashMap<Value, Value>();
+        for (BlockBegin block : loop.blocks) {
+            for (Instruction i = block.next(); i != null; i = i.next()) {
+                defined.put(i, i);
+            }
+        }
+        return defined;
+    }
+
+    private static boolean isHoistable(Instruction i) {
+        if (i.stateBefore() != null || i.stateAfter() != null || i.canTrap()) {
+            return false;
+        }
+        return i instanceof ArithmeticOp || i instanceof LogicOp || i instanceof ShiftOp || i instanceof NegateOp ||
+               i instanceof Convert || i instanceof CompareOp || i instanceof ArrayLength;
+    }
+
+    /**
+     * Appends an instruction to the end of the pre-header of a loop, i.e. just before its block end.
+     */
+    private static void appendToPreheader(Loop loop, Instruction i) {
+        BlockBegin preheader = loop.preheader;
+        Instruction prev = preheader;
+        while (prev.next() != preheader.end()) {
+            prev = prev.next();
+        }
+        prev.resetNext(i);
+        i.resetNext(preheader.end());
+        if (i.bci() < 0) {
+            i.setBCI(preheader.end().bci());
+        }
+    }
+
+    private void hoistInvariants(final Loop loop) {
+        final IdentityHashMap<Value, Value> defined = definedIn(loop);
+        final boolean[] variant = {false};
+        ValueClosure inputChecker = new ValueClosure() {
+            public Value apply(Value v) {
+                if (isVariant(loop, defined, v)) {
+                    variant[0] = true;
+                }
+                return v;
+            }
+        };
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (BlockBegin block : loop.blocks) {
+                Instruction prev = block;
+                Instruction i = block.next();
+                while (i != null) {
+                    Instruction next = i.next();
+                    if (isHoistable(i)) {
+                        variant[0] = false;
+                        i.inputValuesDo(inputChecker);
+                        if (!variant[0]) {
+                            prev.resetNext(next);
+                            appendToPreheader(loop, i);
+                            defined.remove(i);
+                            C1XMetrics.LoopInvariantsHoisted++;
+                            changed = true;
+                            i = next;
+                            continue;
+                        }
+                    }
+                    prev = i;
+                    i = next;
+                }
+            }
+        }
+    }
+
+    private void eliminateRangeChecks(Loop loop) {
+        BlockBegin header = loop.header;
+        if (!(header.end() instanceof If)) {
+            return;
+        }
+        If exitTest = (If) header.end();
+        if (!exitTest.x().kind.isInt()) {
+            return;
+        }
+
+        // normalize the exit test to 'phi cond limit'
+        Phi phi;
+        Value limit;
+        Condition cond = exitTest.condition();
+        if (exitTest.x() instanceof Phi && exitTest.x().block() == header) {
+            phi = (Phi) exitTest.x();
+            limit = exitTest.y();
+        } else if (exitTest.y() instanceof Phi && exitTest.y().block() == header) {
+            phi = (Phi) exitTest.y();
+            limit = exitTest.x();
+            cond = cond.mirror();
+        } else {
+            return;
+        }
+        boolean trueInLoop = loop.contains(exitTest.trueSuccessor());
+        if (trueInLoop == loop.contains(exitTest.falseSuccessor())) {
+            return;
+        }
+        BlockBegin body = exitTest.successor(trueInLoop);
+        if ((trueInLoop ? cond : cond.negate()) != Condition.LT || body.numberOfPreds() != 1) {
+            return;
+        }
+
+        // the induction variable must start at 'init' and be incremented by one on each back edge
+        int entryIndex = header.predecessors().indexOf(loop.preheader);
+        Value init = phi.inputAt(entryIndex);
+        for (int j = 0; j < phi.inputCount(); j++) {
+            if (j != entryIndex && !isIncrementByOne(phi, phi.inputAt(j))) {
+                return;
+            }
+        }
+        if (init == null || !init.kind.isInt()) {
+            return;
+        }
+        boolean initIsPositive = init.isConstant() && init.asConstant().asInt() >= 0;
+
+        IdentityHashMap<Value, Value> defined = definedIn(loop);
+        boolean canPredicate = !isVariant(loop, defined, limit) && hasSingleExit(loop, exitTest);
+        boolean needsInitCheck = false;
+        ArrayList<Value> predicatedArrays = new ArrayList<Value>(2);
+        ArrayList<AccessIndexed> eliminated = new ArrayList<AccessIndexed>();
+
+        for (BlockBegin block : loop.blocks) {
+            if (!dominates(body, block)) {
+                continue;
+            }
+            for (Instruction i = block.next(); i != null; i = i.next()) {
+                if (!(i instanceof AccessIndexed)) {
+                    continue;
+                }
+                AccessIndexed access = (AccessIndexed) i;
+                Value array = access.array();
+                if (access.index() != phi || !access.needsBoundsCheck() || isVariant(loop, defined, array)) {
+                    continue;
+                }
+                if (limit instanceof ArrayLength && ((ArrayLength) limit).array() == array) {
+                    // 0 <= init <= i < array.length
+                    if (initIsPositive) {
+                        eliminated.add(access);
+                    } else if (canPredicate) {
+                        needsInitCheck = true;
+                        eliminated.add(access);
+                    }
+                } else if (canPredicate && array.isNonNull() && executesOnEveryIteration(loop, block)) {
+                    needsInitCheck |= !initIsPositive;
+                    if (!predicatedArrays.contains(array)) {
+                        predicatedArrays.add(array);
+                    }
+                    eliminated.add(access);
+                }
+            }
+        }
+        if (eliminated.isEmpty()) {
+            return;
+        }
+
+        if (needsInitCheck || !predicatedArrays.isEmpty()) {
+            FrameState entryState = entryState(loop, entryIndex);
+            if (needsInitCheck) {
+                Constant zero = Constant.forInt(0);
+                appendToPreheader(loop, zero);
+                appendToPreheader(loop, new BoundsCheck(init, zero, entryState, Condition.GE, true));
+                C1XMetrics.RangeCheckPredicates++;
+            }
+            for (Value array : predicatedArrays) {
+                ArrayLength length = new ArrayLength(array, null);
+                appendToPreheader(loop, length);
+                appendToPreheader(loop, new BoundsCheck(limit, length, entryState, Condition.LE, true));
+                C1XMetrics.RangeCheckPredicates++;
+            }
+        }
+        for (AccessIndexed access : eliminated) {
+            access.eliminateBoundsCheck();
+        }
+    }
+
+    private static boolean isIncrementByOne(Phi phi, Value value) {
+        if (value instanceof ArithmeticOp) {
+            ArithmeticOp add = (ArithmeticOp) value;
+            if (add.opcode == Bytecodes.IADD) {
+                Value other = add.x() == phi ? add.y() : add.y() == phi ? add.x() : null;
+                return other != null && other.isConstant() && other.asConstant().asInt() == 1;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines if the only normal exit from a loop is the exit test in its header. Exits through
+     * exception handlers are allowed, as a guard that fails on such paths only costs a deoptimization.
+     */
+    private static boolean hasSingleExit(Loop loop, If exitTest) {
+        for (BlockBegin block : loop.blocks) {
+            BlockEnd end = block.end();
+            if (end == exitTest) {
+                continue;
+            }
+            for (BlockBegin sux : end.successors()) {
+                if (!loop.contains(sux)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean executesOnEveryIteration(Loop loop, BlockBegin block) {
+        for (BlockBegin end : loop.ends) {
+            if (!dominates(block, end)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates the frame state on entry to a loop, i.e. the state of the loop header with the values
+     * flowing in from the pre-header in place of the header's phis. A guard deoptimizing to this
+     * state re-executes the loop from its first iteration.
+     */
+    private static FrameState entryState(final Loop loop, final int entryIndex) {
+        MutableFrameState state = loop.header.stateBefore().copy();
+        state.valuesDo(new ValueClosure() {
+            public Value apply(Value v) {
+                if (v instanceof Phi && v.block() == loop.header) {
+                    return ((Phi) v).inputAt(entryIndex);
+                }
+                return v;
+            }
+        });
+        return state;
+    }
+}
@@ -1790,7 +1790,7 @@ public final class Aarch64LIRAssembler extends LIRAssembler {
     @Override
     public void emitDeoptizationStub(DeoptimizationStub stub) {
         masm.bind(stub.label);
-        directCall(CiRuntimeCall.Deoptimize, stub.info);
+        directCall(stub.runtimeCall, stub.info);
         shouldNotReachHere();
     }
 
@@ -2129,7 +2129,7 @@ public final class AMD64LIRAssembler extends LIRAssembler {
     @Override
     public void emitDeoptizationStub(DeoptimizationStub stub) {
         masm.bind(stub.label);
-        directCall(CiRuntimeCall.Deoptimize, stub.info);
+        directCall(stub.runtimeCall, stub.info);
         shouldNotReachHere();
     }
 
@@ -680,7 +680,8 @@ public class AMD64LIRGenerator extends LIRGenerator {
 
     @Override
     protected CiValue osrBufferPointer() {
-        return Util.nonFatalUnimplemented(null);
+        // the VM passes the pointer to the OSR buffer in rax when it jumps to the optimized entry point
+        return RAX_L;
     }
 
     @Override
@@ -2495,7 +2495,7 @@ public final class ARMV7LIRAssembler extends LIRAssembler {
     @Override
     public void emitDeoptizationStub(DeoptimizationStub stub) {
         masm.bind(stub.label);
-        directCall(CiRuntimeCall.Deoptimize, stub.info);
+        directCall(stub.runtimeCall, stub.info);
         shouldNotReachHere();
     }
 
@@ -549,6 +549,7 @@ public abstract class FrameState {
 
     /**
      * Traverses all {@linkplain Value#isLive() live values} of this frame state and it's callers.
+     * {@linkplain VirtualObject Virtual objects} are not traversed themselves, but their field values are.
      *
      * @param proc the call back called to process each live value traversed
      */
@@ -559,7 +560,7 @@ public abstract class FrameState {
             for (int i = 0; i < max; i++) {
                 Value value = state.values[i];
                 if (value != null && value.isLive()) {
-                    proc.doValue(value);
+                    doLiveStateValue(value, proc);
                 }
             }
             if (state.locks != null) {
@@ -567,7 +568,7 @@ public abstract class FrameState {
                     Value instr = state.locks.get(i);
                     if (instr != null) {
                         assert instr.isLive();
-                        proc.doValue(instr);
+                        doLiveStateValue(instr, proc);
                     }
                 }
             }
@@ -575,6 +576,20 @@ public abstract class FrameState {
         }
     }
 
+    private static void doLiveStateValue(Value value, ValueProcedure proc) {
+        if (value instanceof VirtualObject) {
+            VirtualObject vobj = (VirtualObject) value;
+            for (int i = 0; i < vobj.valueCount(); i++) {
+                Value fieldValue = vobj.valueAt(i);
+                if (fieldValue.isLive()) {
+                    proc.doValue(fieldValue);
+                }
+            }
+        } else {
+            proc.doValue(value);
+        }
+    }
+
     public static String toString(FrameState fs) {
         StringBuilder sb = new StringBuilder();
         String nl = CiUtil.NEW_LINE;
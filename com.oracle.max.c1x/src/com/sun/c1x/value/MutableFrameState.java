@@ -302,6 +302,19 @@ public final class MutableFrameState extends FrameState {
         return r;
     }
 
+    /**
+     * Pushes back the arguments of a call that were popped by {@link #popArguments(int)}.
+     * @param args the arguments, including the {@code null} upper halves of two-slot values
+     */
+    public void pushArguments(Value[] args) {
+        int y = maxLocals + stackIndex;
+        for (Value arg : args) {
+            values[y++] = arg;
+        }
+        stackIndex += args.length;
+        assert stackIndex <= values.length - maxLocals;
+    }
+
     /**
      * Locks a new object within the specified IRScope.
      * @param scope the IRScope in which this locking operation occurs
@@ -42,7 +42,16 @@ public final class CiMonitorValue extends CiValue {
 
     @Override
     public boolean equals(Object obj) {
-        return this == obj;
+        if (this == obj) {
+            return true;
+        }
+        if (obj instanceof CiMonitorValue) {
+            CiMonitorValue mon = (CiMonitorValue) obj;
+            return mon.owner.equals(owner) &&
+                   mon.eliminated == eliminated &&
+                   mon.lockData.equals(lockData);
+        }
+        return false;
     }
 
     @Override
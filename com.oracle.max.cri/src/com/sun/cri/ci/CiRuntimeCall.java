@@ -38,6 +38,8 @@ public enum CiRuntimeCall {
     arithmeticludiv(Long, Long, Long),
     UnwindException(Void, Object),
     Deoptimize(Void),
+    DeoptimizeAndReexecute(Void),
+    DeoptimizeLoopPredicate(Void),
     RegisterFinalizer(Void, Object),
     HandleException(Void, Object),
     SetDeoptInfo(Void, Object),
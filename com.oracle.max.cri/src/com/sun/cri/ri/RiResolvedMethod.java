@@ -188,6 +188,12 @@ public interface RiResolvedMethod extends RiMethod {
      */
     double[] switchProbability(int bci);
 
+    /**
+     * Determines if a loop predicate of compiled code for this method {@linkplain CiRuntimeCall#DeoptimizeLoopPredicate failed}.
+     * If so, the compiler should neither hoist range checks nor loop invariant code out of the loops of this method.
+     */
+    boolean loopPredicateFailed();
+
     /**
      * Returns a map that the compiler can use to store objects that should survive the current compilation.
      */
@@ -117,10 +117,23 @@ public interface RiXirGenerator {
      *         uncommonTrap();
      *     }
      * </pre>
-     * This snippet should only be used when the object is guaranteed not to be null.
+     * The uncommon trap {@linkplain CiRuntimeCall#DeoptimizeAndReexecute re-executes} the bytecode denoted by
+     * the frame state of the check. This snippet should only be used when the object is guaranteed not to be null.
      */
     XirSnippet genTypeCheck(XirSite site, XirArgument object, XirArgument hub, RiType type);
 
+    /**
+     * Generates code that checks that the {@linkplain Representation#ObjectHub hub} of
+     * an object is identical to one of two given hub constants. In pseudo code:
+     * <pre>
+     *     if (object.getHub() != hub && object.getHub() != otherHub) {
+     *         uncommonTrap();
+     *     }
+     * </pre>
+     * The same restrictions as for {@link #genTypeCheck(XirSite, XirArgument, XirArgument, RiType)} apply.
+     */
+    XirSnippet genBimorphicTypeCheck(XirSite site, XirArgument object, XirArgument hub, XirArgument otherHub);
+
     /**
      * Gets the list of XIR templates, using the given XIR assembler to create them if
      * they haven't yet been created.
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jtt.loop;
+
+/*
+ * Tests on-stack replacement of a long-running loop that keeps int, long, double and
+ * reference locals live across the transition.
+ * @Harness: java
+ * @Runs: 0=800003; 1=800008; 10=800053;
+ */
+public class LoopOSR01 {
+
+    public static int test(int arg) {
+        int i = arg;
+        long l = arg * 3L;
+        double d = arg;
+        int[] counts = new int[2];
+        String s = "osr";
+        for (int n = 0; n < 200000; n++) {
+            i += n & 7;
+            l += n;
+            d += 0.5;
+            counts[n & 1]++;
+        }
+        return i + (int) (l % 1000) + (int) d + counts[0] - counts[1] + s.length();
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jtt.loop;
+
+/*
+ * Tests on-stack replacement in the inner loop of a loop nest, after which the outer loop
+ * keeps running in the optimized frame.
+ * @Harness: java
+ * @Runs: 0=25005; 1=50006; 10=75015;
+ */
+public class LoopOSR02 {
+
+    public static int test(int arg) {
+        long sum = 0;
+        int outer = 0;
+        for (int i = 0; i < arg + 5; i++) {
+            for (int j = 0; j < 30000; j++) {
+                sum += (i ^ j) & 15;
+            }
+            outer++;
+        }
+        return (int) (sum % 100000) + outer;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jtt.loop;
+
+/*
+ * Tests on-stack replacement of a loop in an instance method with arguments, checking that the
+ * optimized frame returns the right value to its caller and that the caller's locals survive.
+ * @Harness: java
+ * @Runs: 0=6; 1=14; 10=86;
+ */
+public class LoopOSR03 {
+
+    private final int base;
+
+    public LoopOSR03(int base) {
+        this.base = base;
+    }
+
+    public static int test(int arg) {
+        int before = arg * 7;
+        LoopOSR03 loop = new LoopOSR03(arg);
+        long result = loop.run(arg, 200000L, 2.5d, "x");
+        return before + (int) (result % 100000) + loop.base;
+    }
+
+    private long run(int a, long limit, double scale, String tag) {
+        long sum = 0;
+        for (long n = 0; n < limit; n++) {
+            sum += (n % 10) * a + base;
+        }
+        return sum + (long) (scale * 2) + tag.length();
+    }
+}
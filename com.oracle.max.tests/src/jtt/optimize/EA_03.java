@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jtt.optimize;
+
+/*
+ * Tests deoptimization inside the synchronized block of a scalar replaced object: the object must
+ * be materialized with its field values and relocked, so that the monitor exit succeeds.
+ * The deoptimization is triggered by loading a class that invalidates the inlining of {@code Value.get()}.
+ * @Harness: java
+ * @Runs: 0=100600; 1=131631; 10=410910
+ */
+public class EA_03 {
+
+    static class Value {
+        int get() {
+            return 1;
+        }
+    }
+
+    static class Other extends Value {
+        @Override
+        int get() {
+            return 2;
+        }
+    }
+
+    static class Pair {
+        int a;
+        long b;
+    }
+
+    static Value value = new Value();
+    static Value other;
+
+    public static int test(int arg) {
+        int result = 0;
+        // make compute() hot so that it is recompiled with the optimizing compiler
+        for (int i = 0; i < 20000; i++) {
+            result = compute(arg, false);
+        }
+        return result * 1000 + compute(arg, true);
+    }
+
+    static int compute(int arg, boolean deopt) {
+        Pair p = new Pair();
+        p.a = arg;
+        p.b = arg * 3L;
+        synchronized (p) {
+            int v = value.get();
+            if (deopt) {
+                v += loadOther();
+            }
+            return p.a + (int) p.b * 10 + v * 100;
+        }
+    }
+
+    static int loadOther() {
+        if (other == null) {
+            other = new Other();
+        }
+        return 5;
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jtt.optimize;
+
+/*
+ * Tests escape analysis of an allocation with fields narrower than int.
+ * @Harness: java
+ * @Runs: 0=-127; 1=65664; 127=97920; 255=65152; -1=-128
+ */
+public class EA_04 {
+
+    static class Narrow {
+        byte b;
+        short s;
+        char c;
+        boolean z;
+    }
+
+    public static int test(int arg) {
+        Narrow n = new Narrow();
+        n.b = (byte) (arg + 128);
+        n.s = (short) (arg * 256);
+        n.c = (char) -arg;
+        n.z = (arg & 1) == 0;
+        return n.b + n.s + n.c + (n.z ? 1 : 0);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jtt.optimize;
+
+/*
+ * Tests inlining of a virtual call site guarded by the receiver types seen while it was warmed up,
+ * with one or two types, and then called with a third type.
+ * @Harness: java
+ * @Runs: 0=89905; 1=119905
+ */
+public class Inline03 {
+
+    static class A {
+        int value(int x) {
+            return x + 1;
+        }
+    }
+
+    static class B extends A {
+        @Override
+        int value(int x) {
+            return x * 2;
+        }
+    }
+
+    static class C extends A {
+        @Override
+        int value(int x) {
+            return x - 100;
+        }
+    }
+
+    static final A a = new A();
+    static final A b = new B();
+
+    public static int test(int arg) {
+        int r = 0;
+        if (arg == 0) {
+            for (int i = 0; i < 20000; i++) {
+                r += monomorphic(a, i & 7);
+            }
+            return r + monomorphic(new C(), 5);
+        }
+        for (int i = 0; i < 20000; i++) {
+            r += bimorphic((i & 1) == 0 ? a : b, i & 7);
+        }
+        return r + bimorphic(new C(), 5);
+    }
+
+    static int monomorphic(A receiver, int x) {
+        return receiver.value(x);
+    }
+
+    static int bimorphic(A receiver, int x) {
+        return receiver.value(x);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jtt.optimize;
+
+/*
+ * Tests inlining of an interface call site guarded by the receiver types seen while it was warmed up,
+ * with one or two types, and then called with a third type that was already loaded.
+ * @Harness: java
+ * @Runs: 0=90001; 1=120005
+ */
+public class Inline04 {
+
+    interface Op {
+        int apply(int x);
+    }
+
+    static class Inc implements Op {
+        public int apply(int x) {
+            return x + 1;
+        }
+    }
+
+    static class Dbl implements Op {
+        public int apply(int x) {
+            return x * 2;
+        }
+    }
+
+    static class Neg implements Op {
+        public int apply(int x) {
+            return -x;
+        }
+    }
+
+    static final Op inc = new Inc();
+    static final Op dbl = new Dbl();
+    static final Op neg = new Neg();
+
+    public static int test(int arg) {
+        int r = 0;
+        if (arg == 0) {
+            for (int i = 0; i < 20000; i++) {
+                r += monomorphic(inc, i & 7);
+            }
+            return r + monomorphic(neg, 5) + monomorphic(inc, 5);
+        }
+        for (int i = 0; i < 20000; i++) {
+            r += bimorphic((i & 1) == 0 ? inc : dbl, i & 7);
+        }
+        return r + bimorphic(neg, 5) + bimorphic(dbl, 5);
+    }
+
+    static int monomorphic(Op op, int x) {
+        return op.apply(x);
+    }
+
+    static int bimorphic(Op op, int x) {
+        return op.apply(x);
+    }
+}
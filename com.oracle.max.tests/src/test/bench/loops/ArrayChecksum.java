@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2009, 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+/*
+ * @Harness: java
+ * @Runs: 1024 = true
+ */
+package test.bench.loops;
+
+import test.bench.util.*;
+
+/**
+ * A microbenchmark for a loop whose limit is the length of the array it reads, in which all bounds checks are redundant.
+ */
+public class ArrayChecksum extends RunBench {
+
+    protected ArrayChecksum(int length) {
+        super(new Bench(length));
+    }
+
+    public static boolean test(int length) {
+        return new ArrayChecksum(length).runBench();
+    }
+
+    static class Bench extends MicroBenchmark {
+        final int[] data;
+        Bench(int length) {
+            data = new int[length];
+            for (int i = 0; i < length; i++) {
+                data[i] = i * 31;
+            }
+        }
+        @Override
+        public long run() {
+            final int[] a = data;
+            int sum = 0;
+            for (int i = 0; i < a.length; i++) {
+                sum = sum * 17 + a[i];
+            }
+            return sum;
+        }
+
+    }
+
+    public static void main(String[] args) {
+        test(1024);
+    }
+
+}
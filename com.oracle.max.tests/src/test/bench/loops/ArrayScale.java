@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2009, 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+/*
+ * @Harness: java
+ * @Runs: 1024 = true
+ */
+package test.bench.loops;
+
+import test.bench.util.*;
+
+/**
+ * A microbenchmark for a loop over two arrays up to a loop invariant limit, with a loop invariant scale factor.
+ */
+public class ArrayScale extends RunBench {
+
+    protected ArrayScale(int length) {
+        super(new Bench(length));
+    }
+
+    public static boolean test(int length) {
+        return new ArrayScale(length).runBench();
+    }
+
+    static class Bench extends MicroBenchmark {
+        final double[] src;
+        final double[] dst;
+        final int count;
+        final int factor;
+        Bench(int length) {
+            src = new double[length];
+            dst = new double[length];
+            count = length;
+            factor = 3;
+            for (int i = 0; i < length; i++) {
+                src[i] = i;
+            }
+        }
+        @Override
+        public long run() {
+            final double[] s = src;
+            final double[] d = dst;
+            final int n = count;
+            final int f = factor;
+            for (int i = 0; i < n; i++) {
+                d[i] = s[i] * (f * 2 + 1);
+            }
+            return (long) d[n - 1];
+        }
+
+    }
+
+    public static void main(String[] args) {
+        test(1024);
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2009, 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+/*
+ * @Harness: java
+ * @Runs: 4096 = true
+ */
+package test.bench.loops;
+
+import test.bench.util.*;
+
+/**
+ * A microbenchmark for a byte codec loop that reads one array and writes another, starting at an offset.
+ */
+public class ByteXor extends RunBench {
+
+    protected ByteXor(int length) {
+        super(new Bench(length));
+    }
+
+    public static boolean test(int length) {
+        return new ByteXor(length).runBench();
+    }
+
+    static class Bench extends MicroBenchmark {
+        final byte[] in;
+        final byte[] out;
+        final int offset;
+        final int key;
+        Bench(int length) {
+            in = new byte[length];
+            out = new byte[length];
+            offset = 16;
+            key = 0x5a;
+            for (int i = 0; i < length; i++) {
+                in[i] = (byte) i;
+            }
+        }
+        @Override
+        public long run() {
+            final byte[] src = in;
+            final byte[] dst = out;
+            final int k = key;
+            for (int i = offset; i < src.length; i++) {
+                dst[i] = (byte) (src[i] ^ k);
+            }
+            return dst[dst.length - 1];
+        }
+
+    }
+
+    public static void main(String[] args) {
+        test(4096);
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package test.output;
+
+/**
+ * A multi-threaded stress test for mostly-concurrent snapshot-at-the-beginning marking.
+ * Each mutator owns a set of tokens spread over the reference fields and reference arrays of a table of boxes.
+ * While marking cycles run, the mutators keep swapping tokens between fields, arrays and boxes. Each swap hides a
+ * token from the part of the graph the marker has not traced yet and stores it in a part it may already have
+ * traced, which is exactly the case the SATB barriers must catch. Mutators also replace tokens and boxes by new
+ * copies allocated during the cycle. The main thread forces stop-the-world collections in the meantime, which abort the
+ * cycle in progress, if any. After every round, each mutator checks that every one of its tokens is still reachable exactly once.
+ * <p>
+ * Meant to be run on an MSE image with the {@code satb} maxvm configuration
+ * (i.e., {@code -XX:+ConcurrentMarking -XX:ConcurrentMarkingThreshold=5 -XX:+VerifyAfterGC -XX:+VerifyAfterMarking}).
+ */
+public class ConcurrentMarkingStress extends GCStressTest {
+
+    static final class Box {
+        Cell a;
+        Cell b;
+        final Cell[] items = new Cell[6];
+    }
+
+    static final int BOXES = 512;
+    static final int TOKENS_PER_BOX = 8;
+    static final int ROUNDS = 25;
+    static final int SWAPS_PER_ROUND = 200000;
+
+    private static class SwappingMutator extends Mutator {
+        final Box[] boxes = new Box[BOXES];
+        int seed;
+
+        SwappingMutator(int id) {
+            super(id);
+            seed = id + 1;
+            for (int i = 0; i < BOXES; i++) {
+                final Box box = new Box();
+                box.a = newToken(i * TOKENS_PER_BOX);
+                box.b = newToken(i * TOKENS_PER_BOX + 1);
+                for (int j = 0; j < box.items.length; j++) {
+                    box.items[j] = newToken(i * TOKENS_PER_BOX + 2 + j);
+                }
+                boxes[i] = box;
+            }
+        }
+
+        int next(int bound) {
+            seed = seed * 1103515245 + 12345;
+            return (seed >>> 8) % bound;
+        }
+
+        Cell get(Box box, int slot) {
+            if (slot == 0) {
+                return box.a;
+            }
+            if (slot == 1) {
+                return box.b;
+            }
+            return box.items[slot - 2];
+        }
+
+        void set(Box box, int slot, Cell token) {
+            if (slot == 0) {
+                box.a = token;
+            } else if (slot == 1) {
+                box.b = token;
+            } else {
+                box.items[slot - 2] = token;
+            }
+        }
+
+        @Override
+        public void run() {
+            for (int round = 0; round < ROUNDS; round++) {
+                for (int i = 0; i < SWAPS_PER_ROUND; i++) {
+                    final Box from = boxes[next(BOXES)];
+                    final Box to = boxes[next(BOXES)];
+                    final int fromSlot = next(TOKENS_PER_BOX);
+                    final int toSlot = next(TOKENS_PER_BOX);
+                    final Cell t = get(from, fromSlot);
+                    // The token is only reachable from this thread's stack until it is stored back
+                    set(from, fromSlot, null);
+                    set(from, fromSlot, get(to, toSlot));
+                    set(to, toSlot, t);
+                    switch (next(64)) {
+                        case 0:
+                            // Replace a token by a copy allocated during the cycle
+                            set(to, toSlot, newToken(t.value));
+                            break;
+                        case 1:
+                            // Replace a box by a new one holding the old tokens
+                            final int index = next(BOXES);
+                            final Box old = boxes[index];
+                            final Box copy = new Box();
+                            for (int slot = 0; slot < TOKENS_PER_BOX; slot++) {
+                                set(copy, slot, get(old, slot));
+                            }
+                            boxes[index] = copy;
+                            break;
+                        default:
+                            newToken(-1);
+                    }
+                }
+                check();
+            }
+        }
+
+        void check() {
+            final boolean[] seen = new boolean[BOXES * TOKENS_PER_BOX];
+            for (Box box : boxes) {
+                for (int slot = 0; slot < TOKENS_PER_BOX; slot++) {
+                    final Cell t = get(box, slot);
+                    if (t == null || t.value < 0 || t.value >= seen.length || seen[t.value] || !t.isIntact()) {
+                        failures++;
+                    } else {
+                        seen[t.value] = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a token, i.e. a cell that is swapped between the boxes of a mutator.
+     */
+    static Cell newToken(int value) {
+        return new Cell(value, 2);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        run(ConcurrentMarkingStress.class, args, new MutatorFactory() {
+            public Mutator create(int id, int threads) {
+                return new SwappingMutator(id);
+            }
+        }, 20, 50);
+    }
+}
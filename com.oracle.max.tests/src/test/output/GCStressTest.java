@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package test.output;
+
+/**
+ * The fixture shared by the multi-threaded GC stress tests. Each test provides {@linkplain Mutator mutator threads}
+ * that build and check a graph shaped after the collector it targets, while the main thread forces collections
+ * (see {@link #run(Class, String[], MutatorFactory, int, long)}). Objects whose contents must survive being moved are
+ * {@link Cell}s.
+ */
+public abstract class GCStressTest {
+
+    /**
+     * An object whose payload is derived from its value, so that a corrupted copy can be detected.
+     */
+    static final class Cell {
+        final int value;
+        final int[] payload;
+        Cell left;
+        Cell right;
+
+        Cell(int value, int payloadLength) {
+            this.value = value;
+            this.payload = new int[payloadLength];
+            for (int i = 0; i < payloadLength; i++) {
+                payload[i] = value + i;
+            }
+        }
+
+        boolean isIntact() {
+            for (int i = 0; i < payload.length; i++) {
+                if (payload[i] != value + i) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A mutator thread, which counts the checks that failed.
+     */
+    abstract static class Mutator extends Thread {
+        final int id;
+        int failures;
+
+        Mutator(int id) {
+            this.id = id;
+        }
+
+        void check(boolean condition) {
+            if (!condition) {
+                failures++;
+            }
+        }
+
+        /**
+         * Describes the outcome of this mutator once it has terminated.
+         */
+        String result() {
+            return failures + " failures";
+        }
+    }
+
+    interface MutatorFactory {
+        Mutator create(int id, int threads);
+    }
+
+    /**
+     * Allocates arrays of short-lived cells and integer arrays to trigger collections.
+     */
+    static void createGarbage(int arrays, int seed) {
+        for (int i = 0; i < arrays; i++) {
+            final Object[] objects = new Object[256];
+            for (int j = 0; j < objects.length; j++) {
+                if ((j & 1) == 0) {
+                    objects[j] = new Cell(j, (seed + j) & 15);
+                } else {
+                    objects[j] = new int[(seed + i + j) & 63];
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a stress test: starts as many mutators as the first argument specifies (4 by default), forces a number of
+     * collections while they run, waits for them to terminate and reports their results.
+     *
+     * @param collections the number of collections to force
+     * @param intervalMillis the time to wait before each forced collection, or 0 to only yield
+     */
+    static void run(Class<?> test, String[] args, MutatorFactory factory, int collections, long intervalMillis) throws InterruptedException {
+        int threads = 4;
+        if (args.length > 0) {
+            threads = Integer.parseInt(args[0]);
+        }
+        final Mutator[] mutators = new Mutator[threads];
+        for (int i = 0; i < threads; i++) {
+            mutators[i] = factory.create(i, threads);
+            mutators[i].start();
+        }
+        for (int i = 0; i < collections; i++) {
+            if (intervalMillis > 0) {
+                Thread.sleep(intervalMillis);
+            } else {
+                Thread.yield();
+            }
+            System.gc();
+        }
+        for (int i = 0; i < threads; i++) {
+            mutators[i].join();
+            System.out.println("Mutator " + i + ": " + mutators[i].result());
+        }
+        System.out.println(test.getSimpleName() + " done.");
+    }
+}
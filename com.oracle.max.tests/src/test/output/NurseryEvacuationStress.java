@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package test.output;
+
+/**
+ * A multi-threaded stress test for parallel evacuation of a generational nursery (see {@code ParallelNurseryEvacuationTask}).
+ * A table of long-lived holders is promoted to the old generation early on. Mutator threads then keep storing
+ * freshly allocated objects into the holders, so that each minor collection finds many dirty cards whose young
+ * referents are reached from several holders and from the mutators' stacks at the same time.
+ * After each round, every thread checks the young objects it published, as seen through every holder.
+ * <p>
+ * Meant to be run on a GenMSE image with the {@code pargc} maxvm configuration
+ * (i.e., {@code -XX:ParallelGCThreads=4 -XX:+VerifyAfterGC}).
+ */
+public class NurseryEvacuationStress extends GCStressTest {
+
+    static final class Holder {
+        Object first;
+        Object second;
+        final Object[] slots = new Object[16];
+    }
+
+    static final class Young {
+        final int owner;
+        final int round;
+        final int index;
+        Young link;
+
+        Young(int owner, int round, int index) {
+            this.owner = owner;
+            this.round = round;
+            this.index = index;
+        }
+    }
+
+    static final int HOLDERS = 4096;
+    static final int ROUNDS = 40;
+
+    static Holder[] holders;
+
+    private static class PublishingMutator extends Mutator {
+        final int threads;
+
+        PublishingMutator(int id, int threads) {
+            super(id);
+            this.threads = threads;
+        }
+
+        @Override
+        public void run() {
+            for (int round = 0; round < ROUNDS; round++) {
+                Young previous = null;
+                for (int i = id; i < HOLDERS; i += threads) {
+                    final Young y = new Young(id, round, i);
+                    y.link = previous;
+                    previous = y;
+                    final Holder h = holders[i];
+                    h.first = y;
+                    // The same young object is also reachable from another holder's slots
+                    holders[(i * 7) % HOLDERS].slots[id] = y;
+                    h.second = new int[i & 63];
+                }
+                createGarbage(200, round);
+                Young expected = previous;
+                for (int i = id + ((HOLDERS - 1 - id) / threads) * threads; i >= 0; i -= threads) {
+                    final Young y = (Young) holders[i].first;
+                    check(y == expected && y.owner == id && y.round == round && y.index == i);
+                    check(holders[(i * 7) % HOLDERS].slots[id] == y);
+                    check(((int[]) holders[i].second).length == (i & 63));
+                    expected = expected == null ? null : expected.link;
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        holders = new Holder[HOLDERS];
+        for (int i = 0; i < HOLDERS; i++) {
+            holders[i] = new Holder();
+        }
+        // Promote the holders before the mutators start storing young objects into them
+        System.gc();
+        // Minor collections are only triggered by the allocations of the mutators
+        run(NurseryEvacuationStress.class, args, new MutatorFactory() {
+            public Mutator create(int id, int threads) {
+                return new PublishingMutator(id, threads);
+            }
+        }, 0, 0);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package test.output;
+
+/**
+ * A multi-threaded stress test for parallel evacuation by a copying collector (see {@code ParallelCopyingTask}).
+ * A pool of objects is referenced at the same time from static fields, from the stack of every mutator thread and
+ * from reference arrays, so GC workers scanning different roots race to forward the same objects.
+ * Objects range from small nodes to arrays larger than a PLAB. After each collection, every thread checks that its
+ * references still agree with the shared pool, that object contents were preserved and that identity hash codes did not change.
+ * <p>
+ * Meant to be run on a semispace image with the {@code pargc-ss} maxvm configuration
+ * (i.e., {@code -XX:ParallelGCThreads=4 -XX:+VerifyReferences}).
+ */
+public class ParallelEvacuationStress extends GCStressTest {
+
+    static final int POOL_SIZE = 2048;
+    static final int ROUNDS = 30;
+
+    static Cell[] pool;
+    static int[] hashes;
+
+    private static class PoolMutator extends Mutator {
+
+        PoolMutator(int id) {
+            super(id);
+        }
+
+        @Override
+        public void run() {
+            // Stack references to the same cells as every other mutator
+            final Cell a = pool[0];
+            final Cell b = pool[POOL_SIZE / 2];
+            final Cell c = pool[POOL_SIZE - 1];
+            final Cell[] mine = new Cell[POOL_SIZE];
+            for (int i = 0; i < POOL_SIZE; i++) {
+                mine[(i + id * 13) % POOL_SIZE] = pool[i];
+            }
+            for (int round = 0; round < ROUNDS; round++) {
+                createLargeGarbage(id + round);
+                check(a == pool[0] && b == pool[POOL_SIZE / 2] && c == pool[POOL_SIZE - 1]);
+                for (int i = 0; i < POOL_SIZE; i++) {
+                    final Cell cell = mine[(i + id * 13) % POOL_SIZE];
+                    check(cell == pool[i] && cell.isIntact() && System.identityHashCode(cell) == hashes[i]);
+                    check(cell.left == pool[(i + 1) % POOL_SIZE] && cell.right == pool[(i * 31) % POOL_SIZE]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Allocates garbage that includes arrays larger than a PLAB, which are copied directly to to-space if they survive.
+     */
+    static void createLargeGarbage(int seed) {
+        for (int i = 0; i < 25; i++) {
+            createGarbage(8, seed + i);
+            final long[] large = new long[(i & 1) == 0 ? 8192 : 16];
+            large[0] = seed;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        pool = new Cell[POOL_SIZE];
+        hashes = new int[POOL_SIZE];
+        for (int i = 0; i < POOL_SIZE; i++) {
+            // Every 64th cell has a payload larger than a PLAB
+            pool[i] = new Cell(i, (i & 63) == 0 ? 16384 : i & 15);
+            hashes[i] = System.identityHashCode(pool[i]);
+        }
+        for (int i = 0; i < POOL_SIZE; i++) {
+            pool[i].left = pool[(i + 1) % POOL_SIZE];
+            pool[i].right = pool[(i * 31) % POOL_SIZE];
+        }
+        run(ParallelEvacuationStress.class, args, new MutatorFactory() {
+            public Mutator create(int id, int threads) {
+                return new PoolMutator(id);
+            }
+        }, 10, 0);
+    }
+}
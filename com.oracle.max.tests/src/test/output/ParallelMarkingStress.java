@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package test.output;
+
+/**
+ * A multi-threaded stress test for parallel marking (see {@code ParallelMarkingTask}).
+ * Each mutator thread keeps a graph alive that mixes very wide nodes (work for stealing workers),
+ * long chains (a single worker draining a deep structure while the others go idle) and nodes shared by several
+ * parents and by several threads (racing grey and black mark updates), while it churns garbage to trigger collections.
+ * Every live node is checked after each round.
+ * <p>
+ * Meant to be run on an MSE image with the {@code pargc} maxvm configuration
+ * (i.e., {@code -XX:ParallelGCThreads=4 -XX:+VerifyAfterGC -XX:+VerifyAfterMarking}).
+ */
+public class ParallelMarkingStress extends GCStressTest {
+
+    static final class Node {
+        final int value;
+        Node next;
+        Node[] children;
+
+        Node(int value) {
+            this.value = value;
+        }
+    }
+
+    /**
+     * Nodes reachable from every mutator's graph.
+     */
+    static final Node[] shared = new Node[64];
+
+    static final int ROUNDS = 20;
+
+    private static class GraphMutator extends Mutator {
+        long checksum;
+
+        GraphMutator(int id) {
+            super(id);
+        }
+
+        @Override
+        public void run() {
+            for (int round = 0; round < ROUNDS; round++) {
+                final Node root = build(id * 1000 + round);
+                createGarbage(200, round);
+                final long actual = checksum(root);
+                check(actual == expectedChecksum(id * 1000 + round));
+                checksum += actual;
+            }
+        }
+
+        @Override
+        String result() {
+            return super.result() + ", checksum " + checksum;
+        }
+    }
+
+    /**
+     * Builds a root with 512 children, each the head of a 16-node chain whose last node links to a shared node,
+     * plus a 20000 node chain.
+     */
+    static Node build(int seed) {
+        final Node root = new Node(seed);
+        root.children = new Node[512];
+        for (int i = 0; i < root.children.length; i++) {
+            Node head = null;
+            for (int j = 15; j >= 0; j--) {
+                final Node n = new Node(seed + i * 16 + j);
+                n.next = head;
+                head = n;
+            }
+            Node last = head;
+            while (last.next != null) {
+                last = last.next;
+            }
+            last.children = new Node[] {shared[i % shared.length], shared[(i * 7) % shared.length]};
+            root.children[i] = head;
+        }
+        Node chain = null;
+        for (int i = 0; i < 20000; i++) {
+            final Node n = new Node(i);
+            n.next = chain;
+            chain = n;
+        }
+        root.next = chain;
+        return root;
+    }
+
+    static long expectedChecksum(int seed) {
+        long sum = seed;
+        for (int i = 0; i < 512; i++) {
+            for (int j = 0; j < 16; j++) {
+                sum += seed + i * 16 + j;
+            }
+            sum += shared[i % shared.length].value + shared[(i * 7) % shared.length].value;
+        }
+        for (int i = 0; i < 20000; i++) {
+            sum += i;
+        }
+        return sum;
+    }
+
+    static long checksum(Node root) {
+        long sum = root.value;
+        for (Node head : root.children) {
+            Node last = null;
+            for (Node n = head; n != null; n = n.next) {
+                sum += n.value;
+                last = n;
+            }
+            for (Node s : last.children) {
+                sum += s.value;
+            }
+        }
+        for (Node n = root.next; n != null; n = n.next) {
+            sum += n.value;
+        }
+        return sum;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        for (int i = 0; i < shared.length; i++) {
+            shared[i] = new Node(i * 3);
+        }
+        run(ParallelMarkingStress.class, args, new MutatorFactory() {
+            public Mutator create(int id, int threads) {
+                return new GraphMutator(id);
+            }
+        }, 10, 0);
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package test.output;
+
+import java.util.*;
+
+/**
+ * A stress test for the compaction of sparse heap regions (see {@code RegionCompactor}).
+ * Each round fills many regions with objects and then drops all but a few of them, so that the next collection
+ * leaves sparse regions to evacuate. Each survivor is referenced from exactly one kind of root:
+ * <ul>
+ * <li>from objects allocated later, hence in other regions;</li>
+ * <li>from the boot heap, as thread groups stored in the child group array of the system thread group, which is built with the boot image;</li>
+ * <li>from the stack of a thread that is blocked while the collection runs.</li>
+ * </ul>
+ * After each collection, the survivors are checked through the only reference to them, along with their identity hash codes.
+ * <p>
+ * Meant to be run on an MSE image with the {@code compact} maxvm configuration
+ * (i.e., {@code -XX:+CompactRegions -XX:CompactionMaxLiveRatio=90 -XX:+VerifyAfterGC -XX:+VerifyAfterMarking}).
+ */
+public class RegionCompactionStress extends GCStressTest {
+
+    /**
+     * Checks the contents of a survivor and its link to the next survivor, if any.
+     */
+    static boolean isIntact(Cell item) {
+        return item.isIntact() && (item.right == null || item.right.value == item.value + 1);
+    }
+
+    static final int ITEMS = 100000;
+    static final int KEEP_EVERY = 97;
+    static final int ROUNDS = 10;
+
+    static int failures;
+
+    /**
+     * A thread group whose only reference is from its parent's array of child groups.
+     */
+    static final class ItemGroup extends ThreadGroup {
+        final Cell item;
+        final int hash;
+
+        ItemGroup(ThreadGroup parent, Cell item) {
+            super(parent, "ItemGroup-" + item.value);
+            this.item = item;
+            this.hash = System.identityHashCode(item);
+        }
+    }
+
+    /**
+     * A thread holding survivors in its locals only, blocked on a monitor while the main thread collects.
+     */
+    static final class StackHolder extends Mutator {
+        final Object lock = new Object();
+        boolean released;
+        int[] hashes;
+
+        StackHolder(int round) {
+            super(round);
+        }
+
+        @Override
+        public void run() {
+            Cell first = null;
+            Cell last = null;
+            int count = 0;
+            for (int i = 0; i < ITEMS; i++) {
+                final Cell item = new Cell(id * ITEMS + i, i & 7);
+                if (i % KEEP_EVERY == 0) {
+                    item.right = first;
+                    first = item;
+                    count++;
+                    if (last == null) {
+                        last = item;
+                    }
+                }
+            }
+            hashes = new int[] {System.identityHashCode(first), System.identityHashCode(last)};
+            synchronized (lock) {
+                lock.notifyAll();
+                while (!released) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                    }
+                }
+            }
+            check(System.identityHashCode(first) == hashes[0] && System.identityHashCode(last) == hashes[1]);
+            // The chain links survivors in decreasing order of i, so links are not to value + 1: check contents only
+            for (Cell item = first; item != null; item = item.right) {
+                count--;
+                check(item.isIntact());
+            }
+            check(count == 0);
+        }
+    }
+
+    static void check(boolean condition) {
+        if (!condition) {
+            failures++;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        final ThreadGroup systemThreadGroup = Thread.currentThread().getThreadGroup().getParent();
+        for (int round = 0; round < ROUNDS; round++) {
+            final StackHolder stackHolder = new StackHolder(round);
+            synchronized (stackHolder.lock) {
+                stackHolder.start();
+                while (stackHolder.hashes == null) {
+                    stackHolder.lock.wait();
+                }
+            }
+
+            // Survivors referenced from other regions and from the boot heap
+            final Cell[] sparse = new Cell[ITEMS];
+            for (int i = 0; i < ITEMS; i++) {
+                sparse[i] = new Cell(i, i & 15);
+                if (i > 0 && (i - 1) % KEEP_EVERY == 0) {
+                    sparse[i - 1].right = sparse[i];
+                }
+                if (i == ITEMS / 3 || i == 2 * ITEMS / 3) {
+                    new ItemGroup(systemThreadGroup, sparse[i]);
+                }
+            }
+            final List<Cell> fromOtherRegions = new ArrayList<Cell>();
+            final List<Integer> hashes = new ArrayList<Integer>();
+            for (int i = 0; i < ITEMS; i += KEEP_EVERY) {
+                fromOtherRegions.add(sparse[i]);
+                hashes.add(System.identityHashCode(sparse[i]));
+            }
+            Arrays.fill(sparse, null);
+
+            System.gc();
+            System.gc();
+
+            for (int i = 0; i < fromOtherRegions.size(); i++) {
+                final Cell item = fromOtherRegions.get(i);
+                check(item.value == i * KEEP_EVERY && isIntact(item) && System.identityHashCode(item) == hashes.get(i));
+            }
+            final ThreadGroup[] groups = new ThreadGroup[systemThreadGroup.activeGroupCount() + 1];
+            int itemGroups = 0;
+            for (int i = systemThreadGroup.enumerate(groups, false) - 1; i >= 0; i--) {
+                if (groups[i] instanceof ItemGroup) {
+                    final ItemGroup group = (ItemGroup) groups[i];
+                    check(group.item.value == ITEMS / 3 || group.item.value == 2 * ITEMS / 3);
+                    check(isIntact(group.item) && System.identityHashCode(group.item) == group.hash);
+                    group.destroy();
+                    itemGroups++;
+                }
+            }
+            check(itemGroups == 2);
+
+            synchronized (stackHolder.lock) {
+                stackHolder.released = true;
+                stackHolder.lock.notifyAll();
+            }
+            stackHolder.join();
+            failures += stackHolder.failures;
+        }
+        System.out.println(failures + " failures");
+        System.out.println(RegionCompactionStress.class.getSimpleName() + " done.");
+    }
+}
@@ -57,7 +57,7 @@ import com.sun.max.vm.thread.*;
 /**
  * Integration of the C1X compiler into Maxine's compilation framework.
  */
-public class C1X extends RuntimeCompiler.DefaultNameAdapter implements RuntimeCompiler {
+public class C1X extends RuntimeCompiler.DefaultNameAdapter implements RuntimeCompiler, RuntimeCompiler.OSRCompiler, RuntimeCompiler.PersistentCodeCompiler {
 
     /**
      * The Maxine specific implementation of the {@linkplain RiRuntime runtime interface} needed by C1X.
@@ -80,6 +80,11 @@ public class C1X extends RuntimeCompiler.DefaultNameAdapter implements RuntimeCo
      */
     private C1XCompiler compiler;
 
+    /**
+     * The code persisted by previous runs of the VM, or {@code null} if code is not persisted.
+     */
+    private PersistentCodeCache persistentCodeCache;
+
     /**
      * Set to true once the C1X options are set (to allow subclasses of this scheme to coexist in the same image).
      */
@@ -176,7 +181,14 @@ public class C1X extends RuntimeCompiler.DefaultNameAdapter implements RuntimeCo
         if (phase == Phase.STARTING) {
             // Speculative opts are ok provided the compilation broker can handle deopt
             C1XOptions.UseAssumptions = vm().compilationBroker.isDeoptSupported() && Deoptimization.UseDeopt;
+            // The runtime values of constant fields must not be folded into code persisted for later runs
+            FieldActor.foldOnlyConstantValueAttributes = PersistentCodeCache.CodeCacheFile != null;
+        } else if (phase == Phase.RUNNING) {
+            persistentCodeCache = PersistentCodeCache.open();
         } else if (phase == Phase.TERMINATING) {
+            if (persistentCodeCache != null) {
+                persistentCodeCache.save();
+            }
             if (C1XOptions.PrintMetrics) {
                 C1XMetrics.print();
                 DebugInfo.dumpStats(Log.out);
@@ -251,10 +263,29 @@ public class C1X extends RuntimeCompiler.DefaultNameAdapter implements RuntimeCo
     }
 
     public TargetMethod compile(final ClassMethodActor method, boolean isDeopt, boolean install, CiStatistics stats) {
+        return compile(method, -1, install, stats);
+    }
+
+    public TargetMethod compileOSR(ClassMethodActor method, int osrBCI) {
+        assert osrBCI >= 0;
+        return compile(method, osrBCI, true, null);
+    }
+
+    public boolean hasPersistedCode(ClassMethodActor method) {
+        return persistentCodeCache != null && persistentCodeCache.hasPersistedCode(method);
+    }
+
+    private TargetMethod compile(ClassMethodActor method, int osrBCI, boolean install, CiStatistics stats) {
+        if (persistentCodeCache != null && osrBCI < 0 && install) {
+            TargetMethod persisted = persistentCodeCache.install(method);
+            if (persisted != null) {
+                return persisted;
+            }
+        }
         CiTargetMethod compiledMethod;
         do {
             DebugInfoLevel debugInfoLevel = method.isTemplate() ? DebugInfoLevel.REF_MAPS : DebugInfoLevel.FULL;
-            compiledMethod = compiler().compileMethod(method, -1, stats, debugInfoLevel).targetMethod();
+            compiledMethod = compiler().compileMethod(method, osrBCI, stats, debugInfoLevel).targetMethod();
 
             Dependencies deps = Dependencies.validateDependencies(compiledMethod.assumptions());
             if (deps != Dependencies.INVALID) {
@@ -0,0 +1,827 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.max.vm.ext.c1x;
+
+import static com.sun.max.platform.Platform.*;
+import static com.sun.max.vm.VMOptions.*;
+
+import java.io.*;
+import java.util.*;
+
+import com.oracle.max.vm.ext.maxri.*;
+import com.sun.cri.ci.*;
+import com.sun.max.annotate.*;
+import com.sun.max.vm.*;
+import com.sun.max.vm.actor.*;
+import com.sun.max.vm.actor.holder.*;
+import com.sun.max.vm.actor.member.*;
+import com.sun.max.vm.classfile.constant.*;
+import com.sun.max.vm.code.*;
+import com.sun.max.vm.compiler.deps.*;
+import com.sun.max.vm.compiler.target.*;
+import com.sun.max.vm.object.*;
+import com.sun.max.vm.runtime.*;
+import com.sun.max.vm.type.*;
+
+/**
+ * A file of optimized code persisted across runs of the VM, so that short-lived VM instances can skip
+ * most of the warm-up of their hot methods.
+ * <p>
+ * The file named by {@code -XX:CodeCacheFile} is read when the VM starts {@linkplain MaxineVM.Phase#RUNNING running}
+ * and rewritten when it {@linkplain MaxineVM.Phase#TERMINATING terminates} (unless {@code -XX:+CodeCacheFileReadOnly}
+ * is specified, in which case several VMs can share it). Each entry holds the {@link CiTargetMethod} C1X produced for
+ * a method, serialized with every reference to a VM object (actors, hubs, static tuples, class mirrors, resolution
+ * guards and stubs) replaced by a {@linkplain SymbolicRef symbolic reference}. Relocation is redone by
+ * {@link MaxTargetMethod} when the entry is installed, exactly as for a fresh compilation.
+ * <p>
+ * An entry also records a {@linkplain #fingerprint(ClassActor) fingerprint} of every class it refers to, which
+ * covers the field layout, the vtable and the bytecodes of the class. It further records which of these classes were
+ * initialized when the code was persisted, since C1X omits the initialization barriers for such classes. An entry is
+ * installed in place of a compilation once all these classes are loaded, unchanged and initialized as required, and
+ * once the {@linkplain Dependencies dependencies} of the code on the class hierarchy have been validated again.
+ * Entries that fail validation are discarded for good; code whose dependencies are invalidated later is deoptimized
+ * like any other optimized code.
+ * <p>
+ * The runtime values of constant fields differ from one run to the next, so while a code cache file is used, C1X only
+ * {@linkplain FieldActor#foldOnlyConstantValueAttributes folds} the values of fields with a {@code ConstantValue}
+ * attribute.
+ * <p>
+ * The file also records the {@linkplain MaxineVM#native_bootImageRandomID() identifier} of the boot image that wrote it.
+ * A file written by another boot image is ignored as a whole, as its code may rely on the layout of boot image objects
+ * and on compiler options that class fingerprints do not cover.
+ */
+public final class PersistentCodeCache {
+
+    @RESET
+    static String CodeCacheFile;
+    static boolean CodeCacheFileReadOnly;
+    static boolean TraceCodeCacheFile;
+
+    static {
+        addFieldOption("-XX:", "CodeCacheFile", PersistentCodeCache.class,
+            "File in which optimized code is persisted across runs of the VM (default: none).");
+        addFieldOption("-XX:", "CodeCacheFileReadOnly", PersistentCodeCache.class,
+            "Use the code persisted in the -XX:CodeCacheFile file without updating the file on exit.");
+        addFieldOption("-XX:", "TraceCodeCacheFile", PersistentCodeCache.class,
+            "Trace the loading, installation and saving of persisted code.");
+    }
+
+    private static final int MAGIC = 0x4d584343;
+    private static final int VERSION = 3;
+
+    private static final byte BOOT_LOADER = 0;
+    private static final byte VM_LOADER = 1;
+    private static final byte OTHER_LOADER = 2;
+
+    /**
+     * The persisted code of a method.
+     */
+    private static final class Entry {
+        final String key;
+        final String[] classes;
+        final byte[] loaders;
+        final int[] fingerprints;
+        final boolean[] initialized;
+        final byte[] data;
+
+        Entry(String key, String[] classes, byte[] loaders, int[] fingerprints, boolean[] initialized, byte[] data) {
+            this.key = key;
+            this.classes = classes;
+            this.loaders = loaders;
+            this.fingerprints = fingerprints;
+            this.initialized = initialized;
+            this.data = data;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeUTF(key);
+            out.writeInt(classes.length);
+            for (int i = 0; i < classes.length; i++) {
+                out.writeUTF(classes[i]);
+                out.writeByte(loaders[i]);
+                out.writeInt(fingerprints[i]);
+                out.writeBoolean(initialized[i]);
+            }
+            out.writeInt(data.length);
+            out.write(data);
+        }
+
+        static Entry read(DataInputStream in) throws IOException {
+            String key = in.readUTF();
+            int n = in.readInt();
+            String[] classes = new String[n];
+            byte[] loaders = new byte[n];
+            int[] fingerprints = new int[n];
+            boolean[] initialized = new boolean[n];
+            for (int i = 0; i < n; i++) {
+                classes[i] = in.readUTF();
+                loaders[i] = in.readByte();
+                fingerprints[i] = in.readInt();
+                initialized[i] = in.readBoolean();
+            }
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            return new Entry(key, classes, loaders, fingerprints, initialized, data);
+        }
+    }
+
+    /**
+     * The entries read from the file that have been neither installed nor rejected yet.
+     */
+    private final HashMap<String, Entry> entries = new HashMap<String, Entry>();
+
+    private int loaded;
+    private int installed;
+    private int rejected;
+
+    private PersistentCodeCache() {
+    }
+
+    /**
+     * Creates the persistent code cache if one is specified on the command line, reading the entries persisted
+     * by a previous run.
+     *
+     * @return {@code null} if no {@code -XX:CodeCacheFile} is specified
+     */
+    static PersistentCodeCache open() {
+        if (CodeCacheFile == null) {
+            return null;
+        }
+        PersistentCodeCache cache = new PersistentCodeCache();
+        File file = new File(CodeCacheFile);
+        if (file.exists()) {
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+                try {
+                    cache.read(in);
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                // a stale or truncated file is as good as no file
+                cache.entries.clear();
+                trace("ignoring " + CodeCacheFile + ": " + e);
+            }
+        }
+        cache.loaded = cache.entries.size();
+        trace("loaded " + cache.loaded + " methods from " + CodeCacheFile);
+        return cache;
+    }
+
+    private void read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("not a code cache file");
+        }
+        if (!in.readUTF().equals(platform().isa.name()) || in.readInt() != platform().target.wordSize) {
+            throw new IOException("code cache file is for a different platform");
+        }
+        if (in.readInt() != MaxineVM.native_bootImageRandomID()) {
+            throw new IOException("code cache file was written by a different boot image");
+        }
+        int n = in.readInt();
+        for (int i = 0; i < n; i++) {
+            Entry entry = Entry.read(in);
+            entries.put(entry.key, entry);
+        }
+    }
+
+    private static String keyFor(ClassMethodActor method) {
+        return method.holder().typeDescriptor.toString() + "." + method.name + method.descriptor();
+    }
+
+    /**
+     * Determines if there is an entry for a given method whose classes are all loaded, unchanged and initialized as
+     * required.
+     */
+    synchronized boolean hasPersistedCode(ClassMethodActor method) {
+        Entry entry = entries.get(keyFor(method));
+        if (entry == null) {
+            return false;
+        }
+        switch (checkClasses(entry, method.holder().classLoader)) {
+            case 1:
+                return true;
+            case 0:
+                return false;
+            default:
+                reject(entry, "class changed");
+                return false;
+        }
+    }
+
+    /**
+     * Checks the classes an entry refers to.
+     *
+     * @return 1 if all classes are loaded and unchanged, 0 if some class is not loaded or not initialized yet, -1 if
+     *         some class changed
+     */
+    private static int checkClasses(Entry entry, ClassLoader context) {
+        for (int i = 0; i < entry.classes.length; i++) {
+            ClassActor classActor = lookup(entry.classes[i], entry.loaders[i], context);
+            if (classActor == null) {
+                return 0;
+            }
+            if (fingerprint(classActor) != entry.fingerprints[i]) {
+                return -1;
+            }
+            if (entry.initialized[i] && !classActor.isInitialized()) {
+                // the code omits the initialization barrier for the class
+                return 0;
+            }
+        }
+        return 1;
+    }
+
+    private void reject(Entry entry, String reason) {
+        entries.remove(entry.key);
+        rejected++;
+        trace("rejected " + entry.key + ": " + reason);
+    }
+
+    /**
+     * Installs the persisted code of a method in the optimized code region.
+     *
+     * @return the installed target method or {@code null} if there is no valid persisted code for {@code method}
+     */
+    TargetMethod install(ClassMethodActor method) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(keyFor(method));
+            if (entry == null) {
+                return null;
+            }
+            int check = checkClasses(entry, method.holder().classLoader);
+            if (check == 0) {
+                // keep the entry for a later compilation of the method
+                return null;
+            }
+            if (check < 0) {
+                reject(entry, "class changed");
+                return null;
+            }
+            entries.remove(entry.key);
+        }
+
+        CiTargetMethod ciTargetMethod;
+        try {
+            Reader reader = new Reader(new ByteArrayInputStream(entry.data), method.holder().classLoader);
+            ciTargetMethod = (CiTargetMethod) reader.readObject();
+        } catch (Exception e) {
+            synchronized (this) {
+                rejected++;
+            }
+            trace("rejected " + entry.key + ": " + e);
+            return null;
+        }
+
+        Dependencies deps = Dependencies.validateDependencies(ciTargetMethod.assumptions());
+        if (deps == Dependencies.INVALID) {
+            synchronized (this) {
+                rejected++;
+            }
+            trace("rejected " + entry.key + ": assumptions no longer hold");
+            return null;
+        }
+        MaxTargetMethod targetMethod = new MaxTargetMethod(method, ciTargetMethod, true);
+        if (deps != null) {
+            Dependencies.registerValidatedTarget(deps, targetMethod);
+        }
+        synchronized (this) {
+            installed++;
+        }
+        trace("installed " + entry.key);
+        return targetMethod;
+    }
+
+    /**
+     * Rewrites the file with the code of all the methods currently optimized by C1X, plus the entries of the
+     * previous run that were neither used nor rejected by this run.
+     */
+    synchronized void save() {
+        trace("installed " + installed + ", rejected " + rejected + " of " + loaded + " persisted methods");
+        if (CodeCacheFileReadOnly) {
+            return;
+        }
+        LinkedHashMap<String, Entry> result = new LinkedHashMap<String, Entry>(entries);
+        int skipped = 0;
+        for (TargetMethod tm : Code.getCodeManager().getRuntimeOptCodeRegion().copyOfTargetMethods()) {
+            if (!(tm instanceof MaxTargetMethod) || tm.invalidated() != null || tm.classMethodActor == null) {
+                continue;
+            }
+            ClassMethodActor method = tm.classMethodActor;
+            CiTargetMethod ciTargetMethod = ((MaxTargetMethod) tm).ciTargetMethod();
+            if (method.currentTargetMethod() != tm || ciTargetMethod == null || method.isTemplate()) {
+                // on-stack replacement code or code that has been replaced
+                continue;
+            }
+            try {
+                Entry entry = persist(method, ciTargetMethod);
+                result.put(entry.key, entry);
+            } catch (IOException e) {
+                skipped++;
+                if (TraceCodeCacheFile) {
+                    trace("cannot persist " + keyFor(method) + ": " + e);
+                }
+            }
+        }
+
+        File file = new File(CodeCacheFile);
+        File tmp = new File(CodeCacheFile + ".tmp");
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(platform().isa.name());
+                out.writeInt(platform().target.wordSize);
+                out.writeInt(MaxineVM.native_bootImageRandomID());
+                out.writeInt(result.size());
+                for (Entry entry : result.values()) {
+                    entry.write(out);
+                }
+            } finally {
+                out.close();
+            }
+            // readers never see a partially written file
+            if (!tmp.renameTo(file)) {
+                throw new IOException("cannot rename " + tmp + " to " + file);
+            }
+            trace("saved " + result.size() + " methods to " + CodeCacheFile + " (" + skipped + " could not be persisted)");
+        } catch (IOException e) {
+            tmp.delete();
+            trace("cannot save " + CodeCacheFile + ": " + e);
+        }
+    }
+
+    private Entry persist(ClassMethodActor method, CiTargetMethod ciTargetMethod) throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        Writer writer = new Writer(data);
+        writer.className(method.holder());
+        writer.writeObject(ciTargetMethod);
+        writer.close();
+
+        int n = writer.classes.size();
+        String[] classes = new String[n];
+        byte[] loaders = new byte[n];
+        int[] fingerprints = new int[n];
+        boolean[] initialized = new boolean[n];
+        int i = 0;
+        for (ClassActor classActor : writer.classes.keySet()) {
+            classes[i] = classActor.typeDescriptor.toString();
+            loaders[i] = loaderOf(classActor);
+            fingerprints[i] = fingerprint(classActor);
+            // initialization is never undone, so this covers every class the compiler found initialized
+            initialized[i] = classActor.isInitialized();
+            i++;
+        }
+        return new Entry(keyFor(method), classes, loaders, fingerprints, initialized, data.toByteArray());
+    }
+
+    private static void trace(String message) {
+        if (TraceCodeCacheFile) {
+            boolean lockDisabledSafepoints = Log.lock();
+            Log.print("CodeCacheFile: ");
+            Log.println(message);
+            Log.unlock(lockDisabledSafepoints);
+        }
+    }
+
+    private static byte loaderOf(ClassActor classActor) {
+        if (classActor.classLoader == null || classActor.classLoader == BootClassLoader.BOOT_CLASS_LOADER) {
+            return BOOT_LOADER;
+        }
+        if (classActor.classLoader == VMClassLoader.VM_CLASS_LOADER) {
+            return VM_LOADER;
+        }
+        return OTHER_LOADER;
+    }
+
+    /**
+     * Looks up an already loaded class without loading it.
+     *
+     * @param context the class loader used for classes not defined by the boot or VM class loader
+     */
+    private static ClassActor lookup(String descriptor, byte loader, ClassLoader context) {
+        ClassLoader classLoader = loader == BOOT_LOADER ? BootClassLoader.BOOT_CLASS_LOADER : loader == VM_LOADER ? VMClassLoader.VM_CLASS_LOADER : context;
+        return ClassRegistry.get(classLoader, JavaTypeDescriptor.parseTypeDescriptor(descriptor), true);
+    }
+
+    /**
+     * Computes a fingerprint of the properties of a class that compiled code depends on: the field offsets,
+     * the vtable indexes and the bytecodes of the methods (which may have been inlined).
+     */
+    static int fingerprint(ClassActor classActor) {
+        if (classActor.isArrayClass()) {
+            return 31 * classActor.typeDescriptor.toString().hashCode() + fingerprint(classActor.componentClassActor());
+        }
+        int h = classActor.typeDescriptor.toString().hashCode();
+        h = 31 * h + classActor.flags();
+        if (classActor.superClassActor != null) {
+            h = 31 * h + classActor.superClassActor.typeDescriptor.toString().hashCode();
+        }
+        for (FieldActor fieldActor : classActor.localInstanceFieldActors()) {
+            h = 31 * h + fingerprint(fieldActor);
+        }
+        for (FieldActor fieldActor : classActor.localStaticFieldActors()) {
+            h = 31 * h + fingerprint(fieldActor);
+        }
+        for (VirtualMethodActor methodActor : classActor.localVirtualMethodActors()) {
+            h = 31 * h + fingerprint(methodActor);
+            h = 31 * h + methodActor.vTableIndex();
+        }
+        for (StaticMethodActor methodActor : classActor.localStaticMethodActors()) {
+            h = 31 * h + fingerprint(methodActor);
+        }
+        for (InterfaceMethodActor methodActor : classActor.localInterfaceMethodActors()) {
+            h = 31 * h + methodActor.name.toString().hashCode();
+            h = 31 * h + methodActor.descriptor().toString().hashCode();
+        }
+        return h;
+    }
+
+    private static int fingerprint(FieldActor fieldActor) {
+        int h = fieldActor.name.toString().hashCode();
+        h = 31 * h + fieldActor.descriptor().toString().hashCode();
+        h = 31 * h + fieldActor.flags();
+        return 31 * h + fieldActor.offset();
+    }
+
+    private static int fingerprint(ClassMethodActor methodActor) {
+        int h = methodActor.name.toString().hashCode();
+        h = 31 * h + methodActor.descriptor().toString().hashCode();
+        h = 31 * h + methodActor.flags();
+        return 31 * h + Arrays.hashCode(methodActor.code());
+    }
+
+    private static boolean isStaticTuple(Object object) {
+        Hub hub = ObjectAccess.readHub(object);
+        return hub instanceof StaticHub && hub.classActor.staticTuple() == object;
+    }
+
+    /**
+     * A serializable reference to a VM object that is resolved by name when an entry is installed.
+     */
+    abstract static class SymbolicRef implements Serializable {
+        abstract Object resolve(ClassLoader context) throws InvalidObjectException;
+    }
+
+    /**
+     * The name of a class and the class loader that defined it. Unlike a {@link TypeRef}, it is not
+     * replaced while reading an entry, so that other symbolic references can refer to a class.
+     */
+    static final class ClassName implements Serializable {
+        final String descriptor;
+        final byte loader;
+
+        ClassName(String descriptor, byte loader) {
+            this.descriptor = descriptor;
+            this.loader = loader;
+        }
+
+        ClassActor resolve(ClassLoader context) throws InvalidObjectException {
+            ClassActor classActor = lookup(descriptor, loader, context);
+            if (classActor == null) {
+                throw new InvalidObjectException("class not loaded: " + descriptor);
+            }
+            return classActor;
+        }
+    }
+
+    static final class TypeRef extends SymbolicRef {
+        final ClassName name;
+
+        TypeRef(ClassName name) {
+            this.name = name;
+        }
+
+        @Override
+        ClassActor resolve(ClassLoader context) throws InvalidObjectException {
+            return name.resolve(context);
+        }
+    }
+
+    static final class MethodRef extends SymbolicRef {
+        final ClassName holder;
+        final String name;
+        final String descriptor;
+
+        MethodRef(ClassName holder, String name, String descriptor) {
+            this.holder = holder;
+            this.name = name;
+            this.descriptor = descriptor;
+        }
+
+        @Override
+        MethodActor resolve(ClassLoader context) throws InvalidObjectException {
+            ClassActor classActor = holder.resolve(context);
+            Utf8Constant name = SymbolTable.makeSymbol(this.name);
+            SignatureDescriptor signature = SignatureDescriptor.create(descriptor);
+            MethodActor methodActor = classActor.findLocalClassMethodActor(name, signature);
+            if (methodActor == null) {
+                methodActor = classActor.findLocalInterfaceMethodActor(name, signature);
+            }
+            if (methodActor == null) {
+                throw new InvalidObjectException("method not found: " + holder.descriptor + "." + name + descriptor);
+            }
+            return methodActor;
+        }
+    }
+
+    static final class FieldRef extends SymbolicRef {
+        final ClassName holder;
+        final String name;
+        final String descriptor;
+
+        FieldRef(ClassName holder, String name, String descriptor) {
+            this.holder = holder;
+            this.name = name;
+            this.descriptor = descriptor;
+        }
+
+        @Override
+        FieldActor resolve(ClassLoader context) throws InvalidObjectException {
+            FieldActor fieldActor = holder.resolve(context).findLocalFieldActor(SymbolTable.makeSymbol(name), JavaTypeDescriptor.parseTypeDescriptor(descriptor));
+            if (fieldActor == null) {
+                throw new InvalidObjectException("field not found: " + holder.descriptor + "." + name);
+            }
+            return fieldActor;
+        }
+    }
+
+    static final class HubRef extends SymbolicRef {
+        final ClassName holder;
+        final boolean isStatic;
+
+        HubRef(ClassName holder, boolean isStatic) {
+            this.holder = holder;
+            this.isStatic = isStatic;
+        }
+
+        @Override
+        Hub resolve(ClassLoader context) throws InvalidObjectException {
+            ClassActor classActor = holder.resolve(context);
+            return isStatic ? classActor.staticHub() : classActor.dynamicHub();
+        }
+    }
+
+    static final class StaticTupleRef extends SymbolicRef {
+        final ClassName holder;
+
+        StaticTupleRef(ClassName holder) {
+            this.holder = holder;
+        }
+
+        @Override
+        Object resolve(ClassLoader context) throws InvalidObjectException {
+            return holder.resolve(context).staticTuple();
+        }
+    }
+
+    static final class MirrorRef extends SymbolicRef {
+        final ClassName holder;
+
+        MirrorRef(ClassName holder) {
+            this.holder = holder;
+        }
+
+        @Override
+        Class resolve(ClassLoader context) throws InvalidObjectException {
+            return holder.resolve(context).javaClass();
+        }
+    }
+
+    static final class GuardRef extends SymbolicRef {
+        final ClassName holder;
+        final int cpi;
+
+        GuardRef(ClassName holder, int cpi) {
+            this.holder = holder;
+            this.cpi = cpi;
+        }
+
+        @Override
+        ResolutionGuard resolve(ClassLoader context) throws InvalidObjectException {
+            return holder.resolve(context).constantPool().makeResolutionGuard(cpi);
+        }
+    }
+
+    static final class StubRef extends SymbolicRef {
+        final String name;
+        final int codeHash;
+
+        StubRef(String name, int codeHash) {
+            this.name = name;
+            this.codeHash = codeHash;
+        }
+
+        @Override
+        Stub resolve(ClassLoader context) throws InvalidObjectException {
+            Stub stub = bootStubs().get(name);
+            if (stub == null || Arrays.hashCode(stub.code()) != codeHash) {
+                throw new InvalidObjectException("stub changed: " + name);
+            }
+            return stub;
+        }
+    }
+
+    static final class RegisterRef extends SymbolicRef {
+        final int number;
+
+        RegisterRef(int number) {
+            this.number = number;
+        }
+
+        @Override
+        CiRegister resolve(ClassLoader context) throws InvalidObjectException {
+            if (number >= 0) {
+                return target().arch.registers[number];
+            }
+            for (CiRegister reg : new CiRegister[] {CiRegister.None, CiRegister.Frame, CiRegister.CallerFrame}) {
+                if (reg.number == number) {
+                    return reg;
+                }
+            }
+            throw new InvalidObjectException("unknown register: " + number);
+        }
+    }
+
+    /**
+     * Stands for {@link CiValue#IllegalValue}, which is compared by identity.
+     */
+    static final class IllegalValueRef extends SymbolicRef {
+        @Override
+        CiValue resolve(ClassLoader context) {
+            return CiValue.IllegalValue;
+        }
+    }
+
+    private static synchronized HashMap<String, Stub> bootStubs() {
+        if (theBootStubs == null) {
+            final HashMap<String, Stub> stubs = new HashMap<String, Stub>();
+            final HashSet<String> duplicates = new HashSet<String>();
+            Code.bootCodeRegion().doAllTargetMethods(new TargetMethod.Closure() {
+                public boolean doTargetMethod(TargetMethod tm) {
+                    if (tm instanceof Stub && stubs.put(tm.regionName(), (Stub) tm) != null) {
+                        duplicates.add(tm.regionName());
+                    }
+                    return true;
+                }
+            });
+            stubs.keySet().removeAll(duplicates);
+            theBootStubs = stubs;
+        }
+        return theBootStubs;
+    }
+
+    private static HashMap<String, Stub> theBootStubs;
+
+    /**
+     * Serializes a {@link CiTargetMethod}, replacing references to VM objects by {@link SymbolicRef}s and
+     * recording the classes they refer to. Any other object that is not part of the compiler's output makes the
+     * method impossible to persist.
+     */
+    private static final class Writer extends ObjectOutputStream {
+        final LinkedHashMap<ClassActor, ClassActor> classes = new LinkedHashMap<ClassActor, ClassActor>();
+
+        Writer(OutputStream out) throws IOException {
+            super(out);
+            enableReplaceObject(true);
+        }
+
+        ClassName className(ClassActor classActor) {
+            classes.put(classActor, classActor);
+            return new ClassName(classActor.typeDescriptor.toString(), loaderOf(classActor));
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) throws IOException {
+            if (obj instanceof SymbolicRef || obj instanceof ClassName) {
+                return obj;
+            }
+            if (obj instanceof ClassActor) {
+                return new TypeRef(className((ClassActor) obj));
+            }
+            if (obj instanceof MethodActor) {
+                MethodActor methodActor = (MethodActor) obj;
+                return new MethodRef(className(methodActor.holder()), methodActor.name.toString(), methodActor.descriptor().toString());
+            }
+            if (obj instanceof FieldActor) {
+                FieldActor fieldActor = (FieldActor) obj;
+                return new FieldRef(className(fieldActor.holder()), fieldActor.name.toString(), fieldActor.descriptor().toString());
+            }
+            if (obj instanceof Hub) {
+                Hub hub = (Hub) obj;
+                return new HubRef(className(hub.classActor), hub instanceof StaticHub);
+            }
+            if (obj instanceof Class) {
+                return new MirrorRef(className(ClassActor.fromJava((Class) obj)));
+            }
+            if (obj instanceof ResolutionGuard.InPool) {
+                ResolutionGuard.InPool guard = (ResolutionGuard.InPool) obj;
+                return new GuardRef(className(guard.pool.holder()), guard.cpi);
+            }
+            if (obj instanceof TargetMethod) {
+                TargetMethod tm = (TargetMethod) obj;
+                if (tm instanceof Stub && bootStubs().get(tm.regionName()) == tm) {
+                    return new StubRef(tm.regionName(), Arrays.hashCode(tm.code()));
+                }
+                throw new NotSerializableException("call to " + tm);
+            }
+            if (obj instanceof CiRegister) {
+                return new RegisterRef(((CiRegister) obj).number);
+            }
+            if (obj == CiValue.IllegalValue) {
+                return new IllegalValueRef();
+            }
+            if (obj instanceof CiConstant) {
+                CiConstant constant = (CiConstant) obj;
+                if (constant.kind.isObject() && !isNameable(constant.asObject())) {
+                    throw new NotSerializableException("object constant " + constant.asObject().getClass().getName());
+                }
+                return obj;
+            }
+            if (obj instanceof String || obj instanceof Number || obj instanceof Boolean || obj instanceof Character || obj instanceof Enum) {
+                return obj;
+            }
+            if (isStaticTuple(obj)) {
+                return new StaticTupleRef(className(ObjectAccess.readHub(obj).classActor));
+            }
+            Class<?> type = obj.getClass();
+            while (type.isArray()) {
+                type = type.getComponentType();
+            }
+            if (type.isPrimitive() || type.getName().startsWith("com.sun.cri.") || type.getName().startsWith("java.util.")) {
+                return obj;
+            }
+            throw new NotSerializableException(obj.getClass().getName());
+        }
+
+        /**
+         * Determines if an object constant embedded in compiled code denotes the same object in every run.
+         */
+        private static boolean isNameable(Object object) {
+            if (object == null || object instanceof Actor || object instanceof Hub || object instanceof Class ||
+                object instanceof ResolutionGuard.InPool || object instanceof Stub) {
+                return true;
+            }
+            if (object instanceof String) {
+                // only interned strings are guaranteed to be the same object after reloading
+                return ((String) object).intern() == object;
+            }
+            return isStaticTuple(object);
+        }
+    }
+
+    /**
+     * Deserializes a {@link CiTargetMethod}, resolving the {@link SymbolicRef}s it contains.
+     */
+    private static final class Reader extends ObjectInputStream {
+        final ClassLoader context;
+
+        Reader(InputStream in, ClassLoader context) throws IOException {
+            super(in);
+            this.context = context;
+            enableResolveObject(true);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            try {
+                return Class.forName(desc.getName(), false, PersistentCodeCache.class.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                return super.resolveClass(desc);
+            }
+        }
+
+        @Override
+        protected Object resolveObject(Object obj) throws IOException {
+            if (obj instanceof SymbolicRef) {
+                return ((SymbolicRef) obj).resolve(context);
+            }
+            if (obj instanceof String) {
+                return ((String) obj).intern();
+            }
+            return obj;
+        }
+    }
+}
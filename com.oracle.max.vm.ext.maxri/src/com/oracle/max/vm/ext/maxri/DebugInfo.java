@@ -384,7 +384,8 @@ public final class DebugInfo {
         int fpt = (tm.totalRefMapSize()) * tm.safepoints().size();
         CiBitMap regRefMap = regRefMapAt(index);
         CiBitMap frameRefMap = frameRefMapAt(index);
-        CiFrame frame = decodeFrame(in, fpt, index, fa, regRefMap, frameRefMap, stackSlotAsAddress);
+        Map<Integer, CiConstant> virtualObjects = fa == null ? null : new HashMap<Integer, CiConstant>();
+        CiFrame frame = decodeFrame(in, fpt, index, fa, virtualObjects, regRefMap, frameRefMap, stackSlotAsAddress);
         return new CiDebugInfo(frame, regRefMap, frameRefMap);
     }
 
@@ -417,10 +418,13 @@ public final class DebugInfo {
      * Decodes a frame denoted by a given frame index.
      * @param fpt the position of the FPT in {@link #data}
      * @param frameIndex the index of an entry in the FPT
+     * @param virtualObjects the objects materialized so far for the {@link CiVirtualObject}s in the debug info, indexed by id
+     *            (must be non-null if {@code fa} is non-null)
      * @param stackSlotAsAddress translate stack slots to stack addresses
      * @return the decoded frame
      */
-    CiFrame decodeFrame(DecodingStream in, int fpt, int frameIndex, FrameAccess fa, CiBitMap regRefMap, CiBitMap frameRefMap, boolean stackSlotAsAddress) {
+    CiFrame decodeFrame(DecodingStream in, int fpt, int frameIndex, FrameAccess fa, Map<Integer, CiConstant> virtualObjects,
+                    CiBitMap regRefMap, CiBitMap frameRefMap, boolean stackSlotAsAddress) {
         int framePos = framePos(fpt, frameIndex);
         if (framePos == 0) {
             return null;
@@ -454,7 +458,7 @@ public final class DebugInfo {
         for (int i = 0; i < n; i++) {
             CiValue value = readValue(in, regRefMap, frameRefMap);
             if (fa != null) {
-                value = toLiveSlot(fa, value);
+                value = toLiveSlot(fa, value, virtualObjects);
             } else {
                 if (stackSlotAsAddress && value != null && value.isStackSlot()) {
                     CiStackSlot ss = (CiStackSlot) value;
@@ -486,12 +490,12 @@ public final class DebugInfo {
         if (encCallerIndex != NO_FRAME) {
             int callerIndex = encCallerIndex - FIRST_FRAME;
             assert frameIndex != callerIndex;
-            caller = decodeFrame(in, fpt, callerIndex, fa, regRefMap, frameRefMap, stackSlotAsAddress);
+            caller = decodeFrame(in, fpt, callerIndex, fa, virtualObjects, regRefMap, frameRefMap, stackSlotAsAddress);
         }
         return new CiFrame(caller, method, bci, rethrowException, values, numLocals, numStack, numLocks);
     }
 
-    private static CiValue toLiveSlot(FrameAccess fa, CiValue value) {
+    private static CiValue toLiveSlot(FrameAccess fa, CiValue value, Map<Integer, CiConstant> virtualObjects) {
         if (value.isRegister()) {
             CiRegister reg = value.asRegister();
             CiCalleeSaveLayout csl = fa.csl;
@@ -528,12 +532,72 @@ public final class DebugInfo {
             }
         } else if (value.isIllegal()) {
             value = WordUtil.ZERO;
+        } else if (value.isMonitor()) {
+            CiMonitorValue monitor = (CiMonitorValue) value;
+            CiValue lockData = monitor.lockData.isIllegal() ? null : toLiveSlot(fa, monitor.lockData, virtualObjects);
+            value = new CiMonitorValue(toLiveSlot(fa, monitor.owner, virtualObjects), lockData, monitor.eliminated);
+        } else if (value instanceof CiVirtualObject) {
+            value = materialize(fa, (CiVirtualObject) value, virtualObjects);
         } else {
             assert value.isConstant();
         }
         return value;
     }
 
+    /**
+     * Allocates and initializes the object described by a {@link CiVirtualObject}, i.e. an object whose allocation
+     * was removed by the compiler. All references to the same virtual object at a safepoint denote the same object.
+     */
+    private static CiConstant materialize(FrameAccess fa, CiVirtualObject vobj, Map<Integer, CiConstant> virtualObjects) {
+        CiConstant result = virtualObjects.get(vobj.id());
+        if (result != null) {
+            return result;
+        }
+        ClassActor classActor = (ClassActor) vobj.type();
+        Object object = Snippets.createTupleOrHybrid(classActor);
+        result = CiConstant.forObject(object);
+        virtualObjects.put(vobj.id(), result);
+
+        // the field values are ordered as the compiler enumerates the fields
+        CiValue[] values = vobj.values();
+        int i = 0;
+        for (RiResolvedType type = classActor; type != null; type = type.superType()) {
+            for (RiResolvedField field : type.declaredFields()) {
+                CiValue value = values[i++];
+                if (!value.isIllegal()) {
+                    writeField(object, (FieldActor) field, (CiConstant) toLiveSlot(fa, value, virtualObjects));
+                }
+            }
+        }
+        assert i == values.length : "field count mismatch for virtual " + classActor;
+        return result;
+    }
+
+    /**
+     * Writes a field of a materialized object. Values read from registers and stack slots are raw words,
+     * hence the value is converted based on the kind of the field.
+     */
+    private static void writeField(Object object, FieldActor field, CiConstant value) {
+        if (field.kind.isReference) {
+            field.setObject(object, value.asObject());
+            return;
+        }
+        long bits = value.asPrimitive();
+        // Checkstyle: stop
+        switch (field.kind.asEnum) {
+            case BOOLEAN: field.setBoolean(object, bits != 0L); break;
+            case BYTE:    field.setByte(object, (byte) bits); break;
+            case CHAR:    field.setChar(object, (char) bits); break;
+            case SHORT:   field.setShort(object, (short) bits); break;
+            case INT:     field.setInt(object, (int) bits); break;
+            case FLOAT:   field.setFloat(object, Float.intBitsToFloat((int) bits)); break;
+            case LONG:    field.setLong(object, bits); break;
+            case DOUBLE:  field.setDouble(object, Double.longBitsToDouble(bits)); break;
+            default:      throw FatalError.unexpected("cannot materialize field " + field);
+        }
+        // Checkstyle: resume
+    }
+
 
     @Override
     public String toString() {
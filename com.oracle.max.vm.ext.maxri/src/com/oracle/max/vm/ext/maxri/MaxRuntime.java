@@ -112,6 +112,10 @@ public class MaxRuntime implements RiRuntime {
         // must go through a stub that saves the register state before calling the deopt routine.
         CriticalMethod uncommonTrap = new CriticalMethod(MaxRuntimeCalls.class, "uncommonTrap", null);
         uncommonTrap.classMethodActor.compiledState = new Compilations(null, vm().stubs.genUncommonTrapStub());
+        CriticalMethod uncommonTrapAndReexecute = new CriticalMethod(MaxRuntimeCalls.class, "uncommonTrapAndReexecute", null);
+        uncommonTrapAndReexecute.classMethodActor.compiledState = new Compilations(null, vm().stubs.genUncommonTrapStub());
+        CriticalMethod uncommonTrapForLoopPredicate = new CriticalMethod(MaxRuntimeCalls.class, "uncommonTrapForLoopPredicate", null);
+        uncommonTrapForLoopPredicate.classMethodActor.compiledState = new Compilations(null, vm().stubs.genUncommonTrapStub());
     }
 
     /**
@@ -34,6 +34,7 @@ import com.sun.max.vm.actor.member.*;
 import com.sun.max.vm.classfile.constant.SymbolTable;
 import com.sun.max.vm.classfile.constant.Utf8Constant;
 import com.sun.max.vm.compiler.*;
+import com.sun.max.vm.compiler.deopt.*;
 import com.sun.max.vm.compiler.target.*;
 import com.sun.max.vm.heap.*;
 import com.sun.max.vm.object.*;
@@ -76,6 +77,8 @@ public class MaxRuntimeCalls {
         }
 
         MaxTargetMethod.initializeMaxRuntimeCallsRuntimeUnwindExceptionMethodActor(getRuntimeUnwindExceptionMethodActor());
+        Deoptimization.initializeReexecutingUncommonTrapMethodActor(getClassMethodActor(CiRuntimeCall.DeoptimizeAndReexecute));
+        Deoptimization.initializeLoopPredicateUncommonTrapMethodActor(getClassMethodActor(CiRuntimeCall.DeoptimizeLoopPredicate));
     }
 
     @MAX_RUNTIME_ENTRYPOINT(runtimeCall = CiRuntimeCall.UnwindException)
@@ -257,6 +260,28 @@ public class MaxRuntimeCalls {
         throw FatalError.unexpected("stub should be overwritten");
     }
 
+    /**
+     * The body of this method is provided by {@link Stubs#genUncommonTrapStub()}. Unlike {@link #uncommonTrap()},
+     * the top deoptimized frame re-executes the bytecode at which the trap's frame state was captured, even if
+     * it is an invoke. It is used by speculative checks emitted in front of a call whose frame state still holds
+     * the call's arguments.
+     */
+    @MAX_RUNTIME_ENTRYPOINT(runtimeCall = CiRuntimeCall.DeoptimizeAndReexecute)
+    public static void uncommonTrapAndReexecute() {
+        throw FatalError.unexpected("stub should be overwritten");
+    }
+
+    /**
+     * The body of this method is provided by {@link Stubs#genUncommonTrapStub()}. Like {@link #uncommonTrapAndReexecute()},
+     * it re-executes the bytecode at which the trap's frame state was captured. It is called when a range check predicate
+     * hoisted out of a loop fails, in which case the trapping method is also invalidated so that it can be recompiled
+     * without loop predication (see {@link Deoptimization#uncommonTrap}).
+     */
+    @MAX_RUNTIME_ENTRYPOINT(runtimeCall = CiRuntimeCall.DeoptimizeLoopPredicate)
+    public static void uncommonTrapForLoopPredicate() {
+        throw FatalError.unexpected("stub should be overwritten");
+    }
+
     @MAX_RUNTIME_ENTRYPOINT(runtimeCall = CiRuntimeCall.SetDeoptInfo)
     public static void setDeoptInfo(Object info) {
         // TODO
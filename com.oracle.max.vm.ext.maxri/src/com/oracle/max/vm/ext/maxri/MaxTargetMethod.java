@@ -214,6 +214,13 @@ public class MaxTargetMethod extends TargetMethod implements Cloneable {
         return debugInfo;
     }
 
+    /**
+     * Gets the compiler output this target method was created from.
+     */
+    public CiTargetMethod ciTargetMethod() {
+        return debugCiTargetMethod;
+    }
+
     private static int totalHandlersSize;
 
     private void initExceptionTable(CiTargetMethod ciTargetMethod) {
@@ -52,6 +52,7 @@ import com.sun.max.vm.classfile.constant.UnresolvedType.*;
 import com.sun.max.vm.compiler.*;
 import com.sun.max.vm.compiler.target.*;
 import com.sun.max.vm.heap.*;
+import com.sun.max.vm.heap.XirWriteBarrierSpecification.XirRuntimeCallStubs;
 import com.sun.max.vm.heap.debug.*;
 import com.sun.max.vm.layout.*;
 import com.sun.max.vm.methodhandle.VMTarget;
@@ -80,7 +81,7 @@ public class MaxXirGenerator implements RiXirGenerator {
             return (XirWriteBarrierSpecification) heapScheme;
         }
         return new XirWriteBarrierSpecification() {
-            public XirWriteBarrierGenerator barrierGenerator(IntBitSet<WriteBarrierSpecification.WriteBarrierSpec> writeBarrierSpec) {
+            public XirWriteBarrierGenerator barrierGenerator(IntBitSet<WriteBarrierSpecification.WriteBarrierSpec> writeBarrierSpec, XirRuntimeCallStubs runtimeCallStubs) {
                 return XirWriteBarrierSpecification.NULL_WRITE_BARRIER_GEN;
             }
         };
@@ -162,6 +163,7 @@ public class MaxXirGenerator implements RiXirGenerator {
     private XirPair materializedInstanceofForNonLeafTemplate;
 
     private XirTemplate typeAssertTemplate;
+    private XirTemplate bimorphicTypeAssertTemplate;
 
     private XirTemplate exceptionObjectTemplate;
 
@@ -316,6 +318,7 @@ public class MaxXirGenerator implements RiXirGenerator {
         materializedInstanceofForNonLeafTemplate = buildMaterializeInstanceOf(false, false);
 
         typeAssertTemplate = buildTypeAssert();
+        bimorphicTypeAssertTemplate = buildBimorphicTypeAssert();
 
         exceptionObjectTemplate = buildExceptionObject();
 
@@ -664,6 +667,12 @@ public class MaxXirGenerator implements RiXirGenerator {
         return new XirSnippet(typeAssertTemplate, object, hub);
     }
 
+    @Override
+    public XirSnippet genBimorphicTypeCheck(XirSite site, XirArgument object, XirArgument hub, XirArgument otherHub) {
+        assert site.isNonNull(object);
+        return new XirSnippet(bimorphicTypeAssertTemplate, object, hub, otherHub);
+    }
+
     @Override
     public XirSnippet genArrayLoad(XirSite site, XirArgument array, XirArgument index, CiKind elementKind, RiType elementType) {
         XirTemplate template;
@@ -814,11 +823,11 @@ public class MaxXirGenerator implements RiXirGenerator {
         asm.bindInline(store);
         int elemSize = target().sizeInBytes(kind);
         if (genWriteBarrier) {
-            writeBarrierSpecification.barrierGenerator(WriteBarrierSpecification.ARRAY_PRE_BARRIER).genWriteBarrier(asm, array, index);
+            writeBarrierSpecification.barrierGenerator(WriteBarrierSpecification.ARRAY_PRE_BARRIER, barrierRuntimeCallStubs).genWriteBarrier(asm, array, index);
         }
         asm.pstore(kind, array, index, value, offsetOfFirstArrayElement(), Scale.fromInt(elemSize), !genBoundsCheck && !genStoreCheck);
         if (genWriteBarrier) {
-            writeBarrierSpecification.barrierGenerator(WriteBarrierSpecification.ARRAY_POST_BARRIER).genWriteBarrier(asm, array, index);
+            writeBarrierSpecification.barrierGenerator(WriteBarrierSpecification.ARRAY_POST_BARRIER, barrierRuntimeCallStubs).genWriteBarrier(asm, array, index);
         }
         if (genBoundsCheck) {
             asm.bindOutOfLine(failBoundsCheck);
@@ -1450,11 +1459,11 @@ public class MaxXirGenerator implements RiXirGenerator {
             XirParameter value = asm.createInputParameter("value", kind);
             XirParameter fieldOffset = asm.createConstantInputParameter("fieldOffset", CiKind.Int);
             if (genWriteBarrier) {
-                writeBarrierSpecification.barrierGenerator(WriteBarrierSpecification.TUPLE_PRE_BARRIER).genWriteBarrier(asm, object);
+                writeBarrierSpecification.barrierGenerator(WriteBarrierSpecification.TUPLE_PRE_BARRIER, barrierRuntimeCallStubs).genWriteBarrier(asm, object, fieldOffset);
             }
             asm.pstore(kind, object, fieldOffset, value, true);
             if (genWriteBarrier) {
-                writeBarrierSpecification.barrierGenerator(WriteBarrierSpecification.TUPLE_POST_BARRIER).genWriteBarrier(asm, object);
+                writeBarrierSpecification.barrierGenerator(WriteBarrierSpecification.TUPLE_POST_BARRIER, barrierRuntimeCallStubs).genWriteBarrier(asm, object, fieldOffset);
             }
             xirTemplate = finishTemplate(asm, "putfield<" + kind + ", " + genWriteBarrier + ">");
         } else {
@@ -1469,9 +1478,12 @@ public class MaxXirGenerator implements RiXirGenerator {
             } else {
                 callRuntimeThroughStub(asm, "resolvePutField", fieldOffset, guard);
             }
+            if (genWriteBarrier) {
+                writeBarrierSpecification.barrierGenerator(WriteBarrierSpecification.TUPLE_PRE_BARRIER, barrierRuntimeCallStubs).genWriteBarrier(asm, object, fieldOffset);
+            }
             asm.pstore(kind, object, fieldOffset, value, true);
             if (genWriteBarrier) {
-                writeBarrier(asm, object, null, value);
+                writeBarrierSpecification.barrierGenerator(WriteBarrierSpecification.TUPLE_POST_BARRIER, barrierRuntimeCallStubs).genWriteBarrier(asm, object, fieldOffset);
             }
             xirTemplate = finishTemplate(asm, "putfield<" + kind + ", " + genWriteBarrier + ">-unresolved");
         }
@@ -1740,12 +1752,37 @@ public class MaxXirGenerator implements RiXirGenerator {
 
         // -- out of line -------------------------------------------------------
         asm.bindOutOfLine(slowPath);
-        asm.callRuntime(CiRuntimeCall.Deoptimize, null);
+        asm.callRuntime(CiRuntimeCall.DeoptimizeAndReexecute, null);
         asm.shouldNotReachHere();
 
         return asm.finishTemplate(object, "typeCheck");
     }
 
+    @HOSTED_ONLY
+    private XirTemplate buildBimorphicTypeAssert() {
+        asm.restart();
+        XirParameter object = asm.createInputParameter("object", CiKind.Object);
+        XirOperand hub = asm.createConstantInputParameter("hub", CiKind.Object);
+        XirOperand otherHub = asm.createConstantInputParameter("otherHub", CiKind.Object);
+
+        XirOperand objHub = asm.createTemp("objHub", CiKind.Object);
+        XirLabel matched = asm.createInlineLabel("matched");
+        XirLabel slowPath = asm.createOutOfLineLabel("deopt");
+
+        asm.pload(CiKind.Object, objHub, object, asm.i(hubOffset()), false);
+        // if we get an exact match with either hub: continue
+        asm.jeq(matched, objHub, hub);
+        asm.jneq(slowPath, objHub, otherHub);
+        asm.bindInline(matched);
+
+        // -- out of line -------------------------------------------------------
+        asm.bindOutOfLine(slowPath);
+        asm.callRuntime(CiRuntimeCall.DeoptimizeAndReexecute, null);
+        asm.shouldNotReachHere();
+
+        return asm.finishTemplate(object, "bimorphicTypeCheck");
+    }
+
     @HOSTED_ONLY
     private XirPair buildInstanceofForNonLeaf(boolean nonnull) {
         XirTemplate resolved;
@@ -1841,12 +1878,22 @@ public class MaxXirGenerator implements RiXirGenerator {
         return template;
     }
 
-    private void writeBarrier(CiXirAssembler asm, XirOperand object, XirOperand fieldOffset, XirOperand value) {
-        // XXX: add write barrier mechanism
+    @HOSTED_ONLY
+    private void callRuntimeThroughStub(CiXirAssembler asm, String method, XirOperand result, XirOperand... args) {
+        callRuntimeThroughStub(asm, runtimeCalls, method, result, args);
     }
 
+    /**
+     * Runtime call stubs the heap scheme's write barriers may call through.
+     */
+    private final XirRuntimeCallStubs barrierRuntimeCallStubs = new XirRuntimeCallStubs() {
+        public void callRuntimeThroughStub(CiXirAssembler asm, Class<?> runtimeCalls, String method, XirOperand result, XirOperand... args) {
+            MaxXirGenerator.this.callRuntimeThroughStub(asm, runtimeCalls, method, result, args);
+        }
+    };
+
     @HOSTED_ONLY
-    private void callRuntimeThroughStub(CiXirAssembler asm, String method, XirOperand result, XirOperand... args) {
+    private void callRuntimeThroughStub(CiXirAssembler asm, Class<?> runtimeCalls, String method, XirOperand result, XirOperand... args) {
         XirTemplate stub = runtimeCallStubs.get(method);
         if (stub == null) {
             stub = addCallRuntimeThroughStub(stubs, runtimeCalls, runtimeCallStubs, asm, method, result, args);
@@ -38,6 +38,11 @@
 #include <sys/sysctl.h>
 #endif
 
+#if os_LINUX
+#include <stdio.h>
+#include <sys/syscall.h>
+#endif
+
 /* There is a problem binding these identifiers in RedHat's include files, so we fake them: */
 #if os_LINUX
 #   ifndef MAP_ANONYMOUS
@@ -310,3 +315,122 @@ Address virtualMemory_pageAlign(Address address) {
     long alignment = virtualMemory_getPageSize() - 1;
     return ((long)(address + alignment) & ~alignment);
 }
+
+#if os_LINUX
+/* Memory policy of mbind(2). Defined here to avoid depending on libnuma's headers. */
+#   ifndef MPOL_PREFERRED
+#       define MPOL_PREFERRED   1
+#   endif
+#endif
+
+/* Maximum number of NUMA nodes supported. Node identifiers must be lower than this too. */
+#define MAX_NUMA_NODES 1024
+
+static int numaNodeCount = 0;
+
+/* Identifiers of the online NUMA nodes, in increasing order. They need not be contiguous. */
+static int numaNodeIds[MAX_NUMA_NODES];
+
+#if os_LINUX
+/*
+ * Reads the identifiers of the online NUMA nodes from a node list such as "0,2-3".
+ * Returns the number of nodes read.
+ */
+static int readOnlineNumaNodes(const char *path) {
+    int count = 0;
+    FILE *file = fopen(path, "r");
+    if (file == NULL) {
+        return 0;
+    }
+    while (count < MAX_NUMA_NODES) {
+        int first;
+        int last;
+        int separator;
+        if (fscanf(file, "%d", &first) != 1) {
+            break;
+        }
+        last = first;
+        separator = fgetc(file);
+        if (separator == '-') {
+            if (fscanf(file, "%d", &last) != 1) {
+                break;
+            }
+            separator = fgetc(file);
+        }
+        while (first <= last && first < MAX_NUMA_NODES && count < MAX_NUMA_NODES) {
+            numaNodeIds[count++] = first++;
+        }
+        if (separator != ',') {
+            break;
+        }
+    }
+    fclose(file);
+    return count;
+}
+#endif
+
+/*
+ * Returns the number of online NUMA nodes of the platform, or 1 if the platform doesn't expose its NUMA topology.
+ */
+int virtualMemory_getNumaNodeCount(void) {
+    if (numaNodeCount == 0) {
+        int count = 0;
+#if os_LINUX
+        count = readOnlineNumaNodes("/sys/devices/system/node/online");
+#endif
+        if (count == 0) {
+            numaNodeIds[0] = 0;
+            count = 1;
+        }
+        numaNodeCount = count;
+    }
+    return numaNodeCount;
+}
+
+/*
+ * Returns the identifier of the online NUMA node of the given index, between 0 and virtualMemory_getNumaNodeCount() - 1.
+ * Node identifiers may have gaps, e.g., a machine may only have nodes 0 and 2 online.
+ */
+int virtualMemory_getNumaNodeId(int index) {
+    c_ASSERT(index >= 0 && index < virtualMemory_getNumaNodeCount());
+    return numaNodeIds[index];
+}
+
+/*
+ * Returns the NUMA node of the processor the current thread runs on, or 0 if it cannot be determined.
+ */
+int virtualMemory_getCurrentNumaNode(void) {
+#if os_LINUX && defined(SYS_getcpu)
+    unsigned int cpu = 0;
+    unsigned int node = 0;
+    if (syscall(SYS_getcpu, &cpu, &node, NULL) == 0) {
+        return (int) node;
+    }
+#endif
+    return 0;
+}
+
+/*
+ * Sets the preferred NUMA node of a page-aligned range of virtual memory. Pages not yet touched are allocated
+ * from the node if it has free memory, and from other nodes otherwise.
+ * Returns true if the policy was set.
+ */
+boolean virtualMemory_bindToNumaNode(Address address, Size size, int node) {
+#if os_LINUX && defined(SYS_mbind)
+    unsigned long nodeMask[MAX_NUMA_NODES / (sizeof(unsigned long) * 8)];
+    const int bitsPerWord = sizeof(unsigned long) * 8;
+    c_ASSERT(virtualMemory_pageAlign(address) == address);
+    if (node < 0 || node >= MAX_NUMA_NODES) {
+        log_println("virtualMemory_bindToNumaNode(%p, %p, %d) failed: no such NUMA node", address, size, node);
+        return false;
+    }
+    memset(nodeMask, 0, sizeof(nodeMask));
+    nodeMask[node / bitsPerWord] = 1UL << (node % bitsPerWord);
+    /* The kernel reads maxnode - 1 bits of the mask. */
+    if (syscall(SYS_mbind, (void *) address, (unsigned long) size, MPOL_PREFERRED, nodeMask, (unsigned long) MAX_NUMA_NODES + 1, 0) == 0) {
+        return true;
+    }
+    log_println("virtualMemory_bindToNumaNode(%p, %p, %d) failed: %s", address, size, node, strerror(errno));
+#endif
+    return false;
+}
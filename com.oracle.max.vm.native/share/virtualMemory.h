@@ -51,4 +51,9 @@ extern Address virtualMemory_pageAlign(Address address);
 
 extern void virtualMemory_protectPages(Address address, int count);
 extern void virtualMemory_unprotectPages(Address address, int count);
+
+extern int virtualMemory_getNumaNodeCount(void);
+extern int virtualMemory_getNumaNodeId(int index);
+extern int virtualMemory_getCurrentNumaNode(void);
+extern boolean virtualMemory_bindToNumaNode(Address address, Size size, int node);
 #endif /*__virtualMemory_h__*/
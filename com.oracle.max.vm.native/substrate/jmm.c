@@ -29,6 +29,11 @@ static jint jmm_GetVersion(JNIEnv *env) {
 }
 
 static jint jmm_GetOptionalSupport(JNIEnv *env, jmmOptionalSupport* support) {
+    if (support == NULL) {
+        return -1;
+    }
+    /* the total compilation time is provided by JmmFunctions.GetLongAttribute */
+    support->isCompilationTimeMonitoringSupported = 1;
     return 0;
 }
 
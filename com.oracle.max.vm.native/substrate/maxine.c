@@ -372,6 +372,10 @@ void *native_executablePath() {
     return result;
 }
 
+jint native_bootImageRandomID(void) {
+    return image_header()->randomID;
+}
+
 //static void cleanupCurrentThreadBlockBeforeExit() {
 //    Address tlBlock = threadLocalsBlock_current();
 //    log_println("cleanupCurrentThreadBlockBeforeExit\n");
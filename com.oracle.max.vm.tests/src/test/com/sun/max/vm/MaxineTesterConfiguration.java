@@ -351,6 +351,8 @@ public class MaxineTesterConfiguration {
         maxvmConfig("eviction1000", "-Xms2g", "-Xmx2g", "-XX:CodeCacheContentionFrequency=1000");
         maxvmConfig("eviction100", "-Xms2g", "-Xmx2g", "-XX:CodeCacheContentionFrequency=100");
         maxvmConfig("eviction10", "-Xms2g", "-Xmx2g", "-XX:CodeCacheContentionFrequency=10");
+        // Configuration to stress the eviction of optimized code, and the recompilation of methods that fall back to baseline code
+        maxvmConfig("opteviction", "-Xms2g", "-Xmx2g", "-XX:RCT=100", "-XX:ReservedOptCodeCacheSize=512k", "-XX:OptCodeEvictionThreshold=20");
         maxvmConfig("cc1m", "-Xms2g", "-Xmx2g", "-XX:ReservedBaselineCodeCacheSize=1m");
         maxvmConfig("cc500k", "-Xms2g", "-Xmx2g", "-XX:ReservedBaselineCodeCacheSize=500k");
         maxvmConfig("cc250k", "-Xms2g", "-Xmx2g", "-XX:ReservedBaselineCodeCacheSize=250k");
@@ -359,6 +361,12 @@ public class MaxineTesterConfiguration {
         maxvmConfig("mx256m", "-Xmx256m");
         maxvmConfig("mx512m", "-Xmx512m");
 
+        // Configurations to stress parallel and concurrent GC phases with heap verification
+        maxvmConfig("pargc", "-Xmx256m", "-XX:ParallelGCThreads=4", "-XX:+VerifyAfterGC", "-XX:+VerifyAfterMarking");
+        maxvmConfig("pargc-ss", "-Xmx256m", "-XX:ParallelGCThreads=4", "-XX:+VerifyReferences");
+        maxvmConfig("satb", "-Xmx256m", "-XX:+ConcurrentMarking", "-XX:ConcurrentMarkingThreshold=5", "-XX:+VerifyAfterGC", "-XX:+VerifyAfterMarking");
+        maxvmConfig("compact", "-Xmx256m", "-XX:+CompactRegions", "-XX:CompactionMaxLiveRatio=90", "-XX:+VerifyAfterGC", "-XX:+VerifyAfterMarking");
+
         // VEE 2010 benchmarking configurations
         maxvmConfig("noGC", "-XX:+DisableGC", "-Xmx3g");
         maxvmConfig("GC", "-Xmx2g");
@@ -517,6 +517,9 @@ public class JTConfig {
         jtt.loop.Loop14.class,
         jtt.loop.LoopInline.class,
         jtt.loop.LoopNewInstance.class,
+        jtt.loop.LoopOSR01.class,
+        jtt.loop.LoopOSR02.class,
+        jtt.loop.LoopOSR03.class,
         jtt.loop.LoopPhi.class,
         jtt.loop.LoopSwitch01.class,
         jtt.micro.ArrayCompare01.class,
@@ -559,6 +562,11 @@ public class JTConfig {
         jtt.optimize.ABCE_01.class,
         jtt.optimize.ABCE_02.class,
         jtt.optimize.ABCE_03.class,
+        jtt.optimize.ABCE_04.class,
+        jtt.optimize.ABCE_05.class,
+        jtt.optimize.ABCE_06.class,
+        jtt.optimize.ABCE_07.class,
+        jtt.optimize.ABCE_08.class,
         jtt.optimize.ArrayCopy01.class,
         jtt.optimize.ArrayLength01.class,
         jtt.optimize.BC_idiv_16.class,
@@ -578,6 +586,10 @@ public class JTConfig {
         jtt.optimize.Conditional01.class,
         jtt.optimize.DeadCode01.class,
         jtt.optimize.DeadCode02.class,
+        jtt.optimize.EA_01.class,
+        jtt.optimize.EA_02.class,
+        jtt.optimize.EA_03.class,
+        jtt.optimize.EA_04.class,
         jtt.optimize.Fold_Cast01.class,
         jtt.optimize.Fold_Convert01.class,
         jtt.optimize.Fold_Convert02.class,
@@ -596,6 +608,10 @@ public class JTConfig {
         jtt.optimize.Fold_Math01.class,
         jtt.optimize.Inline01.class,
         jtt.optimize.Inline02.class,
+        jtt.optimize.Inline03.class,
+        jtt.optimize.Inline04.class,
+        jtt.optimize.LICM_01.class,
+        jtt.optimize.LICM_02.class,
         jtt.optimize.LLE_01.class,
         jtt.optimize.List_reorder_bug.class,
         jtt.optimize.NCE_01.class,
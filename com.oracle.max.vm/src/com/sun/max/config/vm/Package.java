@@ -25,6 +25,7 @@ package com.sun.max.config.vm;
 import com.sun.max.config.*;
 import com.sun.max.vm.classfile.*;
 import com.sun.max.vm.compiler.target.*;
+import com.sun.max.vm.heap.*;
 import com.sun.max.vm.jdk.*;
 import com.sun.max.vm.runtime.*;
 
@@ -84,5 +85,8 @@ public class Package extends BootImagePackage {
         registerThreadLocal(Snippets.class, "NATIVE_CALLS_DISABLED");
         registerThreadLocal(ErrorContext.class, "ERROR_CONTEXTS");
         registerThreadLocal(JDK_java_lang_Throwable.class, "TRACE_UNDER_CONSTRUCTION");
+        registerThreadLocal(SATBQueue.class, "SATB_QUEUE_ACTIVE");
+        registerThreadLocal(SATBQueue.class, "SATB_QUEUE_BUFFER");
+        registerThreadLocal(SATBQueue.class, "SATB_QUEUE_INDEX");
     }
 }
@@ -270,6 +270,64 @@ public final class VirtualMemory {
     @C_FUNCTION
     private static native void virtualMemory_unprotectPages(Address address, int count);
 
+    /* NUMA placement methods */
+
+    /**
+     * Return the number of online NUMA nodes of the underlying platform.
+     * @return a number of nodes, 1 if the platform doesn't expose its NUMA topology
+     */
+    @INLINE
+    public static int getNumaNodeCount() {
+        return virtualMemory_getNumaNodeCount();
+    }
+
+    /**
+     * Return the identifier of an online NUMA node. Node identifiers need not be contiguous: a platform may, e.g., only have nodes 0 and 2 online.
+     * @param index index of the node, between 0 and {@link #getNumaNodeCount()} - 1
+     * @return the identifier of the node, as used by {@link #getCurrentNumaNode()} and {@link #bindToNumaNode(Address, Size, int)}
+     */
+    @INLINE
+    public static int getNumaNodeId(int index) {
+        return virtualMemory_getNumaNodeId(index);
+    }
+
+    /**
+     * Return the NUMA node of the processor the current thread runs on. The result may be stale as soon as it is returned if the thread migrates.
+     * @return a node identifier, 0 if it cannot be determined
+     */
+    @INLINE
+    public static int getCurrentNumaNode() {
+        return virtualMemory_getCurrentNumaNode();
+    }
+
+    /**
+     * Set the preferred NUMA node of a range of committed virtual memory.
+     * Pages of the range touched thereafter are allocated from that node when it has free memory.
+     *
+     * @param address an address aligned to the underlying platform's {@linkplain Platform#pageSize page size}
+     * @param size size of the range
+     * @param node a NUMA node identifier
+     * @return true if the preference was set. Failures are logged by the native code.
+     */
+    public static boolean bindToNumaNode(Address address, Size size, int node) {
+        if (TraceAnonOperations) {
+            traceRange("bindToNumaNode", address, size);
+        }
+        return virtualMemory_bindToNumaNode(address, size, node);
+    }
+
+    @C_FUNCTION
+    private static native int virtualMemory_getNumaNodeCount();
+
+    @C_FUNCTION
+    private static native int virtualMemory_getNumaNodeId(int index);
+
+    @C_FUNCTION
+    private static native int virtualMemory_getCurrentNumaNode();
+
+    @C_FUNCTION
+    private static native boolean virtualMemory_bindToNumaNode(Address address, Size size, int node);
+
     /* File mapping methods */
 
     /**
@@ -577,6 +577,13 @@ public final class MaxineVM {
     @C_FUNCTION
     public static native Pointer native_properties();
 
+    /**
+     * Gets the random identifier recorded in the header of the boot image this VM was started from, which differs between
+     * any two generated boot images (see {@code BootImage.Header.randomID}).
+     */
+    @C_FUNCTION
+    public static native int native_bootImageRandomID();
+
     @C_FUNCTION
     public static native float native_parseFloat(Pointer pointer, float nan);
 
@@ -245,6 +245,7 @@ public final class VMConfiguration {
 
     public void initializeSchemes(MaxineVM.Phase phase) {
         vm().compilationBroker.initialize(phase);
+        SafepointStatistics.initialize(phase);
         for (int i = 0; i < vmSchemes.size(); i++) {
             try {
                 // Log.print("Initializing: ");
@@ -64,7 +64,8 @@ public enum VMProperty {
     SUN_BOOT_LIBRARY_PATH("sun.boot.library.path", null, true),
     SUN_BOOT_CLASS_PATH("sun.boot.class.path", null, true),
     SUN_JAVA_COMMAND("sun.java.command", null, false),
-    SUN_JAVA_LAUNCHER("sun.java.launcher", "SUN_STANDARD", false);
+    SUN_JAVA_LAUNCHER("sun.java.launcher", "SUN_STANDARD", false),
+    SUN_MANAGEMENT_COMPILER("sun.management.compiler", vm().compilationBroker.compilerName(), false);
 
     private static final Offset BYTE_DATA_OFFSET = VMConfiguration.vmConfig().layoutScheme().byteArrayLayout.getElementOffsetFromOrigin(0);
 
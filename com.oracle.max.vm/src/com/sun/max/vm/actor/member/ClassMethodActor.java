@@ -41,6 +41,7 @@ import com.sun.max.vm.compiler.RuntimeCompiler.*;
 import com.sun.max.vm.compiler.target.*;
 import com.sun.max.vm.jni.*;
 import com.sun.max.vm.object.ObjectAccess;
+import com.sun.max.vm.profile.*;
 import com.sun.max.vm.runtime.FatalError;
 import com.sun.max.vm.type.*;
 import com.sun.max.vm.verifier.*;
@@ -79,6 +80,13 @@ public abstract class ClassMethodActor extends MethodActor {
 
     private CiExceptionHandler[] exceptionHandlers;
 
+    /**
+     * Number of times compiled code of this method was deoptimized, resp. evicted from the code cache. These are only
+     * updated at safepoints.
+     */
+    private int deoptimizationCount;
+    private int evictionCount;
+
     public ClassMethodActor(Utf8Constant name, SignatureDescriptor descriptor, int flags, CodeAttribute codeAttribute, String intrinsic) {
         super(name, descriptor, flags, intrinsic);
         this.codeAttribute = codeAttribute;
@@ -397,6 +405,22 @@ public abstract class ClassMethodActor extends MethodActor {
         return (ClassMethodActor) MethodActor.fromJava(javaMethod);
     }
 
+    public final int deoptimizationCount() {
+        return deoptimizationCount;
+    }
+
+    public final void recordDeoptimization() {
+        deoptimizationCount++;
+    }
+
+    public final int evictionCount() {
+        return evictionCount;
+    }
+
+    public final void recordEviction() {
+        evictionCount++;
+    }
+
     /**
      * Gets the most optimized version of compiled code for this method that can be executed.
      * Note that this will never return an invalidated target method.
@@ -405,6 +429,73 @@ public abstract class ClassMethodActor extends MethodActor {
         return Compilations.currentTargetMethod(compiledState, null);
     }
 
+    /**
+     * Determines if a loop predicate failure was recorded in the profile of the baseline version of this method.
+     */
+    @Override
+    public boolean loopPredicateFailed() {
+        if (MaxineVM.isHosted()) {
+            return false;
+        }
+        final TargetMethod baseline = Compilations.currentTargetMethod(compiledState, Nature.BASELINE);
+        final MethodProfile mpo = baseline == null ? null : baseline.profile();
+        return mpo != null && mpo.loopPredicateFailed;
+    }
+
+    /**
+     * Gets the receiver type profile recorded at a given call site by the instrumented baseline version of this method.
+     * Types that fell out of the profile are not listed in {@link RiTypeProfile#types} but are accounted for
+     * in {@link RiTypeProfile#morphism} and in the probabilities of the listed types.
+     */
+    @Override
+    public RiTypeProfile typeProfile(int bci) {
+        if (MaxineVM.isHosted()) {
+            return null;
+        }
+        final TargetMethod baseline = Compilations.currentTargetMethod(compiledState, Nature.BASELINE);
+        final MethodProfile mpo = baseline == null ? null : baseline.profile();
+        if (mpo == null) {
+            return null;
+        }
+        final Integer[] pairs = mpo.getTypeProfile(bci);
+        if (pairs == null) {
+            return null;
+        }
+        long total = 0;
+        int numTypes = 0;
+        boolean otherSeen = false;
+        for (int i = 0; i < pairs.length; i += 2) {
+            total += pairs[i + 1];
+            if (pairs[i] == MethodProfile.UNDEFINED_TYPE_ID) {
+                otherSeen = pairs[i + 1] > 0;
+            } else {
+                numTypes++;
+            }
+        }
+        if (total <= 0) {
+            return null;
+        }
+        final RiTypeProfile profile = new RiTypeProfile();
+        profile.count = (int) Math.min(total, Integer.MAX_VALUE);
+        profile.morphism = otherSeen ? numTypes + 1 : numTypes;
+        profile.types = new RiResolvedType[numTypes];
+        profile.probabilities = new float[numTypes];
+        int j = 0;
+        for (int i = 0; i < pairs.length; i += 2) {
+            if (pairs[i] != MethodProfile.UNDEFINED_TYPE_ID) {
+                final ClassActor type = ClassIDManager.toClassActor(pairs[i]);
+                if (type == null) {
+                    // the profile is updated without synchronization and may refer to an id that was never assigned
+                    return null;
+                }
+                profile.types[j] = type;
+                profile.probabilities[j] = (float) pairs[i + 1] / total;
+                j++;
+            }
+        }
+        return profile;
+    }
+
     /**
      * Records if this object returned {@code true} for a call to {@link #canBePermanentlyLinked()} during
      * boot image building.
@@ -455,6 +546,7 @@ public abstract class ClassMethodActor extends MethodActor {
         TargetMethod currentTargetMethod = Compilations.currentTargetMethod(compiledState, nature);
         if (currentTargetMethod != null) {
             // fast path: a suitable compiled version of method is available
+            currentTargetMethod.recordActivity();
             return currentTargetMethod;
         }
 
@@ -741,6 +741,13 @@ public class FieldActor extends MemberActor implements RiResolvedField {
         return flags() & JAVA_FIELD_FLAGS;
     }
 
+    /**
+     * Determines if {@link #constantValue(CiConstant)} only returns the values specified by ConstantValue attributes,
+     * which are the same in every run of the VM, and not the runtime values of constant fields. This is required
+     * while compiled code is persisted for use by later runs.
+     */
+    public static boolean foldOnlyConstantValueAttributes;
+
     public final CiConstant constantValue(CiConstant receiver) {
         if (isConstant() || isConstantWhenNotZero()) {
             Value v;
@@ -750,6 +757,9 @@ public class FieldActor extends MemberActor implements RiResolvedField {
                     return v.asCiConstant();
                 }
             }
+            if (foldOnlyConstantValueAttributes) {
+                return null;
+            }
             v = getValue((receiver == null) ? null : receiver.asObject());
             if (!isConstantWhenNotZero() || !v.isZero()) {
                 return v.asCiConstant();
@@ -621,6 +621,10 @@ public abstract class MethodActor extends MemberActor implements RiResolvedMetho
         return null;
     }
 
+    public boolean loopPredicateFailed() {
+        return false;
+    }
+
     public Map<Object, Object> compilerStorage() {
         if (compilerStorage == null) {
             compilerStorage = new ConcurrentHashMap<Object, Object>();
@@ -37,11 +37,13 @@ import com.sun.max.unsafe.*;
 import com.sun.max.vm.*;
 import com.sun.max.vm.actor.holder.*;
 import com.sun.max.vm.actor.member.*;
+import com.sun.max.vm.compiler.deopt.*;
 import com.sun.max.vm.compiler.target.*;
 import com.sun.max.vm.compiler.target.amd64.*;
 import com.sun.max.vm.compiler.target.arm.*;
 import com.sun.max.vm.log.VMLog.Record;
 import com.sun.max.vm.log.hosted.*;
+import com.sun.max.vm.management.*;
 import com.sun.max.vm.profile.*;
 import com.sun.max.vm.reference.*;
 import com.sun.max.vm.runtime.*;
@@ -148,6 +150,7 @@ public final class CodeEviction extends VmOperation {
                 nStaleBytes += targetMethod.codeLength();
                 logStaleMethod(targetMethod);
                 patchDispatchTables(targetMethod, true);
+                CompilationManagement.recordEviction(targetMethod);
                 assert invalidateCode(targetMethod.code());
                 targetMethod.wipe();
                 targetMethod.classMethodActor.compiledState = Compilations.EMPTY;
@@ -182,6 +185,77 @@ public final class CodeEviction extends VmOperation {
         }
     }
 
+    /**
+     * Marks all optimized target methods on the stack as live and records their activity.
+     */
+    final class LiveOptMethodsMarker extends RawStackFrameVisitor {
+        @Override
+        public boolean visitFrame(StackFrameCursor current, StackFrameCursor callee) {
+            TargetMethod tm = current.targetMethod();
+            if (tm != null && CodeManager.runtimeOptCodeRegion.contains(tm.start())) {
+                tm.mark();
+                tm.recordActivity();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Selects the optimized target methods to be unlinked or evicted in the current opt code eviction cycle.
+     * Optimized code carries no invocation counters. Instead, a cold method is first unlinked from all call sites and
+     * dispatch tables: its next invocation goes through a trampoline which links it again and
+     * {@linkplain TargetMethod#recordActivity() records its activity}. Only methods that were not active since the
+     * previous cycle are unlinked, so that code installed or relinked since then is left alone. A method that was not
+     * active since it was unlinked by a previous cycle, or that was invalidated, is evicted if it is not on any stack.
+     * <p>
+     * Adapters and stubs, native and VM methods, and methods being recompiled are never evicted.
+     */
+    final class ColdOptMethodsSelector implements TargetMethod.Closure {
+        @Override
+        public boolean doTargetMethod(TargetMethod targetMethod) {
+            final ClassMethodActor cma = targetMethod.classMethodActor;
+            if (targetMethod.isMarked() || targetMethod.isWiped() || cma == null || cma.isNative() || cma.isVM() || cma.compiledState instanceof Compilation) {
+                return true;
+            }
+            final int activityEpoch = targetMethod.activityEpoch();
+            if (targetMethod.invalidated() != null || activityEpoch < 0 || evictAllInactive) {
+                if (nOptEvicted == optEvicted.length) {
+                    optEvicted = Arrays.copyOf(optEvicted, optEvicted.length * 2);
+                }
+                optEvicted[nOptEvicted++] = targetMethod;
+                targetMethod.unlinked(optEvictionEpoch);
+            } else if (activityEpoch < optEvictionEpoch - 1) {
+                // not active since before the previous cycle (activity recorded since then is in epoch optEvictionEpoch - 1)
+                ++nOptUnlinked;
+                targetMethod.unlinked(optEvictionEpoch);
+            }
+            return true;
+        }
+    }
+
+    final class UnlinkColdOptMethods implements TargetMethod.Closure {
+        @Override
+        public boolean doTargetMethod(TargetMethod targetMethod) {
+            if (isStaleCallee(targetMethod)) {
+                patchDispatchTables(targetMethod, true);
+            }
+            if (targetMethod.isMarked()) {
+                targetMethod.unmark();
+            }
+            return true;
+        }
+    }
+
+    final class InvalidateAllBaselineDirectCalls implements TargetMethod.Closure {
+        @Override
+        public boolean doTargetMethod(TargetMethod targetMethod) {
+            ++nBaseMeth;
+            nBaseDirect += targetMethod.safepoints().numberOfDirectCalls();
+            nCallBaseline += patchDirectCallsIn(targetMethod);
+            return true;
+        }
+    }
+
     final class StackPatcher extends RawStackFrameVisitor {
         @Override
         public boolean visitFrame(StackFrameCursor current, StackFrameCursor callee) {
@@ -307,29 +381,12 @@ public final class CodeEviction extends VmOperation {
         @Override
         public boolean doTargetMethod(TargetMethod targetMethod) {
             assert cr.isInFromSpace(targetMethod.start()) : "all target methods to be copied should be in from-space";
+            if (!targetMethod.oldStart().isZero()) {
+                // already copied from its pre-copy
+                return true;
+            }
             if (!targetMethod.isWiped()) {
-                // preparation
-                final Pointer from = targetMethod.start().asPointer();
-                final Pointer to = cr.mark();
-                final Size size = targetMethod.size();
-                // first, address dispatch table entries
-                logCodeMotion(targetMethod, from, to, size);
-                patchDispatchTables(targetMethod, false);
-                // next, physically move the code
-                Memory.copyBytes(from, to, size);
-                assert invalidateCode(targetMethod.code()); // this invalidates the old code as targetMethod's pointers have not been changed yet!
-                targetMethod.setOldStart(targetMethod.start());
-                targetMethod.setStart(to);
-                final byte[] code = (byte[]) relocate(from, to, targetMethod.code());
-                final Pointer codeStart = to.plus(targetMethod.codeStart().toPointer().minus(from));
-                final byte[] scalarLiterals = targetMethod.scalarLiterals() == null ?
-                    null : (byte[]) relocate(from, to, targetMethod.scalarLiterals());
-                final Object[] referenceLiterals = targetMethod.referenceLiterals() == null ?
-                    null : (Object[]) relocate(from, to, targetMethod.referenceLiterals());
-                targetMethod.setCodeArrays(code, codeStart, scalarLiterals, referenceLiterals);
-                cr.setMark(cr.mark().plus(size));
-                CodeManager.runtimeBaselineCodeRegion.add(targetMethod);
-                targetMethod.survivedEviction();
+                copy(targetMethod, false);
             } else {
                 // set the oldStart address to mark this method as "old"
                 targetMethod.setOldStart(targetMethod.start());
@@ -338,6 +395,42 @@ public final class CodeEviction extends VmOperation {
             return true;
         }
 
+        /**
+         * Copies a surviving method to the allocation mark of to-space.
+         *
+         * @param precopied specifies if the method was already copied to the allocation mark by
+         *            {@linkplain CodeEviction#prepare() concurrent preparation}, and its code left unchanged since
+         */
+        void copy(TargetMethod targetMethod, boolean precopied) {
+            // preparation
+            final Pointer from = targetMethod.start().asPointer();
+            final Pointer to = cr.mark();
+            final Size size = targetMethod.size();
+            // first, address dispatch table entries
+            logCodeMotion(targetMethod, from, to, size);
+            patchDispatchTables(targetMethod, false);
+            // next, physically move the code
+            if (precopied) {
+                // only refresh the literals (which the GC may have updated) and the code array header
+                Memory.copyBytes(from, to, targetMethod.codeStart().toPointer().minus(from).asSize());
+            } else {
+                Memory.copyBytes(from, to, size);
+            }
+            assert invalidateCode(targetMethod.code()); // this invalidates the old code as targetMethod's pointers have not been changed yet!
+            targetMethod.setOldStart(targetMethod.start());
+            targetMethod.setStart(to);
+            final byte[] code = (byte[]) relocate(from, to, targetMethod.code());
+            final Pointer codeStart = to.plus(targetMethod.codeStart().toPointer().minus(from));
+            final byte[] scalarLiterals = targetMethod.scalarLiterals() == null ?
+                null : (byte[]) relocate(from, to, targetMethod.scalarLiterals());
+            final Object[] referenceLiterals = targetMethod.referenceLiterals() == null ?
+                null : (Object[]) relocate(from, to, targetMethod.referenceLiterals());
+            targetMethod.setCodeArrays(code, codeStart, scalarLiterals, referenceLiterals);
+            cr.setMark(cr.mark().plus(size));
+            CodeManager.runtimeBaselineCodeRegion.add(targetMethod);
+            targetMethod.survivedEviction();
+        }
+
         private Object relocate(Pointer fromBase, Pointer toBase, Object o) {
             if (o == null) {
                 return null;
@@ -492,13 +585,24 @@ public final class CodeEviction extends VmOperation {
     private enum Phase {
         DUMPING,
         PATCHING,
-        COMPACTING
+        COMPACTING,
+        MARKING_OPT
     }
 
     private Phase phase;
 
+    /**
+     * Specifies if this operation evicts optimized code rather than baseline code.
+     */
+    private final boolean opt;
+
     public CodeEviction() {
-        super("code cache cleaner", null, Mode.Safepoint);
+        this(false);
+    }
+
+    private CodeEviction(boolean opt) {
+        super(opt ? "opt code cache cleaner" : "code cache cleaner", null, Mode.Safepoint);
+        this.opt = opt;
     }
 
     private static int evictionCount = 0;
@@ -509,6 +613,18 @@ public final class CodeEviction extends VmOperation {
 
     private static CodeEviction codeEviction = new CodeEviction();
 
+    /**
+     * Select eviction candidates, record the code calling them and copy the likely survivors concurrently with the
+     * application, leaving only the final patch-up of stacks, dispatch tables and call sites to the safepoint.
+     */
+    static boolean ConcurrentCodeEviction;
+
+    static {
+        VMOptions.addFieldOption("-XX:", "ConcurrentCodeEviction", CodeEviction.class,
+            "Prepare baseline code eviction concurrently with the application to shorten the eviction pause.",
+            MaxineVM.Phase.STARTING);
+    }
+
     /**
      * Run a code eviction operation.
      */
@@ -516,11 +632,358 @@ public final class CodeEviction extends VmOperation {
         codeEviction.submit();
     }
 
+    /**
+     * Prepares the next code eviction operation on the current thread, concurrently with the application. This must be
+     * called with safepoints and allocation enabled, and must be followed by a call to {@link #run()} without releasing
+     * the {@link CodeManager} lock.
+     */
+    static void prepareConcurrently() {
+        codeEviction.prepare();
+    }
+
+    /**
+     * Specifies if the next eviction was {@linkplain #prepare() prepared} concurrently.
+     */
+    private boolean prepared;
+
+    /**
+     * Baseline methods that were not protected when the eviction was prepared: these are the candidates for eviction,
+     * unless they are found on a stack at the safepoint.
+     */
+    private TargetMethod[] candidates = new TargetMethod[DEFAULT_CAPACITY];
+    private int nCandidates;
+
+    /**
+     * Code that, when the eviction was prepared, directly called a candidate, or baseline code from outside the
+     * baseline code region.
+     */
+    private TargetMethod[] baselineCallers = new TargetMethod[DEFAULT_CAPACITY];
+    private int nBaselineCallers;
+
+    /**
+     * The survivors copied to the free semi-space when the eviction was prepared, in address order.
+     */
+    private TargetMethod[] precopied = new TargetMethod[DEFAULT_CAPACITY];
+    private boolean[] precopiedDirty;
+    private int nPrecopied;
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * Specifies if the current eviction only revisits the code recorded when it was {@linkplain #prepare() prepared}.
+     */
+    private boolean incremental;
+
+    /**
+     * Specifies if the callers whose call sites are patched are {@linkplain #notifyCallSitePatched(TargetMethod) recorded}.
+     */
+    private static volatile boolean trackPatchedCallers;
+
+    /**
+     * Callers whose call sites were patched since the eviction was prepared. This array is never grown, as it is
+     * filled by threads that may not be able to allocate. If it overflows, the eviction proceeds as if it had not
+     * been prepared.
+     */
+    private final TargetMethod[] patchedCallers = new TargetMethod[PATCHED_CALLERS_CAPACITY];
+    private volatile int nPatchedCallers;
+
+    private static final int PATCHED_CALLERS_CAPACITY = 1024;
+
+    @FOLD
+    private static int nPatchedCallersOffset() {
+        return ClassActor.fromJava(CodeEviction.class).findLocalInstanceFieldActor("nPatchedCallers").offset();
+    }
+
+    /**
+     * Notifies code eviction that a direct call site in a given target method is about to be patched. A concurrently
+     * prepared eviction must revisit such call sites, and cannot reuse the pre-copy of the method.
+     */
+    public static void notifyCallSitePatched(TargetMethod caller) {
+        if (trackPatchedCallers) {
+            codeEviction.recordPatchedCaller(caller);
+        }
+    }
+
+    private void recordPatchedCaller(TargetMethod caller) {
+        int index;
+        do {
+            index = nPatchedCallers;
+            if (index > PATCHED_CALLERS_CAPACITY) {
+                return;
+            }
+        } while (Reference.fromJava(this).compareAndSwapInt(nPatchedCallersOffset(), index, index + 1) != index);
+        if (index < PATCHED_CALLERS_CAPACITY) {
+            patchedCallers[index] = caller;
+        }
+        // else: overflow, denoted by nPatchedCallers exceeding the capacity
+    }
+
+    /**
+     * Prepares an eviction of baseline code concurrently with the application. The candidates for eviction are selected
+     * as the unprotected methods, the code calling them is recorded, and the other methods are copied to the free
+     * semi-space. Call sites patched from now on are {@linkplain #notifyCallSitePatched(TargetMethod) tracked}. The
+     * {@linkplain #doIt() eviction} itself then only needs to visit the recorded code, and to copy the candidates
+     * found on a stack and the pre-copied methods whose code changed in the meantime.
+     * <p>
+     * This must be called with the code manager locked, so that no code is added to the code cache until the eviction
+     * completes.
+     */
+    private void prepare() {
+        final SemiSpaceCodeRegion cr = CodeManager.runtimeBaselineCodeRegion;
+        // call sites patched while the code is scanned must be revisited
+        nPatchedCallers = 0;
+        trackPatchedCallers = true;
+
+        markProtectedMethods();
+        nCandidates = 0;
+        cr.doNewTargetMethods(candidateCollector);
+
+        nBaselineCallers = 0;
+        cr.doNewTargetMethods(baselineCallerCollector);
+        CodeManager.runtimeOptCodeRegion.doAllTargetMethods(baselineCallerCollector);
+        CodeManager.bootToBaselineDo(baselineCallerCollector);
+
+        nPrecopied = 0;
+        survivorPrecopier.to = cr.fromSpace.asPointer();
+        cr.doNewTargetMethods(survivorPrecopier);
+        // allocated here, as the eviction itself runs at a safepoint
+        precopiedDirty = new boolean[nPrecopied];
+
+        prepared = true;
+    }
+
+    final class CandidateCollector implements TargetMethod.Closure {
+        @Override
+        public boolean doTargetMethod(TargetMethod targetMethod) {
+            if (!targetMethod.isMarked()) {
+                if (nCandidates == candidates.length) {
+                    candidates = Arrays.copyOf(candidates, candidates.length * 2);
+                }
+                candidates[nCandidates++] = targetMethod;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Records the callers of candidates among the tentative survivors, and the callers of any baseline code outside
+     * the baseline code region.
+     */
+    final class BaselineCallerCollector implements TargetMethod.Closure {
+        @Override
+        public boolean doTargetMethod(TargetMethod targetMethod) {
+            final boolean baselineCaller = CodeManager.isShortlived(targetMethod);
+            if (baselineCaller && !targetMethod.isMarked()) {
+                return true;
+            }
+            final Safepoints safepoints = targetMethod.safepoints();
+            for (int spi = safepoints.nextDirectCall(0); spi >= 0; spi = safepoints.nextDirectCall(spi + 1)) {
+                final TargetMethod callee = readDirectCallTarget(targetMethod, safepoints.causePosAt(spi)).toTargetMethod();
+                if (callee != null && CodeManager.isShortlived(callee) && (!baselineCaller || !callee.isMarked())) {
+                    if (nBaselineCallers == baselineCallers.length) {
+                        baselineCallers = Arrays.copyOf(baselineCallers, baselineCallers.length * 2);
+                    }
+                    baselineCallers[nBaselineCallers++] = targetMethod;
+                    break;
+                }
+            }
+            return true;
+        }
+    }
+
+    final class SurvivorPrecopier implements TargetMethod.Closure {
+        Pointer to;
+
+        @Override
+        public boolean doTargetMethod(TargetMethod targetMethod) {
+            if (targetMethod.isMarked()) {
+                final Size size = targetMethod.size();
+                Memory.copyBytes(targetMethod.start().asPointer(), to, size);
+                to = to.plus(size);
+                if (nPrecopied == precopied.length) {
+                    precopied = Arrays.copyOf(precopied, precopied.length * 2);
+                }
+                precopied[nPrecopied++] = targetMethod;
+            }
+            return true;
+        }
+    }
+
+    private final CandidateCollector candidateCollector = new CandidateCollector();
+
+    private final BaselineCallerCollector baselineCallerCollector = new BaselineCallerCollector();
+
+    private final SurvivorPrecopier survivorPrecopier = new SurvivorPrecopier();
+
+    private static CodePointer readDirectCallTarget(TargetMethod tm, int callPos) {
+        if (platform().isa == ISA.AMD64) {
+            return AMD64TargetMethodUtil.readCall32Target(tm, callPos);
+        } else if (platform().isa == ISA.ARM) {
+            return ARMTargetMethodUtil.readCall32Target(tm, callPos);
+        }
+        throw FatalError.unimplemented("com.sun.max.vm.code.CodeEviction.readDirectCallTarget");
+    }
+
+    /**
+     * Revisits the code recorded by {@link #prepare()} and the code patched since, resetting the call sites that
+     * call stale methods.
+     */
+    private void invalidateRecordedDirectCalls() {
+        timerStart();
+        for (int i = 0; i < nBaselineCallers; i++) {
+            invalidateDirectCallsInRecorded(baselineCallers[i]);
+        }
+        for (int i = 0; i < nPatchedCallers; i++) {
+            invalidateDirectCallsInRecorded(patchedCallers[i]);
+        }
+        // the candidates found on a stack were not scanned when preparing
+        for (int i = 0; i < nCandidates; i++) {
+            if (candidates[i].isMarked()) {
+                invalidateDirectCallsInRecorded(candidates[i]);
+            }
+        }
+        tInvalidateCallsBaseline = timerEnd();
+        tInvalidateCallsOpt = 0;
+        tInvalidateCallsBoot = 0;
+        logDirectCallNumbers();
+    }
+
+    private void invalidateDirectCallsInRecorded(TargetMethod tm) {
+        if (tm == null || tm.isWiped()) {
+            return;
+        }
+        if (CodeManager.isShortlived(tm)) {
+            if (!tm.isMarked()) {
+                // stale itself
+                return;
+            }
+            ++nBaseMeth;
+            nCallBaseline += patchDirectCallsIn(tm);
+        } else if (CodeManager.runtimeOptCodeRegion.contains(tm.start())) {
+            ++nOptMeth;
+            nCallOpt += patchDirectCallsIn(tm);
+        } else {
+            ++nBootMeth;
+            nCallBoot += patchDirectCallsIn(tm);
+        }
+    }
+
+    /**
+     * Copies the survivors pre-copied by {@link #prepare()} first, so that they end up where they were pre-copied to.
+     * A pre-copy is reused unless the code of the method may have changed since, i.e., if a call site in it was
+     * patched or it was invalidated.
+     */
+    private void copyPrecopiedSurvivors() {
+        final SemiSpaceCodeRegion cr = CodeManager.runtimeBaselineCodeRegion;
+        final boolean[] dirty = precopiedDirty;
+        for (int i = 0; i < nPatchedCallers; i++) {
+            final TargetMethod tm = patchedCallers[i];
+            if (tm != null) {
+                final int index = Arrays.binarySearch(precopied, 0, nPrecopied, tm, CodeRegion.COMPARATOR);
+                if (index >= 0) {
+                    dirty[index] = true;
+                }
+            }
+        }
+        Pointer precopy = cr.mark();
+        for (int i = 0; i < nPrecopied; i++) {
+            final TargetMethod tm = precopied[i];
+            // methods marked when preparing stay marked, hence survive
+            assert !tm.isWiped() : "pre-copied method was evicted: " + tm;
+            copySurvivors.copy(tm, !dirty[i] && tm.invalidated() == null && precopy.equals(cr.mark()));
+            precopy = precopy.plus(tm.size());
+        }
+    }
+
+    /**
+     * Fixes the calls to moved baseline code in the optimized and boot code recorded by {@link #prepare()}, and in the
+     * code patched since.
+     */
+    private void fixRecordedCallSitesForMovedCode() {
+        timerStart();
+        optFixCalls.fixed = 0;
+        for (int i = 0; i < nBaselineCallers; i++) {
+            fixCallSitesInRecorded(baselineCallers[i]);
+        }
+        for (int i = 0; i < nPatchedCallers; i++) {
+            fixCallSitesInRecorded(patchedCallers[i]);
+        }
+        nCallOpt = optFixCalls.fixed;
+        tFixCallsOpt = timerEnd();
+    }
+
+    private void clearRecorded() {
+        Arrays.fill(candidates, 0, nCandidates, null);
+        Arrays.fill(baselineCallers, 0, nBaselineCallers, null);
+        Arrays.fill(precopied, 0, nPrecopied, null);
+        Arrays.fill(patchedCallers, 0, Math.min(nPatchedCallers, PATCHED_CALLERS_CAPACITY), null);
+        nCandidates = 0;
+        nBaselineCallers = 0;
+        nPrecopied = 0;
+        precopiedDirty = null;
+    }
+
+    private void fixCallSitesInRecorded(TargetMethod tm) {
+        if (tm != null && !CodeManager.isShortlived(tm) && !CodeManager.runtimeBaselineCodeRegion.isInFromSpace(tm.start())) {
+            optFixCalls.doTargetMethod(tm);
+        }
+    }
+
+    /**
+     * Trace opt code eviction cycles.
+     */
+    private static boolean TraceOptCodeEviction;
+
+    static {
+        VMOptions.addFieldOption("-XX:", "TraceOptCodeEviction", CodeEviction.class,
+            "Trace the eviction of cold optimized code.", MaxineVM.Phase.STARTING);
+    }
+
+    /**
+     * Number of opt code eviction cycles run so far. Target methods record their activity in terms of this epoch.
+     */
+    private static int optEvictionEpoch = 0;
+
+    public static int optEvictionEpoch() {
+        return optEvictionEpoch;
+    }
+
+    private static CodeEviction optCodeEviction = new CodeEviction(true);
+
+    /**
+     * Run an opt code eviction operation.
+     *
+     * @param evictAllInactive specifies if all optimized code not on any stack is to be evicted, regardless of its activity
+     */
+    public static void runOpt(boolean evictAllInactive) {
+        optCodeEviction.evictAllInactive = evictAllInactive;
+        optCodeEviction.submit();
+    }
+
+    private boolean evictAllInactive;
+
+    private TargetMethod[] optEvicted = new TargetMethod[DEFAULT_OPT_EVICTED_SIZE];
+
+    private static final int DEFAULT_OPT_EVICTED_SIZE = 16;
+
+    private int nOptEvicted;
+
+    private int nOptUnlinked;
+
     @Override
     protected void doIt() {
+        if (opt) {
+            evictOptCode();
+            return;
+        }
 
         ++evictionCount;
 
+        // no mutator is running anymore: stop tracking patched call sites
+        trackPatchedCallers = false;
+        incremental = prepared && nPatchedCallers <= PATCHED_CALLERS_CAPACITY;
+        prepared = false;
+
         if (codeEvictionLogger.enabled()) {
             codeEvictionLogger.logRun("starting", evictionCount, callingThread());
         }
@@ -545,7 +1008,11 @@ public final class CodeEviction extends VmOperation {
         markProtectedMethods();
         tMarkProtected = timerEnd();
 
-        invalidateDirectCalls();
+        if (incremental) {
+            invalidateRecordedDirectCalls();
+        } else {
+            invalidateDirectCalls();
+        }
 
         timerStart();
         invalidateDispatchTableEntries();
@@ -569,6 +1036,7 @@ public final class CodeEviction extends VmOperation {
 
         fixCallSitesForMovedCode();
         logFixed();
+        clearRecorded();
 
         timerStart();
         doAllThreads();
@@ -599,6 +1067,93 @@ public final class CodeEviction extends VmOperation {
 
     }
 
+    /**
+     * Evicts cold optimized code from the opt code region. Unlike baseline code, optimized code is never moved: the
+     * space of evicted methods is reclaimed in place by the {@link NonMovingCodeRegion}.
+     */
+    private void evictOptCode() {
+        final NonMovingCodeRegion cr = CodeManager.runtimeOptCodeRegion;
+        ++optEvictionEpoch;
+        final Size usedBefore = cr.usedSpace();
+        final long start = System.nanoTime();
+
+        // identify live (on stack) methods
+        phase = Phase.MARKING_OPT;
+        doAllThreads();
+
+        // select the methods to be unlinked or evicted
+        nOptEvicted = 0;
+        nOptUnlinked = 0;
+        cr.doAllTargetMethods(coldOptMethodsSelector);
+
+        CodeManager.Inspect.notifyEvictionStarted(cr);
+
+        // reset all direct calls and dispatch table entries referring to them
+        CodeManager.runtimeBaselineCodeRegion.doNewTargetMethods(invalidateAllBaselineDirectCalls);
+        cr.doAllTargetMethods(invalidateOptDirectCalls);
+        invalidateBootDirectCalls();
+        cr.doAllTargetMethods(unlinkColdOptMethods);
+
+        // evict
+        int evictedBytes = 0;
+        for (int i = 0; i < nOptEvicted; i++) {
+            final TargetMethod tm = optEvicted[i];
+            optEvicted[i] = null;
+            final ClassMethodActor cma = tm.classMethodActor;
+            VMTI.handler().methodUnloaded(cma, tm.codeStart().toPointer());
+            // Invalidation keeps deoptimization and on-stack replacement away from the evicted code.
+            tm.invalidate(new InvalidationMarker(tm));
+            if (cma.compiledState instanceof Compilations) {
+                final Compilations compilations = (Compilations) cma.compiledState;
+                if (compilations.optimized == tm) {
+                    final TargetMethod baseline = compilations.baseline;
+                    if (baseline != null && !baseline.isWiped()) {
+                        cma.compiledState = new Compilations(baseline, null);
+                        final MethodProfile mp = baseline.profile();
+                        if (mp != null) {
+                            // the baseline code must warm up again before the method is recompiled
+                            mp.installationPending = false;
+                            mp.entryBackedgeCount = MethodInstrumentation.initialEntryBackedgeCount;
+                        }
+                    } else {
+                        cma.compiledState = Compilations.EMPTY;
+                    }
+                }
+            }
+            evictedBytes += tm.size().toInt();
+            CompilationManagement.recordEviction(tm);
+            assert invalidateCode(tm.code());
+            tm.wipe();
+        }
+        cr.sweep();
+
+        CodeManager.Inspect.notifyEvictionCompleted(cr);
+
+        if (TraceOptCodeEviction) {
+            final boolean lockDisabledSafepoints = Log.lock();
+            Log.print("Opt code eviction #");
+            Log.print(optEvictionEpoch);
+            Log.print(evictAllInactive ? " (all inactive)" : "");
+            Log.print(": unlinked ");
+            Log.print(nOptUnlinked);
+            Log.print(" methods, evicted ");
+            Log.print(nOptEvicted);
+            Log.print(" methods (");
+            Log.print(evictedBytes);
+            Log.print(" bytes), used ");
+            Log.print(usedBefore.toLong());
+            Log.print(" -> ");
+            Log.print(cr.usedSpace().toLong());
+            Log.print(" of ");
+            Log.print(cr.size().toLong());
+            Log.print(" bytes, ");
+            Log.print((System.nanoTime() - start) / 1000);
+            Log.println(" us");
+            Log.unlock(lockDisabledSafepoints);
+        }
+        resetCounters();
+    }
+
     /**
      * Perform a specific action for a given thread.
      * This method is invoked multiple times during the execution of {@linkplain #doIt()}.
@@ -623,6 +1178,9 @@ public final class CodeEviction extends VmOperation {
                 // collect all reachable baseline methods
                 walker.inspect(ip, sp, fp, liveMethodsMarker);
                 break;
+            case MARKING_OPT:
+                walker.inspect(ip, sp, fp, liveOptMethodsMarker);
+                break;
             case COMPACTING:
                 // walk all stacks, patching PC values, return addresses, and local variables
                 logThread(vmThread);
@@ -644,6 +1202,14 @@ public final class CodeEviction extends VmOperation {
 
     private final ProtectedMethodsMarker protectedMethodsMarker = new ProtectedMethodsMarker();
 
+    private final LiveOptMethodsMarker liveOptMethodsMarker = new LiveOptMethodsMarker();
+
+    private final ColdOptMethodsSelector coldOptMethodsSelector = new ColdOptMethodsSelector();
+
+    private final UnlinkColdOptMethods unlinkColdOptMethods = new UnlinkColdOptMethods();
+
+    private final InvalidateAllBaselineDirectCalls invalidateAllBaselineDirectCalls = new InvalidateAllBaselineDirectCalls();
+
     private final StackPatcher stackPatcher = new StackPatcher();
 
     private final CodePointerRelocator codePointerRelocator = new CodePointerRelocator();
@@ -866,6 +1432,9 @@ public final class CodeEviction extends VmOperation {
     }
 
     private boolean isStaleCallee(TargetMethod tm) {
+        if (opt) {
+            return tm != null && tm.activityEpoch() == -optEvictionEpoch && CodeManager.runtimeOptCodeRegion.contains(tm.codeStart().toAddress());
+        }
         return tm != null && CodeManager.runtimeBaselineCodeRegion.contains(tm.codeStart().toAddress()) && !tm.isMarked() && !tm.isWiped();
     }
 
@@ -880,6 +1449,9 @@ public final class CodeEviction extends VmOperation {
         }
         cr.flip();
         logCodeCacheBoundaries(cr);
+        if (incremental) {
+            copyPrecopiedSurvivors();
+        }
         cr.doOldTargetMethods(copySurvivors);
         if (logging()) {
             codeEvictionLogger.logMove_Progress("copying done!");
@@ -902,6 +1474,19 @@ public final class CodeEviction extends VmOperation {
         nCallBaseline = baselineFixCalls.fixed;
         tFixCallsBaseline = timerEnd();
 
+        if (incremental) {
+            if (logging()) {
+                codeEvictionLogger.logMove_Progress("recorded optimised and boot code ...");
+            }
+            fixRecordedCallSitesForMovedCode();
+            nCallBoot = 0;
+            tFixCallsBoot = 0;
+            if (logging()) {
+                codeEvictionLogger.logMove_Progress("fixing done!");
+            }
+            return;
+        }
+
         if (logging()) {
             codeEvictionLogger.logMove_Progress("optimised code ...");
         }
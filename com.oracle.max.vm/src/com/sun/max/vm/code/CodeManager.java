@@ -99,6 +99,53 @@ public abstract class CodeManager {
             "Enforce baseline code cache contention every N method allocations.", MaxineVM.Phase.STARTING);
     }
 
+    /**
+     * Enables the eviction of cold optimized code from the opt code region.
+     */
+    public static boolean OptCodeEviction = true;
+
+    /**
+     * Occupancy of the opt code region, in percent, above which cold optimized code is evicted.
+     */
+    public static int OptCodeEvictionThreshold = 90;
+
+    static {
+        VMOptions.addFieldOption("-XX:", "OptCodeEviction", CodeManager.class,
+            "Evict cold optimized code when the opt code region fills up.", MaxineVM.Phase.STARTING);
+        VMOptions.addFieldOption("-XX:", "OptCodeEvictionThreshold", CodeManager.class,
+            "Occupancy of the opt code region (in percent) that triggers the eviction of cold optimized code.", MaxineVM.Phase.STARTING);
+    }
+
+    /**
+     * Occupancy of the opt code region above which the next opt code eviction cycle is run.
+     * See {@link #updateOptEvictionTrigger()}.
+     */
+    private Size optEvictionTrigger = Size.zero();
+
+    /**
+     * Computes the occupancy of the opt code region that triggers the next opt code eviction cycle: halfway between
+     * the current occupancy and the capacity of the region, and no lower than {@link #OptCodeEvictionThreshold}.
+     * The trigger thus backs off when most optimized code survives eviction, as each cycle needs to observe a method
+     * as inactive twice before it is evicted.
+     */
+    private void updateOptEvictionTrigger() {
+        final Size capacity = runtimeOptCodeRegion.size();
+        final Size used = runtimeOptCodeRegion.usedSpace();
+        final Size threshold = capacity.dividedBy(100).times(Math.min(Math.max(OptCodeEvictionThreshold, 0), 100));
+        final Size halfway = used.plus(capacity.minus(used).dividedBy(2));
+        optEvictionTrigger = halfway.greaterThan(threshold) ? halfway : threshold;
+    }
+
+    /**
+     * Runs an opt code eviction cycle.
+     *
+     * @param aggressive specifies if all optimized code not currently executing is to be evicted
+     */
+    private void evictOptCode(boolean aggressive) {
+        CodeEviction.runOpt(aggressive);
+        updateOptEvictionTrigger();
+    }
+
     /**
      * Categorization of how long a method is destined to stay around.
      */
@@ -127,7 +174,7 @@ public abstract class CodeManager {
      * The opt code region contains machine code generated by the optimising compiler as well as adapters and trampolines.
      */
     @INSPECTED
-    protected static final CodeRegion runtimeOptCodeRegion = new CodeRegion("Code-Runtime-Opt");
+    protected static final NonMovingCodeRegion runtimeOptCodeRegion = new NonMovingCodeRegion("Code-Runtime-Opt");
 
     /**
      * Get the runtime baseline code region.
@@ -154,7 +201,7 @@ public abstract class CodeManager {
     private static int BOOT_TO_BASELINE_INITIAL_SIZE = 10;
 
     /**
-     * Records all direct call links from the boot code region to the baseline code region.
+     * Records all direct call links from the boot code region to the runtime (baseline and opt) code regions.
      */
     private static TargetMethod[] bootToBaseline = new TargetMethod[BOOT_TO_BASELINE_INITIAL_SIZE];
 
@@ -218,6 +265,14 @@ public abstract class CodeManager {
 
             start = Layout.originToCell(Reference.fromJava(buf).toOrigin());
         } else {
+            if (!isHosted() && lifespan == Lifespan.LONG && OptCodeEviction) {
+                if (optEvictionTrigger.isZero()) {
+                    updateOptEvictionTrigger();
+                }
+                if (runtimeOptCodeRegion.usedSpace().plus(allocationSize).greaterThan(optEvictionTrigger)) {
+                    evictOptCode(false);
+                }
+            }
             if (!isHosted()) {
                 // The allocation and initialization of objects in a code region must be atomic with respect to garbage collection.
                 mustReenableSafepoints = !SafepointPoll.disable();
@@ -239,6 +294,14 @@ public abstract class CodeManager {
 
             // Allocation in the baseline code region may take another attempt upon contention, after compaction.
             if (start.isZero() && currentCodeRegion == runtimeBaselineCodeRegion) {
+                if (CodeEviction.ConcurrentCodeEviction && mustReenableSafepoints) {
+                    // the code manager stays locked, so no code is added until the eviction completes
+                    Heap.enableAllocationForCurrentThread();
+                    SafepointPoll.enable();
+                    CodeEviction.prepareConcurrently();
+                    mustReenableSafepoints = !SafepointPoll.disable();
+                    Heap.disableAllocationForCurrentThread();
+                }
                 CodeEviction.run();
                 assert validateCodeCache();
                 start = currentCodeRegion.allocate(allocationSize, false);
@@ -246,6 +309,16 @@ public abstract class CodeManager {
                     CodeEviction.codeEvictionLogger.logStats_Surviving(lastSurvivorSize, largestSurvivorSize);
                 }
             }
+
+            // Allocation in the opt code region may take further attempts, after evicting cold and then all inactive optimized code.
+            if (start.isZero() && currentCodeRegion == runtimeOptCodeRegion && OptCodeEviction) {
+                evictOptCode(false);
+                start = currentCodeRegion.allocate(allocationSize, false);
+                if (start.isZero()) {
+                    evictOptCode(true);
+                    start = currentCodeRegion.allocate(allocationSize, false);
+                }
+            }
         }
 
         traceChunkAllocation(allocationTraceDescription, allocationSize, start, inHeap);
@@ -295,6 +368,8 @@ public abstract class CodeManager {
         targetMethod.setCodeArrays(code, codeStart, scalarLiterals, referenceLiterals);
         if (currentCodeRegion == runtimeBaselineCodeRegion) {
             targetMethod.protect();
+        } else if (currentCodeRegion == runtimeOptCodeRegion) {
+            targetMethod.recordActivity();
         }
 
         if (!MaxineVM.isHosted()) {
@@ -446,6 +521,13 @@ public abstract class CodeManager {
         return runtimeOptCodeRegionSize.getValue();
     }
 
+    /**
+     * Determines if a given code address lies in one of the runtime code regions, i.e., in code that may be evicted.
+     */
+    public static boolean isRuntimeCode(Address codeAddress) {
+        return runtimeBaselineCodeRegion.contains(codeAddress) || runtimeOptCodeRegion.contains(codeAddress);
+    }
+
     /**
      * By definition, short-lived methods go to the baseline code region.
      */
@@ -192,6 +192,11 @@ public class CodeRegion extends LinearAllocatorRegion {
         additionCompletedCount++;       // The array becomes once again inspectable
 
         assert start().alignUp(FIND_INDEX_ALIGN).equals(start());
+        if (insertionPoint != length - 1) {
+            // the indexes of all methods following the insertion point have changed
+            rebuildFindIndex();
+            return;
+        }
         int startIdx = targetMethod.start().plus(FIND_INDEX_ALIGN - 1).minus(start()).unsignedShiftedRight(FIND_INDEX_ALIGN_SHIFT).toInt();
         int endIdx = targetMethod.end().minus(1).minus(start()).unsignedShiftedRight(FIND_INDEX_ALIGN_SHIFT).toInt();
         if (endIdx >= findIndex.length) {
@@ -203,6 +208,25 @@ public class CodeRegion extends LinearAllocatorRegion {
         }
     }
 
+    /**
+     * Recomputes {@link #findIndex} from scratch. Each page is mapped to the first method ending after the beginning
+     * of the page, which is the method covering the beginning of the page unless it lies in space not occupied by any
+     * method.
+     */
+    protected final void rebuildFindIndex() {
+        Arrays.fill(findIndex, 0);
+        int page = 0;
+        for (int i = 0; i < length; i++) {
+            int endIdx = targetMethods[i].end().minus(1).minus(start()).unsignedShiftedRight(FIND_INDEX_ALIGN_SHIFT).toInt();
+            if (endIdx >= findIndex.length) {
+                findIndex = Arrays.copyOf(findIndex, (endIdx * 3) / 2 + 1);
+            }
+            while (page <= endIdx) {
+                findIndex[page++] = i;
+            }
+        }
+    }
+
     /**
      * Looks up the target method containing a particular address, using the index.
      *
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.vm.code;
+
+import java.lang.management.*;
+import java.util.*;
+
+import com.sun.max.unsafe.*;
+import com.sun.max.vm.compiler.target.*;
+import com.sun.max.vm.heap.*;
+
+/**
+ * A code region whose target methods never move. The space of target methods
+ * {@linkplain TargetMethod#wipe() wiped} by {@linkplain CodeEviction code eviction} is {@linkplain #sweep() reclaimed}
+ * and reused by subsequent allocations once the allocation mark has reached the end of the region.
+ * <p>
+ * The region remains parsable by the GC at all times: reclaimed space that is not at the top of the region is
+ * formatted as dead objects.
+ */
+public final class NonMovingCodeRegion extends CodeRegion {
+
+    /**
+     * Number of bytes below the allocation mark that are not occupied by any target method.
+     */
+    private Size freeSpace = Size.zero();
+
+    public NonMovingCodeRegion(String description) {
+        super(description);
+    }
+
+    /**
+     * Gets the number of bytes in this region occupied by target methods.
+     */
+    public Size usedSpace() {
+        return getAllocationMark().minus(start()).asSize().minus(freeSpace);
+    }
+
+    @Override
+    public MemoryUsage getUsage() {
+        final long sizeAsLong = size().toLong();
+        return new MemoryUsage(sizeAsLong, usedSpace().toLong(), sizeAsLong, sizeAsLong);
+    }
+
+    /**
+     * Allocates some memory from this region. Memory is allocated linearly as in {@link LinearAllocatorRegion} until
+     * the end of the region is reached, and from the space reclaimed from evicted target methods (first fit) after that.
+     */
+    @Override
+    public Pointer allocate(Size size, boolean adjustForDebugTag) {
+        Pointer cell = super.allocate(size, adjustForDebugTag);
+        if (cell.isZero() && !adjustForDebugTag && size.lessEqual(freeSpace)) {
+            cell = allocateInFreeSpace(size);
+        }
+        return cell;
+    }
+
+    private Pointer allocateInFreeSpace(Size size) {
+        final Size minObjectSize = HeapSchemeAdaptor.minObjectSize();
+        Address gapStart = start();
+        for (int i = 0; i <= length; i++) {
+            final Address gapEnd = i < length ? targetMethods[i].start() : getAllocationMark();
+            final Size gapSize = gapEnd.minus(gapStart).asSize();
+            if (gapSize.equals(size) || gapSize.greaterEqual(size.plus(minObjectSize))) {
+                final Pointer cell = gapStart.asPointer();
+                if (gapSize.greaterThan(size)) {
+                    HeapSchemeAdaptor.fillWithDeadObject(cell.plus(size), gapEnd.asPointer());
+                }
+                freeSpace = freeSpace.minus(size);
+                return cell;
+            }
+            if (i < length) {
+                gapStart = targetMethods[i].end();
+            }
+        }
+        return Pointer.zero();
+    }
+
+    /**
+     * Removes all {@linkplain TargetMethod#isWiped() wiped} target methods from this region and makes their space
+     * available for allocation. This must only be called during code eviction, once no code, dispatch table entry or
+     * stack frame refers to the wiped methods anymore.
+     *
+     * @return the number of bytes reclaimed
+     */
+    public Size sweep() {
+        final Size usedBefore = usedSpace();
+        int live = 0;
+        for (int i = 0; i < length; i++) {
+            final TargetMethod tm = targetMethods[i];
+            if (tm.isWiped()) {
+                HeapSchemeAdaptor.fillWithDeadObject(tm.start().asPointer(), tm.end().asPointer());
+            } else {
+                targetMethods[live++] = tm;
+            }
+        }
+        Arrays.fill(targetMethods, live, length, null);
+        length = live;
+
+        // Space at the top of the region is given back to linear allocation.
+        setMark(length == 0 ? start() : targetMethods[length - 1].end());
+        Size used = Size.zero();
+        for (int i = 0; i < length; i++) {
+            used = used.plus(targetMethods[i].size());
+        }
+        freeSpace = getAllocationMark().minus(start()).asSize().minus(used);
+        rebuildFindIndex();
+        return usedBefore.minus(used);
+    }
+
+    @Override
+    protected boolean validMethodStart(TargetMethod tm, Address address) {
+        // the address may lie in reclaimed space preceding tm
+        return true;
+    }
+
+    @Override
+    public TargetMethod find(Address cp) {
+        final TargetMethod tm = super.find(cp);
+        if (tm != null && tm.start().greaterThan(cp)) {
+            // cp lies in reclaimed space
+            return null;
+        }
+        return tm;
+    }
+}
@@ -46,6 +46,7 @@ import com.sun.max.vm.compiler.target.aarch64.Aarch64TargetMethodUtil;
 import com.sun.max.vm.compiler.target.amd64.*;
 import com.sun.max.vm.compiler.target.arm.*;
 import com.sun.max.vm.heap.*;
+import com.sun.max.vm.management.*;
 import com.sun.max.vm.object.*;
 import com.sun.max.vm.profile.*;
 import com.sun.max.vm.runtime.*;
@@ -91,6 +92,7 @@ public class CompilationBroker {
     private static boolean FailOverCompilation = true;
     private static boolean VMExtOpt;
     static int PrintCodeCacheMetrics;
+    private static boolean RegisterCompilationMXBean;
 
     private static boolean offline = false;
     private static boolean simulateAdapter = false;
@@ -98,7 +100,7 @@ public class CompilationBroker {
     @HOSTED_ONLY
     private static boolean needOfflineAdapters = false;
 
-    private static boolean BackgroundCompilation = false;
+    private static boolean BackgroundCompilation = true;
     private static boolean backgroundCompilationInitialized = false;
 
     static {
@@ -108,7 +110,8 @@ public class CompilationBroker {
         addFieldOption("-XX:", "PrintCodeCacheMetrics", CompilationBroker.class, "Print code cache metrics (0 = disabled, 1 = summary, 2 = verbose).");
         addFieldOption("-XX:", "VMExtOpt", CompilationBroker.class, "Compile VM extensions with optimizing compiler (default: false");
         addFieldOption("-XX:", "AddCompiler", CompilationBroker.class, "Add a compiler, Name:Class");
-        addFieldOption("-XX:", "BackgroundCompilation", CompilationBroker.class, "Enable background compilation (default: false)");
+        addFieldOption("-XX:", "BackgroundCompilation", CompilationBroker.class, "Enable background compilation of optimized code (default: true)");
+        addFieldOption("-XX:", "RegisterCompilationMXBean", CompilationBroker.class, "Register the compilation telemetry MXBean with the platform MBean server at startup.");
     }
 
     @RESET
@@ -301,6 +304,17 @@ public class CompilationBroker {
         return "optimizing-only";
     }
 
+    /**
+     * Gets the name of the compilers, as reported by the {@link java.lang.management.CompilationMXBean}.
+     */
+    public String compilerName() {
+        String name = optimizingCompiler.getClass().getSimpleName();
+        if (baselineCompiler != null) {
+            name = baselineCompiler.getClass().getSimpleName() + "/" + name;
+        }
+        return "Maxine " + name + " compilers";
+    }
+
     /**
      * Gets the set of system properties which are used to configure the compilers.
      */
@@ -342,6 +356,7 @@ public class CompilationBroker {
             if (opt) {
                 defaultCompiler = optimizingCompiler;
             }
+            OnStackReplacement.initialize();
 
             if (RCT != 0 && baselineCompiler != null) {
                 MethodInstrumentation.enable(RCT);
@@ -361,6 +376,9 @@ public class CompilationBroker {
                     }
                 });
             }
+            if (RegisterCompilationMXBean) {
+                CompilationManagement.registerMXBean();
+            }
         }
     }
 
@@ -424,6 +442,19 @@ public class CompilationBroker {
         }
     }
 
+    /**
+     * Requests the compilation of an OSR target method by the compilation threads.
+     *
+     * @return {@code false} if there is no background compilation, in which case the caller must compile it
+     */
+    boolean addOSRCompilationToQueue(OnStackReplacement.OSREntry entry) {
+        if (!backgroundCompilationInitialized) {
+            return false;
+        }
+        compilationThreadPool.addOSRCompilationToQueue(entry);
+        return true;
+    }
+
     /**
      * Produces a target method for the specified method actor. If another thread is currently
      * compiling {@code cma}, then the result of that compilation is returned. Otherwise,
@@ -455,6 +486,14 @@ public class CompilationBroker {
                         assert nature == null : "cannot retry if specific compilation nature is specified";
                         compilation.compiler = selectRetryCompiler(cma, nature, compilation.compiler);
                     } else {
+                        if (nature == null && backgroundCompilationInitialized && compilation.nature == Nature.OPT) {
+                            // an optimizing compilation is pending in the background: don't block the
+                            // current thread waiting for it if the method can be executed already
+                            TargetMethod current = Compilations.currentTargetMethod(compilation.prevCompilations, null);
+                            if (current != null) {
+                                return current;
+                            }
+                        }
                         // the method is currently being compiled, just wait for the result
                         doCompile = false;
                     }
@@ -577,6 +616,11 @@ public class CompilationBroker {
                             // compile VM extensions with the opt compiler (cf isHosted)
                             reason = "vm";
                             compiler = optimizingCompiler;
+                        } else if (!isDeopt && optimizingCompiler instanceof PersistentCodeCompiler &&
+                                        ((PersistentCodeCompiler) optimizingCompiler).hasPersistedCode(cma)) {
+                            // install the optimized code of a previous run instead of warming up again
+                            reason = "persisted";
+                            compiler = optimizingCompiler;
                         } else {
                             compiler = defaultCompiler;
                         }
@@ -632,7 +676,36 @@ public class CompilationBroker {
     }
 
     /**
-     * Handles an instrumentation counter overflow upon entry to a profiled method.
+     * Handles an instrumentation counter overflow upon a taken backward branch in a profiled baseline method by
+     * attempting to {@linkplain OnStackReplacement replace} the frame executing the loop with a frame of optimized code.
+     * This method must be called on the thread that overflowed the counter. It does not return if the frame was replaced.
+     * It is only called when {@linkplain OnStackReplacement#enabled OSR is enabled}: otherwise, the counter keeps counting down
+     * and recompilation is triggered on the next entry to the method.
+     *
+     * @param mpo profiling object (including the method itself)
+     */
+    public static void backwardBranchCounterOverflow(MethodProfile mpo) {
+        if (mpo.compilationDisabled) {
+            mpo.entryBackedgeCount = Integer.MAX_VALUE;
+            return;
+        }
+        if (Heap.isAllocationDisabledForCurrentThread() || (!backgroundCompilationInitialized && Compilation.isCompilationRunningInCurrentThread())) {
+            // We don't want to see another counter overflow in the near future
+            mpo.entryBackedgeCount = 1000;
+            return;
+        }
+        OnStackReplacement.replace(mpo);
+
+        // The frame could not be replaced at this loop: recompile the method for its next invocations instead.
+        instrumentationCounterOverflow(mpo, null);
+        if (mpo.entryBackedgeCount <= 0) {
+            mpo.entryBackedgeCount = 1000;
+        }
+    }
+
+    /**
+     * Handles an instrumentation counter overflow upon entry to a profiled method, or an entry to a profiled method
+     * whose optimized version is {@linkplain MethodProfile#installationPending pending installation}.
      * This method must be called on the thread that overflowed the counter.
      *
      * @param mpo      profiling object (including the method itself)
@@ -640,6 +713,7 @@ public class CompilationBroker {
      */
     public static void instrumentationCounterOverflow(MethodProfile mpo, Object receiver) {
         if (mpo.compilationDisabled) {
+            mpo.installationPending = false;
             mpo.entryBackedgeCount = Integer.MAX_VALUE;
             return;
         }
@@ -661,7 +735,14 @@ public class CompilationBroker {
         TargetMethod newMethod = Compilations.currentTargetMethod(cma.compiledState, null);
 
         if (oldMethod == newMethod || newMethod == null) {
-            if (!(cma.compiledState instanceof Compilation)) {
+            final Object compiledState = cma.compiledState;
+            if (compiledState instanceof Compilation) {
+                // A compilation is pending: the method is still hot, so raise its priority in the compilation queue
+                final CompilationThreadPool pool = vm().compilationBroker.compilationThreadPool;
+                if (pool != null) {
+                    pool.addRequest((Compilation) compiledState);
+                }
+            } else {
                 // There is no newer compiled version available yet that we could just patch to, so recompile
                 logCounterOverflow(mpo, "");
                 try {
@@ -685,7 +766,11 @@ public class CompilationBroker {
         } else {
             assert newMethod != null : oldMethod;
             logPatching(cma, oldMethod, newMethod);
-            mpo.entryBackedgeCount = 0;
+            // Keep patching the callers that still reach the baseline code on their next invocation
+            mpo.installationPending = true;
+            if (mpo.entryBackedgeCount <= 0) {
+                mpo.entryBackedgeCount = 1000;
+            }
 
             if (receiver != null) {
                 Address from = oldMethod.getEntryPoint(VTABLE_ENTRY_POINT).toAddress();
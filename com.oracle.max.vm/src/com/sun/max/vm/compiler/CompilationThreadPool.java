@@ -28,18 +28,106 @@ import com.sun.max.vm.*;
 import com.sun.max.vm.actor.member.*;
 import com.sun.max.vm.Log;
 import com.sun.max.vm.compiler.target.*;
+import com.sun.max.vm.profile.*;
 import com.sun.max.vm.thread.*;
 import com.sun.max.vm.ti.*;
 
 /**
  * This class implements a thread pool that maintains a variable number of compilation threads.
+ * <p>
+ * Only optimizing compilations are performed in the background. Pending compilations are kept in a binary heap
+ * in which the compilation with the highest {@linkplain #priority(Compilation) priority} is served first.
+ * The priority of a compilation is derived from the {@linkplain MethodProfile#entryBackedgeCount invocation and backward
+ * branch counter} of the method being compiled and the number of times the compilation was requested while pending,
+ * so that hot methods don't wait behind the many cold methods that reach the compilation threshold during
+ * class-loading bursts. Pending compilations also age, so that no compilation waits forever.
+ * <p>
+ * Compilations that have been superseded by another compilation of the same method while they were pending are
+ * {@linkplain Compilation#cancelIfSuperseded() cancelled} instead of being performed.
+ * <p>
+ * {@linkplain OnStackReplacement On-stack replacement} target methods are compiled before any other method, in the
+ * order they were requested, as they are only requested for loops that are running hot.
  */
 public class CompilationThreadPool {
 
     /**
-     * A queue of pending compilations.
+     * A priority queue of pending compilations, implemented as a binary heap. Each compilation records its
+     * {@linkplain Compilation#queueIndex index} in the heap, so that its priority can be raised in place.
      */
-    private final LinkedList<Compilation> pending = new LinkedList<Compilation>();
+    private static final class CompilationQueue {
+        Compilation[] heap = new Compilation[64];
+        int size;
+
+        /**
+         * Number of compilations dequeued, used as the clock for aging pending compilations.
+         */
+        long clock;
+
+        void add(Compilation compilation) {
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size * 2);
+            }
+            set(size++, compilation);
+            siftUp(compilation.queueIndex);
+        }
+
+        Compilation removeFirst() {
+            Compilation first = heap[0];
+            Compilation last = heap[--size];
+            heap[size] = null;
+            if (size > 0) {
+                set(0, last);
+                siftDown(0);
+            }
+            first.queueIndex = -1;
+            return first;
+        }
+
+        void siftUp(int index) {
+            Compilation compilation = heap[index];
+            while (index > 0) {
+                int parent = (index - 1) >> 1;
+                if (heap[parent].queuePriority >= compilation.queuePriority) {
+                    break;
+                }
+                set(index, heap[parent]);
+                index = parent;
+            }
+            set(index, compilation);
+        }
+
+        void siftDown(int index) {
+            Compilation compilation = heap[index];
+            int half = size >> 1;
+            while (index < half) {
+                int child = 2 * index + 1;
+                if (child + 1 < size && heap[child + 1].queuePriority > heap[child].queuePriority) {
+                    child++;
+                }
+                if (compilation.queuePriority >= heap[child].queuePriority) {
+                    break;
+                }
+                set(index, heap[child]);
+                index = child;
+            }
+            set(index, compilation);
+        }
+
+        private void set(int index, Compilation compilation) {
+            heap[index] = compilation;
+            compilation.queueIndex = index;
+        }
+    }
+
+    /**
+     * The pending compilations. Also used as the lock protecting the queues.
+     */
+    private final CompilationQueue pending = new CompilationQueue();
+
+    /**
+     * The pending compilations of OSR target methods, guarded by the lock on {@link #pending}.
+     */
+    private final ArrayDeque<OnStackReplacement.OSREntry> pendingOSR = new ArrayDeque<OnStackReplacement.OSREntry>();
 
     private CompilationThread[] threadPool;
 
@@ -50,9 +138,37 @@ public class CompilationThreadPool {
 
     private static boolean GCOnRecompilation;
 
+    /**
+     * Priority gained by a pending compilation each time another compilation is dequeued before it.
+     */
+    private static int CompilationQueueAging = 100;
+
+    public static final VMBooleanOption PrintCompilationQueueStatsOption = register(new VMBooleanOption("-XX:-PrintCompilationQueueStats",
+            "Report statistics of the background compilation queues.") {
+        @Override
+        protected void beforeExit() {
+            if (getValue()) {
+                printStats();
+            }
+        }
+    }, MaxineVM.Phase.STARTING);
+
+    // Statistics of the background compilation queues, guarded by the lock on the queues.
+    private static int queueLength;
+    private static int maxQueueLength;
+    private static long queuedCount;
+    private static long droppedCount;
+    private static long completedCount;
+    private static long totalQueueNanos;
+    private static long maxQueueNanos;
+    private static long totalCompileNanos;
+    private static long maxCompileNanos;
+
     static {
         addFieldOption("-XX:", "GCOnRecompilation", CompilationThreadPool.class, "Force GC before every re-compilation.");
         addFieldOption("-XX:", "CTPS", CompilationThreadPool.class, "Compilation threadpool size (Default: 4)");
+        addFieldOption("-XX:", "CompilationQueueAging", CompilationThreadPool.class,
+            "Priority gained by a pending compilation each time another compilation is served before it.");
     }
 
     public CompilationThreadPool() {
@@ -76,11 +192,86 @@ public class CompilationThreadPool {
 
     public void addCompilationToQueue(Compilation compilation) {
         synchronized (pending) {
+            compilation.enqueueTime = pending.clock;
+            compilation.enqueueNanos = System.nanoTime();
+            compilation.queuePriority = priority(compilation);
             pending.add(compilation);
+            queuedCount++;
+            if (++queueLength > maxQueueLength) {
+                maxQueueLength = queueLength;
+            }
+            pending.notify();
+        }
+    }
+
+    /**
+     * Queues the compilation of an OSR target method.
+     */
+    void addOSRCompilationToQueue(OnStackReplacement.OSREntry entry) {
+        synchronized (pending) {
+            pendingOSR.add(entry);
             pending.notify();
         }
     }
 
+    /**
+     * Records another request for a compilation that is already pending, which raises its priority in the queue.
+     */
+    public void addRequest(Compilation compilation) {
+        synchronized (pending) {
+            compilation.requests++;
+            if (compilation.queueIndex >= 0) {
+                compilation.queuePriority = priority(compilation);
+                pending.siftUp(compilation.queueIndex);
+            }
+        }
+    }
+
+    /**
+     * Computes the priority of a compilation when it is queued or requested again. The priority is the number of
+     * profiled invocations and backward branches of the method, estimated from its counter and from the number of times
+     * the compilation was requested while pending (each request denoting a counter overflow), minus
+     * {@link #CompilationQueueAging} for each compilation served before this one was queued. The latter term makes
+     * pending compilations gain {@link #CompilationQueueAging} relative to newer ones for each compilation served while
+     * they wait, without having to update the priorities of the queued compilations.
+     */
+    private static long priority(Compilation compilation) {
+        final long threshold = MethodInstrumentation.initialEntryBackedgeCount;
+        long hotness = compilation.requests * threshold;
+        TargetMethod baseline = compilation.prevCompilations.baseline;
+        MethodProfile mpo = baseline == null ? null : baseline.profile();
+        if (mpo != null) {
+            // the counter counts down from the threshold and is reset upon overflow
+            hotness += Math.max(0, Math.min(threshold, threshold - mpo.entryBackedgeCount));
+        }
+        return hotness - compilation.enqueueTime * CompilationQueueAging;
+    }
+
+    /**
+     * Removes the pending compilation with the highest priority from the queue.
+     * Superseded compilations reaching the head of the queue are cancelled and dropped.
+     * Must be called with the lock on {@link #pending} held.
+     *
+     * @return the next compilation to perform or {@code null} if there is none
+     */
+    private Compilation poll() {
+        while (pending.size > 0) {
+            Compilation compilation = pending.removeFirst();
+            queueLength--;
+            if (compilation.cancelIfSuperseded()) {
+                logDroppedCompilation(compilation);
+                droppedCount++;
+                continue;
+            }
+            pending.clock++;
+            long queueNanos = System.nanoTime() - compilation.enqueueNanos;
+            totalQueueNanos += queueNanos;
+            maxQueueNanos = Math.max(maxQueueNanos, queueNanos);
+            return compilation;
+        }
+        return null;
+    }
+
     /**
      * This class implements a daemon thread that performs compilations in the background. Depending on the compiler
      * configuration, multiple compilation threads may be working in parallel.
@@ -108,7 +299,9 @@ public class CompilationThreadPool {
                 } catch (InterruptedException e) {
                     // do nothing.  
                 } catch (Throwable t) {
-                    logCompilationError(compilation.classMethodActor, t);
+                    if (compilation != null) {
+                        logCompilationError(compilation.classMethodActor, t);
+                    }
                 }
             }
         }
@@ -119,23 +312,101 @@ public class CompilationThreadPool {
          */
         void compileOne() throws InterruptedException {
             compilation = null;
+            OnStackReplacement.OSREntry osrEntry = null;
             synchronized (pending) {
                 while (compilation == null) {
-                    compilation = pending.poll();
+                    osrEntry = pendingOSR.poll();
+                    if (osrEntry != null) {
+                        break;
+                    }
+                    compilation = poll();
                     if (compilation == null) {
                         pending.wait();
                     }
                 }
             }
+            if (osrEntry != null) {
+                osrEntry.compile();
+                return;
+            }
             compilation.compilingThread = Thread.currentThread();
             if (GCOnRecompilation) {
                 System.gc();
             }
+            final long start = System.nanoTime();
             TargetMethod tm = compilation.compile();
+            final long compileNanos = System.nanoTime() - start;
+            synchronized (pending) {
+                completedCount++;
+                totalCompileNanos += compileNanos;
+                maxCompileNanos = Math.max(maxCompileNanos, compileNanos);
+            }
+            requestInstallation(compilation, tm);
             VMTI.handler().methodCompiled(tm.classMethodActor);
         }
     }
 
+    /**
+     * Arranges for the optimized target method produced by a background compilation to be installed without blocking
+     * the mutators: the baseline target method it replaces is {@linkplain MethodProfile#installationPending flagged} so
+     * that its next invocation {@linkplain CompilationBroker#instrumentationCounterOverflow overflows} its counter, which
+     * patches the dispatch table entry and the direct call used by that invocation to the optimized code.
+     * The counter itself is left alone, as zeroing it would also make the next backward branch of a running baseline
+     * frame compile an OSR target method on the mutator.
+     */
+    private static void requestInstallation(Compilation compilation, TargetMethod tm) {
+        if (tm.isBaseline()) {
+            return;
+        }
+        TargetMethod baseline = compilation.prevCompilations.baseline;
+        MethodProfile mpo = baseline == null ? null : baseline.profile();
+        if (mpo != null && !mpo.compilationDisabled) {
+            mpo.installationPending = true;
+        }
+    }
+
+    /**
+     * Gets the number of compilations currently waiting in the background compilation queues.
+     */
+    public static int queueLength() {
+        return queueLength;
+    }
+
+    private static void printStats() {
+        Log.println("Background compilation queue statistics:");
+        Log.print("  queued: ");
+        Log.print(queuedCount);
+        Log.print(", dropped: ");
+        Log.print(droppedCount);
+        Log.print(", completed: ");
+        Log.print(completedCount);
+        Log.print(", pending: ");
+        Log.print(queueLength);
+        Log.print(", max pending: ");
+        Log.println(maxQueueLength);
+        final long served = completedCount == 0 ? 1 : completedCount;
+        Log.print("  time in queue (avg/max): ");
+        Log.print(totalQueueNanos / served / 1000000);
+        Log.print("ms/");
+        Log.print(maxQueueNanos / 1000000);
+        Log.println("ms");
+        Log.print("  compilation latency (avg/max): ");
+        Log.print(totalCompileNanos / served / 1000000);
+        Log.print("ms/");
+        Log.print(maxCompileNanos / 1000000);
+        Log.println("ms");
+    }
+
+    private static void logDroppedCompilation(Compilation compilation) {
+        if (VMOptions.verboseOption.verboseCompilation) {
+            boolean lockDisabledSafepoints = Log.lock();
+            Log.printCurrentThread(false);
+            Log.print(": Dropped superseded compilation of ");
+            Log.printMethod(compilation.classMethodActor, true);
+            Log.unlock(lockDisabledSafepoints);
+        }
+    }
+
     private void logCompilationError(ClassMethodActor cma, Throwable t) {
         if (VMOptions.verboseOption.verboseCompilation) {
             boolean lockDisabledSafepoints = Log.lock();
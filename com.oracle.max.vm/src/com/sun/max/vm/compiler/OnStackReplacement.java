@@ -0,0 +1,337 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.vm.compiler;
+
+import static com.sun.max.platform.Platform.*;
+import static com.sun.max.vm.MaxineVM.*;
+import static com.sun.max.vm.VMConfiguration.*;
+import static com.sun.max.vm.VMOptions.*;
+import static com.sun.max.vm.compiler.CallEntryPoint.*;
+import static com.sun.max.vm.intrinsics.Infopoints.*;
+
+import com.sun.cri.bytecode.Bytecodes;
+import com.sun.cri.bytecode.Bytes;
+import com.sun.cri.ci.*;
+import com.sun.max.lang.*;
+import com.sun.max.unsafe.*;
+import com.sun.max.vm.*;
+import com.sun.max.vm.actor.member.*;
+import com.sun.max.vm.compiler.target.*;
+import com.sun.max.vm.profile.*;
+import com.sun.max.vm.reference.*;
+import com.sun.max.vm.runtime.*;
+import com.sun.max.vm.stack.*;
+import com.sun.max.vm.thread.*;
+
+/**
+ * On-stack replacement (OSR) of a baseline frame executing a hot loop by a frame of an optimized target method entered
+ * at the loop header.
+ * <p>
+ * OSR is triggered when the {@linkplain MethodProfile#entryBackedgeCount entry and backward branch counter} of a
+ * baseline method overflows on a taken backward branch (see {@link CompilationBroker#backwardBranchCounterOverflow}).
+ * The method is then compiled by the {@linkplain RuntimeCompiler.OSRCompiler optimizing compiler} for entry at the
+ * target of the branch, the local variables of the baseline frame are copied into an OSR buffer, and the baseline frame
+ * is replaced: the stack is {@linkplain Stubs#unwindLong(Address, Pointer, Pointer, long) unwound} to the caller of the
+ * baseline frame with the return address of the baseline frame pushed back on the stack, and execution continues at the
+ * optimized entry point of the OSR target method with the address of the OSR buffer in the integer return register.
+ * The OSR target method eventually returns to the caller of the baseline frame, popping the incoming arguments as the
+ * baseline method would have.
+ * <p>
+ * The OSR buffer is a {@code long} array with one element per local variable. The baseline frame is located and its
+ * locals are copied with safepoints disabled. Safepoints are enabled again just before the stack is unwound, but the
+ * thread cannot reach a safepoint poll until the OSR target method has loaded the buffer: the unwind stub and the
+ * prologue of the OSR target method have none, and its OSR entry block only loads the buffer before its first poll (see
+ * {@code GraphBuilder.setupOsrEntryBlock}). Until that poll, which describes the loaded locals, neither the buffer nor
+ * the references it holds as raw words can move, even though no frame state describes them. The buffer is garbage afterwards.
+ * <p>
+ * OSR is currently only supported on AMD64, for non-synchronized methods whose operand stack is empty at the loop header.
+ * The OSR target methods are cached per {@linkplain MethodProfile method profile} and loop header. With background
+ * compilation, they are compiled by the {@linkplain CompilationThreadPool compilation threads}: the baseline frame keeps
+ * running its loop, and is replaced upon a later overflow of its counter once the OSR target method is available.
+ * Otherwise, they are compiled synchronously by the thread that overflowed the counter. Failed compilations are cached
+ * as well so that they are not attempted again.
+ */
+public final class OnStackReplacement {
+
+    private static boolean UseOSR = true;
+
+    static {
+        addFieldOption("-XX:", "UseOSR", OnStackReplacement.class,
+            "Replace baseline frames executing hot loops with frames of optimized code (AMD64 only).", MaxineVM.Phase.PRISTINE);
+    }
+
+    private OnStackReplacement() {
+    }
+
+    /**
+     * An OSR target method compiled, or being compiled, for a loop header of a baseline method.
+     */
+    public static final class OSREntry {
+        final ClassMethodActor classMethodActor;
+
+        /**
+         * The bytecode index of the loop header.
+         */
+        final int bci;
+
+        /**
+         * The OSR target method or {@code null} if compilation failed or hasn't completed yet.
+         */
+        private volatile TargetMethod targetMethod;
+
+        /**
+         * Set once the compilation of the OSR target method has completed, successfully or not.
+         */
+        private volatile boolean compiled;
+
+        final OSREntry next;
+
+        OSREntry(ClassMethodActor classMethodActor, int bci, OSREntry next) {
+            this.classMethodActor = classMethodActor;
+            this.bci = bci;
+            this.next = next;
+        }
+
+        /**
+         * Compiles the OSR target method of this entry. Called by a compilation thread, or by the thread that
+         * created this entry if there is no background compilation.
+         */
+        void compile() {
+            try {
+                RuntimeCompiler.OSRCompiler compiler = (RuntimeCompiler.OSRCompiler) vm().compilationBroker.optimizingCompiler;
+                targetMethod = compiler.compileOSR(classMethodActor, bci);
+            } catch (RuntimeException e) {
+                // bailout: stay in the baseline frame
+                logFailure(classMethodActor, bci, e);
+            } catch (InternalError e) {
+                logFailure(classMethodActor, bci, e);
+            } finally {
+                compiled = true;
+            }
+        }
+    }
+
+    /**
+     * Indicates whether on-stack replacement is performed in this VM. Set once when the VM starts.
+     * The baseline instrumentation of backward branches reads it inline (see {@link MethodInstrumentation#recordBackwardBranch}),
+     * so that hot loops only decrement their counter when OSR is disabled.
+     */
+    public static boolean enabled;
+
+    static void initialize() {
+        enabled = UseOSR && platform().isa == ISA.AMD64 && vm().compilationBroker.optimizingCompiler instanceof RuntimeCompiler.OSRCompiler;
+    }
+
+    /**
+     * Determines if on-stack replacement can be performed in this VM.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Locates the frame of a given baseline method on the current thread's stack, as well as its caller.
+     */
+    static final class BaselineFrame extends RawStackFrameVisitor {
+        final TargetMethod targetMethod;
+        boolean found;
+        Pointer ip;
+        Pointer fp;
+        Pointer callerSP;
+        Pointer callerFP;
+        Pointer returnIP;
+
+        BaselineFrame(TargetMethod targetMethod) {
+            this.targetMethod = targetMethod;
+        }
+
+        @Override
+        public boolean visitFrame(StackFrameCursor current, StackFrameCursor callee) {
+            if (!found) {
+                if (current.targetMethod() == targetMethod) {
+                    found = true;
+                    ip = current.ipAsPointer();
+                    fp = current.fp();
+                }
+                return true;
+            }
+            callerSP = current.sp();
+            callerFP = current.fp();
+            // The stack frame walker "recovers" the original return address if the caller is marked for deoptimization.
+            // The baseline frame must return to the actual return address, as it would have without OSR.
+            returnIP = targetMethod.returnAddressPointer(callee).readWord(0).asPointer();
+            return false;
+        }
+    }
+
+    /**
+     * Attempts to replace the frame of the baseline method profiled by {@code mpo}, which must be the most recent frame
+     * of that method on the current thread's stack, by a frame of an OSR target method.
+     * This method does not return if the frame is replaced.
+     *
+     * @param mpo the profile of the baseline method whose backward branch counter overflowed
+     */
+    static void replace(MethodProfile mpo) {
+        final TargetMethod baselineMethod = mpo.method;
+        if (!baselineMethod.isBaseline()) {
+            return;
+        }
+        final ClassMethodActor cma = baselineMethod.classMethodActor;
+        if (cma.isSynchronized()) {
+            // the monitor is held by the baseline frame
+            return;
+        }
+
+        final VmStackFrameWalker walker = new VmStackFrameWalker(VmThread.current().tla());
+        BaselineFrame frame = findFrame(walker, new BaselineFrame(baselineMethod));
+        if (!frame.found || frame.callerSP == null) {
+            return;
+        }
+        final int safepointIndex = baselineMethod.findSafepointIndex(CodePointer.from(frame.ip));
+        if (safepointIndex < 0) {
+            return;
+        }
+        final CiFrame debugFrame = baselineMethod.debugInfoAt(safepointIndex, null).frame();
+        final int osrBCI = branchTarget(cma.code(), debugFrame.bci);
+        if (osrBCI < 0) {
+            return;
+        }
+        final TargetMethod osrMethod = osrMethod(mpo, cma, osrBCI);
+        if (osrMethod == null) {
+            return;
+        }
+        final Address entryPoint = osrMethod.getEntryPoint(OPTIMIZED_ENTRY_POINT).toAddress();
+
+        final long[] buffer = new long[debugFrame.numLocals];
+        final BaselineFrame relocatedFrame = new BaselineFrame(baselineMethod);
+        SafepointPoll.disable();
+        // Code eviction may have relocated the code of this frame or of its caller at a safepoint since the frame was
+        // located, so locate it again. Nothing may be allocated from now on.
+        frame = findFrame(walker, relocatedFrame);
+        for (int i = 0; i < debugFrame.numLocals; i++) {
+            CiAddress local = (CiAddress) debugFrame.getLocalValue(i);
+            buffer[i] = frame.fp.readWord(local.displacement).asAddress().toLong();
+        }
+        final Pointer bufferAddress = Reference.fromJava(buffer).toOrigin().plus(vmConfig().layoutScheme().longArrayLayout.getElementOffsetFromOrigin(0));
+
+        // Push the return address of the baseline frame back onto the caller's stack: the OSR target method is
+        // entered as if it had been called by the caller of the baseline frame.
+        final Pointer sp = frame.callerSP.minus(Word.size());
+        sp.writeWord(0, frame.returnIP);
+
+        if (VMOptions.verboseOption.verboseCompilation) {
+            boolean lockDisabledSafepoints = Log.lock();
+            Log.printCurrentThread(false);
+            Log.print(": On-stack replacement of ");
+            Log.printMethod(baselineMethod, false);
+            Log.print(" at bci ");
+            Log.print(osrBCI);
+            Log.print(" by ");
+            Log.printMethod(osrMethod, true);
+            Log.unlock(lockDisabledSafepoints);
+        }
+
+        // No safepoint poll runs from here until the OSR entry block has loaded the buffer.
+        SafepointPoll.enable();
+        Stubs.unwindLong(entryPoint, sp, frame.callerFP, bufferAddress.toLong());
+        FatalError.unexpected("should not reach here");
+    }
+
+    /**
+     * Locates the most recent frame of a baseline method on the current thread's stack.
+     */
+    private static BaselineFrame findFrame(VmStackFrameWalker walker, BaselineFrame frame) {
+        walker.inspect(Pointer.fromLong(here()), VMRegister.getCpuStackPointer(), VMRegister.getCpuFramePointer(), frame);
+        return frame;
+    }
+
+    /**
+     * Gets the target of the backward branch instruction at a given bytecode index.
+     *
+     * @return the bytecode index of the branch target or -1 if the instruction at {@code bci} is not a backward branch
+     */
+    private static int branchTarget(byte[] code, int bci) {
+        if (bci < 0 || bci >= code.length) {
+            return -1;
+        }
+        final int opcode = code[bci] & 0xff;
+        if (!Bytecodes.isBranch(opcode) || opcode == Bytecodes.JSR || opcode == Bytecodes.JSR_W) {
+            return -1;
+        }
+        final int target = bci + (opcode == Bytecodes.GOTO_W ? Bytes.beS4(code, bci + 1) : Bytes.beS2(code, bci + 1));
+        return target <= bci ? target : -1;
+    }
+
+    /**
+     * Gets the OSR target method for a given loop header. If there is none yet, its compilation is requested and,
+     * unless it can be compiled in the background, performed by the current thread. No lock is held while compiling.
+     *
+     * @return the OSR target method or {@code null} if it is not available (yet)
+     */
+    private static TargetMethod osrMethod(MethodProfile mpo, ClassMethodActor cma, int osrBCI) {
+        OSREntry entry;
+        synchronized (mpo) {
+            for (entry = mpo.osrEntries; entry != null; entry = entry.next) {
+                if (entry.bci == osrBCI) {
+                    break;
+                }
+            }
+            if (entry != null) {
+                if (!entry.compiled) {
+                    // being compiled: keep running the baseline frame
+                    return null;
+                }
+                final TargetMethod osrMethod = entry.targetMethod;
+                if (osrMethod == null) {
+                    return null;
+                }
+                if (osrMethod.invalidated() == null) {
+                    osrMethod.recordActivity();
+                    return osrMethod;
+                }
+                // the OSR target method was deoptimized or evicted: compile it again
+            }
+            entry = new OSREntry(cma, osrBCI, mpo.osrEntries);
+            mpo.osrEntries = entry;
+        }
+        if (vm().compilationBroker.addOSRCompilationToQueue(entry)) {
+            return null;
+        }
+        entry.compile();
+        return entry.targetMethod;
+    }
+
+    private static void logFailure(ClassMethodActor cma, int osrBCI, Throwable e) {
+        if (VMOptions.verboseOption.verboseCompilation) {
+            boolean lockDisabledSafepoints = Log.lock();
+            Log.printCurrentThread(false);
+            Log.print(": OSR compilation of ");
+            Log.printMethod(cma, false);
+            Log.print(" at bci ");
+            Log.print(osrBCI);
+            Log.print(" failed: ");
+            Log.println(e.getMessage());
+            Log.unlock(lockDisabledSafepoints);
+        }
+    }
+}
@@ -128,6 +128,38 @@ public interface RuntimeCompiler {
      */
     String name(ClassMethodActor classMethodActor);
 
+    /**
+     * Implemented by an optimizing compiler that can produce target methods entered in the middle of a loop,
+     * replacing a baseline frame that is executing the loop (on-stack replacement).
+     */
+    interface OSRCompiler {
+        /**
+         * Compiles a method for on-stack replacement at a given loop header. The target method is installed in the
+         * code cache but never becomes the {@linkplain ClassMethodActor#currentTargetMethod() current} target method
+         * of {@code classMethodActor}. It is entered at its {@linkplain CallEntryPoint#OPTIMIZED_ENTRY_POINT optimized
+         * entry point} with the return address of the replaced frame on top of the stack and a pointer to the OSR buffer
+         * in the integer return register. The OSR buffer holds one word per local variable, indexed by local variable index.
+         *
+         * @param classMethodActor the method to compile
+         * @param osrBCI the bytecode index of the loop header at which the target method is entered
+         * @return the target method for the OSR entry
+         */
+        TargetMethod compileOSR(ClassMethodActor classMethodActor, int osrBCI);
+    }
+
+    /**
+     * Implemented by an optimizing compiler that can install code persisted by a previous run of the VM
+     * instead of compiling a method from scratch.
+     */
+    interface PersistentCodeCompiler {
+        /**
+         * Determines if code persisted by a previous run is available for a method and can be installed
+         * without loading any class. The {@link CompilationBroker} uses this to select the optimizing compiler
+         * for the first compilation of such a method.
+         */
+        boolean hasPersistedCode(ClassMethodActor classMethodActor);
+    }
+
     abstract class DefaultNameAdapter implements RuntimeCompiler {
         public String name(ClassMethodActor classMethodActor) {
             return getClass().getSimpleName();
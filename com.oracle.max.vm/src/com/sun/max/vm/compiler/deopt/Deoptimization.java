@@ -36,6 +36,8 @@ import com.sun.max.vm.compiler.target.TargetMethod.FrameAccess;
 import com.sun.max.vm.compiler.target.amd64.AMD64TargetMethodUtil;
 import com.sun.max.vm.log.VMLog.Record;
 import com.sun.max.vm.log.hosted.*;
+import com.sun.max.vm.management.CompilationManagement;
+import com.sun.max.vm.monitor.*;
 import com.sun.max.vm.profile.MethodProfile;
 import com.sun.max.vm.reference.*;
 import com.sun.max.vm.runtime.*;
@@ -117,6 +119,16 @@ public class Deoptimization extends VmOperation {
      */
     private static StaticMethodActor MaxMiscLoweringsDeoptimizeMethodActor;
 
+    /**
+     * Method actor of the runtime call that deoptimizes and re-executes the bytecode at the trap's frame state.
+     */
+    private static ClassMethodActor ReexecutingUncommonTrapMethodActor;
+
+    /**
+     * Method actor of the runtime call that deoptimizes when a loop predicate fails.
+     */
+    private static ClassMethodActor LoopPredicateUncommonTrapMethodActor;
+
     /**
      * The set of target methods to be deoptimized.
      */
@@ -155,6 +167,16 @@ public class Deoptimization extends VmOperation {
         MaxMiscLoweringsDeoptimizeMethodActor = methodActor;
     }
 
+    @HOSTED_ONLY
+    public static void initializeReexecutingUncommonTrapMethodActor(ClassMethodActor methodActor) {
+        ReexecutingUncommonTrapMethodActor = methodActor;
+    }
+
+    @HOSTED_ONLY
+    public static void initializeLoopPredicateUncommonTrapMethodActor(ClassMethodActor methodActor) {
+        LoopPredicateUncommonTrapMethodActor = methodActor;
+    }
+
     /**
      * Mark methods for deoptimization.
      */
@@ -181,6 +203,7 @@ public class Deoptimization extends VmOperation {
                 // Perform deoptimization-related actions in the compilation broker.
                 ClassMethodActor cma = tm.classMethodActor();
                 vm().compilationBroker.deoptimize(cma, deoptReasonId);
+                CompilationManagement.recordDeoptimization(tm);
 
                 // Find all references to invalidated target method(s) in dispatch tables (e.g. vtables, itables etc) and revert to trampoline references.
                 // Concurrent patching ok here as it is atomic.
@@ -789,6 +812,8 @@ public class Deoptimization extends VmOperation {
             topFrame = handleFrame;
         }
 
+        // Re-acquire the locks on objects the compiler proved not to escape
+        relockEliminatedMonitors(topFrame);
 
         if (deoptLogger.enabled()) {
             CiFrame locationsFrame = (pendingException == null) ?
@@ -814,12 +839,9 @@ public class Deoptimization extends VmOperation {
                 if (!Safepoints.isCall(safepoints.safepointAt(safepointIndex))) {
                     reexecute = true;
                 }
-                if (Safepoints.isDirectCall(safepoints.safepointAt(safepointIndex))) {
-                    final int callPos = safepoints.causePosAt(safepointIndex);
-                    ClassMethodActor callee = tm.callPosToCallee(callPos);
-                    if (callee == MaxMiscLoweringsDeoptimizeMethodActor) {
-                        reexecute = true;
-                    }
+                ClassMethodActor callee = directCallee(tm, safepointIndex);
+                if (callee == MaxMiscLoweringsDeoptimizeMethodActor || callee == ReexecutingUncommonTrapMethodActor || callee == LoopPredicateUncommonTrapMethodActor) {
+                    reexecute = true;
                 }
             }
             cont = compiledMethod.createDeoptimizedFrame(info, frame, cont, pendingException, reexecute);
@@ -900,6 +922,29 @@ public class Deoptimization extends VmOperation {
         return null;
     }
 
+    /**
+     * Acquires the monitors whose locking was eliminated by the compiler, outermost frame first, and replaces
+     * every monitor value in the frames by the object it locks.
+     */
+    private static void relockEliminatedMonitors(CiFrame frame) {
+        if (frame == null) {
+            return;
+        }
+        relockEliminatedMonitors(frame.caller());
+        for (int i = 0; i < frame.numLocks; i++) {
+            int index = frame.numLocals + frame.numStack + i;
+            CiValue value = frame.values[index];
+            if (value.isMonitor()) {
+                CiMonitorValue monitor = (CiMonitorValue) value;
+                CiConstant owner = (CiConstant) monitor.owner;
+                if (monitor.eliminated) {
+                    Monitor.enter(owner.asObject());
+                }
+                frame.values[index] = owner;
+            }
+        }
+    }
+
     /**
      * Finds the frame containing a handler for an exception thrown at the current BCI of the frame and empties its stack.
      *
@@ -941,9 +986,42 @@ public class Deoptimization extends VmOperation {
      */
     public static void uncommonTrap(Pointer csa, Pointer ip, Pointer sp, Pointer fp) {
         FatalError.check(!csa.isZero(), "callee save area expected for uncommon trap");
+        TargetMethod tm = Code.codePointerToTargetMethod(ip);
+        if (directCallee(tm, tm.findSafepointIndex(CodePointer.from(ip))) == LoopPredicateUncommonTrapMethodActor) {
+            loopPredicateFailed(tm);
+        }
         deoptimize(CodePointer.from(ip), sp, fp, csa, vm().registerConfigs.uncommonTrapStub.getCalleeSaveLayout(), null);
     }
 
+    /**
+     * Gets the method called by the direct call at a given safepoint.
+     *
+     * @return {@code null} if the safepoint is not a direct call
+     */
+    private static ClassMethodActor directCallee(TargetMethod tm, int safepointIndex) {
+        final Safepoints safepoints = tm.safepoints();
+        if (!Safepoints.isDirectCall(safepoints.safepointAt(safepointIndex))) {
+            return null;
+        }
+        return tm.callPosToCallee(safepoints.causePosAt(safepointIndex));
+    }
+
+    /**
+     * Handles the failure of a loop predicate in a given method. The failure is recorded in the profile of the
+     * method's baseline version, so that it is recompiled without loop predication, and the method is invalidated.
+     * Otherwise every subsequent execution of the loop would trap again. The frame that trapped is unaffected by
+     * the invalidation and is deoptimized by the caller.
+     */
+    private static void loopPredicateFailed(TargetMethod tm) {
+        MethodProfile mp = vm().compilationBroker.compileForDeopt(tm.classMethodActor).profile();
+        if (mp != null) {
+            mp.loopPredicateFailed = true;
+        }
+        ArrayList<TargetMethod> methods = new ArrayList<TargetMethod>(1);
+        methods.add(tm);
+        new Deoptimization(methods).go();
+    }
+
     @NEVER_INLINE // makes inspecting easier
     static void logPatchITable(ClassActor classActor, int iIndex) {
         if (deoptLogger.enabled()) {
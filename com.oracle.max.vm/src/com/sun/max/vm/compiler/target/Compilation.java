@@ -21,6 +21,7 @@
  */
 package com.sun.max.vm.compiler.target;
 
+import static com.sun.max.vm.MaxineVM.*;
 import static com.sun.max.vm.VMOptions.*;
 
 import java.util.concurrent.*;
@@ -31,6 +32,7 @@ import com.sun.max.vm.actor.member.*;
 import com.sun.max.vm.compiler.*;
 import com.sun.max.vm.compiler.RuntimeCompiler.Nature;
 import com.sun.max.vm.heap.*;
+import com.sun.max.vm.management.*;
 import com.sun.max.vm.runtime.*;
 import com.sun.max.vm.stack.*;
 import com.sun.max.vm.tele.*;
@@ -116,6 +118,41 @@ public class Compilation {
      */
     public boolean done;
 
+    /**
+     * Set if this compilation was cancelled before being performed because it had been superseded by another
+     * compilation of the same method (see {@link #cancelIfSuperseded()}).
+     */
+    public boolean cancelled;
+
+    /**
+     * Number of times this compilation was requested while pending in the compilation queue.
+     * Used by the {@link CompilationThreadPool} to prioritize pending compilations, and only updated with the lock
+     * on its queues held.
+     */
+    public int requests = 1;
+
+    /**
+     * Value of the compilation queue's clock when this compilation was queued.
+     */
+    public long enqueueTime;
+
+    /**
+     * Index of this compilation in the heap of the {@link CompilationThreadPool}'s queue, or -1 if it is not queued.
+     * Only updated with the lock on the queue held.
+     */
+    public int queueIndex = -1;
+
+    /**
+     * Priority of this compilation in the {@link CompilationThreadPool}'s queue.
+     * Only updated with the lock on the queue held.
+     */
+    public long queuePriority;
+
+    /**
+     * Value of {@link System#nanoTime()} when this compilation was queued.
+     */
+    public long enqueueNanos;
+
     public final RuntimeCompiler.Nature nature;
 
     public Compilation(RuntimeCompiler compiler,
@@ -197,8 +234,31 @@ public class Compilation {
             if (interrupted) {
                 Thread.currentThread().interrupt();
             }
-            assert result != null;
-            return result;
+            if (!cancelled) {
+                assert result != null;
+                return result;
+            }
+        }
+        // this compilation was superseded before being performed: request the method again
+        return vm().compilationBroker.compile(classMethodActor, nature, isDeopt);
+    }
+
+    /**
+     * Cancels this pending compilation if it has been superseded by another compilation of the same method, i.e.
+     * if it no longer is the {@linkplain ClassMethodActor#compiledState compiled state} of the method.
+     * Threads waiting for the result of a cancelled compilation request the method again.
+     *
+     * @return {@code true} if this compilation was cancelled
+     */
+    public boolean cancelIfSuperseded() {
+        synchronized (classMethodActor) {
+            if (done || classMethodActor.compiledState == this) {
+                return false;
+            }
+            cancelled = true;
+            done = true;
+            classMethodActor.notifyAll();
+            return true;
         }
     }
 
@@ -225,6 +285,11 @@ public class Compilation {
     private long startCompilationAllocation;
     private long deltaCompilationAllocation;
 
+    /**
+     * Time spent in compilations nested in this one, in nanoseconds, which is not accounted to this compilation.
+     */
+    private long nestedCompilationNanos;
+
     /**
      * Start compilation metrics collection.
      */
@@ -292,10 +357,16 @@ public class Compilation {
 
             startCompilationMetricsCollection();
 
+            final long startNanos = System.nanoTime();
             result = compiler.compile(classMethodActor, isDeopt, true, null);
             if (result == null) {
                 throw new InternalError(classMethodActor.format("Result of compiling of %H.%n(%p) is null"));
             }
+            final long nanos = System.nanoTime() - startNanos;
+            if (parent != null) {
+                parent.nestedCompilationNanos += nanos;
+            }
+            CompilationManagement.recordCompilation(result, nanos - nestedCompilationNanos);
 
             InspectableCompilationInfo.notifyCompilationEvent(result.classMethodActor, result);
 
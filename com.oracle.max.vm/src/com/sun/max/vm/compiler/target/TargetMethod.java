@@ -171,6 +171,19 @@ public abstract class TargetMethod extends MemoryRegion {
      */
     private int registerRestoreEpilogueOffset = -1;
 
+    /**
+     * The {@linkplain CodeEviction#optEvictionEpoch() opt code eviction epoch} in which this method was last known to
+     * be active. A negative value denotes the negated epoch in which code eviction unlinked this method from all call
+     * sites and dispatch tables, the method not having been active since.
+     */
+    private int activityEpoch;
+
+    /**
+     * The time spent compiling this method, in nanoseconds, excluding the time spent in nested compilations. This is
+     * zero for methods not produced by a {@link Compilation}, e.g., stubs and adapters.
+     */
+    private long compilationNanos;
+
     public TargetMethod(String description, CallEntryPoint callEntryPoint) {
         assert this instanceof Stub || this instanceof Adapter;
         this.classMethodActor = null;
@@ -1393,6 +1406,39 @@ public abstract class TargetMethod extends MemoryRegion {
         return oldStart.equals(Address.allOnes().asAddress());
     }
 
+    /**
+     * Gets the {@linkplain #compilationNanos time spent compiling} this method.
+     */
+    public final long compilationNanos() {
+        return compilationNanos;
+    }
+
+    public final void setCompilationNanos(long nanos) {
+        compilationNanos = nanos;
+    }
+
+    /**
+     * Records that this method is active, e.g., because a call site or dispatch table entry was just linked to it.
+     */
+    public final void recordActivity() {
+        activityEpoch = CodeEviction.optEvictionEpoch();
+    }
+
+    /**
+     * Gets the {@linkplain #activityEpoch activity epoch} of this method.
+     */
+    public final int activityEpoch() {
+        return activityEpoch;
+    }
+
+    /**
+     * Records that this method was unlinked from all call sites and dispatch tables by the code eviction cycle of a
+     * given epoch.
+     */
+    public final void unlinked(int epoch) {
+        activityEpoch = -epoch;
+    }
+
     /**
      * Determines if this method is protected from eviction.
      */
@@ -27,6 +27,7 @@ import com.sun.max.annotate.HOSTED_ONLY;
 import com.sun.max.platform.Platform;
 import com.sun.max.unsafe.*;
 import com.sun.max.vm.*;
+import com.sun.max.vm.code.CodeEviction;
 import com.sun.max.vm.compiler.CallEntryPoint;
 import com.sun.max.vm.compiler.target.*;
 import com.sun.max.vm.compiler.target.arm.ARMTargetMethodUtil;
@@ -183,6 +184,7 @@ public final class Aarch64TargetMethodUtil {
         final Pointer callSitePointer = callSite.toPointer();
         final int oldDisp32 = getOldDisplacement(callSitePointer);
         if (oldDisp32 != disp64) {
+            CodeEviction.notifyCallSitePatched(tm);
             synchronized (PatchingLock) {
                 // Just to prevent concurrent writing and invalidation to the same instruction cache line
                 // (although the lock excludes ALL concurrent patching)
@@ -27,6 +27,7 @@ import com.sun.max.annotate.*;
 import com.sun.max.lang.*;
 import com.sun.max.unsafe.*;
 import com.sun.max.vm.*;
+import com.sun.max.vm.code.*;
 import com.sun.max.vm.compiler.*;
 import com.sun.max.vm.compiler.target.*;
 import com.sun.max.vm.runtime.*;
@@ -175,6 +176,7 @@ public final class AMD64TargetMethodUtil {
         FatalError.check(disp64 == disp32, "Code displacement out of 32-bit range");
         int oldDisp32 = callSitePointer.readInt(1);
         if (oldDisp32 != disp64) {
+            CodeEviction.notifyCallSitePatched(tm);
             synchronized (PatchingLock) {
                 // Just to prevent concurrent writing and invalidation to the same instruction cache line
                 // (although the lock excludes ALL concurrent patching)
@@ -27,6 +27,7 @@ import com.sun.max.annotate.*;
 import com.sun.max.lang.*;
 import com.sun.max.unsafe.*;
 import com.sun.max.vm.*;
+import com.sun.max.vm.code.*;
 import com.sun.max.vm.compiler.*;
 import com.sun.max.vm.compiler.target.*;
 import com.sun.max.vm.runtime.*;
@@ -257,6 +258,7 @@ public final class ARMTargetMethodUtil {
         }
 
         if (oldDisp32 != disp64) {
+            CodeEviction.notifyCallSitePatched(tm);
             synchronized (PatchingLock) {
                 // Just to prevent concurrent writing and invalidation to the same instruction cache line
                 // callSitePointer.writeInt(1, disp32);
@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.vm.heap;
+
+import static com.sun.max.vm.VMOptions.*;
+
+import com.sun.max.unsafe.*;
+import com.sun.max.vm.*;
+
+/**
+ * A TLAB refill policy that sizes each thread's TLABs after the amount of memory the thread allocated in TLABs in between
+ * recent garbage collections.
+ * <p>
+ * The policy aims at having each thread refill its TLAB a {@linkplain #targetRefills() target number of times} in between two
+ * garbage collections. The space left unused in a TLAB when it is retired at GC time is on average half a TLAB. Hence, the
+ * target number of refills bounds the space wasted by TLABs at GC time to {@link #TLABWasteTargetPercent} of the memory
+ * allocated in between two collections. The size of a thread's next TLAB is derived from a weighted average of the memory
+ * the thread allocated over the last GC periods. A thread with no history yet is given an equal share of the memory allocated
+ * during the last GC period by all active allocators.
+ * <p>
+ * The memory allocated by a thread is accounted for by the policy at TLAB refills and retirements (see
+ * {@link TLABRefillPolicy#doOnRefill(Size, Size)} and {@link TLABRefillPolicy#doOnRetire(Size)}). Accounting for a GC period
+ * is closed at the end of each garbage collection by {@link #endAllocationPeriod()}. Each thread then lazily resizes its TLAB
+ * on its next TLAB overflow.
+ * <p>
+ * Refilling a TLAB is also subject to a waste limit: a TLAB overflow caused by an allocation request smaller than the
+ * refill waste limit (a {@link #TLABRefillWasteFraction fraction} of the TLAB size) causes the TLAB to be refilled; larger
+ * requests are allocated directly in the heap and raise the limit so that a sequence of large allocations eventually
+ * refills the TLAB.
+ */
+public class AdaptiveTLABRefillPolicy extends TLABRefillPolicy {
+    /**
+     * Percentage of the memory allocated in between two garbage collections that may be wasted by unused TLAB space at GC time.
+     */
+    static int TLABWasteTargetPercent = 1;
+
+    /**
+     * Maximum fraction of a TLAB that can be wasted when refilling it on allocation failure.
+     */
+    static int TLABRefillWasteFraction = 64;
+
+    /**
+     * Percentage weight given to the last GC period in the average of the memory allocated by a thread.
+     */
+    static int TLABAllocationWeight = 35;
+
+    static {
+        addFieldOption("-XX:", "TLABWasteTargetPercent", AdaptiveTLABRefillPolicy.class,
+            "Percentage of allocated memory that TLABs may waste at GC time (with -XX:+ResizeTLAB).", MaxineVM.Phase.PRISTINE);
+        addFieldOption("-XX:", "TLABRefillWasteFraction", AdaptiveTLABRefillPolicy.class,
+            "Maximum fraction (1/n) of a TLAB that may be wasted when refilling it (with -XX:+ResizeTLAB).", MaxineVM.Phase.PRISTINE);
+        addFieldOption("-XX:", "TLABAllocationWeight", AdaptiveTLABRefillPolicy.class,
+            "Percentage weight of the last GC period in the average allocation of a thread (with -XX:+ResizeTLAB).", MaxineVM.Phase.PRISTINE);
+    }
+
+    /**
+     * Smallest TLAB size the policy may choose.
+     */
+    static final Size MIN_TLAB_SIZE = Size.K.times(4);
+
+    /**
+     * Largest TLAB size the policy may choose, as a multiple of the initial TLAB size.
+     */
+    static final int MAX_TLAB_SIZE_RATIO = 16;
+
+    /**
+     * Number of words the refill waste limit is raised by on each TLAB overflow that doesn't refill the TLAB.
+     */
+    static final int REFILL_WASTE_INCREMENT_WORDS = 4;
+
+    /*
+     * Global allocation statistics. These are updated without synchronization: TLABs are almost always retired by the
+     * VM operation thread during a garbage collection, and the statistics are only used to size TLABs.
+     */
+
+    /**
+     * Memory allocated in TLABs retired since the end of the last GC period.
+     */
+    private static long periodAllocatedBytes;
+
+    /**
+     * Number of threads that allocated in TLABs retired since the end of the last GC period.
+     */
+    private static int periodAllocators;
+
+    /**
+     * Memory allocated in TLABs during the last GC period.
+     */
+    private static long lastPeriodAllocatedBytes;
+
+    /**
+     * Weighted average of the number of threads allocating in TLABs during a GC period.
+     */
+    private static int averageAllocators;
+
+    /**
+     * Count of GC periods closed so far.
+     */
+    private static int allocationPeriod;
+
+    /**
+     * Count of TLAB resizing decisions taken by all threads.
+     */
+    private static long resizeCount;
+
+    /**
+     * Count of TLAB overflows that didn't refill the TLAB because of the refill waste limit.
+     */
+    private static long refillWasteLimitHits;
+
+    /**
+     * Minimum and maximum size of this policy's TLABs.
+     */
+    private final Size minSize;
+    private final Size maxSize;
+
+    /**
+     * Size the TLAB should have on next refill.
+     */
+    private Size nextSize;
+
+    /**
+     * Space left in a TLAB that can be wasted to refill it on allocation failure.
+     */
+    private Size refillWasteLimit;
+
+    /**
+     * Memory handed out to the thread's TLABs since the last retirement of its TLAB.
+     */
+    private long refilledBytes;
+
+    /**
+     * Space left unused in TLABs at refill since the last retirement of the thread's TLAB.
+     */
+    private long refillLeftoverBytes;
+
+    /**
+     * Memory allocated by the thread in TLABs retired since the last resizing of its TLAB.
+     */
+    private long allocatedBytes;
+
+    /**
+     * Weighted average of the memory the thread allocated in TLABs during a GC period. Zero if the thread has no history yet.
+     */
+    private long averageAllocatedBytes;
+
+    /**
+     * GC period the thread's TLAB was last resized for.
+     */
+    private int resizePeriod;
+
+    public AdaptiveTLABRefillPolicy(Size initialTLABSize) {
+        minSize = MIN_TLAB_SIZE.lessThan(initialTLABSize) ? MIN_TLAB_SIZE : initialTLABSize;
+        maxSize = initialTLABSize.times(MAX_TLAB_SIZE_RATIO);
+        resizePeriod = allocationPeriod;
+        setNextSize(initialTLABSize);
+        // The policy is created right after the thread's initial TLAB fill.
+        refilledBytes = initialTLABSize.toLong();
+    }
+
+    private void setNextSize(Size size) {
+        nextSize = size;
+        refillWasteLimit = size.dividedBy(TLABRefillWasteFraction < 1 ? 1 : TLABRefillWasteFraction);
+    }
+
+    /**
+     * Number of TLAB refills a thread should perform in between two garbage collections to meet the waste target.
+     */
+    private static int targetRefills() {
+        final int wastePercent = TLABWasteTargetPercent < 1 ? 1 : TLABWasteTargetPercent;
+        final int refills = 100 / (2 * wastePercent);
+        return refills < 1 ? 1 : refills;
+    }
+
+    private static long weightedAverage(long average, long sample) {
+        return (TLABAllocationWeight * sample + (100 - TLABAllocationWeight) * average) / 100;
+    }
+
+    @Override
+    public void doOnRefill(Size tlabSize, Size leftover) {
+        refilledBytes += tlabSize.toLong();
+        refillLeftoverBytes += leftover.toLong();
+        refillWasteLimit = nextSize.dividedBy(TLABRefillWasteFraction < 1 ? 1 : TLABRefillWasteFraction);
+    }
+
+    @Override
+    public void doOnRetire(Size leftover) {
+        final long allocated = refilledBytes - refillLeftoverBytes - leftover.toLong();
+        refilledBytes = 0L;
+        refillLeftoverBytes = 0L;
+        if (allocated > 0L) {
+            allocatedBytes += allocated;
+            periodAllocatedBytes += allocated;
+            periodAllocators++;
+        }
+    }
+
+    /**
+     * Closes the current GC period. Must be called at the end of every garbage collection, once all TLABs have been retired.
+     */
+    public static void endAllocationPeriod() {
+        if (periodAllocators == 0) {
+            // No TLABs retired by this garbage collection (e.g., a pause that doesn't reclaim space).
+            return;
+        }
+        lastPeriodAllocatedBytes = periodAllocatedBytes;
+        averageAllocators = averageAllocators == 0 ? periodAllocators : (int) weightedAverage(averageAllocators, periodAllocators);
+        if (averageAllocators == 0) {
+            averageAllocators = 1;
+        }
+        periodAllocatedBytes = 0L;
+        periodAllocators = 0;
+        allocationPeriod++;
+    }
+
+    /**
+     * Resize the thread's TLAB after the memory it allocated during the last GC period.
+     */
+    private void resize() {
+        resizePeriod = allocationPeriod;
+        if (averageAllocatedBytes == 0L) {
+            if (allocatedBytes == 0L) {
+                // Not allocated yet: give the thread an equal share of the memory allocated by all active allocators.
+                averageAllocatedBytes = lastPeriodAllocatedBytes / averageAllocators;
+            } else {
+                averageAllocatedBytes = allocatedBytes;
+            }
+        } else {
+            averageAllocatedBytes = weightedAverage(averageAllocatedBytes, allocatedBytes);
+        }
+        allocatedBytes = 0L;
+
+        Size size = Size.fromLong(averageAllocatedBytes / targetRefills()).wordAligned().asSize();
+        if (size.lessThan(minSize)) {
+            size = minSize;
+        } else if (size.greaterThan(maxSize)) {
+            size = maxSize;
+        }
+        setNextSize(size);
+        resizeCount++;
+    }
+
+    @Override
+    public boolean shouldRefill(Size size, Pointer allocationMark) {
+        if (allocationMark.isZero()) {
+            // No TLAB. Refill whatsoever
+            return true;
+        }
+        if (size.lessThan(refillWasteLimit)) {
+            // The space left in the TLAB is smaller than the failed request, and therefore below the waste limit.
+            return true;
+        }
+        // Refilling may waste too much space. Allocate the request directly in the heap, but raise the waste limit
+        // so that the TLAB is eventually refilled if the thread keeps on failing allocations.
+        refillWasteLimit = refillWasteLimit.plus(Word.size() * REFILL_WASTE_INCREMENT_WORDS);
+        refillWasteLimitHits++;
+        return false;
+    }
+
+    @Override
+    public Size nextTlabSize() {
+        if (resizePeriod != allocationPeriod) {
+            resize();
+        }
+        return nextSize;
+    }
+
+    static void printTLABStats() {
+        Log.print("   adaptive tlab resize count        :");
+        Log.println(resizeCount);
+        Log.print("   refill waste limit hits           :");
+        Log.println(refillWasteLimitHits);
+        Log.print("   GC periods sampled                :");
+        Log.println(allocationPeriod);
+        Log.print("   average active allocators         :");
+        Log.println(averageAllocators);
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.vm.heap;
+
+import static com.sun.max.vm.VMOptions.*;
+
+import com.sun.max.annotate.*;
+import com.sun.max.vm.*;
+import com.sun.max.vm.actor.holder.*;
+import com.sun.max.vm.monitor.modal.sync.*;
+import com.sun.max.vm.reference.*;
+import com.sun.max.vm.runtime.*;
+import com.sun.max.vm.thread.*;
+
+/**
+ * A pool of GC worker threads used to run the parallel phases of a garbage collection.
+ * The pool comprises {@link #numWorkers()} workers. Worker 0 is always the thread that runs the garbage collection,
+ * i.e., the {@linkplain VmOperationThread VM operation thread}; the other workers are daemon {@link GCTaskThread}s
+ * started once the VM is {@linkplain MaxineVM.Phase#RUNNING running}.
+ * <p>
+ * GC task threads are never frozen by {@link VmOperation}s (see {@link VmThread#isGCTaskThread()}): they spend their life
+ * either waiting on a native condition variable for a task, or running a task on behalf of the VM operation thread
+ * while all mutator threads are frozen. Heap allocation is disabled for these threads, and their stack frames only ever hold references
+ * to objects that never move while they are waiting, so their stacks needn't be scanned by the garbage collector.
+ * <p>
+ * A {@link GCTask}, and the objects it hands to the workers, must never move: they must be allocated in the boot image, in immortal memory,
+ * or in some other non-moving memory (e.g., the memory allocated to GC data structures at VM startup). It is run to completion by all workers:
+ * {@link #run(GCTask)} only returns once every worker has returned from {@link GCTask#run(int, int)}.
+ */
+public final class GCTaskThreadPool {
+
+    /**
+     * Number of threads participating in parallel GC phases, including the VM operation thread.
+     */
+    private static int ParallelGCThreads = 1;
+
+    static {
+        addFieldOption("-XX:", "ParallelGCThreads", GCTaskThreadPool.class,
+            "Number of threads used by parallel phases of the garbage collector, including the VM operation thread.", MaxineVM.Phase.PRISTINE);
+    }
+
+    /**
+     * A unit of work run in parallel by all the workers of the pool.
+     */
+    public abstract static class GCTask {
+        public final String name;
+
+        protected GCTask(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Run the task on the current worker.
+         * @param workerId identifier of the worker, in the range [0, numWorkers[. The VM operation thread is always worker 0.
+         * @param numWorkers number of workers running this task
+         */
+        public abstract void run(int workerId, int numWorkers);
+    }
+
+    /**
+     * Daemon thread running {@link GCTask}s on behalf of the VM operation thread.
+     */
+    public final class GCTaskThread extends Thread {
+        GCTaskThread(int index) {
+            super(VmThread.systemThreadGroup, "GC Task Thread #" + index);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            synchronized (VmThreadMap.THREAD_LOCK) {
+                // Holding the thread lock guarantees that no VM operation is in progress, so this thread
+                // can safely be excluded from subsequent safepoint operations.
+                VmThread.current().setAsGCTaskThread();
+            }
+            Heap.disableAllocationForCurrentThread();
+            // Worker identifiers are assigned in the order threads become ready so that the identifiers
+            // of the workers running a task are always contiguous.
+            lock.lock();
+            final int workerId = ++readyWorkers;
+            int lastEpoch = taskEpoch;
+            lock.unlock();
+            while (true) {
+                lock.lock();
+                while (taskEpoch == lastEpoch) {
+                    taskAvailable.threadWait(lock, 0);
+                }
+                lastEpoch = taskEpoch;
+                final GCTask task = currentTask;
+                final int numWorkers = activeWorkers;
+                lock.unlock();
+                if (workerId < numWorkers) {
+                    task.run(workerId, numWorkers);
+                    decrementRunningWorkers();
+                }
+            }
+        }
+    }
+
+    private static final GCTaskThreadPool theGCTaskThreadPool = new GCTaskThreadPool();
+
+    @INLINE
+    public static GCTaskThreadPool theGCTaskThreadPool() {
+        return theGCTaskThreadPool;
+    }
+
+    /**
+     * Number of threads participating in parallel GC phases.
+     */
+    public static int numWorkers() {
+        return ParallelGCThreads < 1 ? 1 : ParallelGCThreads;
+    }
+
+    private final Mutex lock = MutexFactory.create();
+    private final ConditionVariable taskAvailable = ConditionVariableFactory.create();
+
+    /**
+     * Task currently being run by the workers. Guarded by {@link #lock}.
+     */
+    private GCTask currentTask;
+
+    /**
+     * Incremented each time a new task is submitted to the workers. Guarded by {@link #lock}.
+     */
+    private int taskEpoch;
+
+    /**
+     * Number of workers the current task is run with. Guarded by {@link #lock}.
+     */
+    private int activeWorkers;
+
+    /**
+     * Number of GC task threads ready to run tasks. Guarded by {@link #lock}.
+     */
+    private int readyWorkers;
+
+    /**
+     * Number of GC task threads that haven't completed the current task yet.
+     */
+    private volatile int runningWorkers;
+
+    private GCTaskThread [] workers;
+
+    private GCTaskThreadPool() {
+    }
+
+    @FOLD
+    private static int runningWorkersOffset() {
+        return ClassActor.fromJava(GCTaskThreadPool.class).findLocalInstanceFieldActor("runningWorkers").offset();
+    }
+
+    private void decrementRunningWorkers() {
+        int oldValue;
+        do {
+            oldValue = runningWorkers;
+        } while (Reference.fromJava(this).compareAndSwapInt(runningWorkersOffset(), oldValue, oldValue - 1) != oldValue);
+    }
+
+    /**
+     * Start the GC task threads once the VM is {@linkplain MaxineVM.Phase#RUNNING running}.
+     */
+    public void initialize(MaxineVM.Phase phase) {
+        if (phase == MaxineVM.Phase.RUNNING && numWorkers() > 1) {
+            startWorkers();
+        }
+    }
+
+    private void startWorkers() {
+        lock.init();
+        taskAvailable.init();
+        // Worker threads must never move: their stacks are never scanned.
+        Heap.enableImmortalMemoryAllocation();
+        try {
+            final int numWorkers = numWorkers();
+            workers = new GCTaskThread[numWorkers];
+            for (int i = 1; i < numWorkers; i++) {
+                workers[i] = new GCTaskThread(i);
+                workers[i].start();
+            }
+        } finally {
+            Heap.disableImmortalMemoryAllocation();
+        }
+    }
+
+    /**
+     * Run a task on all workers. Must be called by the VM operation thread, which runs the task as worker 0.
+     * Returns once all workers have completed the task.
+     * Only GC task threads that are ready to run tasks participate: if none are, e.g., because they haven't been
+     * started yet, the task is run by the VM operation thread alone.
+     *
+     * @param task the task to run
+     * @return the number of workers that ran the task
+     */
+    public int run(GCTask task) {
+        FatalError.check(VmThread.current().isVmOperationThread(), "GC tasks must be run by the VM operation thread");
+        if (workers == null) {
+            task.run(0, 1);
+            return 1;
+        }
+        lock.lock();
+        final int n = readyWorkers + 1;
+        if (n > 1) {
+            runningWorkers = n - 1;
+            currentTask = task;
+            activeWorkers = n;
+            taskEpoch++;
+            taskAvailable.threadNotify(true);
+        }
+        lock.unlock();
+
+        task.run(0, n);
+        while (runningWorkers > 0) {
+            Intrinsics.pause();
+        }
+        currentTask = null;
+        return n;
+    }
+}
@@ -207,6 +207,7 @@ public abstract class HeapSchemeAdaptor extends AbstractVMScheme implements Heap
         if (phase == MaxineVM.Phase.PRISTINE) {
             releaseUnusedReservedVirtualSpace();
         }
+        GCTaskThreadPool.theGCTaskThreadPool().initialize(phase);
     }
 
     @HOSTED_ONLY
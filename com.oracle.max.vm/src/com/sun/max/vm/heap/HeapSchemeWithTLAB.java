@@ -99,6 +99,15 @@ public abstract class HeapSchemeWithTLAB extends HeapSchemeAdaptor {
         VMOptions.addFieldOption("-XX:", "UseTLAB", HeapSchemeWithTLAB.class, "Use thread-local object allocation", MaxineVM.Phase.PRISTINE);
     }
 
+    /**
+     * A VM option for enabling the {@linkplain AdaptiveTLABRefillPolicy adaptive sizing} of each thread's TLABs.
+     */
+    static boolean ResizeTLAB = false;
+    static {
+        VMOptions.addFieldOption("-XX:", "ResizeTLAB", HeapSchemeWithTLAB.class,
+            "Dynamically resize each thread's TLABs after its allocation rate in between garbage collections.", MaxineVM.Phase.PRISTINE);
+    }
+
     /**
      * A VM option for specifying the size of a TLAB. Default is 64 K.
      */
@@ -119,6 +128,13 @@ public abstract class HeapSchemeWithTLAB extends HeapSchemeAdaptor {
     public static final VmThreadLocal TLAB_MARK
         = new VmThreadLocal(TLAB_MARK_THREAD_LOCAL_NAME, false, "HeapSchemeWithTLAB: allocation mark of current TLAB, zero if not used", Nature.Single);
 
+    /**
+     * The start of the current thread-local allocation buffer, i.e., the address it was last {@linkplain #refillTLAB(Pointer, Pointer, Size) refilled} with.
+     * Space in between it and the {@link #TLAB_MARK} was allocated since the last refill. This will remain zero if TLABs are not {@linkplain #useTLAB enabled}.
+     */
+    public static final VmThreadLocal TLAB_START
+        = new VmThreadLocal("TLAB_START", false, "HeapSchemeWithTLAB: start of current TLAB, zero if not used", Nature.Single);
+
     /**
      * The temporary top of the current thread-local allocation buffer. This will remain zero if TLABs are not
      * {@linkplain #useTLAB enabled}. Used when thread is allocating on the global immortal heap.
@@ -158,6 +174,7 @@ public abstract class HeapSchemeWithTLAB extends HeapSchemeAdaptor {
             final Pointer etla = VmThreadLocal.ETLA.load(tla);
             final Pointer tlabMark = TLAB_MARK.load(etla);
             Pointer tlabTop = TLAB_TOP.load(etla);
+            final TLABRefillPolicy refillPolicy = TLABRefillPolicy.getForCurrentThread(etla);
             if (logTLAB()) {
                 logger.logReset(UnsafeCast.asVmThread(VM_THREAD.loadRef(etla).toJava()), tlabTop, tlabMark);
             }
@@ -170,7 +187,6 @@ public abstract class HeapSchemeWithTLAB extends HeapSchemeAdaptor {
                 }
                 // (2) allocation has been disabled for the thread.
                 FatalError.check(!ALLOCATION_DISABLED.load(currentTLA()).isZero(), "inconsistent TLAB state");
-                TLABRefillPolicy refillPolicy = TLABRefillPolicy.getForCurrentThread(etla);
                 if (refillPolicy != null) {
                     // Go fetch the actual TLAB top in case the heap scheme needs it for its doBeforeReset handler.
                     tlabTop = refillPolicy.getSavedTlabTop().asPointer();
@@ -178,9 +194,13 @@ public abstract class HeapSchemeWithTLAB extends HeapSchemeAdaptor {
                     refillPolicy.saveTlabTop(Address.zero());
                 }
             }
+            if (refillPolicy != null && !tlabTop.isZero()) {
+                refillPolicy.doOnRetire(tlabTop.minus(tlabMark).asSize());
+            }
             doBeforeReset(etla, tlabMark, tlabTop);
             TLAB_TOP.store(etla, Address.zero());
             TLAB_MARK.store(etla, Address.zero());
+            TLAB_START.store(etla, Address.zero());
         }
     }
 
@@ -284,6 +304,9 @@ public abstract class HeapSchemeWithTLAB extends HeapSchemeAdaptor {
         } else if (phase == MaxineVM.Phase.TERMINATING) {
             if (PrintTLABStats) {
                 globalTlabStats.printTLABStats();
+                if (ResizeTLAB) {
+                    AdaptiveTLABRefillPolicy.printTLABStats();
+                }
             }
         }
     }
@@ -358,6 +381,17 @@ public abstract class HeapSchemeWithTLAB extends HeapSchemeAdaptor {
         initialTlabSize = size;
     }
 
+    /**
+     * Creates the refill policy of a thread that was just given its first TLAB.
+     * @param tlabSize size of the thread's first TLAB
+     */
+    protected TLABRefillPolicy createTLABRefillPolicy(Size tlabSize) {
+        if (ResizeTLAB) {
+            return new AdaptiveTLABRefillPolicy(tlabSize);
+        }
+        return new SimpleTLABRefillPolicy(tlabSize);
+    }
+
     public void refillTLAB(Pointer tlab, Size size) {
         final Pointer etla = ETLA.load(currentTLA());
         refillTLAB(etla, tlab, size);
@@ -379,6 +413,10 @@ public abstract class HeapSchemeWithTLAB extends HeapSchemeAdaptor {
         if (!allocationMark.isZero()) {
             final Pointer oldTop = TLAB_TOP.load(etla);
             globalTlabStats.leftover += oldTop.minus(allocationMark).toLong();
+            final TLABRefillPolicy refillPolicy = TLABRefillPolicy.getForCurrentThread(etla);
+            if (refillPolicy != null) {
+                refillPolicy.doOnRefill(size, oldTop.minus(allocationMark).asSize());
+            }
             // It is a refill, not an initial fill. So invoke handler.
             doBeforeTLABRefill(allocationMark, oldTop);
         } else {
@@ -388,6 +426,7 @@ public abstract class HeapSchemeWithTLAB extends HeapSchemeAdaptor {
 
         TLAB_TOP.store(etla, tlabTop);
         TLAB_MARK.store(etla, tlab);
+        TLAB_START.store(etla, tlab);
         if (logTLAB()) {
             VmThread vmThread = UnsafeCast.asVmThread(VM_THREAD.loadRef(etla).toJava());
             logger.logRefill(vmThread, tlabTop, tlabTop, tlab.plus(initialTlabSize), initialTlabSize.toInt());
@@ -398,6 +437,7 @@ public abstract class HeapSchemeWithTLAB extends HeapSchemeAdaptor {
     protected final void fastRefillTLAB(Pointer etla, Pointer tlab, Size size) {
         TLAB_TOP.store(etla, tlab.plus(size));
         TLAB_MARK.store(etla, tlab);
+        TLAB_START.store(etla, tlab);
     }
 
     /**
@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.vm.heap;
+
+import static com.sun.max.vm.thread.VmThread.*;
+import static com.sun.max.vm.thread.VmThreadLocal.*;
+
+import com.oracle.max.cri.intrinsics.*;
+import com.sun.max.annotate.*;
+import com.sun.max.memory.*;
+import com.sun.max.unsafe.*;
+import com.sun.max.vm.*;
+import com.sun.max.vm.actor.holder.*;
+import com.sun.max.vm.reference.*;
+import com.sun.max.vm.runtime.*;
+import com.sun.max.vm.thread.*;
+import com.sun.max.vm.thread.VmThreadLocal.Nature;
+
+/**
+ * Snapshot-at-the-beginning (SATB) queues of the mutator threads.
+ * <p>
+ * While a heap scheme traces the heap concurrently with mutators, its pre-write barrier records the references about to be
+ * overwritten by mutators so that every object reachable when marking started is eventually traced. Each thread has its own queue,
+ * made of a buffer in native memory and of an index in the buffer, both held in {@link VmThreadLocal}s. The barrier's fast path only tests
+ * the {@link #SATB_QUEUE_ACTIVE} thread local, which is non-zero only while marking is in progress, and calls {@link #enqueue(Object)} otherwise.
+ * Full buffers are handed over to a global list of completed buffers the concurrent marker {@linkplain #drainCompletedBuffers(Pointer.Procedure) drains}.
+ * At the end of marking, the buffers of all threads are {@linkplain #deactivateAndDrain(Pointer.Procedure) drained} while mutators are stopped.
+ * <p>
+ * Buffers are allocated from native memory and recycled via a free list. The buffer's first word links it to the next buffer of the list it is on;
+ * the second word holds the number of entries of a completed buffer.
+ */
+public final class SATBQueue {
+    /**
+     * Non-zero while the SATB queues record overwritten references.
+     */
+    public static final VmThreadLocal SATB_QUEUE_ACTIVE
+        = new VmThreadLocal("SATB_QUEUE_ACTIVE", false, "SATBQueue: non-zero while concurrent marking is in progress", Nature.Single);
+
+    /**
+     * Buffer of the current thread's queue, zero if the thread hasn't one.
+     */
+    public static final VmThreadLocal SATB_QUEUE_BUFFER
+        = new VmThreadLocal("SATB_QUEUE_BUFFER", false, "SATBQueue: buffer of the thread's queue, zero if none", Nature.Single);
+
+    /**
+     * Number of entries in the buffer of the current thread's queue.
+     */
+    public static final VmThreadLocal SATB_QUEUE_INDEX
+        = new VmThreadLocal("SATB_QUEUE_INDEX", false, "SATBQueue: number of entries in the buffer of the thread's queue", Nature.Single);
+
+    /**
+     * Number of references a buffer holds.
+     */
+    static final int BUFFER_CAPACITY = 256;
+
+    private static final int NEXT_BUFFER_INDEX = 0;
+    private static final int NUM_ENTRIES_INDEX = 1;
+    private static final int FIRST_ENTRY_INDEX = 2;
+
+    private static final SATBQueue theSATBQueue = new SATBQueue();
+
+    /**
+     * Whether the queues are active. Only changed while mutators are stopped.
+     */
+    private boolean active;
+
+    /**
+     * List of completed buffers. Guarded by {@link #lock}.
+     */
+    private Pointer completedBuffers = Pointer.zero();
+
+    /**
+     * List of free buffers. Guarded by {@link #lock}.
+     */
+    private Pointer freeBuffers = Pointer.zero();
+
+    private volatile int lock;
+
+    private SATBQueue() {
+    }
+
+    @FOLD
+    private static int lockOffset() {
+        return ClassActor.fromJava(SATBQueue.class).findLocalInstanceFieldActor("lock").offset();
+    }
+
+    @INLINE
+    private void spinLock() {
+        final Reference ref = Reference.fromJava(this);
+        while (ref.compareAndSwapInt(lockOffset(), 0, 1) != 0) {
+            Intrinsics.pause();
+        }
+    }
+
+    @INLINE
+    private void spinUnlock() {
+        MemoryBarriers.barrier(MemoryBarriers.LOAD_STORE | MemoryBarriers.STORE_STORE);
+        Reference.fromJava(this).writeInt(lockOffset(), 0);
+    }
+
+    /**
+     * Indicates whether the current thread records overwritten references.
+     */
+    @INLINE
+    public static boolean isActive() {
+        return !SATB_QUEUE_ACTIVE.load(ETLA.load(currentTLA())).isZero();
+    }
+
+    /**
+     * Initialize the SATB queue of a thread being added to the thread list.
+     * Called with the thread lock held, so the queues can't be activated or deactivated concurrently.
+     *
+     * @param etla the safepoints-enabled thread locals of the new thread
+     */
+    @INLINE
+    public static void initializeThreadLocals(Pointer etla) {
+        SATB_QUEUE_ACTIVE.store(etla, theSATBQueue.active ? Address.fromInt(1) : Address.zero());
+        SATB_QUEUE_BUFFER.store(etla, Address.zero());
+        SATB_QUEUE_INDEX.store(etla, Address.zero());
+    }
+
+    /**
+     * Add a reference to the current thread's queue. This is the slow path of SATB pre-write barriers, called while marking is in progress.
+     * It neither allocates from the heap nor polls safepoints.
+     *
+     * @param previousValue the reference about to be overwritten
+     */
+    @NEVER_INLINE
+    @NO_SAFEPOINT_POLLS("compiled code calling the SATB barrier's slow path has no reference map at the call site")
+    public static void enqueue(Object previousValue) {
+        final Reference ref = Reference.fromJava(previousValue);
+        if (ref.isZero()) {
+            return;
+        }
+        final Pointer etla = ETLA.load(currentTLA());
+        if (SATB_QUEUE_ACTIVE.load(etla).isZero()) {
+            // Marking completed since the barrier's fast path tested the flag.
+            return;
+        }
+        Pointer buffer = SATB_QUEUE_BUFFER.load(etla);
+        int index = SATB_QUEUE_INDEX.load(etla).toInt();
+        if (buffer.isZero() || index == BUFFER_CAPACITY) {
+            buffer = theSATBQueue.exchangeBuffer(buffer, index);
+            SATB_QUEUE_BUFFER.store(etla, buffer);
+            index = 0;
+        }
+        buffer.setWord(FIRST_ENTRY_INDEX + index, ref.toOrigin());
+        SATB_QUEUE_INDEX.store(etla, Address.fromInt(index + 1));
+    }
+
+    /**
+     * Hand over a buffer to the list of completed buffers and return an empty buffer.
+     * @param buffer a buffer, or zero
+     * @param numEntries number of entries in the buffer
+     */
+    @NO_SAFEPOINT_POLLS("a thread frozen while holding the SATB queue lock would block the marking thread")
+    private Pointer exchangeBuffer(Pointer buffer, int numEntries) {
+        spinLock();
+        if (!buffer.isZero()) {
+            buffer.setInt(NUM_ENTRIES_INDEX, numEntries);
+            buffer.setWord(NEXT_BUFFER_INDEX, completedBuffers);
+            completedBuffers = buffer;
+        }
+        Pointer freeBuffer = freeBuffers;
+        if (!freeBuffer.isZero()) {
+            freeBuffers = freeBuffer.getWord(NEXT_BUFFER_INDEX).asPointer();
+        }
+        spinUnlock();
+        if (freeBuffer.isZero()) {
+            freeBuffer = Memory.allocate(Size.fromInt(FIRST_ENTRY_INDEX + BUFFER_CAPACITY).shiftedLeft(Word.widthValue().log2numberOfBytes));
+            if (freeBuffer.isZero()) {
+                FatalError.unexpected("Failed to allocate SATB queue buffer");
+            }
+        }
+        return freeBuffer;
+    }
+
+    private static void visitEntries(Pointer buffer, int numEntries, Pointer.Procedure visitor) {
+        for (int i = 0; i < numEntries; i++) {
+            visitor.run(buffer.getWord(FIRST_ENTRY_INDEX + i).asPointer());
+        }
+    }
+
+    @NO_SAFEPOINT_POLLS("a thread frozen while holding the SATB queue lock would block the marking thread")
+    private Pointer removeCompletedBuffer() {
+        spinLock();
+        final Pointer buffer = completedBuffers;
+        if (!buffer.isZero()) {
+            completedBuffers = buffer.getWord(NEXT_BUFFER_INDEX).asPointer();
+        }
+        spinUnlock();
+        return buffer;
+    }
+
+    @NO_SAFEPOINT_POLLS("a thread frozen while holding the SATB queue lock would block the marking thread")
+    private void freeBuffer(Pointer buffer) {
+        spinLock();
+        buffer.setWord(NEXT_BUFFER_INDEX, freeBuffers);
+        freeBuffers = buffer;
+        spinUnlock();
+    }
+
+    /**
+     * Apply a procedure to the origin of every reference held by the completed buffers, and recycle them.
+     * May be called concurrently with mutators.
+     *
+     * @param visitor procedure applied to the origins of the enqueued references
+     * @return true if at least one buffer was drained
+     */
+    public static boolean drainCompletedBuffers(Pointer.Procedure visitor) {
+        boolean drained = false;
+        Pointer buffer = theSATBQueue.removeCompletedBuffer();
+        while (!buffer.isZero()) {
+            visitEntries(buffer, buffer.getInt(NUM_ENTRIES_INDEX), visitor);
+            theSATBQueue.freeBuffer(buffer);
+            drained = true;
+            buffer = theSATBQueue.removeCompletedBuffer();
+        }
+        return drained;
+    }
+
+    private static final class ThreadQueueSetter implements Pointer.Procedure {
+        boolean active;
+        Pointer.Procedure visitor;
+
+        public void run(Pointer tla) {
+            final Pointer etla = ETLA.load(tla);
+            final Pointer buffer = SATB_QUEUE_BUFFER.load(etla);
+            if (!buffer.isZero() && visitor != null) {
+                visitEntries(buffer, SATB_QUEUE_INDEX.load(etla).toInt(), visitor);
+            }
+            SATB_QUEUE_INDEX.store(etla, Address.zero());
+            SATB_QUEUE_ACTIVE.store(etla, active ? Address.fromInt(1) : Address.zero());
+        }
+    }
+
+    private static final ThreadQueueSetter threadQueueSetter = new ThreadQueueSetter();
+
+    private static void setAllThreads(boolean active, Pointer.Procedure visitor) {
+        FatalError.check(VmOperation.atSafepoint() || VmThread.current().isVmOperationThread(), "SATB queues can only be (de)activated while mutators are stopped");
+        theSATBQueue.active = active;
+        threadQueueSetter.active = active;
+        threadQueueSetter.visitor = visitor;
+        VmThreadMap.ACTIVE.forAllThreadLocals(null, threadQueueSetter);
+        threadQueueSetter.visitor = null;
+    }
+
+    /**
+     * Start recording overwritten references in the queues of all threads.
+     * Must be called by the VM operation thread while mutators are stopped.
+     */
+    public static void activate() {
+        FatalError.check(theSATBQueue.completedBuffers.isZero(), "SATB queues must be empty when activated");
+        setAllThreads(true, null);
+    }
+
+    /**
+     * Stop recording overwritten references and apply a procedure to the origin of every reference held by the completed buffers
+     * and by the buffers of all threads. Must be called by the VM operation thread while mutators are stopped.
+     *
+     * @param visitor procedure applied to the origins of the enqueued references, or {@code null} to discard them
+     */
+    public static void deactivateAndDrain(Pointer.Procedure visitor) {
+        setAllThreads(false, visitor);
+        if (visitor != null) {
+            drainCompletedBuffers(visitor);
+        } else {
+            Pointer buffer = theSATBQueue.removeCompletedBuffer();
+            while (!buffer.isZero()) {
+                theSATBQueue.freeBuffer(buffer);
+                buffer = theSATBQueue.removeCompletedBuffer();
+            }
+        }
+    }
+
+    /**
+     * Release the buffer of the current thread's queue before it terminates.
+     * Entries are handed over to the list of completed buffers if marking is in progress.
+     */
+    @NO_SAFEPOINT_POLLS("must not race with the (de)activation of SATB queues")
+    public static void notifyCurrentThreadDetach() {
+        final Pointer etla = ETLA.load(currentTLA());
+        final Pointer buffer = SATB_QUEUE_BUFFER.load(etla);
+        if (buffer.isZero()) {
+            return;
+        }
+        final int numEntries = SATB_QUEUE_INDEX.load(etla).toInt();
+        SATB_QUEUE_BUFFER.store(etla, Address.zero());
+        SATB_QUEUE_INDEX.store(etla, Address.zero());
+        if (numEntries > 0 && !SATB_QUEUE_ACTIVE.load(etla).isZero()) {
+            theSATBQueue.spinLock();
+            buffer.setInt(NUM_ENTRIES_INDEX, numEntries);
+            buffer.setWord(NEXT_BUFFER_INDEX, theSATBQueue.completedBuffers);
+            theSATBQueue.completedBuffers = buffer;
+            theSATBQueue.spinUnlock();
+        } else {
+            theSATBQueue.freeBuffer(buffer);
+        }
+    }
+}
@@ -65,6 +65,21 @@ public abstract class TLABRefillPolicy {
      */
     public abstract Size nextTlabSize();
 
+    /**
+     * Notifies the policy that the current thread's TLAB was refilled. Default is nothing.
+     * @param tlabSize size of the new TLAB
+     * @param leftover space left unused in the TLAB the new one replaces
+     */
+    public void doOnRefill(Size tlabSize, Size leftover) {
+    }
+
+    /**
+     * Notifies the policy that the thread's TLAB was retired, typically at the beginning of a garbage collection. Default is nothing.
+     * @param leftover space left unused in the retired TLAB
+     */
+    public void doOnRetire(Size leftover) {
+    }
+
     @INTRINSIC(UNSAFE_CAST)
     private static native TLABRefillPolicy asTLABRefillPolicy(Object object);
 
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.vm.heap;
+
+import static com.sun.max.vm.VMOptions.*;
+
+import com.oracle.max.cri.intrinsics.*;
+import com.sun.max.annotate.*;
+import com.sun.max.memory.*;
+import com.sun.max.unsafe.*;
+import com.sun.max.vm.*;
+
+/**
+ * Fixed size, per-worker marking stacks supporting work stealing, for use by parallel heap tracers and evacuators.
+ * Each stack is a bounded double-ended queue of cell addresses (Arora, Blumofe and Plaxton).
+ * The owner of a stack pushes and pops cells at the bottom of its stack without synchronization (except when popping the last cell);
+ * other workers steal cells from the top of the stack with a compare-and-swap on the stack's <em>age</em>, a word
+ * combining the index to the top of the stack with a tag incremented every time the stack is emptied by its owner to avoid ABA problems.
+ *
+ * Stacks are allocated outside of the heap. Each stack starts with a cache-line sized header holding its age and bottom index,
+ * followed by its cells. A push on a full stack fails: it is up to the heap tracer to recover from the overflow.
+ */
+public final class WorkStealingMarkingStacks {
+    private static final VMIntOption stackSizeOption =
+        register(new VMIntOption("-XX:WorkStealingMarkingStackSize=", 16 * 1024, "Size of each of the parallel marking stacks in number of references."),
+                        MaxineVM.Phase.PRISTINE);
+
+    private static final int AGE_OFFSET = 0;
+    private static final int BOTTOM_OFFSET = 8;
+    private static final int HEADER_SIZE = 64;
+
+    private Address base;
+    private int numStacks;
+    private int capacity;
+    private int stackSize;
+
+    public WorkStealingMarkingStacks() {
+    }
+
+    public void initialize(int numStacks) {
+        this.numStacks = numStacks;
+        capacity = stackSizeOption.getValue();
+        stackSize = HEADER_SIZE + (capacity << Word.widthValue().log2numberOfBytes);
+        final Size size = Size.fromInt(stackSize).times(numStacks);
+        base = Memory.allocate(size);
+        if (base.isZero()) {
+            MaxineVM.reportPristineMemoryFailure("work stealing marking stacks", "allocate", size);
+        }
+        for (int i = 0; i < numStacks; i++) {
+            reset(i);
+        }
+    }
+
+    public int numStacks() {
+        return numStacks;
+    }
+
+    @INLINE
+    private Pointer stack(int stackId) {
+        return base.plus(stackId * stackSize).asPointer();
+    }
+
+    @INLINE
+    private static int top(long age) {
+        return (int) age;
+    }
+
+    @INLINE
+    private static long age(int tag, int top) {
+        return (((long) tag) << 32) | (top & 0xFFFFFFFFL);
+    }
+
+    @INLINE
+    private static int tag(long age) {
+        return (int) (age >>> 32);
+    }
+
+    public void reset(int stackId) {
+        final Pointer stack = stack(stackId);
+        stack.writeLong(AGE_OFFSET, 0L);
+        stack.writeLong(BOTTOM_OFFSET, 0L);
+    }
+
+    /**
+     * Push a cell on the bottom of a stack. Must only be called by the owner of the stack.
+     * @param stackId the stack of the current worker
+     * @param cell the cell to push
+     * @return false if the stack is full, true otherwise
+     */
+    public boolean push(int stackId, Pointer cell) {
+        final Pointer stack = stack(stackId);
+        final int bottom = (int) stack.readLong(BOTTOM_OFFSET);
+        if (bottom == capacity) {
+            return false;
+        }
+        stack.setWord(HEADER_SIZE, bottom, cell);
+        // Make the cell visible before the new bottom.
+        MemoryBarriers.barrier(MemoryBarriers.STORE_STORE);
+        stack.writeLong(BOTTOM_OFFSET, bottom + 1);
+        return true;
+    }
+
+    /**
+     * Pop a cell from the bottom of a stack. Must only be called by the owner of the stack.
+     * @param stackId the stack of the current worker
+     * @return a cell, or zero if the stack is empty
+     */
+    public Pointer pop(int stackId) {
+        final Pointer stack = stack(stackId);
+        int bottom = (int) stack.readLong(BOTTOM_OFFSET);
+        if (bottom == 0) {
+            return Pointer.zero();
+        }
+        bottom--;
+        stack.writeLong(BOTTOM_OFFSET, bottom);
+        MemoryBarriers.barrier(MemoryBarriers.STORE_LOAD);
+        final Pointer cell = stack.getWord(HEADER_SIZE, bottom).asPointer();
+        final long oldAge = stack.readLong(AGE_OFFSET);
+        final int top = top(oldAge);
+        if (bottom > top) {
+            return cell;
+        }
+        // Taking the last cell of the stack, or the stack has been emptied by thieves.
+        stack.writeLong(BOTTOM_OFFSET, 0L);
+        final long newAge = age(tag(oldAge) + 1, 0);
+        if (bottom == top) {
+            if (stack.compareAndSwapLong(AGE_OFFSET, oldAge, newAge) == oldAge) {
+                return cell;
+            }
+        }
+        stack.writeLong(AGE_OFFSET, newAge);
+        return Pointer.zero();
+    }
+
+    /**
+     * Attempt to steal a cell from the top of a stack.
+     * @param stackId the stack to steal from
+     * @return a cell, or zero if the stack is empty or if the steal lost a race with another worker
+     */
+    public Pointer steal(int stackId) {
+        final Pointer stack = stack(stackId);
+        final long oldAge = stack.readLong(AGE_OFFSET);
+        MemoryBarriers.barrier(MemoryBarriers.LOAD_LOAD);
+        final int bottom = (int) stack.readLong(BOTTOM_OFFSET);
+        final int top = top(oldAge);
+        if (bottom <= top) {
+            return Pointer.zero();
+        }
+        final Pointer cell = stack.getWord(HEADER_SIZE, top).asPointer();
+        if (stack.compareAndSwapLong(AGE_OFFSET, oldAge, age(tag(oldAge), top + 1)) == oldAge) {
+            return cell;
+        }
+        return Pointer.zero();
+    }
+
+    /**
+     * Attempt to steal a cell from any stack but the thief's one. Victims are tried in a round-robin order starting
+     * from the thief's right neighbor.
+     * @param thiefId the stack of the current worker
+     * @return a cell, or zero if no cell could be stolen
+     */
+    public Pointer stealFromOthers(int thiefId) {
+        for (int i = 1; i < numStacks; i++) {
+            int victim = thiefId + i;
+            if (victim >= numStacks) {
+                victim -= numStacks;
+            }
+            final Pointer cell = steal(victim);
+            if (!cell.isZero()) {
+                return cell;
+            }
+        }
+        return Pointer.zero();
+    }
+
+    public boolean isEmpty(int stackId) {
+        final Pointer stack = stack(stackId);
+        return ((int) stack.readLong(BOTTOM_OFFSET)) <= top(stack.readLong(AGE_OFFSET));
+    }
+
+    /**
+     * Indicates whether all stacks are empty. This is only a hint when workers are concurrently pushing cells.
+     */
+    public boolean allEmpty() {
+        for (int i = 0; i < numStacks; i++) {
+            if (!isEmpty(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -34,6 +34,9 @@ import com.sun.max.util.*;
  * The arguments needed are specified via an argument specification, so the generator can take the
  * requirement into account to factor some operations (mostly, computing a field address), and to pass only the necessary arguments.
  * This would requires some parsing of the argument specifications though.
+ * <p>
+ * Tuple barriers are passed the object being updated followed by the offset to the updated field; array barriers are passed the array being updated
+ * followed by the index to the updated element. Pre-write barriers run before the store, so they can read the reference about to be overwritten.
  */
 public interface XirWriteBarrierSpecification extends WriteBarrierSpecification {
 
@@ -51,6 +54,22 @@ public interface XirWriteBarrierSpecification extends WriteBarrierSpecification
         void genWriteBarrier(CiXirAssembler asm, XirOperand ... operands);
     }
 
+    /**
+     * Interface to the XIR generator's runtime call stubs, for barriers whose slow path calls into the runtime.
+     * XIR templates must not call the runtime directly, as such calls would not preserve the registers of the compiled code.
+     */
+    public interface XirRuntimeCallStubs {
+        /**
+         * Generate a call to a public static method through a stub that saves and restores the registers of the caller.
+         * @param asm the assembler of the template being generated
+         * @param runtimeCalls the class declaring the method
+         * @param method name of the method
+         * @param result operand receiving the value returned by the method, or {@code null} if the method returns void
+         * @param args arguments to the method
+         */
+        void callRuntimeThroughStub(CiXirAssembler asm, Class<?> runtimeCalls, String method, XirOperand result, XirOperand... args);
+    }
+
     XirWriteBarrierGenerator NULL_WRITE_BARRIER_GEN = new XirWriteBarrierGenerator() {
 
         public void genWriteBarrier(CiXirAssembler asm, XirOperand... operands) {
@@ -61,6 +80,7 @@ public interface XirWriteBarrierSpecification extends WriteBarrierSpecification
      * Return a XIR write-barrier generator that implements the specification encoded in a bit set whose elements correspond to enum-based flags.
      *
      * @param writeBarrierSpec a bit set encoding a write barrier specification.
+     * @param runtimeCallStubs stubs the generated barrier may call the runtime through
      */
-    XirWriteBarrierGenerator barrierGenerator(IntBitSet<WriteBarrierSpecification.WriteBarrierSpec> writeBarrierSpec);
+    XirWriteBarrierGenerator barrierGenerator(IntBitSet<WriteBarrierSpecification.WriteBarrierSpec> writeBarrierSpec, XirRuntimeCallStubs runtimeCallStubs);
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.vm.heap.gcx;
+
+import com.sun.max.memory.*;
+import com.sun.max.unsafe.*;
+import com.sun.max.vm.heap.*;
+import com.sun.max.vm.heap.gcx.rset.ctbl.*;
+import com.sun.max.vm.layout.*;
+import com.sun.max.vm.reference.*;
+
+/**
+ * Evacuator for an {@link AgingRegionalizedNursery}. Survivors whose age doesn't exceed the nursery's tenuring threshold are
+ * evacuated to the nursery's to-survivor space, others are promoted to the old generation.
+ * Survivors are also promoted when the to-survivor space overflows.
+ * <p>
+ * Since survivors may now remain in the nursery after a minor collection, references to them from the old generation and from the boot heap are
+ * recorded in the card table so that they are found again on the next minor collection.
+ * <p>
+ * Aging is sequential: parallel evacuation of the nursery is only supported when the nursery doesn't age survivors.
+ */
+public final class AgingNurseryEvacuator extends NoAgingNurseryEvacuator {
+    private final AgingRegionalizedNursery nursery;
+
+    /**
+     * Start and end of the range of survivors of each age evacuated to the nursery but not recorded in the survivor ranges queue yet.
+     */
+    private final long [] unrecordedRangeStart = new long[AgingRegionalizedNursery.MAX_AGE + 1];
+    private final long [] unrecordedRangeEnd = new long[AgingRegionalizedNursery.MAX_AGE + 1];
+
+    public AgingNurseryEvacuator(AgingRegionalizedNursery nursery, HeapSpace toSpace, EvacuationBufferProvider evacuationBufferProvider, CardTableRSet rset, String name) {
+        super(nursery, toSpace, evacuationBufferProvider, rset, name);
+        this.nursery = nursery;
+    }
+
+    @Override
+    public void initializeParallelEvacuation(int numWorkers) {
+        if (!nursery.agesSurvivors()) {
+            super.initializeParallelEvacuation(numWorkers);
+        }
+    }
+
+    @Override
+    Pointer evacuate(Pointer fromOrigin, Size size) {
+        final int age = nursery.ageOf(fromOrigin) + 1;
+        if (age <= nursery.tenuringThreshold()) {
+            final Pointer toCell = nursery.allocateSurvivor(age, size);
+            if (!toCell.isZero()) {
+                if (!toCell.equals(Address.fromLong(unrecordedRangeEnd[age]))) {
+                    // Survivors of this age are now evacuated to a new region.
+                    recordRange(Address.fromLong(unrecordedRangeStart[age]), Address.fromLong(unrecordedRangeEnd[age]));
+                    unrecordedRangeStart[age] = toCell.toLong();
+                }
+                unrecordedRangeEnd[age] = toCell.plus(size).toLong();
+                Memory.copyBytes(Layout.originToCell(fromOrigin), toCell, size);
+                return toCell;
+            }
+        }
+        return super.evacuate(fromOrigin, size);
+    }
+
+    @Override
+    protected void updateSurvivorRanges() {
+        super.updateSurvivorRanges();
+        for (int age = 1; age <= AgingRegionalizedNursery.MAX_AGE; age++) {
+            if (unrecordedRangeEnd[age] > unrecordedRangeStart[age]) {
+                recordRange(Address.fromLong(unrecordedRangeStart[age]), Address.fromLong(unrecordedRangeEnd[age]));
+                unrecordedRangeStart[age] = unrecordedRangeEnd[age];
+            }
+        }
+    }
+
+    @Override
+    void updateRSet(Pointer refHolderOrigin, int wordIndex, Reference ref) {
+        if (nursery.contains(ref.toOrigin()) && !nursery.contains(refHolderOrigin) && (toSpace.contains(refHolderOrigin) || Heap.bootHeapRegion.contains(refHolderOrigin))) {
+            // The reference holder is outside of the nursery and refers to a survivor that remains in the nursery.
+            rset.record(Reference.fromOrigin(refHolderOrigin), Offset.fromInt(wordIndex << Word.widthValue().log2numberOfBytes));
+        }
+    }
+
+    @Override
+    protected void doAfterEvacuation() {
+        super.doAfterEvacuation();
+        for (int age = 1; age <= AgingRegionalizedNursery.MAX_AGE; age++) {
+            unrecordedRangeStart[age] = 0L;
+            unrecordedRangeEnd[age] = 0L;
+        }
+    }
+}
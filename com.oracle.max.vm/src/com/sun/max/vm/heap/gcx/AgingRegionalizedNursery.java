@@ -0,0 +1,464 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.vm.heap.gcx;
+
+import static com.sun.max.vm.heap.HeapSchemeAdaptor.*;
+import static com.sun.max.vm.heap.gcx.HeapRegionConstants.*;
+
+import com.sun.max.annotate.*;
+import com.sun.max.memory.*;
+import com.sun.max.unsafe.*;
+import com.sun.max.vm.*;
+import com.sun.max.vm.heap.*;
+import com.sun.max.vm.heap.HeapScheme.GCRequest;
+import com.sun.max.vm.runtime.*;
+
+/**
+ * A nursery that ages survivors of minor collections before promoting them to the next generation.
+ * The nursery's contiguous range of regions is split into an eden space, where mutators allocate, followed by two survivor spaces of equal size.
+ * On a minor collection, live objects of the eden and of the from-survivor space that haven't reached the current tenuring threshold
+ * are evacuated to the to-survivor space; others are promoted to the next generation.
+ * The roles of the survivor spaces are swapped after each minor collection, and the tenuring threshold is re-computed by the
+ * {@link GenHeapSizingPolicy} based on the occupancy of the survivor space.
+ * <p>
+ * The age of survivors is recorded per region: survivors of the same age are evacuated together in regions of the to-survivor space
+ * dedicated to that age. Objects in the eden are of age 0.
+ * <p>
+ * If the sizing policy sets aside no survivor spaces, all survivors are promoted on their first minor collection, as with the {@link NoAgingRegionalizedNursery}.
+ */
+public final class AgingRegionalizedNursery implements HeapSpace {
+    /**
+     * Maximum age an object may reach in the nursery.
+     */
+    public static final int MAX_AGE = 15;
+
+    final class NurseryRefiller extends Refiller {
+        @Override
+        public Address allocateRefill(Size requestedSize, Pointer startOfSpaceLeft, Size spaceLeft) {
+            GCRequest.setGCRequest(requestedSize);
+            if (!Heap.collectGarbage()) {
+                throw new OutOfMemoryError();
+            }
+            // We're out of safepoint. The current thread hold the refill lock and will do the refill of the allocator.
+            return Address.zero();
+        }
+
+        @Override
+        protected void doBeforeGC() {
+            // Nothing to do.
+        }
+
+        @Override
+        public Address allocateLargeRaw(Size size) {
+            FatalError.unimplemented();
+            return Address.zero();
+        }
+    }
+
+    /**
+     * View of the eden space of the nursery. After a minor collection, no references to the eden may be left.
+     */
+    final class Eden implements EvacuatingSpace {
+        @Override
+        public SpaceBounds bounds() {
+            return bounds;
+        }
+
+        @Override
+        public boolean contains(Address address) {
+            return allocator.inCurrentContiguousChunk(address);
+        }
+
+        @Override
+        public void doBeforeGC() {
+        }
+
+        @Override
+        public void doAfterGC() {
+        }
+    }
+
+    /**
+     * The heap account space for this nursery is allocated from.
+     */
+    private final HeapAccount<? extends HeapAccountOwner> heapAccount;
+
+    private final int regionTag;
+    /**
+     * List of region allocated to the nursery.
+     */
+    private HeapRegionList nurseryRegionsList;
+    /**
+     * List of regions allocated to the nursery but uncommitted.
+     */
+    private HeapRegionList uncommitedNurseryRegionsList;
+
+    /**
+     * Atomic bump pointer allocator over the eden space.
+     */
+    @INSPECTED
+    private final AtomicBumpPointerAllocator<NurseryRefiller> allocator = new AtomicBumpPointerAllocator<NurseryRefiller>(new NurseryRefiller());
+
+    private final SpaceBounds bounds;
+
+    private final Eden eden;
+
+    /**
+     * Start of the first survivor space, i.e., end of the eden.
+     */
+    private Address survivorSpacesStart = Address.zero();
+
+    /**
+     * End of the nursery, i.e., end of the second survivor space.
+     */
+    private Address end = Address.zero();
+
+    private Size survivorSpaceSize = Size.zero();
+
+    private int numSurvivorRegions;
+
+    /**
+     * Index (0 or 1) of the survivor space survivors are evacuated to on the next minor collection.
+     */
+    private int toSurvivorSpace;
+
+    /**
+     * Age of the survivors held by each region of the two survivor spaces, indexed by region rank from the first survivor region.
+     * Zero for unused regions.
+     */
+    private byte [] survivorRegionAges;
+
+    /**
+     * Rank in the to-survivor space of the next region available for evacuating survivors.
+     */
+    private int nextFreeSurvivorRegion;
+
+    /**
+     * Allocation mark and limit of the to-survivor space region currently receiving survivors of each age.
+     */
+    private final long [] cohortTop = new long[MAX_AGE + 1];
+    private final long [] cohortEnd = new long[MAX_AGE + 1];
+
+    /**
+     * Number of bytes of survivors of each age evacuated to the to-survivor space.
+     */
+    private final long [] survivorBytesPerAge = new long[MAX_AGE + 1];
+
+    /**
+     * Number of bytes of survivors in the from-survivor space.
+     */
+    private Size survivorsUsedSpace = Size.zero();
+
+    /**
+     * Survivors of the next minor collection that would exceed this age are promoted.
+     */
+    private int tenuringThreshold;
+
+    private GenHeapSizingPolicy sizingPolicy;
+
+    public AgingRegionalizedNursery(HeapAccount<? extends HeapAccountOwner> heapAccount, int regionTag) {
+        this.heapAccount = heapAccount;
+        this.regionTag = regionTag;
+        this.bounds = new SpaceBounds() {
+            @Override
+            Address lowestAddress() {
+                return allocator.start();
+            }
+
+            /**
+             * The evacuated area comprises the eden and the from-survivor space.
+             */
+            @Override
+            boolean isIn(Address address) {
+                return address.greaterEqual(lowestAddress()) && address.lessThan(end) && !inToSurvivorSpace(address);
+            }
+
+            @Override
+            boolean isContiguous() {
+                return survivorSpaceSize.isZero();
+            }
+
+            @Override
+            Address highestAddress() {
+                return end;
+            }
+        };
+        this.eden = new Eden();
+    }
+
+    public AgingRegionalizedNursery(HeapAccount<? extends HeapAccountOwner> heapAccount) {
+        this(heapAccount, 0);
+    }
+
+    public void initialize(GenHeapSizingPolicy genSizingPolicy) {
+        nurseryRegionsList = HeapRegionList.RegionListUse.OWNERSHIP.createList();
+        uncommitedNurseryRegionsList = HeapRegionList.RegionListUse.OWNERSHIP.createList();
+        if (!heapAccount.allocateContiguous(HeapRegionConstants.numberOfRegions(genSizingPolicy.maxYoungGenSize()), nurseryRegionsList, false, false, regionTag)) {
+            FatalError.unexpected("Couldn't allocate contiguous range to the nursery");
+        }
+        int regionID = nurseryRegionsList.head();
+        int numCommittedRegions = HeapRegionConstants.numberOfRegions(genSizingPolicy.initialYoungGenSize());
+        heapAccount.commit(RegionRange.from(regionID, numCommittedRegions));
+
+        int lastCommittedRegion = regionID + numCommittedRegions - 1;
+        while (nurseryRegionsList.tail() != lastCommittedRegion) {
+            uncommitedNurseryRegionsList.prepend(nurseryRegionsList.removeTail());
+        }
+        final Address start = RegionTable.theRegionTable().regionAddress(nurseryRegionsList.head());
+        sizingPolicy = genSizingPolicy;
+        survivorSpaceSize = genSizingPolicy.survivorSpaceSize();
+        numSurvivorRegions = numberOfRegions(survivorSpaceSize);
+        survivorRegionAges = new byte[2 * numSurvivorRegions];
+        tenuringThreshold = genSizingPolicy.maxTenuringThreshold();
+        end = start.plus(genSizingPolicy.initialYoungGenSize());
+        survivorSpacesStart = end.minus(survivorSpaceSize.times(2));
+        allocator.initialize(start, survivorSpacesStart.minus(start).asSize(), Size.fromInt(regionSizeInBytes));
+    }
+
+    /**
+     * Indicates whether the nursery ages its survivors.
+     */
+    public boolean agesSurvivors() {
+        return numSurvivorRegions > 0;
+    }
+
+    /**
+     * The eden space of the nursery.
+     */
+    public EvacuatingSpace eden() {
+        return eden;
+    }
+
+    @INLINE
+    private Address toSurvivorSpaceStart() {
+        return survivorSpacesStart.plus(survivorSpaceSize.times(toSurvivorSpace));
+    }
+
+    @INLINE
+    private boolean inToSurvivorSpace(Address address) {
+        final Address toSurvivorSpaceStart = toSurvivorSpaceStart();
+        return address.greaterEqual(toSurvivorSpaceStart) && address.lessThan(toSurvivorSpaceStart.plus(survivorSpaceSize));
+    }
+
+    @INLINE
+    private Address survivorRegionStart(int regionRank) {
+        return survivorSpacesStart.plus(Address.fromInt(regionRank).shiftedLeft(log2RegionSizeInBytes));
+    }
+
+    /**
+     * Number of minor collections the object at the specified address of the nursery has survived.
+     */
+    int ageOf(Address address) {
+        if (address.lessThan(survivorSpacesStart)) {
+            return 0;
+        }
+        return survivorRegionAges[address.minus(survivorSpacesStart).unsignedShiftedRight(log2RegionSizeInBytes).toInt()];
+    }
+
+    /**
+     * Survivors of the current minor collection that reach an age greater than the tenuring threshold must be promoted.
+     */
+    int tenuringThreshold() {
+        return tenuringThreshold;
+    }
+
+    /**
+     * Indicates whether a cell of the specified size can be allocated at the specified top without leaving unparsable space before the end.
+     */
+    @INLINE
+    private static boolean fits(Address top, Size size, Address end) {
+        final Address newTop = top.plus(size);
+        return newTop.equals(end) || newTop.plus(minObjectSize()).lessEqual(end);
+    }
+
+    /**
+     * Allocate space in the to-survivor space for a survivor of the specified age.
+     * Survivors of the same age are allocated contiguously in regions dedicated to that age.
+     * Must only be called during a minor collection, by the evacuator of the nursery.
+     *
+     * @param age age of the survivor, between 1 and {@link #MAX_AGE}
+     * @param size size of the survivor
+     * @return the cell allocated to the survivor, or zero if the to-survivor space has no room for it
+     */
+    Pointer allocateSurvivor(int age, Size size) {
+        Address cell = Address.fromLong(cohortTop[age]);
+        if (!fits(cell, size, Address.fromLong(cohortEnd[age]))) {
+            if (nextFreeSurvivorRegion == numSurvivorRegions) {
+                return Pointer.zero();
+            }
+            final int regionRank = toSurvivorSpace * numSurvivorRegions + nextFreeSurvivorRegion;
+            final Address regionStart = survivorRegionStart(regionRank);
+            final Address regionEnd = regionStart.plus(regionSizeInBytes);
+            if (!fits(regionStart, size, regionEnd)) {
+                return Pointer.zero();
+            }
+            retireCohortRegion(age);
+            nextFreeSurvivorRegion++;
+            survivorRegionAges[regionRank] = (byte) age;
+            cell = regionStart;
+            cohortEnd[age] = regionEnd.toLong();
+        }
+        cohortTop[age] = cell.plus(size).toLong();
+        survivorBytesPerAge[age] += size.toLong();
+        return cell.asPointer();
+    }
+
+    /**
+     * Leave the space left in the region currently receiving survivors of the specified age in an iterable state.
+     */
+    private void retireCohortRegion(int age) {
+        final Address top = Address.fromLong(cohortTop[age]);
+        final Address limit = Address.fromLong(cohortEnd[age]);
+        if (top.lessThan(limit)) {
+            DarkMatter.format(top, limit);
+        }
+        cohortTop[age] = 0L;
+        cohortEnd[age] = 0L;
+    }
+
+    public Pointer allocate(Size size) {
+        return allocator.allocateCleared(size);
+    }
+
+    /**
+     * The nursery is never resized. Its survivor spaces sit at the end of its range and hold live objects between minor
+     * collections, so the nursery cannot grow or shrink without moving them. The generational heap scheme sizes it once at
+     * initialization and never hands it to a {@link HeapResizingPolicy}.
+     */
+    @Override
+    public Size increaseSize(Size delta) {
+        FatalError.check(delta.isZero(), "Aging nursery cannot be resized: its survivor spaces hold live objects at the end of its range");
+        return Size.zero();
+    }
+
+    /**
+     * @see #increaseSize(Size)
+     */
+    @Override
+    public Size decreaseSize(Size delta) {
+        FatalError.check(delta.isZero(), "Aging nursery cannot be resized: its survivor spaces hold live objects at the end of its range");
+        return Size.zero();
+    }
+
+    /**
+     * The total space of the nursery is the space that may be evacuated, i.e., the eden plus one survivor space.
+     */
+    @Override
+    public Size totalSpace() {
+        return allocator.size().plus(survivorSpaceSize);
+    }
+
+    @Override
+    public Size capacity() {
+        return Size.fromInt(regionSizeInBytes).times(uncommitedNurseryRegionsList.size()).plus(allocator.size()).plus(survivorSpaceSize.times(2));
+    }
+
+    @Override
+    public Pointer allocateTLAB(Size size) {
+        final Pointer tlab = allocator.allocateRaw(size);
+        HeapFreeChunk.format(tlab, size);
+        return tlab;
+    }
+
+    public void retireTLAB(Pointer start, Size size) {
+        FatalError.check(allocator.inCurrentContiguousChunk(start), "Retired TLAB Space must be in allocating space");
+        if (!allocator.retireTop(start, size)) {
+            DarkMatter.format(start, size);
+        }
+    }
+
+    @Override
+    public boolean contains(Address address) {
+        return address.greaterEqual(allocator.start()) && address.lessThan(end);
+    }
+
+    @Override
+    public void doBeforeGC() {
+        allocator.doBeforeGC();
+    }
+
+    @Override
+    public void doAfterGC() {
+        if (MaxineVM.isDebug()) {
+            allocator.zap();
+        }
+        allocator.reset();
+        if (numSurvivorRegions > 0) {
+            // The from-survivor space has been evacuated: release its regions and swap survivor spaces.
+            final int firstFromRegion = (1 - toSurvivorSpace) * numSurvivorRegions;
+            for (int i = 0; i < numSurvivorRegions; i++) {
+                survivorRegionAges[firstFromRegion + i] = 0;
+            }
+            if (MaxineVM.isDebug()) {
+                Memory.setWords(survivorRegionStart(firstFromRegion).asPointer(), survivorSpaceSize.unsignedShiftedRight(Word.widthValue().log2numberOfBytes).toInt(),
+                                HeapFreeChunk.deadSpaceMark());
+            }
+            long survivorBytes = 0L;
+            for (int age = 1; age <= MAX_AGE; age++) {
+                retireCohortRegion(age);
+                survivorBytes += survivorBytesPerAge[age];
+            }
+            survivorsUsedSpace = Size.fromLong(survivorBytes);
+            toSurvivorSpace = 1 - toSurvivorSpace;
+            nextFreeSurvivorRegion = 0;
+            tenuringThreshold = sizingPolicy.tenuringThreshold(survivorBytesPerAge);
+            if (Heap.verbose()) {
+                Log.print("--Survivor bytes: ");
+                Log.print(survivorBytes);
+                Log.print(", tenuring threshold: ");
+                Log.println(tenuringThreshold);
+            }
+            for (int age = 1; age <= MAX_AGE; age++) {
+                survivorBytesPerAge[age] = 0L;
+            }
+        }
+    }
+
+    @Override
+    public Size freeSpace() {
+        return allocator.freeSpace();
+    }
+
+    @Override
+    public Size usedSpace() {
+        return allocator.usedSpace().plus(survivorsUsedSpace);
+    }
+
+    @Override
+    public void visit(CellRangeVisitor visitor) {
+        visitor.visitCells(allocator.start(), allocator.top);
+        // Survivors of the last minor collection are in the from-survivor space.
+        final int firstFromRegion = (1 - toSurvivorSpace) * numSurvivorRegions;
+        for (int i = 0; i < numSurvivorRegions; i++) {
+            if (survivorRegionAges[firstFromRegion + i] != 0) {
+                final Address regionStart = survivorRegionStart(firstFromRegion + i);
+                visitor.visitCells(regionStart, regionStart.plus(regionSizeInBytes));
+            }
+        }
+    }
+
+    @Override
+    public SpaceBounds bounds() {
+        return bounds;
+    }
+}
@@ -57,4 +57,11 @@ public final class AtomicPinCounter {
             newValue  = oldValue - 1;
         } while (Reference.fromJava(this).compareAndSwapInt(pinnedCounterOffset(), oldValue, newValue) != oldValue);
     }
+
+    /**
+     * Indicates whether some objects are currently pinned.
+     */
+    public boolean hasPinnedObjects() {
+        return pinnedCounter > 0;
+    }
 }
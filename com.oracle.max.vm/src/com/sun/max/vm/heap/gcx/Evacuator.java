@@ -25,6 +25,7 @@ package com.sun.max.vm.heap.gcx;
 import static com.sun.max.vm.heap.gcx.EvacuationTimers.TIMED_OPERATION.*;
 import static com.sun.max.vm.heap.gcx.HeapFreeChunk.*;
 
+import com.oracle.max.cri.intrinsics.*;
 import com.sun.max.annotate.*;
 import com.sun.max.unsafe.*;
 import com.sun.max.vm.*;
@@ -75,6 +76,12 @@ public abstract class Evacuator extends PointerIndexVisitor implements CellVisit
 
     private boolean refDiscoveryEnabled = true;
 
+    /**
+     * Indicates whether other evacuators may concurrently evacuate cells of the same evacuated area,
+     * in which case cells are forwarded with an atomic compare-and-swap.
+     */
+    private boolean atomicForwarding;
+
     private GCOperation currentGCOperation;
 
     private EvacuationTimers timers;
@@ -96,9 +103,17 @@ public abstract class Evacuator extends PointerIndexVisitor implements CellVisit
         return currentGCOperation;
     }
 
+    /**
+     * Discover a special reference. Evacuators running concurrently with other evacuators must serialize discoveries.
+     * @param origin origin of a special reference object
+     */
+    protected void discoverSpecialReference(Pointer origin) {
+        SpecialReferenceManager.discoverSpecialReference(origin);
+    }
+
     private void updateSpecialReference(Pointer origin) {
         if (refDiscoveryEnabled) {
-            SpecialReferenceManager.discoverSpecialReference(origin);
+            discoverSpecialReference(origin);
         } else {
             // Treat referent as strong reference.
             if (traceEvacVisitedCell()) {
@@ -188,6 +203,31 @@ public abstract class Evacuator extends PointerIndexVisitor implements CellVisit
     @NEVER_INLINE
     abstract Pointer evacuate(Pointer origin);
 
+    /**
+     * Same as {@link #evacuate(Pointer)}, but the size of the cell is provided by the caller as the cell's header
+     * may be concurrently overwritten with a forwarding reference.
+     * Only evacuators supporting {@linkplain #setAtomicForwarding(boolean) atomic forwarding} must implement it.
+     * @param origin origin of the cell to evacuate
+     * @param size size of the cell to evacuate
+     * @return origin of the cell after evacuation
+     */
+    Pointer evacuate(Pointer origin, Size size) {
+        throw FatalError.unimplemented();
+    }
+
+    /**
+     * Undo the evacuation of a cell that was concurrently evacuated by another evacuator.
+     * @param toOrigin origin of the copy returned by {@link #evacuate(Pointer, Size)}
+     * @param size size of the copy
+     */
+    void cancelEvacuation(Pointer toOrigin, Size size) {
+        throw FatalError.unimplemented();
+    }
+
+    final void setAtomicForwarding(boolean atomicForwarding) {
+        this.atomicForwarding = atomicForwarding;
+    }
+
     /**
      * Remembered set updates to apply to a reference to an evacuated cell.
      * Default is to do nothing.
@@ -208,6 +248,9 @@ public abstract class Evacuator extends PointerIndexVisitor implements CellVisit
      * @return a reference to the evacuated cell's new location
      */
     protected final Reference getForwardRef(Pointer origin) {
+        if (atomicForwarding) {
+            return getForwardRefAtomic(origin);
+        }
         Reference forwardRef = Layout.readForwardRef(origin);
         if (forwardRef.isZero()) {
             final Pointer toOrigin = evacuate(origin);
@@ -217,6 +260,33 @@ public abstract class Evacuator extends PointerIndexVisitor implements CellVisit
         return forwardRef;
     }
 
+    /**
+     * Same as {@link #getForwardRef(Pointer)} when other evacuators may concurrently evacuate the same cell.
+     * The cell is copied first, then forwarded with a compare-and-swap of its header. The evacuator that loses the race
+     * cancels its copy and uses the forwarding reference installed by the winner.
+     *
+     * @param origin origin of the cell in the evacuated area
+     * @return a reference to the evacuated cell's new location
+     */
+    private Reference getForwardRefAtomic(Pointer origin) {
+        final Reference hubRef = Layout.readHubReference(origin);
+        if (hubRef.isMarked()) {
+            return hubRef.unmarked();
+        }
+        final Hub hub = UnsafeCast.asHub(hubRef.toJava());
+        final Size size = hub.specificLayout.isTupleLayout() ? hub.tupleSize : hub.specificLayout.specificSize(origin);
+        final Pointer toOrigin = evacuate(origin, size);
+        final Reference forwardRef = Reference.fromOrigin(toOrigin);
+        // Make the copy visible before the forwarding reference.
+        MemoryBarriers.barrier(MemoryBarriers.STORE_STORE);
+        final Reference witness = Layout.compareAndSwapForwardRef(origin, hubRef, forwardRef);
+        if (witness != hubRef) {
+            cancelEvacuation(toOrigin, size);
+            return witness.unmarked();
+        }
+        return forwardRef;
+    }
+
     @NEVER_INLINE
     private void reportDarkMatterForwarding(Pointer origin, Pointer at, Pointer forwarded) {
         final boolean lockDisabledSafepoints = Log.lock();
@@ -239,6 +309,9 @@ public abstract class Evacuator extends PointerIndexVisitor implements CellVisit
      * @return a reference to the evacuated cell's new location
      */
     protected final Reference getForwardRef(Pointer origin, Pointer at) {
+        if (atomicForwarding) {
+            return getForwardRefAtomic(origin);
+        }
         Reference forwardRef = Layout.readForwardRef(origin);
         if (forwardRef.isZero()) {
             final Pointer toOrigin = evacuate(origin);
@@ -502,13 +575,23 @@ public abstract class Evacuator extends PointerIndexVisitor implements CellVisit
     protected void doAfterOperation(TIMED_OPERATION op) {
     }
 
-    public final void evacuate(boolean logPhases) {
-        currentEvacuationOperation = PROLOGUE;
-        timers.start(PROLOGUE);
-        doBeforeEvacuation();
-        timers.stop(PROLOGUE);
-        doAfterOperation(PROLOGUE);
+    /**
+     * Indicates whether the evacuation from roots, remembered sets and evacuated cells is performed in parallel by {@link #evacuateInParallel()}.
+     * Default is false.
+     */
+    protected boolean evacuatesInParallel() {
+        return false;
+    }
+
+    /**
+     * Evacuate all objects of the evacuated area reachable from roots, the boot heap, code, the immortal heap and remembered sets
+     * with the help of GC worker threads. Special references are processed afterwards by this evacuator.
+     */
+    protected void evacuateInParallel() {
+        FatalError.unimplemented();
+    }
 
+    private void evacuateSequentially(boolean logPhases) {
         if (logPhases) {
             phaseLogger.logScanningRoots(VMLogger.Interval.BEGIN);
         }
@@ -580,6 +663,30 @@ public abstract class Evacuator extends PointerIndexVisitor implements CellVisit
         if (logPhases) {
             phaseLogger.logEvacuating(VMLogger.Interval.END);
         }
+    }
+
+    public final void evacuate(boolean logPhases) {
+        currentEvacuationOperation = PROLOGUE;
+        timers.start(PROLOGUE);
+        doBeforeEvacuation();
+        timers.stop(PROLOGUE);
+        doAfterOperation(PROLOGUE);
+
+        if (evacuatesInParallel()) {
+            if (logPhases) {
+                phaseLogger.logEvacuating(VMLogger.Interval.BEGIN);
+            }
+            currentEvacuationOperation = COPY;
+            timers.start(COPY);
+            evacuateInParallel();
+            timers.stop(COPY);
+            doAfterOperation(COPY);
+            if (logPhases) {
+                phaseLogger.logEvacuating(VMLogger.Interval.END);
+            }
+        } else {
+            evacuateSequentially(logPhases);
+        }
 
         if (logPhases) {
             phaseLogger.logProcessingSpecialReferences(VMLogger.Interval.BEGIN);
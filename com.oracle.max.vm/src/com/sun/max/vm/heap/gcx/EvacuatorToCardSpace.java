@@ -142,6 +142,11 @@ public class EvacuatorToCardSpace extends Evacuator {
      */
     private SurvivorRangesQueue survivorRanges;
 
+    /**
+     * Indicates whether the survivor ranges queue is shared with evacuators running concurrently.
+     */
+    private boolean sharesSurvivorRanges;
+
     /**
      * Bounds of the evacuated space. For fast in-bound testing.
      */
@@ -166,6 +171,30 @@ public class EvacuatorToCardSpace extends Evacuator {
         this.logger = new EvacuationLogger(name);
     }
 
+    /**
+     * Create an evacuator that evacuates the same area as the specified {@linkplain #initialize(int, boolean, Size, boolean) initialized}
+     * evacuator, concurrently with it. Both evacuators share the same survivor ranges queue and logger, but each has its own evacuation buffer.
+     *
+     * @param evacuator the evacuator to run concurrently with
+     */
+    protected EvacuatorToCardSpace(EvacuatorToCardSpace evacuator) {
+        this.fromSpace = evacuator.fromSpace;
+        this.toSpace = evacuator.toSpace;
+        this.rset = evacuator.rset;
+        this.cfoTable = evacuator.cfoTable;
+        this.evacuationBufferProvider = evacuator.evacuationBufferProvider;
+        this.evacuatedAreaBounds = evacuator.evacuatedAreaBounds;
+        this.logger = evacuator.logger;
+        this.survivorRanges = evacuator.survivorRanges;
+        this.sharesSurvivorRanges = true;
+        this.alwaysRefill = evacuator.alwaysRefill;
+        this.minRefillThreshold = evacuator.minRefillThreshold;
+        this.retireAfterEvacuation = evacuator.retireAfterEvacuation;
+        this.checkDarkMatterRefs = evacuator.checkDarkMatterRefs;
+        setDumper(evacuator.dumper);
+        setDetailLogger(evacuator.detailLogger);
+    }
+
     public void setEvacuationSpace(EvacuatingSpace fromSpace,  HeapSpace toSpace) {
         this.fromSpace = fromSpace;
         this.toSpace = toSpace;
@@ -187,6 +216,13 @@ public class EvacuatorToCardSpace extends Evacuator {
         this.retireAfterEvacuation = retireAfterEvacuation;
     }
 
+    /**
+     * Let evacuators running concurrently with this one share its survivor ranges queue.
+     */
+    final void shareSurvivorRanges() {
+        sharesSurvivorRanges = true;
+    }
+
     /**
      * Number of bytes evacuated in the last evacuation.
      * @return a number of bytes
@@ -210,6 +246,14 @@ public class EvacuatorToCardSpace extends Evacuator {
     @Override
     protected void doBeforeEvacuation() {
         fromSpace.doBeforeGC();
+        beginEvacuation();
+    }
+
+    /**
+     * Set up the evacuation buffer for an evacuation. Evacuators running concurrently with the one driving the evacuation only perform this
+     * part of {@link #doBeforeEvacuation()}.
+     */
+    final void beginEvacuation() {
         evacuatedBytes = Size.zero();
         lastOverflowAllocatedRangeStart = Pointer.zero();
         lastOverflowAllocatedRangeEnd = Pointer.zero();
@@ -234,6 +278,14 @@ public class EvacuatorToCardSpace extends Evacuator {
     protected void doAfterEvacuation() {
         survivorRanges.clear();
         fromSpace.doAfterGC();
+        endEvacuation();
+    }
+
+    /**
+     * Leave the evacuation buffer in an iterable state at the end of an evacuation.
+     * Evacuators running concurrently with the one driving the evacuation only perform this part of {@link #doAfterEvacuation()}.
+     */
+    final void endEvacuation() {
         Pointer limit = pend.plus(evacuationBufferHeadroom());
         if (logger.enabled()) {
             logger.logEndEvacuation(limit);
@@ -262,7 +314,7 @@ public class EvacuatorToCardSpace extends Evacuator {
         }
     }
 
-    private void recordRange(Address start, Address end) {
+    protected final void recordRange(Address start, Address end) {
         final Size rangeSize = end.minus(start).asSize();
         if (rangeSize.isZero()) {
             return;
@@ -271,13 +323,22 @@ public class EvacuatorToCardSpace extends Evacuator {
             DarkMatter.checkNoDarkMatterRef(start, end);
         }
         evacuatedBytes = evacuatedBytes.plus(rangeSize);
-        survivorRanges.add(start, end);
+        if (sharesSurvivorRanges) {
+            survivorRanges.lock();
+            survivorRanges.add(start, end);
+            survivorRanges.unlock();
+        } else {
+            survivorRanges.add(start, end);
+        }
         if (logger.enabled()) {
             logger.logUpdateSurvivorRange(start, end);
         }
     }
 
-    private void updateSurvivorRanges() {
+    /**
+     * Record the ranges of survivors evacuated since the last update to the survivor ranges queue.
+     */
+    protected void updateSurvivorRanges() {
         if (ptop.greaterThan(allocatedRangeStart)) {
             // Something was allocated in the current evacuation allocation buffer.
             recordRange(allocatedRangeStart, ptop);
@@ -397,16 +458,32 @@ public class EvacuatorToCardSpace extends Evacuator {
 
     @Override
     final Pointer evacuate(Pointer fromOrigin) {
+        return evacuate(fromOrigin, Layout.size(fromOrigin));
+    }
+
+    @Override
+    Pointer evacuate(Pointer fromOrigin, Size size) {
         if (MaxineVM.isDebug() && checkDarkMatterRefs) {
             DarkMatter.scanCellForDarkMatter(fromOrigin);
         }
         final Pointer fromCell = Layout.originToCell(fromOrigin);
-        final Size size = Layout.size(fromOrigin);
         final Pointer toCell = allocate(size);
         Memory.copyBytes(fromCell, toCell, size);
         return toCell;
     }
 
+    @Override
+    final void cancelEvacuation(Pointer toOrigin, Size size) {
+        final Pointer toCell = Layout.originToCell(toOrigin);
+        if (toCell.plus(size).equals(ptop)) {
+            // Last allocation from the evacuation buffer. The card first object table is updated by the next allocation or when the buffer is retired.
+            ptop = toCell;
+        } else {
+            // Overflow allocation. Leave a dead object in the survivor range.
+            DarkMatter.format(toCell, size);
+        }
+    }
+
     private boolean checkDarkMatterRefs = false;
     public void enableDarkMatterRefCheck(boolean b) {
         checkDarkMatterRefs = MaxineVM.isDebug() && b;
@@ -427,6 +504,38 @@ public class EvacuatorToCardSpace extends Evacuator {
         }
     }
 
+    /**
+     * Evacuate the cells reachable from the next survivor range of a queue shared with evacuators running concurrently.
+     * Survivor ranges allocated by this evacuator are added to the queue first.
+     *
+     * @return false if the shared queue was empty, true otherwise
+     */
+    final boolean evacuateNextSharedSurvivorRange() {
+        updateSurvivorRanges();
+        survivorRanges.lock();
+        if (survivorRanges.isEmpty()) {
+            survivorRanges.unlock();
+            return false;
+        }
+        final Pointer start = survivorRanges.start();
+        final Pointer end = survivorRanges.end();
+        survivorRanges.remove();
+        survivorRanges.unlock();
+        if (logger.enabled()) {
+            logger.logEvacuateSurvivorRange(start, end);
+        }
+        evacuateRange(start, end);
+        return true;
+    }
+
+    /**
+     * Indicates whether a survivor ranges queue shared with concurrent evacuators has ranges left to evacuate.
+     * The queue is read without holding its lock: the answer is only a hint.
+     */
+    final boolean hasSharedSurvivorRanges() {
+        return !survivorRanges.isEmpty();
+    }
+
     /*
      * Interface for logging evacuation ranges.
      * The interface uses long instead of Size to improve human-readability from the inspector's log views.
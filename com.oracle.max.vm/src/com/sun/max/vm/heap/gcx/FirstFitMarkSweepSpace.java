@@ -40,6 +40,11 @@ import com.sun.max.vm.runtime.*;
  * A region-based, mark-sweep heap space, with bump pointer allocation only.
  * Each partially occupied region has a list of addressed ordered free chunks, used to allocate TLAB refills.
  * An overflow allocator avoids refilling too frequently.
+ * <p>
+ * When {@linkplain #setLazySweep(boolean) lazy sweeping} is enabled, regions that aren't part of a multi-regions object are left
+ * {@linkplain HeapRegionState#UNSWEPT_REGION unswept} by a garbage collection. Unswept regions are swept on demand, in address order,
+ * when a region provider request cannot be satisfied by the regions already swept. Any region left unswept when the next
+ * garbage collection starts is swept before the heap is marked again.
  */
 public final class FirstFitMarkSweepSpace<T extends HeapAccountOwner> extends HeapRegionSweeper implements HeapSpace, RegionProvider {
     /* For simplicity at the moment. Should be able to allocate this in GC's own heap (i.e., the HeapRegionManager's allocator).
@@ -84,6 +89,26 @@ public final class FirstFitMarkSweepSpace<T extends HeapAccountOwner> extends He
      */
     private HeapRegionList sweepList;
 
+    /**
+     * List of regions left unswept by the last garbage collection, in address order. Always empty if lazy sweeping is disabled.
+     */
+    private HeapRegionList unsweptRegions;
+
+    /**
+     * Indicate whether sweeping of regions is deferred to allocation time.
+     */
+    private boolean lazySweep;
+
+    /**
+     * Heap marker holding the marks of the last garbage collection, used to sweep unswept regions.
+     */
+    private TricolorHeapMarker lazySweepHeapMarker;
+
+    /**
+     * Whether unswept regions are swept imprecisely.
+     */
+    private boolean lazySweepImprecise;
+
     /**
      * Total number of regions currently allocated to this heap space.
      */
@@ -294,7 +319,7 @@ public final class FirstFitMarkSweepSpace<T extends HeapAccountOwner> extends He
                 if (MaxineVM.isDebug()) {
                     checkForSuspisciousGC(gcCount++);
                 }
-            } while(Heap.collectGarbage()); // Always collect for at least one region.
+            } while(completeSweep() || Heap.collectGarbage()); // Sweep unswept regions first, then always collect for at least one region.
             // Not enough freed memory.
             throw outOfMemoryError;
         }
@@ -380,6 +405,7 @@ public final class FirstFitMarkSweepSpace<T extends HeapAccountOwner> extends He
         allocationRegions = HeapRegionList.RegionListUse.OWNERSHIP.createList();
         unavailableRegions = HeapRegionList.RegionListUse.OWNERSHIP.createList();
         sweepList = HeapRegionList.RegionListUse.OWNERSHIP.createList();
+        unsweptRegions = HeapRegionList.RegionListUse.OWNERSHIP.createList();
 
         maxRegionsInSpace = numberOfRegions(maxSize);
         FatalError.check(maxRegionsInSpace <= heapAccount.reserve(), "under provisioned heap account");
@@ -410,6 +436,7 @@ public final class FirstFitMarkSweepSpace<T extends HeapAccountOwner> extends He
         // Initialize the tlab allocator with a first region.
         tlabAllocator.initialize(regionSize, regionSize);
         overflowAllocator.initialize(Address.zero(), Size.zero(), Size.zero());
+        initializeParallelSweeping();
     }
 
     public Pointer allocate(Size size) {
@@ -468,6 +495,8 @@ public final class FirstFitMarkSweepSpace<T extends HeapAccountOwner> extends He
         overflowAllocator.doBeforeGC();
         tlabAllocator.doBeforeGC();
         FatalError.check(tlabAllocator.refillManager.allocatingRegion() == INVALID_REGION_ID, "TLAB allocating region must have been retired");
+        // Regions left unswept must be swept before the marks of the last collection are cleared.
+        completeSweep();
         // Move all regions to the sweep list. This tracks all the regions used by the space.
         sweepList.appendAndClear(unavailableRegions);
         sweepList.appendAndClear(allocationRegions);
@@ -476,6 +505,14 @@ public final class FirstFitMarkSweepSpace<T extends HeapAccountOwner> extends He
         sweepList.sort();
     }
 
+    /**
+     * Prepare the space for a trace of the heap concurrent with mutators.
+     * Regions left unswept must be swept before the marks of the last collection are cleared. Must be called while mutators are stopped.
+     */
+    public void doBeforeConcurrentMarking() {
+        completeSweep();
+    }
+
     public void doAfterGC() {
     }
 
@@ -491,6 +528,10 @@ public final class FirstFitMarkSweepSpace<T extends HeapAccountOwner> extends He
         }
         allocationRegionsFreeSpace = Size.zero();
         csrIsLiveMultiRegionObjectTail = false;
+        if (lazySweep) {
+            lazySweepHeapMarker = heapMarker;
+            lazySweepImprecise = doImprecise;
+        }
         heapMarker.sweep(this, doImprecise);
         FatalError.check(sweepList.isEmpty(), "Sweeping list must be empty");
     }
@@ -499,6 +540,81 @@ public final class FirstFitMarkSweepSpace<T extends HeapAccountOwner> extends He
         return RegionTable.theRegionTable().regionInfo(sweepList.removeHead());
     }
 
+    /**
+     * Enable or disable lazy sweeping. Must be called at VM startup, before any garbage collection.
+     */
+    public void setLazySweep(boolean flag) {
+        lazySweep = flag;
+    }
+
+    /**
+     * Indicates whether some regions haven't been swept since the last garbage collection.
+     */
+    public boolean hasUnsweptRegions() {
+        return !unsweptRegions.isEmpty();
+    }
+
+    /**
+     * Sweep the unswept region with the lowest address and dispatch it to the allocation region lists.
+     * Must be called with the {@linkplain #refillLock() refill lock} held, or during garbage collection.
+     * Safepoints are disabled while the region is swept, so a garbage collection never observes the sweeper's state in the middle of a region.
+     *
+     * @return false if there was no unswept region
+     */
+    private boolean sweepNextUnsweptRegion() {
+        if (unsweptRegions.isEmpty()) {
+            return false;
+        }
+        final boolean wasDisabled = SafepointPoll.disable();
+        csrIsLiveMultiRegionObjectTail = false;
+        resetSweepingRegion(fromRegionID(unsweptRegions.removeHead()));
+        lazySweepHeapMarker.sweepRegion(this, lazySweepImprecise);
+        endSweep();
+        csrHead = null;
+        csrTail = null;
+        if (!wasDisabled) {
+            SafepointPoll.enable();
+        }
+        return true;
+    }
+
+    /**
+     * Sweep unswept regions until the free space of this space reaches the specified amount, or no unswept region is left.
+     * Must be called during garbage collection.
+     * @param minFreeSpace the free space to reach
+     */
+    public void sweepUnsweptRegions(Size minFreeSpace) {
+        while (freeSpace().lessThan(minFreeSpace)) {
+            if (!sweepNextUnsweptRegion()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sweep all the unswept regions.
+     * Must be called with the {@linkplain #refillLock() refill lock} held, or during garbage collection.
+     * @return true if at least one region was swept
+     */
+    private boolean completeSweep() {
+        boolean swept = false;
+        while (sweepNextUnsweptRegion()) {
+            swept = true;
+        }
+        return swept;
+    }
+
+    @Override
+    boolean sweepsInParallel() {
+        // Parallel sweeping would defeat the purpose of lazy sweeping.
+        return !lazySweep && super.sweepsInParallel();
+    }
+
+    @Override
+    public HeapRegionList sweepingRegions() {
+        return sweepList;
+    }
+
     @Override
     public boolean hasNextSweepingRegion() {
         return !sweepList.isEmpty();
@@ -506,7 +622,14 @@ public final class FirstFitMarkSweepSpace<T extends HeapAccountOwner> extends He
 
     @Override
     public void beginSweep() {
-        resetSweepingRegion(nextRegionToSweep());
+        final HeapRegionInfo rinfo = nextRegionToSweep();
+        if (lazySweep && !rinfo.isLarge()) {
+            deferSweepingRegion(rinfo);
+        } else if (isPreswept(rinfo)) {
+            resumePresweptRegion(rinfo);
+        } else {
+            resetSweepingRegion(rinfo);
+        }
     }
 
     private void traceSweptRegion() {
@@ -524,6 +647,8 @@ public final class FirstFitMarkSweepSpace<T extends HeapAccountOwner> extends He
             Log.println(csrFreeBytes);
         } else if (csrInfo.isEmpty()) {
             Log.println("  E");
+        } else if (csrInfo.isUnswept()) {
+            Log.println("  U");
         } else if (csrInfo.isLarge()) {
             if (LARGE_HEAD.isInState(csrInfo)) {
                 Log.println(" H");
@@ -543,6 +668,14 @@ public final class FirstFitMarkSweepSpace<T extends HeapAccountOwner> extends He
 
     @Override
     public void endSweep() {
+        if (csrIsUnswept) {
+            UNSWEPT_REGION.setState(csrInfo);
+            unsweptRegions.append(csrInfo.toRegionID());
+            if (TraceSweep) {
+                traceSweptRegion();
+            }
+            return;
+        }
         if (csrIsMultiRegionObjectHead) {
             // Large object regions are at least 2 regions long.
             if (csrFreeBytes == 0) {
@@ -595,6 +728,7 @@ public final class FirstFitMarkSweepSpace<T extends HeapAccountOwner> extends He
             }
             csrIsMultiRegionObjectHead = false;
         } else {
+            // Regions swept lazily may have a lower address than regions already in the lists.
             if (csrFreeBytes == 0) {
                 if (csrIsLiveMultiRegionObjectTail) {
                     // FIXME: is this true if the large object was already dead ?
@@ -603,12 +737,12 @@ public final class FirstFitMarkSweepSpace<T extends HeapAccountOwner> extends He
                 }  else {
                     FULL_REGION.setState(csrInfo);
                 }
-                unavailableRegions.append(csrInfo.toRegionID());
+                unavailableRegions.insertInAddressOrder(csrInfo.toRegionID());
             } else {
                 if (csrFreeBytes == regionSizeInBytes) {
                     EMPTY_REGION.setState(csrInfo);
                     HeapFreeChunk.format(csrInfo.regionStart(), regionSizeInBytes);
-                    allocationRegions.append(csrInfo.toRegionID());
+                    allocationRegions.insertInAddressOrder(csrInfo.toRegionID());
                     allocationRegionsFreeSpace =  allocationRegionsFreeSpace.plus(regionSizeInBytes);
                 } else {
                     if (csrIsLiveMultiRegionObjectTail) {
@@ -620,11 +754,11 @@ public final class FirstFitMarkSweepSpace<T extends HeapAccountOwner> extends He
                     allocationRegionsFreeSpace =  allocationRegionsFreeSpace.plus(csrFreeBytes);
                     if (csrFreeChunks == 1 && minOverflowRefillSize.lessEqual(csrFreeBytes)) {
                         csrInfo.setFreeChunks(HeapFreeChunk.fromHeapFreeChunk(csrHead), csrFreeBytes,  csrFreeChunks);
-                        allocationRegions.append(csrInfo.toRegionID());
+                        allocationRegions.insertInAddressOrder(csrInfo.toRegionID());
                     } else {
                         FatalError.check(csrFreeBytes > 0 && (csrFreeChunks > 1 || minOverflowRefillSize.greaterThan(csrFreeBytes)) && csrHead != null, "unknown state for a swept region");
                         csrInfo.setFreeChunks(HeapFreeChunk.fromHeapFreeChunk(csrHead),  csrFreeBytes, csrFreeChunks);
-                        tlabAllocationRegions.append(csrInfo.toRegionID());
+                        tlabAllocationRegions.insertInAddressOrder(csrInfo.toRegionID());
                     }
                 }
             }
@@ -673,7 +807,11 @@ public final class FirstFitMarkSweepSpace<T extends HeapAccountOwner> extends He
         return Size.zero();
     }
 
-    private void iterateRegions(CellRangeVisitor visitor) {
+    /**
+     * Apply a visitor to the iterable regions of the space. Unlike {@link #visit(CellRangeVisitor)}, this neither sweeps unswept regions
+     * nor makes allocating regions parsable. Must be called during garbage collection.
+     */
+    void iterateRegions(CellRangeVisitor visitor) {
         final RegionTable regionTable = RegionTable.theRegionTable();
         regionsRangeIterable.initialize(heapAccount.committedRegions());
         if (regionTag == 0) {
@@ -692,6 +830,8 @@ public final class FirstFitMarkSweepSpace<T extends HeapAccountOwner> extends He
 
     @Override
     public void visit(CellRangeVisitor visitor) {
+        // Dead objects of unswept regions may refer to reclaimed space.
+        completeSweep();
         // Make allocating regions iterable first.
         tlabAllocator.unsafeMakeParsable();
         overflowAllocator.unsafeMakeParsable();
@@ -710,11 +850,13 @@ public final class FirstFitMarkSweepSpace<T extends HeapAccountOwner> extends He
         balance += tlabAllocationRegions.size();
         balance += allocationRegions.size();
         balance += unavailableRegions.size();
+        balance += unsweptRegions.size();
         FatalError.check(balance == numRegionsInSpace, "incorrect balance of regions in space");
     }
 
     @Override
     public void verify(AfterMarkSweepVerifier verifier) {
+        completeSweep();
         verifyHeapRegionsBalance();
         tlabAllocationRegions.checkIsAddressOrdered();
         allocationRegions.checkIsAddressOrdered();
@@ -722,6 +864,90 @@ public final class FirstFitMarkSweepSpace<T extends HeapAccountOwner> extends He
         iterateRegions(verifier);
     }
 
+    /**
+     * Remove an empty region from the allocation regions, e.g., to evacuate live objects to it.
+     * The region is left in the {@linkplain HeapRegionState#EMPTY_REGION empty state} until it is {@linkplain #releaseToRegion(int, Pointer) released}.
+     * Must be called during garbage collection.
+     *
+     * @return the identifier of an empty region, or {@link HeapRegionConstants#INVALID_REGION_ID} if the space has no empty region
+     */
+    int removeEmptyRegion() {
+        regionInfoIterable.initialize(allocationRegions);
+        regionInfoIterable.reset();
+        for (HeapRegionInfo regionInfo : regionInfoIterable) {
+            if (regionInfo.isEmpty()) {
+                allocationRegionsFreeSpace = allocationRegionsFreeSpace.minus(regionSizeInBytes);
+                regionInfoIterable.remove();
+                return regionInfo.toRegionID();
+            }
+        }
+        return INVALID_REGION_ID;
+    }
+
+    /**
+     * Withdraw a region with free chunks from the allocation regions, e.g., to evacuate its live objects.
+     * Must be called during garbage collection, once the space is swept. The region must be {@linkplain #releaseEvacuatedRegion(int) released}
+     * before the end of the collection.
+     *
+     * @param regionID identifier of a region with free chunks
+     */
+    void withdrawRegion(int regionID) {
+        final HeapRegionInfo regionInfo = fromRegionID(regionID);
+        FatalError.check(regionInfo.hasFreeChunks() && !regionInfo.isLarge(), "Only regions with free chunks can be withdrawn");
+        if (allocationRegions.contains(regionID)) {
+            allocationRegions.remove(regionID);
+        } else {
+            tlabAllocationRegions.remove(regionID);
+        }
+        allocationRegionsFreeSpace = allocationRegionsFreeSpace.minus(regionInfo.freeBytesInChunks());
+    }
+
+    /**
+     * Return to the allocation regions a {@linkplain #withdrawRegion(int) withdrawn} region whose live objects have all been evacuated.
+     * The region is formatted as a single free chunk.
+     *
+     * @param regionID identifier of a withdrawn region
+     */
+    void releaseEvacuatedRegion(int regionID) {
+        final HeapRegionInfo regionInfo = fromRegionID(regionID);
+        EMPTY_REGION.setState(regionInfo);
+        HeapFreeChunk.format(regionInfo.regionStart(), regionSizeInBytes);
+        regionInfo.resetOccupancy();
+        allocationRegions.insertInAddressOrder(regionID);
+        allocationRegionsFreeSpace = allocationRegionsFreeSpace.plus(regionSizeInBytes);
+    }
+
+    /**
+     * Return to the space an {@linkplain #removeEmptyRegion() empty region} live objects were evacuated to.
+     * The space left after the evacuated objects is dispatched to the allocation regions like the free space of a swept region.
+     *
+     * @param regionID identifier of a region removed with {@link #removeEmptyRegion()}
+     * @param top address of the end of the last object evacuated to the region
+     */
+    void releaseToRegion(int regionID, Pointer top) {
+        final HeapRegionInfo regionInfo = fromRegionID(regionID);
+        final Pointer end = regionInfo.regionStart().plus(regionSizeInBytes).asPointer();
+        final Size spaceLeft = end.minus(top).asSize();
+        if (spaceLeft.lessThan(minReclaimableSpace)) {
+            if (!spaceLeft.isZero()) {
+                DarkMatter.format(top, spaceLeft);
+            }
+            FULL_REGION.setState(regionInfo);
+            regionInfo.resetOccupancy();
+            unavailableRegions.insertInAddressOrder(regionID);
+            return;
+        }
+        HeapFreeChunk.format(top, spaceLeft);
+        FREE_CHUNKS_REGION.setState(regionInfo);
+        regionInfo.setFreeChunks(top, spaceLeft, 1);
+        allocationRegionsFreeSpace = allocationRegionsFreeSpace.plus(spaceLeft);
+        if (minOverflowRefillSize.lessEqual(spaceLeft)) {
+            allocationRegions.insertInAddressOrder(regionID);
+        } else {
+            tlabAllocationRegions.insertInAddressOrder(regionID);
+        }
+    }
+
     public void retireAllocatingRegion(int regionID) {
         // No more free chunks in this region.
         final HeapRegionInfo regionInfo = fromRegionID(regionID);
@@ -734,7 +960,12 @@ public final class FirstFitMarkSweepSpace<T extends HeapAccountOwner> extends He
     }
 
     public int getAllocatingRegion() {
-        final int regionID = tlabAllocationRegionList().removeHead();
+        while (tlabAllocationRegions.isEmpty() && allocationRegions.isEmpty()) {
+            if (!sweepNextUnsweptRegion()) {
+                break;
+            }
+        }
+        final int regionID = HeapRegionManager.theHeapRegionManager().isNumaAware() ? removeNumaLocalRegion() : tlabAllocationRegionList().removeHead();
         if (regionID != INVALID_REGION_ID) {
             final HeapRegionInfo regionInfo = fromRegionID(regionID);
             final int numFreeBytes = regionInfo.isEmpty() ?  regionSizeInBytes : regionInfo.freeBytesInChunks();
@@ -743,7 +974,48 @@ public final class FirstFitMarkSweepSpace<T extends HeapAccountOwner> extends He
         return regionID;
     }
 
+    /**
+     * Remove from the region list {@link #getAllocatingRegion()} allocates from the first region bound to the NUMA node of the current thread.
+     * If the list has no such region, the other allocation region list is searched. If neither has one, the head of the first list is removed.
+     */
+    private int removeNumaLocalRegion() {
+        final int node = VirtualMemory.getCurrentNumaNode();
+        final HeapRegionList regionList = tlabAllocationRegionList();
+        if (!HeapRegionManager.theHeapRegionManager().hasRegionsOnNumaNode(node)) {
+            // No region can match: don't scan the lists.
+            return regionList.removeHead();
+        }
+        int regionID = removeFirstRegionOnNode(regionList, node);
+        if (regionID == INVALID_REGION_ID) {
+            regionID = removeFirstRegionOnNode(regionList == tlabAllocationRegions ? allocationRegions : tlabAllocationRegions, node);
+            if (regionID == INVALID_REGION_ID) {
+                regionID = regionList.removeHead();
+            }
+        }
+        return regionID;
+    }
+
+    private int removeFirstRegionOnNode(HeapRegionList regionList, int node) {
+        regionInfoIterable.initialize(regionList);
+        regionInfoIterable.reset();
+        for (HeapRegionInfo regionInfo : regionInfoIterable) {
+            if (regionInfo.numaNode() == node) {
+                regionInfoIterable.remove();
+                return regionInfo.toRegionID();
+            }
+        }
+        return INVALID_REGION_ID;
+    }
+
     public int getAllocatingRegion(Size minFreeBytes, int maxFreeChunks) {
+        int regionID = findAllocatingRegion(minFreeBytes, maxFreeChunks);
+        while (regionID == INVALID_REGION_ID && sweepNextUnsweptRegion()) {
+            regionID = findAllocatingRegion(minFreeBytes, maxFreeChunks);
+        }
+        return regionID;
+    }
+
+    private int findAllocatingRegion(Size minFreeBytes, int maxFreeChunks) {
         final int minFreeSpace = minFreeBytes.toInt();
         regionInfoIterable.initialize(allocationRegions);
         regionInfoIterable.reset();
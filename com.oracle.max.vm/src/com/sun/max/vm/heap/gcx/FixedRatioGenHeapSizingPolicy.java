@@ -48,6 +48,19 @@ public class FixedRatioGenHeapSizingPolicy implements GenHeapSizingPolicy {
      * Size to which generations are aligned to. In other words, <pre>unitSize = Size.fromInt(1).shiftedLeft({@link #log2Alignment})</pre>
      */
     final Size unitSize;
+    /**
+     * Ratio of the size of the eden space to the size of one of the two survivor spaces of the young generation.
+     * A ratio of zero means the young generation has no survivor space.
+     */
+    final int survivorRatio;
+    /**
+     * Percentage of a survivor space that the survivors of a minor collection may occupy before the tenuring threshold is lowered.
+     */
+    final int targetSurvivorPercentage;
+    /**
+     * Upper bound of the tenuring threshold.
+     */
+    final int maxTenuringThreshold;
 
     private int numberOfUnits(Size size) {
         return size.alignUp(unitSize.toInt()).unsignedShiftedRight(log2Alignment).toInt();
@@ -67,17 +80,39 @@ public class FixedRatioGenHeapSizingPolicy implements GenHeapSizingPolicy {
         return size.and(alignment.not());
     }
 
-    protected FixedRatioGenHeapSizingPolicy(int youngGenFixedHeapPercentage, int log2Alignment) {
+    protected FixedRatioGenHeapSizingPolicy(int youngGenFixedHeapPercentage, int log2Alignment, int survivorRatio, int targetSurvivorPercentage, int maxTenuringThreshold) {
         // Run validation of heap sizing parameters.
         FatalError.check(youngGenFixedHeapPercentage > 0 && youngGenFixedHeapPercentage <= 100, "Not a valid percentage of heap size");
         FatalError.check(log2Alignment > 0 && log2Alignment < Word.widthValue().numberOfBits, "Not a valid log2 alignment");
+        FatalError.check(survivorRatio >= 0, "Not a valid survivor ratio");
+        FatalError.check(targetSurvivorPercentage > 0 && targetSurvivorPercentage <= 100, "Not a valid percentage of survivor space size");
+        FatalError.check(maxTenuringThreshold >= 0 && maxTenuringThreshold <= AgingRegionalizedNursery.MAX_AGE, "Not a valid tenuring threshold");
         this.youngGenFixedHeapPercentage = youngGenFixedHeapPercentage;
         this.log2Alignment = log2Alignment;
         this.unitSize = Size.fromInt(1).shiftedLeft(log2Alignment);
+        this.survivorRatio = survivorRatio;
+        this.targetSurvivorPercentage = targetSurvivorPercentage;
+        this.maxTenuringThreshold = maxTenuringThreshold;
+    }
+
+    protected FixedRatioGenHeapSizingPolicy(int youngGenFixedHeapPercentage, int log2Alignment) {
+        this(youngGenFixedHeapPercentage, log2Alignment, 0, 100, 0);
     }
 
     public FixedRatioGenHeapSizingPolicy(Size initHeapSize, Size maxHeapSize, int youngGenFixedHeapPercentage, int log2Alignment) {
-        this(youngGenFixedHeapPercentage, log2Alignment);
+        this(initHeapSize, maxHeapSize, youngGenFixedHeapPercentage, log2Alignment, 0, 100, 0);
+    }
+
+    /**
+     * Create a fixed ratio policy for a young generation that ages its survivors in two survivor spaces.
+     *
+     * @param survivorRatio ratio of the eden space size to the size of one survivor space, or zero if survivors aren't aged
+     * @param targetSurvivorPercentage percentage of a survivor space survivors may occupy before the tenuring threshold is lowered
+     * @param maxTenuringThreshold upper bound of the tenuring threshold, or zero if survivors aren't aged
+     */
+    public FixedRatioGenHeapSizingPolicy(Size initHeapSize, Size maxHeapSize, int youngGenFixedHeapPercentage, int log2Alignment,
+                    int survivorRatio, int targetSurvivorPercentage, int maxTenuringThreshold) {
+        this(youngGenFixedHeapPercentage, log2Alignment, survivorRatio, targetSurvivorPercentage, maxTenuringThreshold);
         this.maxHeapSize = alignUp(maxHeapSize);
         this.initHeapSize = alignUp(initHeapSize);
     }
@@ -113,4 +148,43 @@ public class FixedRatioGenHeapSizingPolicy implements GenHeapSizingPolicy {
     public Size maxOldGenSize() {
         return maxHeapSize.minus(initialYoungGenSize());
     }
+
+    /**
+     * The young generation is split into an eden space and two survivor spaces of equal size according to the survivor ratio.
+     * No survivor space is set aside if survivors aren't aged, or if the young generation is too small to accommodate
+     * survivor spaces of at least one unit.
+     */
+    @Override
+    public Size survivorSpaceSize() {
+        if (survivorRatio == 0 || maxTenuringThreshold == 0) {
+            return Size.zero();
+        }
+        return alignDown(initialYoungGenSize().dividedBy(survivorRatio + 2));
+    }
+
+    @Override
+    public int maxTenuringThreshold() {
+        return survivorSpaceSize().isZero() ? 0 : maxTenuringThreshold;
+    }
+
+    /**
+     * The threshold is the lowest age such that survivors of that age or younger occupy more than the target percentage of a survivor space.
+     * This keeps the survivor space from overflowing when many objects survive, while letting objects age up to the maximum
+     * threshold when few do.
+     */
+    @Override
+    public int tenuringThreshold(long [] survivorBytesPerAge) {
+        final int maxThreshold = maxTenuringThreshold();
+        final long desiredSurvivorBytes = survivorSpaceSize().toLong() / 100 * targetSurvivorPercentage;
+        long totalBytes = 0L;
+        int age = 1;
+        while (age < survivorBytesPerAge.length && age < maxThreshold) {
+            totalBytes += survivorBytesPerAge[age];
+            if (totalBytes > desiredSurvivorBytes) {
+                break;
+            }
+            age++;
+        }
+        return age < maxThreshold ? age : maxThreshold;
+    }
 }
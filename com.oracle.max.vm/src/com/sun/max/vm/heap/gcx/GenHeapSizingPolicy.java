@@ -52,4 +52,24 @@ public interface GenHeapSizingPolicy {
      */
     Size maxOldGenSize();
 
+    /**
+     * Size of each of the two survivor spaces the young generation sets aside to age the survivors of minor collections.
+     * A zero size indicates that the young generation doesn't age its survivors: they are promoted to the old generation on their first minor collection.
+     * @return aligned size.
+     */
+    Size survivorSpaceSize();
+
+    /**
+     * Maximum number of minor collections an object may survive in the young generation before being promoted to the old generation.
+     */
+    int maxTenuringThreshold();
+
+    /**
+     * Tenuring threshold for the next minor collection, adapted to the occupancy of the survivor space after the last minor collection.
+     * Survivors of the next minor collection whose age would exceed the threshold are promoted to the old generation.
+     *
+     * @param survivorBytesPerAge number of bytes of the survivor space occupied by objects of each age after the last minor collection, indexed by age
+     * @return a tenuring threshold between 0 and {@link #maxTenuringThreshold()}
+     */
+    int tenuringThreshold(long [] survivorBytesPerAge);
 }
@@ -260,6 +260,24 @@ public final class GenSSHeapSizingPolicy implements GenHeapSizingPolicy {
         return maxHeapOldGenSize;
     }
 
+    /**
+     * The nursery of a generational heap with a semi-space old generation doesn't age its survivors.
+     */
+    @Override
+    public Size survivorSpaceSize() {
+        return Size.zero();
+    }
+
+    @Override
+    public int maxTenuringThreshold() {
+        return 0;
+    }
+
+    @Override
+    public int tenuringThreshold(long [] survivorBytesPerAge) {
+        return 0;
+    }
+
     public Size heapSize() {
         return heapSize;
     }
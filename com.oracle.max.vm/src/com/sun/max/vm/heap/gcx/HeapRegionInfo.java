@@ -68,7 +68,12 @@ public class HeapRegionInfo {
         /**
          * Region is the last region of a multi-regions object. Space after the end of the large object may be used for allocation.
          */
-        IS_TAIL;
+        IS_TAIL,
+        /**
+         * Region hasn't been swept since the last marking. Its dead objects are still in place, and its free space is unknown.
+         * The region must be swept before it can be used for allocation.
+         */
+        IS_UNSWEPT;
 
         private final int mask = 1 << ordinal();
 
@@ -145,6 +150,12 @@ public class HeapRegionInfo {
     @INSPECTED
     int tag;
 
+    /**
+     * Identifier of the NUMA node the region is bound to. Always 0 if the heap region manager doesn't place regions on NUMA nodes.
+     */
+    @INSPECTED
+    int numaNode;
+
     /**
      * Offset (in bytes) relative to the beginning of a region to the first free chunk of the region.
      * Zero if the region is empty.
@@ -204,6 +215,10 @@ public class HeapRegionInfo {
         return IS_TAIL.isSet(flags);
     }
 
+    public final boolean isUnswept() {
+        return IS_UNSWEPT.isSet(flags);
+    }
+
     HeapRegionInfo() {
         // Not a class one can allocate. Allocation is the responsibility of the region table.
     }
@@ -295,6 +310,10 @@ public class HeapRegionInfo {
         setFreeChunks(firstChunkAddress, numBytes.toInt(),  numChunks);
     }
 
+    final void setLiveBytes(int numBytes) {
+        liveData = numBytes >> Word.widthValue().log2numberOfBytes;
+    }
+
     final void clearFreeChunks() {
         firstFreeChunkOffset = 0;
         numFreeChunks = 0;
@@ -320,6 +339,14 @@ public class HeapRegionInfo {
     final int getTag() {
         return tag;
     }
+
+    final void setNumaNode(int node) {
+        this.numaNode = node;
+    }
+
+    public final int numaNode() {
+        return numaNode;
+    }
     final HeapRegionInfo next() {
         return RegionTable.theRegionTable().next(this);
     }
@@ -265,13 +265,30 @@ public class HeapRegionList {
             append(newElem);
         } else {
             int nextElem = next(elem);
-            init(newElem, elem, nextElem);
+            init(newElem, nextElem, elem);
             setNext(elem, newElem);
             setPrev(nextElem, newElem);
             size++;
         }
     }
 
+    /**
+     * Insert an element after the last element of the list with a lower address.
+     * The cost is proportional to the number of elements with a higher address, so this is cheap when elements are inserted in increasing address order.
+     * @param elem the element to insert
+     */
+    void insertInAddressOrder(int elem) {
+        int last = tail;
+        while (last != nullElement && last > elem) {
+            last = prev(last);
+        }
+        if (last == nullElement) {
+            prepend(elem);
+        } else {
+            insertAfter(last, elem);
+        }
+    }
+
     int removeHead() {
         if (isEmpty()) {
             return nullElement;
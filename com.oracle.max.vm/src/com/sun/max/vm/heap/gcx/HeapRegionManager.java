@@ -28,6 +28,7 @@ import com.sun.max.annotate.*;
 import com.sun.max.memory.*;
 import com.sun.max.unsafe.*;
 import com.sun.max.vm.*;
+import com.sun.max.vm.MaxineVM.Phase;
 import com.sun.max.vm.actor.holder.*;
 import com.sun.max.vm.heap.*;
 import com.sun.max.vm.heap.gcx.rset.*;
@@ -43,8 +44,17 @@ import com.sun.max.vm.type.*;
  * heap accounts, return free space to it, and may grow or shrink their accounts.
  * The heap region manager may also request a heap account to trade or free some specific
  * regions.
+ * <p>
+ * With {@code -XX:+UseNUMA}, the regions are split into as many contiguous ranges of equal size as the platform has online NUMA nodes.
+ * Each range is bound to a node when its regions are committed, and the {@link HeapRegionInfo} of each region records the identifier of its node,
+ * which is what the platform reports as the node of the current CPU. Node identifiers need not be contiguous.
  */
 public final class HeapRegionManager implements HeapAccountOwner {
+    static boolean UseNUMA = false;
+    static {
+        VMOptions.addFieldOption("-XX:", "UseNUMA", HeapRegionManager.class, "Bind heap regions to NUMA nodes and prefer node-local regions for allocation", Phase.PRISTINE);
+    }
+
     /**
      * The single instance of the heap region manager.
      */
@@ -139,6 +149,61 @@ public final class HeapRegionManager implements HeapAccountOwner {
         return regionAllocator.contains(address);
     }
 
+    /**
+     * Number of NUMA nodes heap regions are spread over. Always 1 if NUMA placement is disabled.
+     */
+    private int numNumaNodes = 1;
+
+    /**
+     * Indicates whether heap regions are spread over several NUMA nodes.
+     */
+    public boolean isNumaAware() {
+        return numNumaNodes > 1;
+    }
+
+    /**
+     * Return the index of the NUMA node a region is bound to, i.e., the rank of its range of regions.
+     * The identifier of the node is obtained with {@link VirtualMemory#getNumaNodeId(int)}.
+     * @param regionID a region identifier
+     * @return a NUMA node index, 0 if NUMA placement is disabled
+     */
+    private int numaNodeIndex(int regionID) {
+        return (int) (((long) regionID * numNumaNodes) / regionAllocator.capacity());
+    }
+
+    /**
+     * Indicates whether some heap regions are bound to a NUMA node.
+     * @param node a NUMA node identifier, as returned by {@link VirtualMemory#getCurrentNumaNode()}
+     */
+    boolean hasRegionsOnNumaNode(int node) {
+        for (int index = 0; index < numNumaNodes; index++) {
+            if (VirtualMemory.getNumaNodeId(index) == node) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Bind a range of committed regions to the NUMA nodes recorded in their {@link HeapRegionInfo}.
+     */
+    private void bindToNumaNodes(int firstRegionId, int numRegions) {
+        final RegionTable regionTable = RegionTable.theRegionTable();
+        final int endRegionId = firstRegionId + numRegions;
+        int regionId = firstRegionId;
+        while (regionId < endRegionId) {
+            final int node = regionTable.regionInfo(regionId).numaNode();
+            int endOfNodeRange = regionId + 1;
+            while (endOfNodeRange < endRegionId && regionTable.regionInfo(endOfNodeRange).numaNode() == node) {
+                endOfNodeRange++;
+            }
+            final Size size = Size.fromInt(endOfNodeRange - regionId).shiftedLeft(log2RegionSizeInBytes);
+            // A failure is logged by the native code. The regions then keep the default memory policy.
+            VirtualMemory.bindToNumaNode(regionAllocator.regionStart(regionId), size, node);
+            regionId = endOfNodeRange;
+        }
+    }
+
     public MemoryRegion bounds() {
         return regionAllocator.bounds();
     }
@@ -260,6 +325,12 @@ public final class HeapRegionManager implements HeapAccountOwner {
             // Record initial space usage.
             regionAllocator.initialize(startOfManagedSpace, numTotalRegions, initialNumRegions);
             RegionTable.initialize(regionInfoClass, regionAllocator.bounds(), numTotalRegions);
+            if (UseNUMA) {
+                numNumaNodes = VirtualMemory.getNumaNodeCount();
+                for (int regionID = 0; regionID < numTotalRegions; regionID++) {
+                    RegionTable.theRegionTable().regionInfo(regionID).setNumaNode(VirtualMemory.getNumaNodeId(numaNodeIndex(regionID)));
+                }
+            }
             // Allocate the backing storage for the region lists.
             HeapRegionList.initializeListStorage(numTotalRegions);
 
@@ -329,7 +400,10 @@ public final class HeapRegionManager implements HeapAccountOwner {
 
     void commit(int firstRegionId, int numRegions) {
         // TODO(ld): error handling
-        regionAllocator.commit(firstRegionId, numRegions);
+        if (regionAllocator.commit(firstRegionId, numRegions) && isNumaAware()) {
+            // Committing remaps the regions, which drops any memory policy previously set.
+            bindToNumaNodes(firstRegionId, numRegions);
+        }
     }
 
     void uncommit(int firstRegionId, int numRegions) {
@@ -54,6 +54,11 @@ public final class HeapRegionStatistics {
      */
     final int [] regionsFragmentation;
 
+    /**
+     * Number of regions not swept since the last collection. Their free space is unknown.
+     */
+    int numUnsweptRegions;
+
     /**
      * Private region info iterator.
      */
@@ -81,13 +86,45 @@ public final class HeapRegionStatistics {
     }
 
     public void clear() {
-        for (int i = log2MinFragmentSize; i <= log2MinFragmentSize; i++) {
+        for (int i = 0; i <= log2LargestChunkSize; i++) {
             fragmentSizes[i] = 0;
             freeSpaceSizes[i] = 0;
         }
         for (int i = 0; i < regionsFragmentation.length; i++) {
             regionsFragmentation[i] = 0;
         }
+        numUnsweptRegions = 0;
+    }
+
+    /**
+     * Number of empty regions recorded in the statistics.
+     */
+    public int numEmptyRegions() {
+        return freeSpaceSizes[log2LargestChunkSize];
+    }
+
+    /**
+     * Find the smallest amount of free space that selects at most the specified number of the sparsest partially occupied regions
+     * recorded in the statistics, i.e., the regions with the most free space.
+     * Since the histogram of free space records powers of 2, the result is either {@code minFreeSpace} or the lower bound of a histogram entry.
+     *
+     * @param maxRegions maximum number of regions to select
+     * @param minFreeSpace lower bound of the result
+     * @return a number of bytes, at least {@code minFreeSpace}. If the sparsest entry of the histogram alone records more than {@code maxRegions} regions,
+     * the lower bound of this entry is returned.
+     */
+    public int minFreeSpaceOfSparsestRegions(int maxRegions, int minFreeSpace) {
+        final int minBin = minFreeSpace <= 0 ? 0 : sizeBin(minFreeSpace);
+        int bin = log2LargestChunkSize - 1;
+        int numRegions = freeSpaceSizes[bin];
+        while (bin > minBin && numRegions + freeSpaceSizes[bin - 1] <= maxRegions) {
+            bin--;
+            numRegions += freeSpaceSizes[bin];
+        }
+        if (bin <= minBin) {
+            return minFreeSpace;
+        }
+        return 1 << bin;
     }
 
     /**
@@ -95,6 +132,10 @@ public final class HeapRegionStatistics {
      * @param rinfo a heap region info
      */
     public void add(HeapRegionInfo rinfo) {
+        if (rinfo.isUnswept()) {
+            numUnsweptRegions++;
+            return;
+        }
         if (MaxineVM.isDebug()) {
             FatalError.check(rinfo.hasFreeChunks() || (rinfo.isEmpty() && rinfo.freeBytesInChunks() == 0) || (rinfo.isFull() && rinfo.freeBytesInChunks() == 0), "Invalid RegionInfo");
         }
@@ -153,6 +194,9 @@ public final class HeapRegionStatistics {
         }
         Log.print("empty regions ("); Log.print(1 << log2LargestChunkSize); Log.print(") : ");  Log.println(freeSpaceSizes[log2LargestChunkSize]);
         Log.print("full regions : ");  Log.println(freeSpaceSizes[0]);
+        if (numUnsweptRegions > 0) {
+            Log.print("unswept regions : ");  Log.println(numUnsweptRegions);
+        }
         Log.println(" # fragments             : # regions");
         for (int i = 0; i < regionsFragmentation.length; i++) {
             int numRegions = regionsFragmentation[i];
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.vm.heap.gcx;
+
+import com.oracle.max.cri.intrinsics.*;
+import com.sun.max.annotate.*;
+import com.sun.max.vm.*;
+import com.sun.max.vm.actor.holder.*;
+import com.sun.max.vm.reference.*;
+
+/**
+ * Hands out the region ranges of a {@link HeapRegionRangeIterable} to concurrent GC workers in stripes of at most
+ * a fixed number of contiguous regions. Stripes are claimed under a spin lock.
+ */
+final class HeapRegionStripes {
+    /**
+     * Maximum number of regions per stripe.
+     */
+    final int maxStripeRegions;
+
+    /**
+     * Region ranges the stripes are taken from. Guarded by {@link #lock}.
+     */
+    private HeapRegionRangeIterable regionsRanges;
+    /**
+     * Next region of the current region range to hand out in a stripe. Guarded by {@link #lock}.
+     */
+    private int nextStripeRegion;
+    /**
+     * Number of regions of the current region range that haven't been handed out yet. Guarded by {@link #lock}.
+     */
+    private int numRemainingRegions;
+    private volatile boolean allStripesClaimed;
+    private volatile int lock;
+
+    HeapRegionStripes(int maxStripeRegions) {
+        this.maxStripeRegions = maxStripeRegions;
+    }
+
+    @FOLD
+    private static int lockOffset() {
+        return ClassActor.fromJava(HeapRegionStripes.class).findLocalInstanceFieldActor("lock").offset();
+    }
+
+    /**
+     * Start handing out stripes from the first region range of the specified iterable.
+     */
+    void reset(HeapRegionRangeIterable regionsRanges) {
+        this.regionsRanges = regionsRanges;
+        regionsRanges.reset();
+        numRemainingRegions = 0;
+        allStripesClaimed = false;
+    }
+
+    /**
+     * Drop the reference to the region ranges once all stripes have been processed.
+     */
+    void release() {
+        regionsRanges = null;
+    }
+
+    /**
+     * Claim the next stripe of regions.
+     * @return a range of regions, or the empty {@link RegionRange#INVALID_RANGE} if all stripes have been claimed
+     */
+    RegionRange claim() {
+        if (allStripesClaimed) {
+            return RegionRange.INVALID_RANGE;
+        }
+        RegionRange stripe = RegionRange.INVALID_RANGE;
+        final Reference ref = Reference.fromJava(this);
+        while (ref.compareAndSwapInt(lockOffset(), 0, 1) != 0) {
+            Intrinsics.pause();
+        }
+        if (numRemainingRegions == 0 && regionsRanges.hasNext()) {
+            final RegionRange range = regionsRanges.next();
+            nextStripeRegion = range.firstRegion();
+            numRemainingRegions = range.numRegions();
+        }
+        if (numRemainingRegions > 0) {
+            final int numRegions = numRemainingRegions < maxStripeRegions ? numRemainingRegions : maxStripeRegions;
+            stripe = RegionRange.from(nextStripeRegion, numRegions);
+            nextStripeRegion += numRegions;
+            numRemainingRegions -= numRegions;
+        } else {
+            allStripesClaimed = true;
+        }
+        MemoryBarriers.barrier(MemoryBarriers.LOAD_STORE | MemoryBarriers.STORE_STORE);
+        ref.writeInt(lockOffset(), 0);
+        return stripe;
+    }
+}
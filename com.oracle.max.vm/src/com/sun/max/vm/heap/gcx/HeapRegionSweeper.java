@@ -28,6 +28,7 @@ import com.sun.max.annotate.*;
 import com.sun.max.unsafe.*;
 import com.sun.max.vm.*;
 import com.sun.max.vm.MaxineVM.Phase;
+import com.sun.max.vm.heap.*;
 import com.sun.max.vm.heap.gcx.rset.*;
 import com.sun.max.vm.layout.*;
 import com.sun.max.vm.runtime.*;
@@ -36,13 +37,28 @@ import com.sun.max.vm.runtime.*;
  * Sweeping interface for heap made of multiple, possibly discontinuous regions.
  * A heap marker interacts with the sweeper via a hasNextSweepingRegion / beginSweep / endSweep methods that bracket the sweeping of each region.
  * Dead space within the region is notified to the sweeper via three interface: processLargeGap, processDeadSpace, and processFreeRegion.
+ * <p>
+ * When {@link #ParallelSweeping} is enabled and the {@link GCTaskThreadPool} has more than one worker, regions that aren't part of a
+ * multi-regions object are first swept in parallel by the workers of the pool (see {@link ParallelSweepingTask}), each with its own
+ * {@link WorkerSweeper}. The result of sweeping a region this way is recorded in its {@link HeapRegionInfo}. The heap marker then goes over
+ * the regions in address order as usual, and the sweeper merely resumes the sweeping of preswept regions
+ * (see {@link #resumePresweptRegion(HeapRegionInfo)}) so that {@link #endSweep()} can dispatch them to the sweeper's free space lists.
+ * <p>
+ * A sweeper may also defer the sweeping of a region (see {@link #deferSweepingRegion(HeapRegionInfo)}), in which case the heap marker
+ * leaves the region alone and the sweeper is responsible for sweeping it before the marks are cleared by the next marking.
  */
 public abstract class HeapRegionSweeper extends Sweeper {
     static int SweepBreakAtRegion = -1;
     static {
         VMOptions.addFieldOption("-XX:", "SweepBreakAtRegion", HeapRegionSweeper.class, "Break before sweeping region", Phase.PRISTINE);
+        VMOptions.addFieldOption("-XX:", "ParallelSweeping", HeapRegionSweeper.class, "Sweep heap regions in parallel when more than one GC thread is available", Phase.PRISTINE);
     }
 
+    /**
+     * Enables parallel sweeping of the heap regions when the {@link GCTaskThreadPool} has more than one worker.
+     */
+    static boolean ParallelSweeping = true;
+
     protected Size minReclaimableSpace;
 
     /**
@@ -102,11 +118,151 @@ public abstract class HeapRegionSweeper extends Sweeper {
 
     boolean traceGap;
 
+    /**
+     * Indicate that the current sweeping region was already swept by a {@link WorkerSweeper}.
+     */
+    boolean csrIsPreswept;
+
+    /**
+     * Indicate that the sweeping of the current sweeping region is deferred (see {@link HeapRegionState#UNSWEPT_REGION}).
+     */
+    boolean csrIsUnswept;
+
+    /**
+     * Regions starting below this address that aren't part of a multi-regions object were swept by the {@link WorkerSweeper}s.
+     * Zero when no parallel sweep is in progress.
+     */
+    private Address presweptLimit = Address.zero();
+
+    /**
+     * Per-worker sweepers, or null if regions are swept sequentially.
+     */
+    private WorkerSweeper [] workerSweepers;
+
     protected HeapRegionSweeper(boolean zapDeadReferences, DeadSpaceListener deadSpaceListener) {
         this.zapDeadReferences = zapDeadReferences;
         this.deadSpaceListener = deadSpaceListener;
     }
 
+    /**
+     * Create a sweeper with the same dead space policy and logger as another sweeper.
+     */
+    protected HeapRegionSweeper(HeapRegionSweeper sweeper) {
+        super(sweeper);
+        this.zapDeadReferences = sweeper.zapDeadReferences;
+        this.deadSpaceListener = sweeper.deadSpaceListener;
+    }
+
+    /**
+     * Sweeper used by a GC worker to sweep a region on behalf of another sweeper.
+     * Instead of dispatching the swept region to a free space list, it records the free chunks of the region in the region's {@link HeapRegionInfo}.
+     * The swept region is left in the {@link HeapRegionState#EMPTY_REGION} state until the owner of the region resumes its sweeping.
+     */
+    static final class WorkerSweeper extends HeapRegionSweeper {
+        WorkerSweeper(HeapRegionSweeper sweeper) {
+            super(sweeper);
+        }
+
+        void beginPresweep(HeapRegionSweeper sweeper) {
+            minReclaimableSpace = sweeper.minReclaimableSpace;
+            csrIsLiveMultiRegionObjectTail = false;
+        }
+
+        /**
+         * Sweep a region that isn't part of a multi-regions object and record the outcome in its {@link HeapRegionInfo}.
+         */
+        void presweep(HeapRegionInfo rinfo, TricolorHeapMarker heapMarker, boolean doImprecise) {
+            resetSweepingRegion(rinfo);
+            heapMarker.sweepRegion(this, doImprecise);
+            final Address firstFreeChunk = csrHead == null ? csrInfo.regionStart() : HeapFreeChunk.fromHeapFreeChunk(csrHead);
+            csrInfo.setFreeChunks(firstFreeChunk, csrFreeBytes, csrFreeChunks);
+            csrInfo.setLiveBytes(csrLiveBytes);
+        }
+
+        void endPresweep() {
+            // Don't keep references to free chunks: they may be taken for live objects by the next GC.
+            csrHead = null;
+            csrTail = null;
+            csrInfo = null;
+        }
+
+        @Override
+        public HeapRegionList sweepingRegions() {
+            throw FatalError.unexpected("Worker sweepers have no region list");
+        }
+
+        @Override
+        public boolean hasNextSweepingRegion() {
+            throw FatalError.unexpected("Worker sweepers are only driven by presweep");
+        }
+
+        @Override
+        public void reachedRightmostLiveRegion() {
+            FatalError.unexpected("Worker sweepers are only driven by presweep");
+        }
+
+        @Override
+        public void beginSweep() {
+            FatalError.unexpected("Worker sweepers are only driven by presweep");
+        }
+
+        @Override
+        public void endSweep() {
+            FatalError.unexpected("Worker sweepers are only driven by presweep");
+        }
+
+        @Override
+        public Size freeSpaceAfterSweep() {
+            throw FatalError.unexpected("Worker sweepers don't manage free space");
+        }
+
+        @Override
+        public void verify(AfterMarkSweepVerifier verifier) {
+            FatalError.unexpected("Worker sweepers don't manage free space");
+        }
+    }
+
+    /**
+     * Allocate the per-worker sweepers if regions are to be swept in parallel. Must be called at VM startup,
+     * with allocation directed to non-moving memory.
+     */
+    void initializeParallelSweeping() {
+        if (ParallelSweeping && GCTaskThreadPool.numWorkers() > 1) {
+            final int numWorkers = GCTaskThreadPool.numWorkers();
+            workerSweepers = new WorkerSweeper[numWorkers];
+            for (int i = 0; i < numWorkers; i++) {
+                workerSweepers[i] = new WorkerSweeper(this);
+            }
+        }
+    }
+
+    boolean sweepsInParallel() {
+        return workerSweepers != null;
+    }
+
+    final WorkerSweeper workerSweeper(int workerId) {
+        return workerSweepers[workerId];
+    }
+
+    final void setPresweptLimit(Address limit) {
+        presweptLimit = limit;
+    }
+
+    /**
+     * Indicates whether a region is swept by the {@link WorkerSweeper}s.
+     */
+    final boolean isPreswept(HeapRegionInfo rinfo) {
+        return !rinfo.isLarge() && rinfo.regionStart().lessThan(presweptLimit);
+    }
+
+    /**
+     * Indicates whether the heap marker must sweep the current sweeping region. This isn't the case if the region was already swept by a
+     * {@link WorkerSweeper}, or if its sweeping is deferred.
+     */
+    public final boolean sweepingRegionNeedsSweeping() {
+        return !(csrIsPreswept || csrIsUnswept);
+    }
+
     final public int liveBytes() {
         return csrLiveBytes;
     }
@@ -143,6 +299,8 @@ public abstract class HeapRegionSweeper extends Sweeper {
         csrTail = null;
         csrFreeChunks = 0;
         csrLiveBytes = 0;
+        csrIsPreswept = false;
+        csrIsUnswept = false;
         if (!csrIsLiveMultiRegionObjectTail) {
             csrIsMultiRegionObjectHead = csrInfo.isHeadOfLargeObject();
             csrLastLiveAddress = regionStart;
@@ -154,6 +312,42 @@ public abstract class HeapRegionSweeper extends Sweeper {
         csrInfo.resetOccupancy();
     }
 
+    /**
+     * Make a region already swept by a {@link WorkerSweeper} the current sweeping region, with the free chunks recorded in its {@link HeapRegionInfo}.
+     */
+    final void resumePresweptRegion(HeapRegionInfo rinfo) {
+        csrInfo = rinfo;
+        csrEnd = rinfo.regionStart().plus(regionSizeInBytes);
+        csrFreeBytes = rinfo.freeBytesInChunks();
+        csrFreeChunks = rinfo.numFreeChunks();
+        csrLiveBytes = rinfo.liveBytes();
+        csrHead = csrFreeChunks == 0 ? null : HeapFreeChunk.toHeapFreeChunk(rinfo.firstFreeBytes());
+        csrTail = null;
+        csrIsMultiRegionObjectHead = false;
+        csrLastLiveAddress = csrEnd;
+        csrIsPreswept = true;
+        csrIsUnswept = false;
+    }
+
+    /**
+     * Make a region the current sweeping region without sweeping it. The region is left with its dead objects until it is swept on demand.
+     * The region must not be part of a multi-regions object.
+     */
+    final void deferSweepingRegion(HeapRegionInfo rinfo) {
+        csrInfo = rinfo;
+        csrEnd = rinfo.regionStart().plus(regionSizeInBytes);
+        csrFreeBytes = 0;
+        csrFreeChunks = 0;
+        csrLiveBytes = 0;
+        csrHead = null;
+        csrTail = null;
+        csrIsMultiRegionObjectHead = false;
+        csrLastLiveAddress = csrEnd;
+        csrIsPreswept = false;
+        csrIsUnswept = true;
+        rinfo.resetOccupancy();
+    }
+
     final void recordFreeSpace(Address chunk, Size chunkSize) {
         HeapFreeChunk c = HeapFreeChunk.format(chunk, chunkSize);
         if (csrTail == null) {
@@ -202,6 +396,11 @@ public abstract class HeapRegionSweeper extends Sweeper {
         }
     }
 
+    /**
+     * List of the regions to sweep, in address order.
+     */
+    public abstract HeapRegionList sweepingRegions();
+
     public abstract boolean hasNextSweepingRegion();
     public abstract void reachedRightmostLiveRegion();
 
@@ -113,10 +113,73 @@ public class NoAgingNurseryEvacuator extends EvacuatorToCardSpace {
     private final DirtyCardEvacuationClosure heapSpaceDirtyCardClosure;
     private final BootRegionDirtyCardEvacuationClosure bootRegionDirtyCardClosure;
 
+    /**
+     * Task evacuating the nursery with the help of GC worker threads, or null if the nursery is evacuated sequentially.
+     */
+    private ParallelNurseryEvacuationTask parallelEvacuationTask;
+
+    /**
+     * Set for evacuators run by GC worker threads on behalf of the evacuator driving a parallel evacuation.
+     */
+    private final boolean isWorker;
+
     public NoAgingNurseryEvacuator(EvacuatingSpace fromSpace, HeapSpace toSpace, EvacuationBufferProvider evacuationBufferProvider, CardTableRSet rset, String name) {
         super(fromSpace, toSpace, evacuationBufferProvider, rset, name);
         this.heapSpaceDirtyCardClosure = new DirtyCardEvacuationClosure();
         this.bootRegionDirtyCardClosure = new BootRegionDirtyCardEvacuationClosure();
+        this.isWorker = false;
+    }
+
+    /**
+     * Create an evacuator run by a GC worker thread concurrently with the specified evacuator.
+     */
+    NoAgingNurseryEvacuator(NoAgingNurseryEvacuator evacuator) {
+        super(evacuator);
+        this.heapSpaceDirtyCardClosure = new DirtyCardEvacuationClosure();
+        this.bootRegionDirtyCardClosure = new BootRegionDirtyCardEvacuationClosure();
+        this.parallelEvacuationTask = evacuator.parallelEvacuationTask;
+        this.isWorker = true;
+    }
+
+    /**
+     * Evacuate the nursery in parallel with the specified number of GC workers. Must be called at VM startup once the evacuator
+     * is {@linkplain #initialize(int, boolean, Size, boolean) initialized}, with allocation directed to non-moving memory.
+     *
+     * @param numWorkers number of workers of the {@link GCTaskThreadPool}
+     */
+    public void initializeParallelEvacuation(int numWorkers) {
+        parallelEvacuationTask = new ParallelNurseryEvacuationTask(this);
+        shareSurvivorRanges();
+        setAtomicForwarding(true);
+        parallelEvacuationTask.initialize(numWorkers);
+    }
+
+    @Override
+    protected boolean evacuatesInParallel() {
+        return parallelEvacuationTask != null && !isWorker;
+    }
+
+    @Override
+    protected void evacuateInParallel() {
+        parallelEvacuationTask.evacuate();
+        Heap.bootHeapRegion.discoverSpecialReference();
+    }
+
+    @Override
+    protected void discoverSpecialReference(Pointer origin) {
+        if (parallelEvacuationTask != null) {
+            parallelEvacuationTask.discoverSpecialReference(origin);
+        } else {
+            super.discoverSpecialReference(origin);
+        }
+    }
+
+    @Override
+    public void doBeforeGC() {
+        super.doBeforeGC();
+        if (evacuatesInParallel()) {
+            parallelEvacuationTask.doBeforeGC();
+        }
     }
 
     @Override
@@ -130,10 +193,17 @@ public class NoAgingNurseryEvacuator extends EvacuatorToCardSpace {
     protected void evacuateFromBootHeap() {
         // NOTE: if immortal region happens to grow very large, it may be sensible to also scan it using the
         // card table, instead of just letting super-class Evacuator iterate over entire immortal memory.
+        evacuateFromBootHeapDirtyCards();
+        Heap.bootHeapRegion.discoverSpecialReference();
+    }
+
+    /**
+     * Evacuate the cells referenced from the dirty cards of the boot heap.
+     */
+    void evacuateFromBootHeapDirtyCards() {
         final BootHeapRegion bootHeapRegion = Heap.bootHeapRegion;
         bootRegionDirtyCardClosure.initialize();
         rset.cleanAndVisitCards(bootHeapRegion.start(), bootHeapRegion.end(), bootRegionDirtyCardClosure);
-        bootHeapRegion.discoverSpecialReference();
     }
 
     @Override
@@ -0,0 +1,422 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.vm.heap.gcx;
+
+import static com.sun.max.vm.heap.gcx.HeapRegionConstants.*;
+
+import com.oracle.max.cri.intrinsics.*;
+import com.sun.max.annotate.*;
+import com.sun.max.unsafe.*;
+import com.sun.max.vm.*;
+import com.sun.max.vm.actor.holder.*;
+import com.sun.max.vm.heap.*;
+import com.sun.max.vm.heap.GCTaskThreadPool.GCTask;
+import com.sun.max.vm.layout.*;
+import com.sun.max.vm.reference.*;
+import com.sun.max.vm.runtime.*;
+
+/**
+ * Parallel tracing of the heap regions of a {@link TricolorHeapMarker}, run by the workers of the {@link GCTaskThreadPool}
+ * once roots have been marked grey.
+ * <p>
+ * Workers claim stripes of at most {@link #STRIPE_NUM_REGIONS} regions from the region ranges being traced and scan the
+ * corresponding words of the color map for grey marks. Grey objects referenced from a visited object are pushed on the
+ * worker's {@linkplain WorkStealingMarkingStacks marking stack}, which it drains before claiming another stripe.
+ * Workers that run out of work steal from the stacks of other workers, and offer termination when no stripe remains and all stacks are empty.
+ * <p>
+ * Marks are updated with atomic operations: white objects are greyed by the first worker to set their leading bit, and a grey object
+ * is only visited by the worker that marked it black (see {@link TricolorHeapMarker#markGreyIfWhiteAtomic(Pointer)} and
+ * {@link TricolorHeapMarker#markBlackFromGreyAtomic(int)}). A worker whose marking stack is full leaves the object grey in the color map.
+ * Tracing is then repeated over all the region ranges until no marking stack overflowed.
+ * <p>
+ * Special references are discovered under a lock. Their processing, like root marking, remains sequential.
+ * <p>
+ * A task created to {@linkplain #tracesReferentsStrongly trace referents strongly} is instead used by a single worker
+ * to trace the heap concurrently with mutators (see {@link TricolorHeapMarker#markConcurrently()}). Special references aren't discovered then:
+ * their referents are traced like any other reference.
+ */
+final class ParallelMarkingTask extends GCTask {
+    /**
+     * Maximum number of regions per stripe.
+     */
+    static final int STRIPE_NUM_REGIONS = 4;
+
+    /**
+     * Per-worker tracing state.
+     */
+    static final class WorkerScanState extends PointerIndexVisitor {
+        final ParallelMarkingTask task;
+        final TricolorHeapMarker heapMarker;
+        final int workerId;
+        /**
+         * Rightmost cell visited by this worker.
+         */
+        Address rightmost;
+
+        WorkerScanState(ParallelMarkingTask task, int workerId) {
+            this.task = task;
+            this.heapMarker = task.heapMarker;
+            this.workerId = workerId;
+        }
+
+        @INLINE
+        void markObjectGrey(Pointer cell) {
+            if (heapMarker.isCovered(cell) && heapMarker.markGreyIfWhiteAtomic(cell)) {
+                if (!task.markingStacks.push(workerId, cell)) {
+                    // Leave the cell grey in the color map. It will be visited during the next tracing pass.
+                    task.overflowed = true;
+                }
+            }
+        }
+
+        @INLINE
+        private void markRefGrey(Reference ref) {
+            markObjectGrey(Layout.originToCell(ref.toOrigin()));
+        }
+
+        @Override
+        public void visit(Pointer pointer, int wordIndex) {
+            markRefGrey(pointer.getReference(wordIndex));
+        }
+
+        private void visitArrayReferences(Pointer origin) {
+            final int length = Layout.readArrayLength(origin);
+            for (int index = 0; index < length; index++) {
+                markRefGrey(Layout.getReference(origin, index));
+            }
+        }
+
+        /**
+         * Visit a cell this worker has marked black.
+         * @param cell a black cell
+         * @return the end of the cell
+         */
+        private Pointer visitBlackenedCell(Pointer cell) {
+            if (MaxineVM.isDebug() && Heap.logAllGC()) {
+                TricolorHeapMarker.printVisitedCell(cell, "Visiting grey cell ");
+            }
+            if (cell.greaterThan(rightmost)) {
+                rightmost = cell;
+            }
+            final Pointer origin = Layout.cellToOrigin(cell);
+            final Reference hubRef = Layout.readHubReference(origin);
+            markRefGrey(hubRef);
+            final Hub hub = UnsafeCast.asHub(hubRef.toJava());
+            if (MaxineVM.isDebug()) {
+                heapMarker.checkGreyCellHub(origin, hub);
+            }
+            final SpecificLayout specificLayout = hub.specificLayout;
+            if (specificLayout.isTupleLayout()) {
+                TupleReferenceMap.visitReferences(hub, origin, this);
+                if (hub.isJLRReference) {
+                    if (task.tracesReferentsStrongly) {
+                        markRefGrey(origin.getReference(SpecialReferenceManager.referentIndex()));
+                    } else {
+                        // Only the worker that blackened the cell visits it, so the reference is discovered once.
+                        task.discoverSpecialReference(cell);
+                    }
+                }
+                return cell.plus(hub.tupleSize);
+            }
+            if (specificLayout.isReferenceArrayLayout()) {
+                visitArrayReferences(origin);
+            } else if (specificLayout.isHybridLayout()) {
+                TupleReferenceMap.visitReferences(hub, origin, this);
+            }
+            return cell.plus(Layout.size(origin));
+        }
+
+        /**
+         * Visit a cell if the current worker wins the race to mark it black.
+         */
+        private void visitIfGrey(Pointer cell) {
+            final int bitIndex = heapMarker.bitIndexOf(cell);
+            if (heapMarker.markBlackFromGreyAtomic(bitIndex)) {
+                heapMarker.traceBlackMark(cell, bitIndex);
+                visitBlackenedCell(cell);
+            }
+        }
+
+        void drainMarkingStack() {
+            while (!task.interrupted) {
+                final Pointer cell = task.markingStacks.pop(workerId);
+                if (cell.isZero()) {
+                    return;
+                }
+                visitIfGrey(cell);
+            }
+        }
+
+        /**
+         * Visit all grey objects whose mark is within the specified range of words of the color map.
+         * Same as {@link TricolorHeapMarker.ColorMapScanState#visitGreyObjects(int, int)}, except that the
+         * color map is concurrently updated by other workers.
+         */
+        void visitGreyObjects(int bitmapWordIndex, int lastBitmapWordIndex) {
+            final Pointer colorMapBase = heapMarker.base.asPointer();
+            while (bitmapWordIndex <= lastBitmapWordIndex) {
+                final long bitmapWord = colorMapBase.getLong(bitmapWordIndex);
+                if (bitmapWord != 0L) {
+                    long greyMarksInWord = bitmapWord & (bitmapWord >>> 1);
+                    if ((greyMarksInWord & 1L) != 0L && bitmapWordIndex > 0 &&
+                                    (colorMapBase.getLong(bitmapWordIndex - 1) >>> TricolorHeapMarker.LAST_BIT_INDEX_IN_WORD) == 1L) {
+                        // The first bit is the second bit of a color spanning from the previous word.
+                        // Unlike with a sequential forward scan, the cell may not have been blackened yet.
+                        greyMarksInWord &= ~1L;
+                    }
+                    int bitIndexInWord = -1;
+                    if (greyMarksInWord != 0L) {
+                        bitIndexInWord = Pointer.fromLong(greyMarksInWord).leastSignificantBitSet();
+                    } else if ((bitmapWord >>> TricolorHeapMarker.LAST_BIT_INDEX_IN_WORD) == 1L && (colorMapBase.getLong(bitmapWordIndex + 1) & 1L) != 0L) {
+                        bitIndexInWord = TricolorHeapMarker.LAST_BIT_INDEX_IN_WORD;
+                    }
+                    if (bitIndexInWord >= 0) {
+                        final int bitIndex = (bitmapWordIndex << Word.widthValue().log2numberOfBits) + bitIndexInWord;
+                        if (heapMarker.markBlackFromGreyAtomic(bitIndex)) {
+                            final Pointer cell = heapMarker.addressOf(bitIndex).asPointer();
+                            heapMarker.traceBlackMark(cell, bitIndex);
+                            final Pointer endOfCell = visitBlackenedCell(cell);
+                            drainMarkingStack();
+                            if (task.interrupted) {
+                                return;
+                            }
+                            bitmapWordIndex = heapMarker.bitmapWordIndex(endOfCell);
+                        }
+                        // Otherwise, another worker got the cell. Either way, re-read the word.
+                        continue;
+                    }
+                }
+                bitmapWordIndex++;
+            }
+        }
+
+        void run(int numWorkers) {
+            final int log2RegionToBitmapWord = log2RegionSizeInBytes - heapMarker.log2BitmapWord;
+            while (true) {
+                drainMarkingStack();
+                final RegionRange stripe = task.stripes.claim();
+                if (stripe.numRegions() > 0) {
+                    final int firstRegion = stripe.firstRegion();
+                    final int firstBitmapWordIndex = firstRegion << log2RegionToBitmapWord;
+                    final int lastBitmapWordIndex = ((firstRegion + stripe.numRegions()) << log2RegionToBitmapWord) - 1;
+                    visitGreyObjects(firstBitmapWordIndex, lastBitmapWordIndex);
+                    continue;
+                }
+                final Pointer cell = task.markingStacks.stealFromOthers(workerId);
+                if (!cell.isZero()) {
+                    visitIfGrey(cell);
+                    continue;
+                }
+                if (task.offerTermination(numWorkers)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    final TricolorHeapMarker heapMarker;
+    final WorkStealingMarkingStacks markingStacks = new WorkStealingMarkingStacks();
+    private WorkerScanState [] workerScanStates;
+
+    /**
+     * Stripes of the region ranges traced by the current pass.
+     */
+    final HeapRegionStripes stripes = new HeapRegionStripes(STRIPE_NUM_REGIONS);
+    private volatile int discoveryLock;
+    private volatile int numIdleWorkers;
+
+    /**
+     * Set when a worker's marking stack overflows during the current pass.
+     */
+    volatile boolean overflowed;
+
+    /**
+     * Set to make a single worker tracing the heap concurrently with mutators stop as soon as possible.
+     * Grey objects may then be left on the marking stack: the trace can't be resumed, only {@linkplain #resetSingleWorker(Address) reset}.
+     */
+    volatile boolean interrupted;
+
+    /**
+     * Indicates whether the referents of special references are traced as strong references instead of being discovered.
+     */
+    final boolean tracesReferentsStrongly;
+
+    ParallelMarkingTask(TricolorHeapMarker heapMarker) {
+        this(heapMarker, false);
+    }
+
+    ParallelMarkingTask(TricolorHeapMarker heapMarker, boolean tracesReferentsStrongly) {
+        super(tracesReferentsStrongly ? "Concurrent Marking" : "Parallel Marking");
+        this.heapMarker = heapMarker;
+        this.tracesReferentsStrongly = tracesReferentsStrongly;
+    }
+
+    void initialize(int numWorkers) {
+        markingStacks.initialize(numWorkers);
+        workerScanStates = new WorkerScanState[numWorkers];
+        for (int i = 0; i < numWorkers; i++) {
+            workerScanStates[i] = new WorkerScanState(this, i);
+        }
+    }
+
+    boolean isEnabled() {
+        return workerScanStates != null;
+    }
+
+    @FOLD
+    private static int discoveryLockOffset() {
+        return ClassActor.fromJava(ParallelMarkingTask.class).findLocalInstanceFieldActor("discoveryLock").offset();
+    }
+
+    @FOLD
+    private static int numIdleWorkersOffset() {
+        return ClassActor.fromJava(ParallelMarkingTask.class).findLocalInstanceFieldActor("numIdleWorkers").offset();
+    }
+
+    @INLINE
+    private void spinLock(int lockOffset) {
+        final Reference ref = Reference.fromJava(this);
+        while (ref.compareAndSwapInt(lockOffset, 0, 1) != 0) {
+            Intrinsics.pause();
+        }
+    }
+
+    @INLINE
+    private void spinUnlock(int lockOffset) {
+        MemoryBarriers.barrier(MemoryBarriers.LOAD_STORE | MemoryBarriers.STORE_STORE);
+        Reference.fromJava(this).writeInt(lockOffset, 0);
+    }
+
+    private void addToIdleWorkers(int delta) {
+        final Reference ref = Reference.fromJava(this);
+        int oldValue;
+        do {
+            oldValue = numIdleWorkers;
+        } while (ref.compareAndSwapInt(numIdleWorkersOffset(), oldValue, oldValue + delta) != oldValue);
+    }
+
+    void discoverSpecialReference(Pointer cell) {
+        spinLock(discoveryLockOffset());
+        SpecialReferenceManager.discoverSpecialReference(cell);
+        spinUnlock(discoveryLockOffset());
+    }
+
+    /**
+     * Called by a worker that ran out of work. Returns true when all workers have run out of work,
+     * or false if work became available in the meantime.
+     */
+    boolean offerTermination(int numWorkers) {
+        addToIdleWorkers(1);
+        while (numIdleWorkers != numWorkers) {
+            if (!markingStacks.allEmpty()) {
+                addToIdleWorkers(-1);
+                return false;
+            }
+            Intrinsics.pause();
+        }
+        return true;
+    }
+
+    @Override
+    public void run(int workerId, int numWorkers) {
+        workerScanStates[workerId].run(numWorkers);
+    }
+
+    /**
+     * Prepare the first worker for tracing on its own, e.g., by a concurrent marker.
+     * @param rightmost the rightmost cell marked during root marking
+     */
+    void resetSingleWorker(Address rightmost) {
+        markingStacks.reset(0);
+        overflowed = false;
+        interrupted = false;
+        workerScanStates[0].rightmost = rightmost;
+    }
+
+    /**
+     * Rightmost cell visited by the first worker since it was {@linkplain #resetSingleWorker(Address) reset}.
+     */
+    Address singleWorkerRightmost() {
+        return workerScanStates[0].rightmost;
+    }
+
+    /**
+     * Visit with the first worker the grey objects whose marks are within the specified range of words of the color map,
+     * and all the objects reachable from them.
+     */
+    void visitGreyObjectsSingleWorker(int bitmapWordIndex, int lastBitmapWordIndex) {
+        final WorkerScanState workerScanState = workerScanStates[0];
+        workerScanState.drainMarkingStack();
+        workerScanState.visitGreyObjects(bitmapWordIndex, lastBitmapWordIndex);
+    }
+
+    /**
+     * Mark grey with the first worker a cell if it is white and covered, then visit all the objects reachable from it.
+     */
+    void markGreyAndVisitSingleWorker(Pointer cell) {
+        final WorkerScanState workerScanState = workerScanStates[0];
+        workerScanState.markObjectGrey(cell);
+        workerScanState.drainMarkingStack();
+    }
+
+    /**
+     * Visit all objects marked grey during root marking that reside in the specified heap region ranges, and all
+     * objects reachable from them.
+     *
+     * @param regionsRanges the region ranges to trace
+     * @param rightmost the rightmost cell marked during root marking
+     * @return the rightmost visited cell, or {@code rightmost} if no cell was visited past it
+     */
+    Address visitGreyObjects(HeapRegionRangeIterable regionsRanges, Address rightmost) {
+        for (WorkerScanState workerScanState : workerScanStates) {
+            workerScanState.rightmost = rightmost;
+        }
+        int numPasses = 0;
+        do {
+            stripes.reset(regionsRanges);
+            numIdleWorkers = 0;
+            overflowed = false;
+            for (int i = 0; i < markingStacks.numStacks(); i++) {
+                markingStacks.reset(i);
+            }
+            GCTaskThreadPool.theGCTaskThreadPool().run(this);
+            numPasses++;
+        } while (overflowed);
+
+        Address result = rightmost;
+        for (WorkerScanState workerScanState : workerScanStates) {
+            if (workerScanState.rightmost.greaterThan(result)) {
+                result = workerScanState.rightmost;
+            }
+        }
+        stripes.release();
+        if (Heap.logGCPhases() && numPasses > 1) {
+            final boolean lockDisabledSafepoints = Log.lock();
+            Log.print("Parallel marking required ");
+            Log.print(numPasses);
+            Log.println(" passes because of marking stack overflows");
+            Log.unlock(lockDisabledSafepoints);
+        }
+        return result;
+    }
+}
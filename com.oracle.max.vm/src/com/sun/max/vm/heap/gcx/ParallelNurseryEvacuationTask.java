@@ -0,0 +1,440 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.vm.heap.gcx;
+
+import static com.sun.max.vm.heap.gcx.HeapRegionConstants.*;
+
+import com.oracle.max.cri.intrinsics.*;
+import com.sun.max.annotate.*;
+import com.sun.max.memory.*;
+import com.sun.max.unsafe.*;
+import com.sun.max.vm.*;
+import com.sun.max.vm.actor.holder.*;
+import com.sun.max.vm.heap.*;
+import com.sun.max.vm.heap.GCTaskThreadPool.GCTask;
+import com.sun.max.vm.heap.gcx.rset.ctbl.*;
+import com.sun.max.vm.layout.*;
+import com.sun.max.vm.reference.*;
+import com.sun.max.vm.runtime.*;
+import com.sun.max.vm.thread.*;
+import com.sun.max.vm.type.*;
+
+/**
+ * Parallel evacuation of a nursery by a {@link NoAgingNurseryEvacuator} and evacuators of the same kind run by the workers of
+ * the {@link GCTaskThreadPool}. Each evacuator has its own evacuation buffer, refilled from the old generation, and cells
+ * are forwarded with an atomic compare-and-swap of their header. All evacuators share a single {@link SurvivorRangesQueue}.
+ * <p>
+ * Evacuation proceeds in passes of two parallel phases:
+ * <ol>
+ * <li>Workers claim stripes of at most {@link #STRIPE_NUM_REGIONS} regions of the old generation, clean their dirty cards,
+ * and push on their {@linkplain WorkStealingMarkingStacks stack} the address of every reference to the nursery found in the cells
+ * overlapping the dirty cards. Nothing is evacuated during this phase, so card walkers never run into an evacuation buffer being allocated
+ * by another worker.</li>
+ * <li>Workers claim roots one at a time (the thread locals and stack of each active thread, then the references held by the monitor scheme,
+ * the dirty cards of the boot heap, the code regions and the immortal heap), then evacuate the cells referenced from the locations on their stack,
+ * stealing locations from other workers when their stack is empty, and scan survivor ranges taken from the shared queue.</li>
+ * </ol>
+ * A worker whose stack is full re-dirties the card holding the reference location instead. Another pass is then run, without roots, once
+ * the evacuation buffers have been made iterable.
+ * <p>
+ * Special references are discovered under a lock. Their processing remains sequential.
+ */
+final class ParallelNurseryEvacuationTask extends GCTask {
+    /**
+     * Maximum number of regions per stripe of old generation dirty cards.
+     */
+    static final int STRIPE_NUM_REGIONS = 4;
+
+    /**
+     * Number of roots claimed after the thread roots: the monitor scheme, the boot heap, the code regions and the immortal heap.
+     */
+    private static final int NUM_NON_THREAD_ROOTS = 4;
+
+    /**
+     * Per-worker evacuation state.
+     */
+    static final class Worker extends PointerIndexVisitor implements OverlappingCellVisitor, Pointer.Procedure {
+        final ParallelNurseryEvacuationTask task;
+        final NoAgingNurseryEvacuator evacuator;
+        final int workerId;
+        private final CardTable cardTable;
+
+        /**
+         * Index of the next thread visited while claiming thread roots.
+         */
+        private int threadIndex;
+
+        /**
+         * Last root claimed by this worker.
+         */
+        private int claimedRoot;
+
+        Worker(ParallelNurseryEvacuationTask task, NoAgingNurseryEvacuator evacuator, int workerId) {
+            this.task = task;
+            this.evacuator = evacuator;
+            this.workerId = workerId;
+            this.cardTable = evacuator.rset.cardTable;
+        }
+
+        /**
+         * Record the location of a reference to the nursery found in a dirty card.
+         */
+        @Override
+        public void visit(Pointer pointer, int wordIndex) {
+            if (evacuator.inEvacuatedArea(pointer.getReference(wordIndex).toOrigin())) {
+                final Pointer location = pointer.plusWords(wordIndex);
+                if (!task.locations.push(workerId, location)) {
+                    // Leave the reference for the next pass.
+                    cardTable.dirty(cardTable.tableEntryIndex(location));
+                    task.overflowed = true;
+                }
+            }
+        }
+
+        private void visitReferenceArray(Pointer origin, Address start, Address end) {
+            final int endOfArrayIndex = Layout.readArrayLength(origin) + Layout.firstElementIndex();
+            final Address firstElementAddr = origin.plusWords(Layout.firstElementIndex());
+            final Address endOfArrayAddr = origin.plusWords(endOfArrayIndex);
+            final int firstIndex = start.greaterThan(firstElementAddr) ? start.minus(origin).unsignedShiftedRight(Kind.REFERENCE.width.log2numberOfBytes).toInt() : Layout.firstElementIndex();
+            final int endIndex = endOfArrayAddr.greaterThan(end) ? end.minus(origin).unsignedShiftedRight(Kind.REFERENCE.width.log2numberOfBytes).toInt() : endOfArrayIndex;
+            for (int index = firstIndex; index < endIndex; index++) {
+                visit(origin, index);
+            }
+        }
+
+        /**
+         * Record the locations of references to the nursery in the part of a cell that overlaps dirty cards.
+         * Same as {@link Evacuator#scanCellForEvacuatees(Pointer, Address, Address)}, without evacuating.
+         */
+        public Pointer visitCell(Pointer cell, Address start, Address end) {
+            final Pointer origin = Layout.cellToOrigin(cell);
+            if (origin.plusWords(Layout.hubIndex()).greaterEqual(start)) {
+                visit(origin, Layout.hubIndex());
+            }
+            final Hub hub = UnsafeCast.asHub(origin.getReference(Layout.hubIndex()));
+            if (hub == HeapFreeChunk.heapFreeChunkHub()) {
+                return cell.plus(HeapFreeChunk.getFreechunkSize(cell));
+            }
+            final SpecificLayout specificLayout = hub.specificLayout;
+            if (specificLayout.isTupleLayout()) {
+                // Visit all the references of the tuple, as the write barrier only dirties the card holding its header.
+                hub.visitMappedReferences(origin, this);
+                if (hub.isJLRReference) {
+                    task.discoverSpecialReference(origin);
+                }
+                return cell.plus(hub.tupleSize);
+            }
+            if (specificLayout.isReferenceArrayLayout()) {
+                visitReferenceArray(origin, start, end);
+            } else if (specificLayout.isHybridLayout()) {
+                hub.visitMappedReferences(origin, this);
+            }
+            return cell.plus(Layout.size(origin));
+        }
+
+        void scanDirtyCards() {
+            int stripe = task.claimStripe();
+            while (stripe < task.numStripes) {
+                evacuator.rset.cleanAndVisitCards(task.stripeStart(stripe), task.stripeEnd(stripe), this);
+                stripe = task.claimStripe();
+            }
+        }
+
+        /**
+         * Evacuate the roots of the thread whose thread locals are at {@code tla} if this worker claimed them.
+         */
+        public void run(Pointer tla) {
+            if (threadIndex == claimedRoot) {
+                if (Heap.logGCPhases()) {
+                    Heap.phaseLogger.logScanningThreadRoots(VmThread.fromTLA(tla));
+                }
+                VmThreadLocal.scanReferences(tla, evacuator);
+                claimedRoot = task.claimRoot();
+            }
+            threadIndex++;
+        }
+
+        private void evacuateFromRoots() {
+            threadIndex = 0;
+            claimedRoot = task.claimRoot();
+            VmThreadMap.ACTIVE.forAllThreadLocals(null, this);
+            final int numThreads = threadIndex;
+            while (claimedRoot - numThreads < NUM_NON_THREAD_ROOTS) {
+                switch (claimedRoot - numThreads) {
+                    case 0:
+                        VMConfiguration.vmConfig().monitorScheme().scanReferences(evacuator);
+                        break;
+                    case 1:
+                        evacuator.evacuateFromBootHeapDirtyCards();
+                        break;
+                    case 2:
+                        evacuator.evacuateFromCode();
+                        break;
+                    default:
+                        evacuator.evacuateFromImmortalHeap();
+                }
+                claimedRoot = task.claimRoot();
+            }
+        }
+
+        void evacuate(int numWorkers) {
+            if (task.evacuatesRoots) {
+                evacuateFromRoots();
+            }
+            while (true) {
+                Pointer location = task.locations.pop(workerId);
+                if (location.isZero() && !evacuator.evacuateNextSharedSurvivorRange()) {
+                    location = task.locations.stealFromOthers(workerId);
+                    if (location.isZero()) {
+                        if (task.offerTermination(numWorkers)) {
+                            return;
+                        }
+                        continue;
+                    }
+                }
+                if (!location.isZero()) {
+                    evacuator.updateEvacuatedRef(location, 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects the stripes of the old generation's iterable ranges.
+     */
+    final class StripeCollector implements CellRangeVisitor {
+        public void visitCells(Address start, Address end) {
+            final Size stripeSize = Size.fromInt(regionSizeInBytes).times(STRIPE_NUM_REGIONS);
+            Address stripeStart = start;
+            while (stripeStart.lessThan(end)) {
+                FatalError.check(numStripes < maxStripes, "Too many dirty card stripes");
+                Address stripeEnd = stripeStart.plus(stripeSize);
+                if (stripeEnd.greaterThan(end)) {
+                    stripeEnd = end;
+                }
+                stripes.setWord(numStripes << 1, stripeStart);
+                stripes.setWord((numStripes << 1) + 1, stripeEnd);
+                numStripes++;
+                stripeStart = stripeEnd;
+            }
+        }
+    }
+
+    /**
+     * The evacuator driving the evacuation. It is run by worker 0.
+     */
+    final NoAgingNurseryEvacuator evacuator;
+
+    /**
+     * Locations of references to the nursery found in dirty cards, one stack per worker.
+     */
+    final WorkStealingMarkingStacks locations = new WorkStealingMarkingStacks();
+    private Worker [] workers;
+
+    private final StripeCollector stripeCollector = new StripeCollector();
+    /**
+     * Bounds of the stripes of the current pass, allocated outside of the heap.
+     */
+    private Pointer stripes;
+    private int maxStripes;
+    int numStripes;
+
+    /**
+     * Set during the first phase of a pass.
+     */
+    private boolean scansDirtyCards;
+    /**
+     * Set if roots are evacuated during the current pass.
+     */
+    boolean evacuatesRoots;
+
+    private volatile int nextStripe;
+    private volatile int nextRoot;
+    private volatile int discoveryLock;
+    private volatile int numIdleWorkers;
+
+    /**
+     * Set when a worker's stack overflows during the current pass.
+     */
+    volatile boolean overflowed;
+
+    ParallelNurseryEvacuationTask(NoAgingNurseryEvacuator evacuator) {
+        super("Parallel Nursery Evacuation");
+        this.evacuator = evacuator;
+    }
+
+    void initialize(int numWorkers) {
+        locations.initialize(numWorkers);
+        // A stripe covers at least one region.
+        maxStripes = HeapRegionManager.theHeapRegionManager().regionAllocator().capacity();
+        final Size size = Size.fromInt(maxStripes).times(2 * Word.size());
+        stripes = Memory.allocate(size);
+        if (stripes.isZero()) {
+            MaxineVM.reportPristineMemoryFailure("nursery evacuation stripes", "allocate", size);
+        }
+        workers = new Worker[numWorkers];
+        workers[0] = new Worker(this, evacuator, 0);
+        for (int i = 1; i < numWorkers; i++) {
+            final NoAgingNurseryEvacuator workerEvacuator = new NoAgingNurseryEvacuator(evacuator);
+            workerEvacuator.setAtomicForwarding(true);
+            workers[i] = new Worker(this, workerEvacuator, i);
+        }
+    }
+
+    @FOLD
+    private static int nextStripeOffset() {
+        return ClassActor.fromJava(ParallelNurseryEvacuationTask.class).findLocalInstanceFieldActor("nextStripe").offset();
+    }
+
+    @FOLD
+    private static int nextRootOffset() {
+        return ClassActor.fromJava(ParallelNurseryEvacuationTask.class).findLocalInstanceFieldActor("nextRoot").offset();
+    }
+
+    @FOLD
+    private static int discoveryLockOffset() {
+        return ClassActor.fromJava(ParallelNurseryEvacuationTask.class).findLocalInstanceFieldActor("discoveryLock").offset();
+    }
+
+    @FOLD
+    private static int numIdleWorkersOffset() {
+        return ClassActor.fromJava(ParallelNurseryEvacuationTask.class).findLocalInstanceFieldActor("numIdleWorkers").offset();
+    }
+
+    private int fetchAndAdd(int offset, int delta) {
+        final Reference ref = Reference.fromJava(this);
+        int oldValue;
+        do {
+            oldValue = ref.readInt(offset);
+        } while (ref.compareAndSwapInt(offset, oldValue, oldValue + delta) != oldValue);
+        return oldValue;
+    }
+
+    int claimStripe() {
+        return fetchAndAdd(nextStripeOffset(), 1);
+    }
+
+    Address stripeStart(int stripe) {
+        return stripes.getWord(stripe << 1).asAddress();
+    }
+
+    Address stripeEnd(int stripe) {
+        return stripes.getWord((stripe << 1) + 1).asAddress();
+    }
+
+    int claimRoot() {
+        return fetchAndAdd(nextRootOffset(), 1);
+    }
+
+    void discoverSpecialReference(Pointer origin) {
+        final Reference ref = Reference.fromJava(this);
+        while (ref.compareAndSwapInt(discoveryLockOffset(), 0, 1) != 0) {
+            Intrinsics.pause();
+        }
+        SpecialReferenceManager.discoverSpecialReference(origin);
+        MemoryBarriers.barrier(MemoryBarriers.LOAD_STORE | MemoryBarriers.STORE_STORE);
+        ref.writeInt(discoveryLockOffset(), 0);
+    }
+
+    /**
+     * Called by a worker that ran out of work. Returns true when all workers have run out of work,
+     * or false if work became available in the meantime.
+     */
+    boolean offerTermination(int numWorkers) {
+        fetchAndAdd(numIdleWorkersOffset(), 1);
+        while (numIdleWorkers != numWorkers) {
+            if (!locations.allEmpty() || evacuator.hasSharedSurvivorRanges()) {
+                fetchAndAdd(numIdleWorkersOffset(), -1);
+                return false;
+            }
+            Intrinsics.pause();
+        }
+        return true;
+    }
+
+    @Override
+    public void run(int workerId, int numWorkers) {
+        if (scansDirtyCards) {
+            workers[workerId].scanDirtyCards();
+        } else {
+            workers[workerId].evacuate(numWorkers);
+        }
+    }
+
+    /**
+     * Retire the evacuation buffers of the workers before a GC of the old generation.
+     */
+    void doBeforeGC() {
+        for (int i = 1; i < workers.length; i++) {
+            workers[i].evacuator.doBeforeGC();
+        }
+    }
+
+    /**
+     * Evacuate all cells of the nursery reachable from roots, the boot heap, code, the immortal heap and the old generation's dirty cards.
+     * Must be called by the driving evacuator once its evacuation buffer is set up.
+     */
+    void evacuate() {
+        final GCTaskThreadPool pool = GCTaskThreadPool.theGCTaskThreadPool();
+        for (int i = 1; i < workers.length; i++) {
+            workers[i].evacuator.beginEvacuation();
+        }
+        int numPasses = 0;
+        do {
+            if (numPasses > 0) {
+                // Make the evacuation buffers iterable before walking dirty cards again.
+                for (Worker worker : workers) {
+                    worker.evacuator.endEvacuation();
+                    worker.evacuator.beginEvacuation();
+                }
+            }
+            overflowed = false;
+            numStripes = 0;
+            nextStripe = 0;
+            evacuator.toSpace.visit(stripeCollector);
+            for (int i = 0; i < locations.numStacks(); i++) {
+                locations.reset(i);
+            }
+            scansDirtyCards = true;
+            pool.run(this);
+            scansDirtyCards = false;
+
+            evacuatesRoots = numPasses == 0;
+            nextRoot = 0;
+            numIdleWorkers = 0;
+            pool.run(this);
+            numPasses++;
+        } while (overflowed);
+
+        for (int i = 1; i < workers.length; i++) {
+            workers[i].evacuator.endEvacuation();
+        }
+        if (Heap.logGCPhases() && numPasses > 1) {
+            final boolean lockDisabledSafepoints = Log.lock();
+            Log.print("Parallel nursery evacuation required ");
+            Log.print(numPasses);
+            Log.println(" passes because of stack overflows");
+            Log.unlock(lockDisabledSafepoints);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.vm.heap.gcx;
+
+import com.sun.max.unsafe.*;
+import com.sun.max.vm.heap.*;
+import com.sun.max.vm.heap.GCTaskThreadPool.GCTask;
+import com.sun.max.vm.heap.gcx.HeapRegionSweeper.WorkerSweeper;
+
+/**
+ * Parallel sweeping of the regions of a {@link HeapRegionSweeper}, run by the workers of the {@link GCTaskThreadPool}
+ * once marking is complete.
+ * <p>
+ * Workers claim stripes of at most {@link #STRIPE_NUM_REGIONS} regions from the sweeper's list of regions to sweep, and sweep
+ * each region of the stripe that is neither part of a multi-regions object nor beyond the rightmost live object, using their own
+ * {@link WorkerSweeper}. Workers thus build the free chunk lists of disjoint regions. These lists are recorded in the regions'
+ * {@link HeapRegionInfo} and merged in the sweeper's free space lists by the subsequent sequential pass over the regions
+ * (see {@link TricolorHeapMarker#sweep(HeapRegionSweeper, boolean)}), which also sweeps multi-regions objects.
+ */
+final class ParallelSweepingTask extends GCTask {
+    /**
+     * Maximum number of regions per stripe.
+     */
+    static final int STRIPE_NUM_REGIONS = 8;
+
+    final TricolorHeapMarker heapMarker;
+    private final HeapRegionRangeIterable regionsRanges = new HeapRegionRangeIterable();
+    private final HeapRegionStripes stripes = new HeapRegionStripes(STRIPE_NUM_REGIONS);
+
+    /**
+     * Sweeper whose regions are being swept.
+     */
+    private HeapRegionSweeper regionsSweeper;
+    private boolean doImprecise;
+
+    ParallelSweepingTask(TricolorHeapMarker heapMarker) {
+        super("Parallel Sweeping");
+        this.heapMarker = heapMarker;
+    }
+
+    @Override
+    public void run(int workerId, int numWorkers) {
+        final WorkerSweeper workerSweeper = regionsSweeper.workerSweeper(workerId);
+        final RegionTable regionTable = RegionTable.theRegionTable();
+        workerSweeper.beginPresweep(regionsSweeper);
+        RegionRange stripe = stripes.claim();
+        while (stripe.numRegions() > 0) {
+            final int endOfStripe = stripe.firstRegion() + stripe.numRegions();
+            for (int regionID = stripe.firstRegion(); regionID < endOfStripe; regionID++) {
+                final HeapRegionInfo rinfo = regionTable.regionInfo(regionID);
+                if (regionsSweeper.isPreswept(rinfo)) {
+                    workerSweeper.presweep(rinfo, heapMarker, doImprecise);
+                }
+            }
+            stripe = stripes.claim();
+        }
+        workerSweeper.endPresweep();
+    }
+
+    /**
+     * Sweep in parallel the regions of a sweeper that start below the end of the rightmost live object.
+     *
+     * @param regionsSweeper the sweeper whose regions are swept
+     * @param doImprecise whether to sweep imprecisely
+     * @param endOfRightmostLiveObject end of the rightmost object marked live
+     */
+    void sweep(HeapRegionSweeper regionsSweeper, boolean doImprecise, Address endOfRightmostLiveObject) {
+        this.regionsSweeper = regionsSweeper;
+        this.doImprecise = doImprecise;
+        regionsSweeper.setPresweptLimit(endOfRightmostLiveObject);
+        regionsRanges.initialize(regionsSweeper.sweepingRegions());
+        stripes.reset(regionsRanges);
+        GCTaskThreadPool.theGCTaskThreadPool().run(this);
+        stripes.release();
+        this.regionsSweeper = null;
+    }
+}
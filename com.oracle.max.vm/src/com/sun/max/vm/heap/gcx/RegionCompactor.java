@@ -0,0 +1,368 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.vm.heap.gcx;
+
+import static com.sun.max.vm.heap.gcx.HeapRegionConstants.*;
+import static com.sun.max.vm.heap.gcx.HeapRegionInfo.*;
+
+import com.sun.max.annotate.*;
+import com.sun.max.memory.*;
+import com.sun.max.unsafe.*;
+import com.sun.max.vm.*;
+import com.sun.max.vm.MaxineVM.Phase;
+import com.sun.max.vm.heap.*;
+import com.sun.max.vm.layout.*;
+import com.sun.max.vm.runtime.*;
+
+/**
+ * Incremental compaction of a {@link FirstFitMarkSweepSpace}, run at the end of a garbage collection once the space is swept.
+ * The sparsest regions of the space (i.e., those with the most free space according to a {@link HeapRegionStatistics}) form a collection set
+ * whose live objects are evacuated to empty regions, after which the regions of the collection set are returned to the space as empty regions.
+ * The number of regions evacuated by a compaction is bounded by a pause time budget, which is converted into a number of bytes
+ * using the evacuation rate observed by previous compactions.
+ * <p>
+ * The space doesn't maintain per-region remembered sets with a write barrier. Instead, the remembered set of the collection set
+ * is recomputed by scanning the live objects of the other regions of the space, which the collection has just swept.
+ * Evacuated objects are marked black in the heap marker's color map, and the marks of the regions of the collection set are cleared,
+ * so that the color map keeps describing the live objects of the heap.
+ */
+public final class RegionCompactor extends Evacuator implements CellRangeVisitor {
+    /**
+     * Pause time budget of a compaction, in milliseconds.
+     */
+    static int CompactionPauseBudget = 10;
+    /**
+     * Maximum percentage of a region's space occupied by live data for the region to be evacuated.
+     */
+    static int CompactionMaxLiveRatio = 50;
+    static boolean TraceRegionCompaction = false;
+
+    static {
+        VMOptions.addFieldOption("-XX:", "CompactionPauseBudget", RegionCompactor.class,
+            "Pause time budget of the compaction of heap regions, in milliseconds", Phase.PRISTINE);
+        VMOptions.addFieldOption("-XX:", "CompactionMaxLiveRatio", RegionCompactor.class,
+            "Maximum percentage of live data of a heap region for it to be compacted", Phase.PRISTINE);
+        VMOptions.addFieldOption("-XX:", "TraceRegionCompaction", RegionCompactor.class, "Trace compaction of heap regions", Phase.PRISTINE);
+    }
+
+    /**
+     * Evacuation rate assumed before the first compaction.
+     */
+    private static final long INITIAL_BYTES_PER_MILLISECOND = 64L * 1024L;
+
+    private final FirstFitMarkSweepSpace<? extends HeapAccountOwner> space;
+
+    private final TricolorHeapMarker heapMarker;
+
+    /**
+     * Indicates for each region of the heap whether it is in the collection set of the compaction in progress.
+     */
+    private boolean [] inCollectionSet;
+
+    /**
+     * Identifiers of the regions of the collection set.
+     */
+    private int [] collectionSet;
+
+    private int collectionSetSize;
+
+    /**
+     * Identifiers of the regions live objects are evacuated to, in allocation order.
+     */
+    private int [] toRegions;
+
+    /**
+     * Offset of the allocation top of each of the regions live objects are evacuated to. The entry of the current to-region is only valid once the region is retired.
+     */
+    private int [] toRegionTops;
+
+    private int numToRegions;
+
+    /**
+     * Maximum number of to-regions the compaction in progress may need.
+     */
+    private int maxToRegions;
+
+    /**
+     * Bump pointer allocation in the current to-region.
+     */
+    private Pointer top;
+    private Pointer end;
+
+    /**
+     * Index in {@link #toRegions} of the region whose evacuated objects are being scanned, and the next cell to scan in that region.
+     */
+    private int scanIndex;
+    private Pointer scan;
+
+    private HeapRegionStatistics statistics;
+
+    private final HeapRegionInfoIterable regionInfoIterable = new HeapRegionInfoIterable();
+
+    /**
+     * Number of bytes evacuated per millisecond, estimated from the previous compactions.
+     */
+    private long bytesPerMillisecond = INITIAL_BYTES_PER_MILLISECOND;
+
+    private long evacuatedBytes;
+
+    /**
+     * Create a compactor for a mark-sweep space.
+     * @param space the space whose regions are compacted
+     * @param heapMarker the heap marker that traces the space
+     */
+    @HOSTED_ONLY
+    public RegionCompactor(FirstFitMarkSweepSpace<? extends HeapAccountOwner> space, TricolorHeapMarker heapMarker) {
+        this.space = space;
+        this.heapMarker = heapMarker;
+    }
+
+    /**
+     * Allocate the data structures of the compactor. Must be called once the heap region manager and the space are initialized,
+     * with an allocator that never relocates objects.
+     */
+    public void initialize() {
+        statistics = new HeapRegionStatistics(space.minReclaimableSpace());
+        final int numRegions = HeapRegionManager.theHeapRegionManager().regionAllocator().capacity();
+        inCollectionSet = new boolean[numRegions];
+        collectionSet = new int[numRegions];
+        toRegions = new int[numRegions];
+        toRegionTops = new int[numRegions];
+    }
+
+    /**
+     * Compact the space, if it has sparse regions and enough empty regions to evacuate their live objects to.
+     * Must be called during a garbage collection, once the space is completely swept.
+     *
+     * @param gcOperation the garbage collection operation in progress
+     * @return the number of regions the compaction returned to the space
+     */
+    public int compact(GCOperation gcOperation) {
+        if (!selectCollectionSet()) {
+            return 0;
+        }
+        final int numEvacuatedRegions = collectionSetSize;
+        final long startTime = System.nanoTime();
+        setGCOperation(gcOperation);
+        evacuate(Heap.logGCPhases());
+        setGCOperation(null);
+        final long elapsedNanos = System.nanoTime() - startTime;
+        if (elapsedNanos > 0L) {
+            final long observedRate = (evacuatedBytes * 1000000L) / elapsedNanos;
+            bytesPerMillisecond = (bytesPerMillisecond + observedRate) >> 1;
+        }
+        if (TraceRegionCompaction) {
+            final boolean lockDisabledSafepoints = Log.lock();
+            Log.print("Compacted ");
+            Log.print(numEvacuatedRegions);
+            Log.print(" regions, evacuated ");
+            Log.print(evacuatedBytes);
+            Log.print(" bytes in ");
+            Log.print(elapsedNanos / 1000L);
+            Log.println(" us");
+            Log.unlock(lockDisabledSafepoints);
+        }
+        return numEvacuatedRegions;
+    }
+
+    /**
+     * Select the sparsest regions of the space that can be evacuated within the pause time budget.
+     * @return true if the collection set isn't empty
+     */
+    private boolean selectCollectionSet() {
+        collectionSetSize = 0;
+        statistics.clear();
+        statistics.doStats(space.heapAccount());
+        final int numEmptyRegions = statistics.numEmptyRegions();
+        if (numEmptyRegions == 0) {
+            return false;
+        }
+        // A region mostly occupied by live data isn't worth evacuating. This also bounds the space wasted at the end of to-regions.
+        final int maxLiveBytes = (regionSizeInBytes / 100) * Math.min(Math.max(CompactionMaxLiveRatio, 1), 90);
+        final int minUsableBytes = regionSizeInBytes - maxLiveBytes;
+        final long budget = Math.max((long) CompactionPauseBudget * bytesPerMillisecond, maxLiveBytes);
+        final int minFreeBytes = statistics.minFreeSpaceOfSparsestRegions((int) Math.min(budget / maxLiveBytes, Integer.MAX_VALUE), minUsableBytes);
+
+        long liveBytes = 0L;
+        regionInfoIterable.initialize(space.heapAccount().committedRegions());
+        regionInfoIterable.reset();
+        for (HeapRegionInfo regionInfo : regionInfoIterable) {
+            if (!regionInfo.hasFreeChunks() || regionInfo.isLarge() || regionInfo.freeBytesInChunks() < minFreeBytes) {
+                continue;
+            }
+            // The live data estimate also counts dark matter, so it never underestimates the space needed to evacuate the region.
+            final int regionLiveBytes = regionSizeInBytes - regionInfo.freeBytesInChunks();
+            final long newLiveBytes = liveBytes + regionLiveBytes;
+            if (collectionSetSize > 0 && newLiveBytes > budget) {
+                break;
+            }
+            // At most one object that doesn't fit in a to-region is left behind per to-region, and it is no larger than the live data of a region of the collection set.
+            final int neededToRegions = (int) ((newLiveBytes + minUsableBytes - 1) / minUsableBytes) + 1;
+            if (neededToRegions > numEmptyRegions) {
+                break;
+            }
+            maxToRegions = neededToRegions;
+            liveBytes = newLiveBytes;
+            collectionSet[collectionSetSize++] = regionInfo.toRegionID();
+        }
+        return collectionSetSize > 0;
+    }
+
+    @Override
+    protected void doBeforeEvacuation() {
+        // Special references were processed when the heap was traced: referents still live are treated as strong references.
+        disableSpecialRefDiscovery();
+        for (int i = 0; i < collectionSetSize; i++) {
+            final int regionID = collectionSet[i];
+            space.withdrawRegion(regionID);
+            inCollectionSet[regionID] = true;
+        }
+        numToRegions = 0;
+        top = Pointer.zero();
+        end = Pointer.zero();
+        scanIndex = 0;
+        scan = Pointer.zero();
+        evacuatedBytes = 0L;
+    }
+
+    @Override
+    protected void doAfterEvacuation() {
+        if (numToRegions > 0) {
+            retireToRegion();
+        }
+        for (int i = 0; i < numToRegions; i++) {
+            space.releaseToRegion(toRegions[i], toRegionTop(i));
+        }
+        for (int i = 0; i < collectionSetSize; i++) {
+            final int regionID = collectionSet[i];
+            final Address regionStart = fromRegionID(regionID).regionStart();
+            heapMarker.clearMarks(regionStart, regionStart.plus(regionSizeInBytes));
+            space.releaseEvacuatedRegion(regionID);
+            inCollectionSet[regionID] = false;
+        }
+        collectionSetSize = 0;
+        numToRegions = 0;
+    }
+
+    @Override
+    boolean inEvacuatedArea(Pointer origin) {
+        final int regionID = RegionTable.theRegionTable().regionID(origin);
+        return regionID != INVALID_REGION_ID && inCollectionSet[regionID];
+    }
+
+    private void retireToRegion() {
+        final int index = numToRegions - 1;
+        toRegionTops[index] = top.minus(fromRegionID(toRegions[index]).regionStart()).toInt();
+    }
+
+    private Pointer toRegionTop(int index) {
+        return fromRegionID(toRegions[index]).regionStart().plus(toRegionTops[index]).asPointer();
+    }
+
+    /**
+     * Switch allocation to a new to-region.
+     * @return the start of the new to-region
+     */
+    private Pointer nextToRegion() {
+        FatalError.check(numToRegions < maxToRegions, "Compaction exceeded its to-space estimate");
+        final int regionID = space.removeEmptyRegion();
+        FatalError.check(regionID != INVALID_REGION_ID, "No empty region left to compact to");
+        if (numToRegions > 0) {
+            retireToRegion();
+        } else {
+            scan = fromRegionID(regionID).regionStart().asPointer();
+        }
+        toRegions[numToRegions++] = regionID;
+        final Pointer start = fromRegionID(regionID).regionStart().asPointer();
+        end = start.plus(regionSizeInBytes);
+        return start;
+    }
+
+    @Override
+    @NEVER_INLINE
+    Pointer evacuate(Pointer origin) {
+        final Pointer fromCell = Layout.originToCell(origin);
+        final Size size = Layout.size(origin);
+        Pointer toCell = top;
+        if (toCell.isZero() || toCell.plus(size).greaterThan(end)) {
+            toCell = nextToRegion();
+        }
+        top = toCell.plus(size);
+        Memory.copyBytes(fromCell, toCell, size);
+        heapMarker.markCopiedCellBlack(toCell);
+        evacuatedBytes += size.toLong();
+        return Layout.cellToOrigin(toCell);
+    }
+
+    /**
+     * Scan the to-regions in allocation order until no evacuated object is left unscanned.
+     */
+    @Override
+    protected void evacuateReachables() {
+        if (numToRegions == 0) {
+            return;
+        }
+        while (true) {
+            final boolean isCurrentToRegion = scanIndex == numToRegions - 1;
+            final Pointer scanLimit = isCurrentToRegion ? top : toRegionTop(scanIndex);
+            if (scan.lessThan(scanLimit)) {
+                scan = scanCellForEvacuatees(scan);
+            } else if (isCurrentToRegion) {
+                return;
+            } else {
+                scanIndex++;
+                scan = fromRegionID(toRegions[scanIndex]).regionStart().asPointer();
+            }
+        }
+    }
+
+    /**
+     * Recompute the remembered set of the collection set by scanning the live objects of the other regions of the space.
+     * To-regions aren't iterable while objects are evacuated to them, so they aren't visited.
+     */
+    @Override
+    protected void evacuateFromRSets() {
+        space.iterateRegions(this);
+    }
+
+    @Override
+    public void visitCells(Address start, Address end) {
+        final RegionTable regionTable = RegionTable.theRegionTable();
+        Pointer cell = start.asPointer();
+        while (cell.lessThan(end)) {
+            final int regionID = regionTable.regionID(cell);
+            Address regionEnd = regionTable.regionAddress(regionID).plus(regionSizeInBytes);
+            if (regionEnd.greaterThan(end)) {
+                regionEnd = end;
+            }
+            if (inCollectionSet[regionID]) {
+                cell = regionEnd.asPointer();
+            } else {
+                // Cells of large objects may extend beyond the end of the region.
+                while (cell.lessThan(regionEnd)) {
+                    cell = scanCellForEvacuatees(cell);
+                }
+            }
+        }
+    }
+}
@@ -58,6 +58,12 @@ abstract class RootCellVisitor extends PointerIndexVisitor implements CellVisito
 
     protected Address bottom;
 
+    /**
+     * Indicates whether the referents of special references are marked like strong references instead of being discovered.
+     * Set when marking roots for a concurrent trace of the heap.
+     */
+    boolean tracesReferentsStrongly;
+
     RootCellVisitor() {
     }
 
@@ -111,7 +117,11 @@ abstract class RootCellVisitor extends PointerIndexVisitor implements CellVisito
         if (specificLayout == Layout.tupleLayout()) {
             TupleReferenceMap.visitReferences(hub, origin, this);
             if (hub.isJLRReference) {
-                SpecialReferenceManager.discoverSpecialReference(cell);
+                if (tracesReferentsStrongly) {
+                    markExternalRoot(Layout.originToCell(origin.getReference(SpecialReferenceManager.referentIndex()).toOrigin()));
+                } else {
+                    SpecialReferenceManager.discoverSpecialReference(cell);
+                }
             }
             return cell.plus(hub.tupleSize);
         }
@@ -22,8 +22,12 @@
  */
 package com.sun.max.vm.heap.gcx;
 
+import com.oracle.max.cri.intrinsics.*;
+import com.sun.max.annotate.*;
 import com.sun.max.unsafe.*;
 import com.sun.max.vm.*;
+import com.sun.max.vm.actor.holder.*;
+import com.sun.max.vm.reference.*;
 import com.sun.max.vm.runtime.*;
 
 /**
@@ -31,6 +35,7 @@ import com.sun.max.vm.runtime.*;
  * Allocators used to allocate storage for survivors push ranges on the queue, either at refill, or when ask to update the queue
  * (because it is empty).
  * Evacuators retrieve ranges from the queue and process them.
+ * A queue shared by evacuators running concurrently must only be accessed with its {@linkplain #lock() lock} held.
  *
  *  TODO: simple implementation that fail when running out of pre-defined queue space.
  *  Ought to have a more elastic backing storage that can temporarily allocate queue space from free space in the heap.
@@ -52,11 +57,33 @@ public class SurvivorRangesQueue {
      */
     private final long [] queue;
 
+    private volatile int lock;
+
     public SurvivorRangesQueue(int maxSurvivorRanges) {
         queue = new long[maxSurvivorRanges * 2];
         clear();
     }
 
+    @FOLD
+    private static int lockOffset() {
+        return ClassActor.fromJava(SurvivorRangesQueue.class).findLocalInstanceFieldActor("lock").offset();
+    }
+
+    /**
+     * Acquire the spin lock guarding the queue when it is shared by concurrent producers and consumers.
+     */
+    void lock() {
+        final Reference ref = Reference.fromJava(this);
+        while (ref.compareAndSwapInt(lockOffset(), 0, 1) != 0) {
+            Intrinsics.pause();
+        }
+    }
+
+    void unlock() {
+        MemoryBarriers.barrier(MemoryBarriers.LOAD_STORE | MemoryBarriers.STORE_STORE);
+        Reference.fromJava(this).writeInt(lockOffset(), 0);
+    }
+
     /**
      * Add a new survivor range. The range must be iterable.
      *
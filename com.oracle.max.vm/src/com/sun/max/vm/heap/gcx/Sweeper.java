@@ -54,7 +54,19 @@ public abstract class Sweeper {
                         "Below this size, the space is ignored (dark matter)"),
                         MaxineVM.Phase.PRISTINE);
 
-    protected SweepLogger logger = MaxineVM.isDebug() ? new SweepLogger(true) : new SweepLogger();
+    protected SweepLogger logger;
+
+    protected Sweeper() {
+        logger = MaxineVM.isDebug() ? new SweepLogger(true) : new SweepLogger();
+    }
+
+    /**
+     * Create a sweeper that shares the logger of another sweeper.
+     * @param sweeper the sweeper whose logger is shared
+     */
+    protected Sweeper(Sweeper sweeper) {
+        logger = sweeper.logger;
+    }
 
     /**
      * Invoked when doing precise sweeping on the first black object following the pointer last returned by this method.
@@ -31,6 +31,7 @@ import com.sun.max.vm.MaxineVM.Phase;
 import com.sun.max.vm.actor.holder.*;
 import com.sun.max.vm.code.*;
 import com.sun.max.vm.heap.*;
+import com.sun.max.vm.heap.debug.*;
 import com.sun.max.vm.layout.*;
 import com.sun.max.vm.reference.*;
 import com.sun.max.vm.runtime.*;
@@ -88,7 +89,10 @@ import com.sun.max.vm.type.*;
  * color-oriented operations (i.e., searching grey or black mark, etc.). It provides fast and slow variant of
  * operations, wherein the fast variant assumes that a color never span a bitmap word. The GC is responsible for
  * guaranteeing this property when it uses the fast variant.
- *
+ * <p>
+ * The heap marker can also trace the heap concurrently with mutators, in increments, on behalf of a heap scheme that
+ * records the references overwritten by mutators in {@link SATBQueue}s (snapshot-at-the-beginning) and marks black the objects
+ * allocated while the trace is in progress (see {@link #beginConcurrentMarking()}).
  */
 public class TricolorHeapMarker implements MarkingStack.OverflowHandler, HeapManagementMemoryRequirement{
 
@@ -180,6 +184,12 @@ public class TricolorHeapMarker implements MarkingStack.OverflowHandler, HeapMan
      * A ready-to-use option to try new code.
      */
     static boolean UseNewCode = false;
+
+    /**
+     * Enables parallel tracing of the heap regions when the {@link GCTaskThreadPool} has more than one worker.
+     * @see ParallelMarkingTask
+     */
+    static boolean ParallelMarking = true;
     static {
         VMOptions.addFieldOption("-XX:", "TraceMarking", TricolorHeapMarker.class, "Trace each mark update (Debug mode only)", Phase.PRISTINE);
         VMOptions.addFieldOption("-XX:", "UseRescanMap", TricolorHeapMarker.class, "Use a rescan map when recovering from mark stack overflow", Phase.PRISTINE);
@@ -188,6 +198,7 @@ public class TricolorHeapMarker implements MarkingStack.OverflowHandler, HeapMan
         VMOptions.addFieldOption("-XX:", "VerifyGreyLessAreas", TricolorHeapMarker.class, "Verify absence of grey bits in areas that shouldn't have any grey objects", Phase.PRISTINE);
 
         VMOptions.addFieldOption("-XX:", "UseNewCode", TricolorHeapMarker.class, "Use new refactored code)", Phase.PRISTINE);
+        VMOptions.addFieldOption("-XX:", "ParallelMarking", TricolorHeapMarker.class, "Trace heap regions in parallel when more than one GC thread is available", Phase.PRISTINE);
     }
 
     private enum MARK_PHASE {
@@ -524,6 +535,9 @@ public class TricolorHeapMarker implements MarkingStack.OverflowHandler, HeapMan
         heapRootsScanner = null;
         overflowLinearScanState = null;
         overflowScanWithRescanMapState = null;
+        parallelMarkingTask = null;
+        parallelSweepingTask = null;
+        concurrentMarkingTask = null;
         initialize(start, end, bitmapStorage, bitmapSize);
     }
 
@@ -544,6 +558,9 @@ public class TricolorHeapMarker implements MarkingStack.OverflowHandler, HeapMan
         heapRootsScanner = new SequentialHeapRootsScanner(rootCellVisitor);
         overflowLinearScanState = new OverflowLinearScanState(this);
         overflowScanWithRescanMapState = new OverflowScanWithRescanMapState(this);
+        parallelMarkingTask = new ParallelMarkingTask(this);
+        parallelSweepingTask = new ParallelSweepingTask(this);
+        concurrentMarkingTask = new ParallelMarkingTask(this, true);
     }
 
     @FOLD
@@ -583,6 +600,9 @@ public class TricolorHeapMarker implements MarkingStack.OverflowHandler, HeapMan
                 overflowScanState = overflowLinearScanState;
             }
             overflowScanState.initialize();
+            if (ParallelMarking && GCTaskThreadPool.numWorkers() > 1) {
+                parallelMarkingTask.initialize(GCTaskThreadPool.numWorkers());
+            }
         }
     }
 
@@ -741,6 +761,71 @@ public class TricolorHeapMarker implements MarkingStack.OverflowHandler, HeapMan
         markBlackFromGrey(bitIndex);
     }
 
+    /**
+     * Atomically set bits of a word of the color map.
+     * @param wordOffset offset in bytes to the word from the base of the color map
+     * @param mask the bits to set
+     */
+    private void atomicSetBits(int wordOffset, long mask) {
+        final Pointer basePointer = base.asPointer();
+        long word;
+        do {
+            word = basePointer.readLong(wordOffset);
+        } while (basePointer.compareAndSwapLong(wordOffset, word, word | mask) != word);
+    }
+
+    /**
+     * Thread-safe variant of {@link #markGreyIfWhite(Pointer)} used by parallel marking.
+     * The thread that sets the leading bit of a white color is the only one that marks the cell grey.
+     * When the color spans two words, the leading bit is set first, so another thread may briefly see the cell black before
+     * the second bit is set. This is harmless: the cell is owned by the thread that set the leading bit, which will visit it.
+     *
+     * @param cell a cell in the covered area
+     * @return true if the cell was white and the current thread marked it grey
+     */
+    final boolean markGreyIfWhiteAtomic(Pointer cell) {
+        final int bitIndex = bitIndexOf(cell);
+        final Pointer basePointer = base.asPointer();
+        final int wordOffset = bitmapWordIndex(bitIndex) << Word.widthValue().log2numberOfBytes;
+        final int bitIndexInWord = bitIndexInWord(bitIndex);
+        final long leadingBit = bitmaskFor(bitIndexInWord);
+        final long greyMark = colorSpanWords(bitIndex) ? leadingBit : GREY << bitIndexInWord;
+        long word;
+        do {
+            word = basePointer.readLong(wordOffset);
+            if ((word & leadingBit) != 0L) {
+                return false;
+            }
+        } while (basePointer.compareAndSwapLong(wordOffset, word, word | greyMark) != word);
+        if (greyMark == leadingBit) {
+            atomicSetBits(wordOffset + Word.size(), 1L);
+        }
+        traceGreyMark(cell, bitIndex);
+        return true;
+    }
+
+    /**
+     * Thread-safe variant of {@link #markBlackFromGrey(int)} used by parallel marking.
+     * A grey cell must be visited by the thread that marked it black.
+     *
+     * @param bitIndex bit index of a grey or black mark
+     * @return true if the mark was grey and the current thread marked it black
+     */
+    final boolean markBlackFromGreyAtomic(int bitIndex) {
+        final Pointer basePointer = base.asPointer();
+        final int greyBitIndex = bitIndex + 1;
+        final int wordOffset = bitmapWordIndex(greyBitIndex) << Word.widthValue().log2numberOfBytes;
+        final long greyBit = bitmaskFor(bitIndexInWord(greyBitIndex));
+        long word;
+        do {
+            word = basePointer.readLong(wordOffset);
+            if ((word & greyBit) == 0L) {
+                return false;
+            }
+        } while (basePointer.compareAndSwapLong(wordOffset, word, word & ~greyBit) != word);
+        return true;
+    }
+
     final boolean isGrey(int bitIndex) {
         int bitIndexInWord = bitIndexInWord(bitIndex);
         if (bitIndexInWord == LAST_BIT_INDEX_IN_WORD) {
@@ -847,6 +932,30 @@ public class TricolorHeapMarker implements MarkingStack.OverflowHandler, HeapMan
         return isBlackWhenNoGreys(bitIndexOf(cell));
     }
 
+    /**
+     * Mark black a cell copied to a new location after the heap was traced, so that the color map keeps describing the live cells of the heap.
+     * Must be called while mutators are stopped.
+     * @param cell a cell in the covered area
+     */
+    public final void markCopiedCellBlack(Pointer cell) {
+        final int bitIndex = bitIndexOf(cell);
+        final int wordIndex = bitmapWordIndex(bitIndex);
+        final Pointer basePointer = base.asPointer();
+        basePointer.setLong(wordIndex, basePointer.getLong(wordIndex) | bitmaskFor(bitIndexInWord(bitIndex)));
+    }
+
+    /**
+     * Turn white all the marks of a range of the covered area, e.g., of heap regions whose live cells were all copied elsewhere.
+     * The bounds of the range must be aligned to the space covered by a word of the color map.
+     * @param start start of the range
+     * @param end end of the range
+     */
+    public final void clearMarks(Address start, Address end) {
+        final int firstWordIndex = bitmapWordIndex(bitIndexOf(start));
+        final int endWordIndex = bitmapWordIndex(bitIndexOf(end));
+        Memory.clearWords(base.asPointer().plus(firstWordIndex << Word.widthValue().log2numberOfBytes), endWordIndex - firstWordIndex);
+    }
+
     /**
      * Clear the color map, i.e., turn all bits to white.
      */
@@ -856,6 +965,32 @@ public class TricolorHeapMarker implements MarkingStack.OverflowHandler, HeapMan
 
     private final RootCellVisitor rootCellVisitor;
 
+    /**
+     * Task tracing the heap regions in parallel, if {@link #ParallelMarking} is enabled.
+     */
+    private final ParallelMarkingTask parallelMarkingTask;
+
+    /**
+     * Task sweeping heap regions in parallel, for sweepers that support it.
+     * @see HeapRegionSweeper#ParallelSweeping
+     */
+    private final ParallelSweepingTask parallelSweepingTask;
+
+    /**
+     * Task tracing the heap concurrently with mutators, if {@linkplain #initializeConcurrentMarking() initialized}.
+     */
+    private final ParallelMarkingTask concurrentMarkingTask;
+
+    /**
+     * Index of the next word of the color map to scan for grey marks during concurrent marking.
+     */
+    private int concurrentScanCursor;
+
+    /**
+     * Rightmost cell marked black by the heap scheme's allocator since concurrent marking began.
+     */
+    private volatile Address rightmostAllocatedBlack = Address.zero();
+
     public RootCellVisitor rootCellVisitor() {
         return rootCellVisitor;
     }
@@ -1634,17 +1769,32 @@ public class TricolorHeapMarker implements MarkingStack.OverflowHandler, HeapMan
      */
     public void sweep(HeapRegionSweeper regionsSweeper, boolean doImprecise) {
         final Address endOfRightmostLiveObject = endOfCell(forwardScanState.rightmost);
+        if (regionsSweeper.sweepsInParallel()) {
+            // Sweep regions that aren't part of a multi-regions object in parallel first.
+            // The loop below then only sweeps the remaining regions and dispatches all swept regions in address order.
+            parallelSweepingTask.sweep(regionsSweeper, doImprecise, endOfRightmostLiveObject);
+        }
         do {
             assert regionsSweeper.hasNextSweepingRegion();
             regionsSweeper.beginSweep();
-            if (doImprecise) {
-                impreciseRegionSweep(regionsSweeper);
-            } else {
-                preciseRegionSweep(regionsSweeper);
+            if (regionsSweeper.sweepingRegionNeedsSweeping()) {
+                sweepRegion(regionsSweeper, doImprecise);
             }
             regionsSweeper.endSweep();
         } while(regionsSweeper.endOfSweepingRegion().lessThan(endOfRightmostLiveObject));
         regionsSweeper.reachedRightmostLiveRegion();
+        regionsSweeper.setPresweptLimit(Address.zero());
+    }
+
+    /**
+     * Sweep the current sweeping region of a heap region sweeper.
+     */
+    void sweepRegion(HeapRegionSweeper sweeper, boolean doImprecise) {
+        if (doImprecise) {
+            impreciseRegionSweep(sweeper);
+        } else {
+            preciseRegionSweep(sweeper);
+        }
     }
 
     /**
@@ -1833,7 +1983,18 @@ public class TricolorHeapMarker implements MarkingStack.OverflowHandler, HeapMan
         markPhase = MARK_PHASE.VISIT_GREY_FORWARD;
         markPhase.traceBegin(traceGCPhases);
         startTimer(heapMarkingTimer);
-        visitGreyObjectsAfterRootMarking(regionsRanges);
+        if (parallelMarkingTask.isEnabled()) {
+            initAfterRootMarking();
+            // Trace in parallel, then leave the forward scan state as if the forward scan had completed so that
+            // the sequential processing of special references can resume from the rightmost visited object.
+            final Address rightmost = parallelMarkingTask.visitGreyObjects(regionsRanges, forwardScanState.rightmost);
+            forwardScanState.rightmost = rightmost;
+            if (rightmost.greaterThan(forwardScanState.finger)) {
+                forwardScanState.finger = rightmost;
+            }
+        } else {
+            visitGreyObjectsAfterRootMarking(regionsRanges);
+        }
         stopTimer(heapMarkingTimer);
         markPhase.traceEnd(traceGCPhases);
 
@@ -1907,6 +2068,182 @@ public class TricolorHeapMarker implements MarkingStack.OverflowHandler, HeapMan
         markPhase = MARK_PHASE.DONE;
     }
 
+    /**
+     * Prepare the heap marker for tracing the heap concurrently with mutators.
+     * Must be called once at VM startup, after the heap marker is {@linkplain #initialize(Address, Address, Address, Size) initialized}.
+     */
+    public void initializeConcurrentMarking() {
+        concurrentMarkingTask.initialize(1);
+    }
+
+    /**
+     * Number of words of the color map scanned by an increment of concurrent marking, i.e., the words covering a heap region.
+     */
+    private int concurrentMarkingIncrement() {
+        return 1 << (HeapRegionConstants.log2RegionSizeInBytes - log2BitmapWord);
+    }
+
+    /**
+     * Begin tracing the heap concurrently with mutators: clear the color map and mark the roots grey.
+     * Must be called while mutators are stopped.
+     * <p>
+     * From then on and until the trace is {@linkplain #endConcurrentMarking() ended}, the heap scheme must ensure that every object reachable
+     * at the beginning of the trace is eventually marked, by passing to {@link #concurrentGreyMarker()} every reference overwritten by mutators,
+     * and must {@linkplain #markAllocatedBlack(Pointer, Pointer) mark black} every object allocated in the covered area.
+     * Special references aren't discovered by a concurrent trace: their referents are traced as strong references.
+     */
+    public void beginConcurrentMarking() {
+        FatalError.check(concurrentMarkingTask.isEnabled(), "Concurrent marking must be initialized");
+        clearColorMap();
+        rootCellVisitor.tracesReferentsStrongly = true;
+        markRoots();
+        rootCellVisitor.tracesReferentsStrongly = false;
+        initAfterRootMarking();
+        concurrentMarkingTask.resetSingleWorker(forwardScanState.rightmost);
+        rightmostAllocatedBlack = forwardScanState.rightmost;
+        concurrentScanCursor = 0;
+        markPhase = MARK_PHASE.VISIT_GREY_FORWARD;
+    }
+
+    /**
+     * Run an increment of the concurrent trace of the heap: visit the grey objects of the next heap region's worth of the color map, and
+     * all objects reachable from them. Tracing goes over the whole covered area again if the marking stack overflowed during a pass.
+     * Must not run concurrently with a garbage collection. The increment stops early if the trace is {@linkplain #interruptConcurrentMarking() interrupted}.
+     *
+     * @return true if no grey objects remain in the color map, false otherwise
+     */
+    public boolean markConcurrently() {
+        final int lastBitmapWordIndex = bitmapWordIndex(coveredAreaEnd.minus(1));
+        if (concurrentScanCursor > lastBitmapWordIndex) {
+            if (!concurrentMarkingTask.overflowed) {
+                return true;
+            }
+            concurrentMarkingTask.overflowed = false;
+            concurrentScanCursor = 0;
+        }
+        final int firstBitmapWordIndex = concurrentScanCursor;
+        int lastIncrementBitmapWordIndex = firstBitmapWordIndex + concurrentMarkingIncrement() - 1;
+        if (lastIncrementBitmapWordIndex > lastBitmapWordIndex) {
+            lastIncrementBitmapWordIndex = lastBitmapWordIndex;
+        }
+        concurrentMarkingTask.visitGreyObjectsSingleWorker(firstBitmapWordIndex, lastIncrementBitmapWordIndex);
+        if (!concurrentMarkingTask.interrupted) {
+            concurrentScanCursor = lastIncrementBitmapWordIndex + 1;
+        }
+        return false;
+    }
+
+    /**
+     * Make the increment of concurrent marking in progress, if any, and all subsequent ones return as soon as possible, so that
+     * the trace can be {@linkplain #abortConcurrentMarking() aborted} without waiting for the tracing thread. Thread-safe.
+     */
+    public void interruptConcurrentMarking() {
+        concurrentMarkingTask.interrupted = true;
+    }
+
+    /**
+     * Marks grey the cells whose origin it is applied to, if white, and visits all objects reachable from them.
+     */
+    private final class ConcurrentGreyMarker implements Pointer.Procedure {
+        public void run(Pointer origin) {
+            concurrentMarkingTask.markGreyAndVisitSingleWorker(Layout.originToCell(origin));
+        }
+    }
+
+    private final ConcurrentGreyMarker concurrentGreyMarker = new ConcurrentGreyMarker();
+
+    /**
+     * Procedure to apply to the origin of references recorded by mutators while the heap is traced concurrently.
+     * Must only be used by the thread tracing the heap.
+     */
+    public Pointer.Procedure concurrentGreyMarker() {
+        return concurrentGreyMarker;
+    }
+
+    @FOLD
+    private static int rightmostAllocatedBlackOffset() {
+        return ClassActor.fromJava(TricolorHeapMarker.class).findLocalInstanceFieldActor("rightmostAllocatedBlack").offset();
+    }
+
+    private void updateRightmostAllocatedBlack(Address cell) {
+        final Pointer thisAddress = Reference.fromJava(this).toOrigin();
+        Address rightmost;
+        do {
+            rightmost = rightmostAllocatedBlack;
+            if (!cell.greaterThan(rightmost)) {
+                return;
+            }
+        } while (!thisAddress.compareAndSwapWord(rightmostAllocatedBlackOffset(), rightmost, cell).equals(rightmost));
+    }
+
+    @INLINE
+    private void markBlackAtomic(Address cell) {
+        final int bitIndex = bitIndexOf(cell);
+        atomicSetBits(bitmapWordIndex(bitIndex) << Word.widthValue().log2numberOfBytes, bitmaskFor(bitIndexInWord(bitIndex)));
+    }
+
+    /**
+     * Mark black a cell allocated while the heap is traced concurrently. The cell needn't be formatted yet.
+     * Thread-safe.
+     * @param cell a cell in the covered area
+     */
+    @NO_SAFEPOINT_POLLS("called between the allocation and the formatting of a cell")
+    public void markAllocatedCellBlack(Pointer cell) {
+        markBlackAtomic(cell);
+        updateRightmostAllocatedBlack(cell);
+    }
+
+    /**
+     * Mark black all the cells of a contiguous range of formatted cells allocated while the heap is traced concurrently.
+     * Thread-safe.
+     * @param start start of the first cell (or of its debug tag)
+     * @param end end of the last cell
+     */
+    @NO_SAFEPOINT_POLLS("called between the allocation and the formatting of a cell")
+    public void markAllocatedBlack(Pointer start, Pointer end) {
+        Pointer cell = Pointer.zero();
+        Pointer p = start;
+        while (p.lessThan(end)) {
+            cell = DebugHeap.adjustForDebugTag(p);
+            markBlackAtomic(cell);
+            p = cell.plus(Layout.size(Layout.cellToOrigin(cell)));
+        }
+        if (!cell.isZero()) {
+            updateRightmostAllocatedBlack(cell);
+        }
+    }
+
+    /**
+     * End the concurrent trace of the heap: complete the trace, leaving the heap marker ready for {@linkplain #sweep(HeapRegionSweeper, boolean) sweeping}.
+     * Must be called while mutators are stopped, once the references they recorded have all been passed to the {@link #concurrentGreyMarker()}.
+     */
+    public void endConcurrentMarking() {
+        while (!markConcurrently()) {
+            // Keep tracing until no grey objects remain.
+        }
+        Address rightmost = concurrentMarkingTask.singleWorkerRightmost();
+        if (rightmostAllocatedBlack.greaterThan(rightmost)) {
+            rightmost = rightmostAllocatedBlack;
+        }
+        forwardScanState.rightmost = rightmost;
+        if (rightmost.greaterThan(forwardScanState.finger)) {
+            forwardScanState.finger = rightmost;
+        }
+        if (VerifyAfterMarking || VerifyGreyLessAreas) {
+            verifyHasNoGreyMarks(coveredAreaStart, endOfCell(rightmost));
+        }
+        markPhase = MARK_PHASE.DONE;
+    }
+
+    /**
+     * Abandon the concurrent trace of the heap, e.g., because a stop-the-world collection must take place.
+     */
+    public void abortConcurrentMarking() {
+        concurrentMarkingTask.resetSingleWorker(coveredAreaStart);
+        concurrentScanCursor = 0;
+        markPhase = MARK_PHASE.DONE;
+    }
+
     /**
      * Contiguous region of memory used by the heap marker for the color map.
      * @return a non-null {@link MemoryRegion}
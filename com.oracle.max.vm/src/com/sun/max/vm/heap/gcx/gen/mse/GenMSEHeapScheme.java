@@ -38,6 +38,7 @@ import com.sun.max.vm.*;
 import com.sun.max.vm.MaxineVM.Phase;
 import com.sun.max.vm.code.*;
 import com.sun.max.vm.heap.*;
+import com.sun.max.vm.heap.debug.*;
 import com.sun.max.vm.heap.gcx.*;
 import com.sun.max.vm.heap.gcx.rset.*;
 import com.sun.max.vm.heap.gcx.rset.ctbl.*;
@@ -57,9 +58,33 @@ final public class GenMSEHeapScheme extends HeapSchemeWithTLABAdaptor  implement
      */
     static int YoungGenHeapPercent = 30;
     static Size ELABSize = Size.K.times(64);
+    /**
+     * Evacuate the nursery with the help of the {@link GCTaskThreadPool} workers when more than one is available.
+     */
+    static boolean ParallelNurseryEvacuation = true;
+    /**
+     * Maximum number of minor collections an object may survive in the young generation before being promoted.
+     * Zero disables aging: survivors are promoted on their first minor collection.
+     */
+    static int MaxTenuringThreshold = 0;
+    /**
+     * Ratio of the eden size to the size of one survivor space of the young generation, used when survivors are aged.
+     */
+    static int SurvivorRatio = 8;
+    /**
+     * Percentage of a survivor space survivors may occupy before the tenuring threshold is lowered.
+     */
+    static int TargetSurvivorRatio = 50;
     static {
         VMOptions.addFieldOption("-XX:", "YoungGenHeapPercent", GenMSEHeapScheme.class, "Fixed percentage of heap size that must be used by young gen", Phase.PRISTINE);
         VMOptions.addFieldOption("-XX:", "ELABSize", GenMSEHeapScheme.class, "Size of evacuation buffers for young gen evacuation to old gen", Phase.PRISTINE);
+        VMOptions.addFieldOption("-XX:", "ParallelNurseryEvacuation", GenMSEHeapScheme.class,
+            "Evacuate the young gen in parallel when more than one GC thread is available", Phase.PRISTINE);
+        VMOptions.addFieldOption("-XX:", "MaxTenuringThreshold", GenMSEHeapScheme.class,
+            "Maximum number of minor collections an object survives in young gen before promotion (0 to disable aging, at most 15)", Phase.PRISTINE);
+        VMOptions.addFieldOption("-XX:", "SurvivorRatio", GenMSEHeapScheme.class, "Ratio of eden size to the size of one survivor space of young gen", Phase.PRISTINE);
+        VMOptions.addFieldOption("-XX:", "TargetSurvivorRatio", GenMSEHeapScheme.class,
+            "Desired percentage of survivor space occupied after a minor collection, used to adapt the tenuring threshold", Phase.PRISTINE);
     }
 
     public enum GenMSEHeapRegionTag {
@@ -82,7 +107,7 @@ final public class GenMSEHeapScheme extends HeapSchemeWithTLABAdaptor  implement
      * Young generation.
      */
     @INSPECTED
-    private final NoAgingRegionalizedNursery youngSpace;
+    private final AgingRegionalizedNursery youngSpace;
     /**
      * Tenured generation.
      */
@@ -102,7 +127,13 @@ final public class GenMSEHeapScheme extends HeapSchemeWithTLABAdaptor  implement
     /**
      * Implementation of young space evacuation. Used by minor collection operations.
      */
-    private final NoAgingNurseryEvacuator youngSpaceEvacuator;
+    private final AgingNurseryEvacuator youngSpaceEvacuator;
+
+    private final EvacuationTimers evacTimers = new EvacuationTimers();
+
+    private final Evacuator.PhaseLogger evacuatorPhaseLogger = new Evacuator.PhaseLogger();
+
+    private final DebugHeap.DetailLogger detailLogger = new DebugHeap.DetailLogger();
 
     /**
      * Operation to submit to the {@link VmOperationThread} to perform a generational collection.
@@ -125,7 +156,7 @@ final public class GenMSEHeapScheme extends HeapSchemeWithTLABAdaptor  implement
         heapAccount = new HeapAccount<GenMSEHeapScheme>(this);
         heapMarker = new TricolorHeapMarker(WORDS_COVERED_PER_BIT, new HeapAccounRootCellVisitor(this));
         cardTableRSet = new CardTableRSet();
-        youngSpace = new NoAgingRegionalizedNursery(heapAccount, YOUNG.tag());
+        youngSpace = new AgingRegionalizedNursery(heapAccount, YOUNG.tag());
 
         final ChunkListAllocator<RegionChunkListRefillManager> tlabAllocator =
             new ChunkListAllocator<RegionChunkListRefillManager>(new RegionChunkListRefillManager(cardTableRSet));
@@ -133,8 +164,13 @@ final public class GenMSEHeapScheme extends HeapSchemeWithTLABAdaptor  implement
             new CardSpaceAllocator<RegionOverflowAllocatorRefiller>(new RegionOverflowAllocatorRefiller(cardTableRSet), cardTableRSet);
 
         oldSpace = new FirstFitMarkSweepSpace<GenMSEHeapScheme>(heapAccount, tlabAllocator, overflowAllocator, true, cardTableRSet, OLD.tag());
-        youngSpaceEvacuator = new NoAgingNurseryEvacuator(youngSpace, oldSpace, this, cardTableRSet, "Young");
-        noYoungReferencesVerifier = new NoEvacuatedSpaceReferenceVerifier(cardTableRSet, youngSpace);
+        youngSpaceEvacuator = new AgingNurseryEvacuator(youngSpace, oldSpace, this, cardTableRSet, "Young");
+        youngSpaceEvacuator.setTimers(evacTimers);
+        youngSpaceEvacuator.setPhaseLogger(evacuatorPhaseLogger);
+        if (MaxineVM.isDebug()) {
+            youngSpaceEvacuator.setDetailLogger(detailLogger);
+        }
+        noYoungReferencesVerifier = new NoEvacuatedSpaceReferenceVerifier(cardTableRSet, youngSpace.eden());
         fotVerifier = new FOTVerifier(cardTableRSet);
         genCollection = new GenCollection();
     }
@@ -232,7 +268,8 @@ final public class GenMSEHeapScheme extends HeapSchemeWithTLABAdaptor  implement
                 MaxineVM.reportPristineMemoryFailure("reserved space leftover", "deallocate", leftoverSize);
             }
 
-            heapResizingPolicy = new FixedRatioGenHeapSizingPolicy(initSize, maxSize, YoungGenHeapPercent, log2RegionSizeInBytes);
+            heapResizingPolicy = new FixedRatioGenHeapSizingPolicy(initSize, maxSize, YoungGenHeapPercent, log2RegionSizeInBytes,
+                            SurvivorRatio, TargetSurvivorRatio, MaxTenuringThreshold);
             if (!heapAccount().open(numberOfRegions(applicationHeapMaxSize))) {
                 FatalError.unexpected("Failed to create application heap");
             }
@@ -252,6 +289,9 @@ final public class GenMSEHeapScheme extends HeapSchemeWithTLABAdaptor  implement
                 dumper.refineOnFirstUnparsableWith(new RefineDumpRangeToCard(cardTableRSet));
                 youngSpaceEvacuator.setDumper(dumper);
             }
+            if (ParallelNurseryEvacuation && GCTaskThreadPool.numWorkers() > 1) {
+                youngSpaceEvacuator.initializeParallelEvacuation(GCTaskThreadPool.numWorkers());
+            }
 
             cardTableRSet.initializeXirStartupConstants();
 
@@ -288,7 +328,7 @@ final public class GenMSEHeapScheme extends HeapSchemeWithTLABAdaptor  implement
         private void verifyAfterEvacuation() {
             // Verify that:
             // 1. offset table is correctly setup
-            // 2. there are no pointer from old to young.
+            // 2. there are no pointer from old to eden (survivors aged in the young gen may be referenced from dirty cards).
             // 3. cards are all cleaned (except for those holding special references, which may have been dirtied during reference discovery)
             oldSpace.visit(fotVerifier);
             oldSpace.visit(noYoungReferencesVerifier);
@@ -444,7 +484,7 @@ final public class GenMSEHeapScheme extends HeapSchemeWithTLABAdaptor  implement
             allocateAndRefillTLAB(etla, tlabSize);
             // Let's do a bit of meta-circularity. The TLAB is refilled, and no-one except the current thread can use it.
             // So the TLAB allocation is going to succeed here
-            TLABRefillPolicy.setForCurrentThread(etla, new SimpleTLABRefillPolicy(tlabSize));
+            TLABRefillPolicy.setForCurrentThread(etla, createTLABRefillPolicy(tlabSize));
             // Now, address the initial request. Note that we may recurse down to handleTLABOverflow again here if the
             // request is larger than the TLAB size. However, this second call will succeed and allocate outside of the TLAB.
             return tlabAllocate(size);
@@ -476,7 +516,7 @@ final public class GenMSEHeapScheme extends HeapSchemeWithTLABAdaptor  implement
     }
 
     @HOSTED_ONLY
-    public XirWriteBarrierGenerator barrierGenerator(IntBitSet<WriteBarrierSpecification.WriteBarrierSpec> writeBarrierSpec) {
+    public XirWriteBarrierGenerator barrierGenerator(IntBitSet<WriteBarrierSpecification.WriteBarrierSpec> writeBarrierSpec, XirRuntimeCallStubs runtimeCallStubs) {
         if (writeBarrierSpec.equals(TUPLE_POST_BARRIER)) {
             return new XirWriteBarrierGenerator() {
                 @Override
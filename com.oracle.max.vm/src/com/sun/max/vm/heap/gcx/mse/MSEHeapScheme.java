@@ -25,20 +25,31 @@ package com.sun.max.vm.heap.gcx.mse;
 import static com.sun.max.vm.VMConfiguration.*;
 import static com.sun.max.vm.heap.gcx.HeapRegionManager.*;
 import static com.sun.max.vm.intrinsics.MaxineIntrinsicIDs.*;
-
+import static com.sun.max.vm.thread.VmThreadLocal.*;
+
+import com.oracle.max.cri.intrinsics.*;
+import com.sun.cri.ci.*;
+import com.sun.cri.ci.CiAddress.Scale;
+import com.sun.cri.xir.*;
+import com.sun.cri.xir.CiXirAssembler.XirLabel;
+import com.sun.cri.xir.CiXirAssembler.XirOperand;
 import com.sun.max.annotate.*;
 import com.sun.max.memory.*;
 import com.sun.max.platform.*;
 import com.sun.max.program.*;
 import com.sun.max.unsafe.*;
+import com.sun.max.util.*;
 import com.sun.max.util.timer.*;
 import com.sun.max.vm.*;
 import com.sun.max.vm.MaxineVM.Phase;
+import com.sun.max.vm.actor.holder.*;
 import com.sun.max.vm.code.*;
+import com.sun.max.vm.compiler.*;
 import com.sun.max.vm.heap.*;
 import com.sun.max.vm.heap.gcx.*;
 import com.sun.max.vm.heap.gcx.rset.*;
 import com.sun.max.vm.layout.*;
+import com.sun.max.vm.monitor.modal.sync.*;
 import com.sun.max.vm.reference.*;
 import com.sun.max.vm.runtime.*;
 import com.sun.max.vm.thread.*;
@@ -46,16 +57,36 @@ import com.sun.max.vm.thread.*;
 /**
  * Region-based Mark Sweep + Evacuation-based defragmentation Heap Scheme.
  * Used for testing region-based support.
+ * <p>
+ * With {@code -XX:+ConcurrentMarking}, the heap is traced mostly concurrently with mutators once the used space exceeds
+ * {@code -XX:ConcurrentMarkingThreshold} percent of the heap. A marking cycle starts with a short initial mark pause
+ * that marks the roots, after which a dedicated {@linkplain ConcurrentMarkerThread marker thread} traces the heap while mutators run.
+ * Snapshot-at-the-beginning (SATB) pre-write barriers record the references overwritten by mutators in {@link SATBQueue}s,
+ * and objects allocated during the cycle are marked black. A short remark pause drains the SATB queues, completes the trace and sweeps the heap.
+ * A stop-the-world collection requested while a marking cycle is in progress aborts the cycle.
+ * <p>
+ * With {@code -XX:+CompactRegions}, a {@link RegionCompactor} evacuates the live objects of the sparsest regions to empty regions once the heap is swept,
+ * within the pause time budget set by {@code -XX:CompactionPauseBudget}. Compaction is skipped when objects are pinned or when regions are left unswept.
  */
-public final class MSEHeapScheme extends HeapSchemeWithTLABAdaptor implements HeapAccountOwner {
+public final class MSEHeapScheme extends HeapSchemeWithTLABAdaptor implements HeapAccountOwner, XirWriteBarrierSpecification {
     private static final int WORDS_COVERED_PER_BIT = 1;
     static boolean DumpFragStatsAfterGC = false;
     static boolean DumpFragStatsAtGCFailure = false;
     static boolean DoImpreciseSweep = false;
+    static boolean LazySweep = false;
+    static boolean ConcurrentMarking = false;
+    static int ConcurrentMarkingThreshold = 70;
+    static boolean CompactRegions = false;
     static {
         VMOptions.addFieldOption("-XX:", "DumpFragStatsAfterGC", MSEHeapScheme.class, "Dump region fragmentation stats after GC", Phase.PRISTINE);
         VMOptions.addFieldOption("-XX:", "DumpFragStatsAtGCFailure", MSEHeapScheme.class, "Dump region fragmentation when GC failed to reclaim enough space", Phase.PRISTINE);
         VMOptions.addFieldOption("-XX:", "DoImpreciseSweep", MSEHeapScheme.class, "Control whether to do precise or imprecise sweep", Phase.PRISTINE);
+        VMOptions.addFieldOption("-XX:", "LazySweep", MSEHeapScheme.class, "Defer sweeping of heap regions until they are needed for allocation", Phase.PRISTINE);
+        VMOptions.addFieldOption("-XX:", "ConcurrentMarking", MSEHeapScheme.class, "Trace the heap mostly concurrently with mutators before collecting it", Phase.PRISTINE);
+        VMOptions.addFieldOption("-XX:", "ConcurrentMarkingThreshold", MSEHeapScheme.class,
+            "Percentage of the heap in use that starts a concurrent marking cycle", Phase.PRISTINE);
+        VMOptions.addFieldOption("-XX:", "CompactRegions", MSEHeapScheme.class,
+            "Evacuate the live objects of the sparsest heap regions after sweeping, within a pause time budget", Phase.PRISTINE);
     }
 
     /**
@@ -68,10 +99,46 @@ public final class MSEHeapScheme extends HeapSchemeWithTLABAdaptor implements He
      */
     private final FirstFitMarkSweepSpace<MSEHeapScheme> markSweepSpace;
 
-    private final AtomicPinCounter pinnedCounter = MaxineVM.isDebug() ? new AtomicPinCounter() : null;
+    /**
+     * Counts pinned objects. Always allocated as pinning must be tracked at runtime when {@link #CompactRegions} is enabled.
+     */
+    private final AtomicPinCounter pinnedCounter = new AtomicPinCounter();
+
+    /**
+     * Compactor of the sparsest regions of the heap, used if {@link #CompactRegions} is enabled.
+     */
+    private final RegionCompactor regionCompactor;
+
+    private final EvacuationTimers compactionTimers = new EvacuationTimers();
+
+    private final Evacuator.PhaseLogger compactionPhaseLogger = new Evacuator.PhaseLogger();
 
     final MarkSweepCollection collect = new MarkSweepCollection();
 
+    final InitialMark initialMark = new InitialMark();
+
+    final Remark remark = new Remark();
+
+    /**
+     * Indicates that a concurrent marking cycle is in progress, i.e., that the SATB barriers are active and that allocated cells must be marked black.
+     * Only changed while mutators are stopped.
+     */
+    private volatile boolean concurrentMarkingInProgress;
+
+    /**
+     * Indicates that a concurrent marking cycle was requested and hasn't completed yet.
+     */
+    private volatile boolean concurrentMarkingRequested;
+
+    /**
+     * Spin lock held by the marker thread while it traces the heap, and by stop-the-world collections aborting a concurrent marking cycle.
+     */
+    private volatile int markerLock;
+
+    private ConcurrentMarkerThread markerThread;
+    private final Mutex markerThreadLock = MutexFactory.create();
+    private final ConditionVariable markingCycleRequested = ConditionVariableFactory.create();
+
     /**
      * An instance of an after mark sweep verifier to use for heap verification after a mark sweep.
      * @see Sweeper
@@ -96,12 +163,27 @@ public final class MSEHeapScheme extends HeapSchemeWithTLABAdaptor implements He
         markSweepSpace = new FirstFitMarkSweepSpace<MSEHeapScheme>(heapAccount, tlabAllocator, overflowAllocator, false, NullDeadSpaceListener.nullDeadSpaceListener(), 0);
         heapMarker = new TricolorHeapMarker(WORDS_COVERED_PER_BIT, new HeapAccounRootCellVisitor(this));
         afterGCVerifier = new AfterMarkSweepVerifier(heapMarker, markSweepSpace, AfterMarkSweepBootHeapVerifier.makeVerifier(heapMarker, this));
+        regionCompactor = new RegionCompactor(markSweepSpace, heapMarker);
+        regionCompactor.setTimers(compactionTimers);
+        regionCompactor.setPhaseLogger(compactionPhaseLogger);
         pinningSupportFlags = PIN_SUPPORT_FLAG.makePinSupportFlags(true, false, true);
     }
 
     @Override
     public void initialize(MaxineVM.Phase phase) {
         super.initialize(phase);
+        if (phase == MaxineVM.Phase.RUNNING && ConcurrentMarking) {
+            markerThreadLock.init();
+            markingCycleRequested.init();
+            // The marker thread must never move: its stack is never scanned.
+            Heap.enableImmortalMemoryAllocation();
+            try {
+                markerThread = new ConcurrentMarkerThread();
+                markerThread.start();
+            } finally {
+                Heap.disableImmortalMemoryAllocation();
+            }
+        }
     }
 
     /**
@@ -150,11 +232,18 @@ public final class MSEHeapScheme extends HeapSchemeWithTLABAdaptor implements He
             }
 
             markSweepSpace.initialize(initSize, applicationHeapMaxSize);
+            markSweepSpace.setLazySweep(LazySweep);
             if (!VirtualMemory.commitMemory(heapMarkerDataStart, heapMarkerDatasize,  VirtualMemory.Type.DATA)) {
                 MaxineVM.reportPristineMemoryFailure("heapMarkerDataStart", "commit", heapMarkerDatasize);
             }
             heapMarker.initialize(heapBounds.start(), heapBounds.end(), heapMarkerDataStart, heapMarkerDatasize);
+            if (ConcurrentMarking) {
+                heapMarker.initializeConcurrentMarking();
+            }
 
+            if (CompactRegions) {
+                regionCompactor.initialize();
+            }
             if (DumpFragStatsAfterGC || DumpFragStatsAtGCFailure) {
                 fragmentationStats = new HeapRegionStatistics(markSweepSpace.minReclaimableSpace());
             }
@@ -243,8 +332,8 @@ public final class MSEHeapScheme extends HeapSchemeWithTLABAdaptor implements He
 
     @INLINE
     public boolean pin(Object object) {
-        // Objects never relocate. So this is always safe.
-        if (MaxineVM.isDebug()) {
+        // Objects only relocate when regions are compacted, which doesn't happen while objects are pinned. So this is always safe.
+        if (MaxineVM.isDebug() || CompactRegions) {
             pinnedCounter.increment();
         }
         return true;
@@ -252,7 +341,7 @@ public final class MSEHeapScheme extends HeapSchemeWithTLABAdaptor implements He
 
     @INLINE
     public void unpin(Object object) {
-        if (MaxineVM.isDebug()) {
+        if (MaxineVM.isDebug() || CompactRegions) {
             pinnedCounter.decrement();
         }
     }
@@ -261,6 +350,88 @@ public final class MSEHeapScheme extends HeapSchemeWithTLABAdaptor implements He
     public void writeBarrier(Reference from, Reference to) {
     }
 
+    /**
+     * Only the SATB pre-write barriers of concurrent marking are needed, and only with {@code -XX:+ConcurrentMarking}, which is fixed
+     * at {@linkplain Phase#PRISTINE PRISTINE} time.
+     */
+    @INLINE
+    @Override
+    public boolean needsBarrier(IntBitSet<WriteBarrierSpecification.WriteBarrierSpec> writeBarrierSpec) {
+        return ConcurrentMarking && writeBarrierSpec.isSet(WriteBarrierSpec.PRE_WRITE);
+    }
+
+    @INLINE
+    @Override
+    public void preWriteBarrier(Reference ref, Offset offset, Reference value) {
+        if (SATBQueue.isActive()) {
+            SATBQueue.enqueue(ref.readReference(offset).toJava());
+        }
+    }
+
+    @INLINE
+    @Override
+    public void preWriteBarrier(Reference ref,  int displacement, int index, Reference value) {
+        if (SATBQueue.isActive()) {
+            SATBQueue.enqueue(ref.getReference(displacement, index).toJava());
+        }
+    }
+
+    @HOSTED_ONLY
+    public XirWriteBarrierGenerator barrierGenerator(IntBitSet<WriteBarrierSpecification.WriteBarrierSpec> writeBarrierSpec, final XirRuntimeCallStubs runtimeCallStubs) {
+        if (writeBarrierSpec.equals(TUPLE_PRE_BARRIER)) {
+            return new XirWriteBarrierGenerator() {
+                @Override
+                public void genWriteBarrier(CiXirAssembler asm, XirOperand ... operands) {
+                    genSATBPreWriteBarrier(asm, runtimeCallStubs, operands[0], operands[1], false);
+                }
+            };
+        } else if (writeBarrierSpec.equals(ARRAY_PRE_BARRIER)) {
+            return new XirWriteBarrierGenerator() {
+                @Override
+                public void genWriteBarrier(CiXirAssembler asm, XirOperand ... operands) {
+                    genSATBPreWriteBarrier(asm, runtimeCallStubs, operands[0], operands[1], true);
+                }
+            };
+        }
+        return XirWriteBarrierSpecification.NULL_WRITE_BARRIER_GEN;
+    }
+
+    /**
+     * Generate a SATB pre-write barrier. The fast path only tests the current thread's {@linkplain SATBQueue#SATB_QUEUE_ACTIVE SATB flag};
+     * the out-of-line slow path loads the reference about to be overwritten and, if it isn't null, enqueues it.
+     *
+     * @param cell the object or array being written
+     * @param offsetOrIndex offset of the written field, or index of the written array element
+     * @param isArray indicates whether an array element is written
+     */
+    @HOSTED_ONLY
+    private static void genSATBPreWriteBarrier(CiXirAssembler asm, XirRuntimeCallStubs runtimeCallStubs, XirOperand cell, XirOperand offsetOrIndex, boolean isArray) {
+        final XirLabel slowPath = asm.createOutOfLineLabel("satbSlowPath");
+        final XirLabel done = asm.createInlineLabel("satbDone");
+        final XirOperand tla = asm.createRegisterTemp("TLA", WordUtil.archKind(), MaxineVM.vm().registerConfigs.standard.getRegisterForRole(VMRegister.LATCH));
+        final XirOperand etla = asm.createTemp("ETLA", WordUtil.archKind());
+        final XirOperand active = asm.createTemp("satbActive", WordUtil.archKind());
+        final XirOperand previousValue = asm.createTemp("previousValue", CiKind.Object);
+
+        asm.pload(WordUtil.archKind(), etla, tla, asm.i(VmThreadLocal.ETLA.offset), false);
+        asm.pload(WordUtil.archKind(), active, etla, asm.i(SATBQueue.SATB_QUEUE_ACTIVE.offset), false);
+        asm.jneq(slowPath, active, asm.i(0));
+        asm.bindInline(done);
+
+        asm.bindOutOfLine(slowPath);
+        // Leave the null check to the store that follows the barrier.
+        asm.jeq(done, cell, asm.o(null));
+        if (isArray) {
+            final int disp = Layout.referenceArrayLayout().getElementOffsetFromOrigin(0).toInt();
+            asm.pload(CiKind.Object, previousValue, cell, offsetOrIndex, disp, Scale.fromInt(Word.size()), false);
+        } else {
+            asm.pload(CiKind.Object, previousValue, cell, offsetOrIndex, false);
+        }
+        asm.jeq(done, previousValue, asm.o(null));
+        runtimeCallStubs.callRuntimeThroughStub(asm, SATBQueue.class, "enqueue", null, previousValue);
+        asm.jmp(done);
+    }
+
     /**
      * Class implementing the garbage collection routine.
      * This is the {@link VmOperationThread}'s entry point to garbage collection.
@@ -308,11 +479,15 @@ public final class MSEHeapScheme extends HeapSchemeWithTLABAdaptor implements He
 
         private HeapResizingPolicy heapResizingPolicy = new HeapResizingPolicy();
 
-        @Override
-        protected void collect(int invocationCount) {
-            final boolean traceGCPhases = Heap.logGCPhases();
+        void startPause() {
             traceGCTimes = Heap.logGCTime();
             startTimer(totalPauseTime);
+        }
+
+        @Override
+        protected void collect(int invocationCount) {
+            startPause();
+            abortConcurrentMarking();
             VmThreadMap.ACTIVE.forAllThreadLocals(null, tlabFiller);
 
             HeapScheme.Inspect.notifyHeapPhaseChange(HeapPhase.ANALYZING);
@@ -324,7 +499,18 @@ public final class MSEHeapScheme extends HeapSchemeWithTLABAdaptor implements He
             theHeapRegionManager().checkOutgoingReferences();
 
             markSweepSpace.mark(heapMarker);
+            reclaim(callingThread().gcRequest, invocationCount);
+        }
 
+        /**
+         * Sweep the space once the heap is marked, then resize it and resume mutation.
+         * Shared by stop-the-world collections and by the remark pause of concurrent marking cycles.
+         *
+         * @param gcRequest the request of the thread that triggered the collection, or {@code null} if not triggered by an allocation request
+         * @param invocationCount the number of previous executions of the operation
+         */
+        void reclaim(GCRequest gcRequest, int invocationCount) {
+            final boolean traceGCPhases = Heap.logGCPhases();
             HeapScheme.Inspect.notifyHeapPhaseChange(HeapPhase.RECLAIMING);
 
             if (traceGCPhases) {
@@ -332,22 +518,40 @@ public final class MSEHeapScheme extends HeapSchemeWithTLABAdaptor implements He
             }
             startTimer(reclaimTimer);
             markSweepSpace.sweep(heapMarker, DoImpreciseSweep);
-            Size freeSpaceAfterGC = markSweepSpace.freeSpace();
+            if (LazySweep) {
+                // Only sweep what is needed to satisfy the request that triggered the collection. Mutators sweep the other regions on demand.
+                markSweepSpace.sweepUnsweptRegions(gcRequest == null ? Size.zero() : gcRequest.requestedBytes);
+            }
             stopTimer(reclaimTimer);
             if (traceGCPhases) {
                 Log.println("END: Sweeping");
             }
+            if (CompactRegions && !markSweepSpace.hasUnsweptRegions() && !pinnedCounter.hasPinnedObjects()) {
+                if (traceGCPhases) {
+                    Log.println("BEGIN: Compacting");
+                }
+                compactionTimers.resetTrackTime();
+                regionCompactor.compact(this);
+                if (traceGCPhases) {
+                    Log.println("END: Compacting");
+                }
+            }
+            Size freeSpaceAfterGC = markSweepSpace.freeSpace();
 
             if (VerifyAfterGC) {
                 afterGCVerifier.run();
             }
             vmConfig().monitorScheme().afterGarbageCollection();
 
-            heapResizingPolicy.resizeAfterCollection(freeSpaceAfterGC, markSweepSpace);
+            if (!markSweepSpace.hasUnsweptRegions()) {
+                // The free space of unswept regions is unknown. Resizing is only worth considering when the whole space had to be swept anyway.
+                heapResizingPolicy.resizeAfterCollection(freeSpaceAfterGC, markSweepSpace);
+            }
             markSweepSpace.doAfterGC();
 
-            final GCRequest gcRequest = callingThread().gcRequest;
-            gcRequest.lastInvocationCount = invocationCount;
+            if (gcRequest != null) {
+                gcRequest.lastInvocationCount = invocationCount;
+            }
             HeapScheme.Inspect.notifyHeapPhaseChange(HeapPhase.MUTATING);
             stopTimer(totalPauseTime);
 
@@ -357,6 +561,239 @@ public final class MSEHeapScheme extends HeapSchemeWithTLABAdaptor implements He
         }
     }
 
+    @FOLD
+    private static int markerLockOffset() {
+        return ClassActor.fromJava(MSEHeapScheme.class).findLocalInstanceFieldActor("markerLock").offset();
+    }
+
+    @INLINE
+    private void lockMarker() {
+        final Reference ref = Reference.fromJava(this);
+        while (ref.compareAndSwapInt(markerLockOffset(), 0, 1) != 0) {
+            Intrinsics.pause();
+        }
+    }
+
+    @INLINE
+    private void unlockMarker() {
+        MemoryBarriers.barrier(MemoryBarriers.LOAD_STORE | MemoryBarriers.STORE_STORE);
+        Reference.fromJava(this).writeInt(markerLockOffset(), 0);
+    }
+
+    /**
+     * Abort the concurrent marking cycle in progress, if any. Called by stop-the-world collections, which trace the whole heap anyway.
+     * The increment the marker thread may be running is interrupted first, so that the marker lock is released promptly.
+     */
+    private void abortConcurrentMarking() {
+        if (concurrentMarkingInProgress) {
+            heapMarker.interruptConcurrentMarking();
+            lockMarker();
+            concurrentMarkingInProgress = false;
+            SATBQueue.deactivateAndDrain(null);
+            heapMarker.abortConcurrentMarking();
+            unlockMarker();
+        }
+    }
+
+    /**
+     * Mark black the cells allocated in the current chunk of a thread's TLAB since the beginning of the concurrent marking cycle in progress, if any.
+     * @param etla the thread's safepoints-enabled thread locals
+     */
+    @NO_SAFEPOINT_POLLS("concurrent marking cycles must not start or end while cells are marked black")
+    private void markTLABAllocatedBlack(Pointer etla) {
+        if (concurrentMarkingInProgress) {
+            final Pointer start = TLAB_START.load(etla);
+            final Pointer mark = TLAB_MARK.load(etla);
+            if (!start.isZero() && mark.greaterThan(start)) {
+                heapMarker.markAllocatedBlack(start, mark);
+            }
+        }
+    }
+
+    /**
+     * Mark black a cell allocated outside of a TLAB if a concurrent marking cycle is in progress.
+     * @param cell the allocated cell
+     * @return the cell
+     */
+    @NO_SAFEPOINT_POLLS("concurrent marking cycles must not start or end while cells are marked black")
+    private Pointer markAllocatedCellBlack(Pointer cell) {
+        if (concurrentMarkingInProgress) {
+            heapMarker.markAllocatedCellBlack(cell);
+        }
+        return cell;
+    }
+
+    private Pointer allocateDirect(Size size) {
+        return markAllocatedCellBlack(markSweepSpace.allocate(size));
+    }
+
+    private boolean shouldStartConcurrentMarking() {
+        if (markerThread == null || concurrentMarkingInProgress || concurrentMarkingRequested || markSweepSpace.hasUnsweptRegions()) {
+            return false;
+        }
+        return markSweepSpace.usedSpace().toLong() * 100 > markSweepSpace.totalSpace().toLong() * ConcurrentMarkingThreshold;
+    }
+
+    private void requestConcurrentMarking() {
+        markerThreadLock.lock();
+        if (!concurrentMarkingRequested) {
+            concurrentMarkingRequested = true;
+            markingCycleRequested.threadNotify(false);
+        }
+        markerThreadLock.unlock();
+    }
+
+    @Override
+    public void notifyCurrentThreadDetach() {
+        markTLABAllocatedBlack(ETLA.load(VmThread.currentTLA()));
+        SATBQueue.notifyCurrentThreadDetach();
+        super.notifyCurrentThreadDetach();
+    }
+
+    /**
+     * Run a concurrent marking cycle. Called by the marker thread, which releases the marker lock between increments so that a
+     * stop-the-world collection can abort the cycle. The marker thread never waits for work by spinning: once the cycle is over,
+     * it blocks until the next one is requested.
+     */
+    private void runConcurrentMarkingCycle() {
+        initialMark.submit();
+        while (true) {
+            lockMarker();
+            if (!concurrentMarkingInProgress) {
+                // Aborted by a stop-the-world collection.
+                unlockMarker();
+                return;
+            }
+            SATBQueue.drainCompletedBuffers(heapMarker.concurrentGreyMarker());
+            final boolean done = heapMarker.markConcurrently();
+            unlockMarker();
+            if (done) {
+                break;
+            }
+        }
+        remark.submit();
+    }
+
+    /**
+     * Daemon thread running the concurrent phase of marking cycles.
+     * Like {@link GCTaskThreadPool.GCTaskThread}s, it is never frozen by {@link VmOperation}s and its stack is never scanned:
+     * it only ever references objects that never move, and it never allocates from the heap.
+     */
+    private final class ConcurrentMarkerThread extends Thread {
+        ConcurrentMarkerThread() {
+            super(VmThread.systemThreadGroup, "Concurrent Marker");
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            synchronized (VmThreadMap.THREAD_LOCK) {
+                // Holding the thread lock guarantees that no VM operation is in progress, so this thread
+                // can safely be excluded from subsequent safepoint operations.
+                VmThread.current().setAsGCTaskThread();
+            }
+            Heap.disableAllocationForCurrentThread();
+            while (true) {
+                markerThreadLock.lock();
+                while (!concurrentMarkingRequested) {
+                    markingCycleRequested.threadWait(markerThreadLock, 0);
+                }
+                markerThreadLock.unlock();
+                runConcurrentMarkingCycle();
+                concurrentMarkingRequested = false;
+            }
+        }
+    }
+
+    /**
+     * Base class of the pauses of concurrent marking cycles. Unlike stop-the-world collections, these don't process special references,
+     * so they neither hold nor notify the {@linkplain SpecialReferenceManager#REFERENCE_LOCK reference lock}.
+     */
+    abstract class ConcurrentMarkingPause extends GCOperation {
+        ConcurrentMarkingPause(String name) {
+            super(name);
+        }
+
+        @Override
+        protected boolean doItPrologue(boolean nested) {
+            return true;
+        }
+
+        @Override
+        protected void doItEpilogue(boolean nested) {
+        }
+    }
+
+    /**
+     * Resets the start of TLAB chunks to their current allocation mark, so that only cells allocated from then on are marked black.
+     */
+    private final Pointer.Procedure tlabStartResetter = new Pointer.Procedure() {
+        public void run(Pointer tla) {
+            final Pointer etla = ETLA.load(tla);
+            TLAB_START.store(etla, TLAB_MARK.load(etla));
+        }
+    };
+
+    /**
+     * Marks black the cells allocated in TLABs during the concurrent marking cycle, then retires the TLABs.
+     */
+    private final Pointer.Procedure tlabBlackener = new Pointer.Procedure() {
+        public void run(Pointer tla) {
+            markTLABAllocatedBlack(ETLA.load(tla));
+            tlabReset(tla);
+        }
+    };
+
+    /**
+     * Pause starting a concurrent marking cycle: marks the roots and activates the SATB barriers.
+     */
+    final class InitialMark extends ConcurrentMarkingPause {
+        InitialMark() {
+            super("InitialMark");
+        }
+
+        @Override
+        protected void collect(int invocationCount) {
+            if (concurrentMarkingInProgress) {
+                return;
+            }
+            VmThreadMap.ACTIVE.forAllThreadLocals(null, tlabStartResetter);
+            vmConfig().monitorScheme().beforeGarbageCollection();
+            markSweepSpace.doBeforeConcurrentMarking();
+            heapMarker.beginConcurrentMarking();
+            SATBQueue.activate();
+            concurrentMarkingInProgress = true;
+            vmConfig().monitorScheme().afterGarbageCollection();
+        }
+    }
+
+    /**
+     * Pause ending a concurrent marking cycle: completes the trace of the heap with the references recorded by the SATB barriers,
+     * then sweeps the heap.
+     */
+    final class Remark extends ConcurrentMarkingPause {
+        Remark() {
+            super("Remark");
+        }
+
+        @Override
+        protected void collect(int invocationCount) {
+            if (!concurrentMarkingInProgress) {
+                return;
+            }
+            collect.startPause();
+            VmThreadMap.ACTIVE.forAllThreadLocals(null, tlabBlackener);
+            concurrentMarkingInProgress = false;
+            HeapScheme.Inspect.notifyHeapPhaseChange(HeapPhase.ANALYZING);
+            vmConfig().monitorScheme().beforeGarbageCollection();
+            SATBQueue.deactivateAndDrain(heapMarker.concurrentGreyMarker());
+            heapMarker.endConcurrentMarking();
+            markSweepSpace.doBeforeGC();
+            collectionCount++;
+            collect.reclaim(null, invocationCount);
+        }
+    }
+
     private Size setNextTLABChunk(Pointer chunk) {
         if (MaxineVM.isDebug()) {
             FatalError.check(!chunk.isZero(), "TLAB chunk must not be null");
@@ -393,12 +830,13 @@ public final class MSEHeapScheme extends HeapSchemeWithTLABAdaptor implements He
         Size chunkSize =  HeapFreeChunk.getFreechunkSize(chunk);
         if (size.greaterThan(chunkSize.minus(minObjectSize())))  {
             // Don't bother with searching another TLAB chunk that fits. Allocate directly in the heap.
-            return markSweepSpace.allocate(size);
+            return allocateDirect(size);
         }
         // Otherwise, the chunk can accommodate the request AND
         // we'll have enough room left in the chunk to format a dead object or to store the next chunk pointer.
         Address nextChunk = HeapFreeChunk.getFreeChunkNext(chunk);
         // We will not reuse the leftover, turn it into dark matter.
+        markTLABAllocatedBlack(etla);
         DarkMatter.format(tlabMark, tlabHardLimit);
         Size effectiveSize = chunkSize.minus(tlabHeadroom());
         // Zap chunk data to leave allocation area clean.
@@ -423,8 +861,13 @@ public final class MSEHeapScheme extends HeapSchemeWithTLABAdaptor implements He
         if (MaxineVM.isDebug() && logTLABEvents(tlab)) {
             TLABLog.doOnRefillTLAB(etla, tlabSize, true);
         }
+        // The current TLAB chunk is retired: cells allocated from it during a concurrent marking cycle must be marked black.
+        markTLABAllocatedBlack(etla);
         Size effectiveSize = setNextTLABChunk(tlab);
         refillTLAB(etla, tlab, effectiveSize);
+        if (ConcurrentMarking && shouldStartConcurrentMarking()) {
+            requestConcurrentMarking();
+        }
     }
 
     @Override
@@ -442,14 +885,14 @@ public final class MSEHeapScheme extends HeapSchemeWithTLABAdaptor implements He
             if (!usesTLAB()) {
                 // We're not using TLAB. So let's assign the never refill tlab policy.
                 TLABRefillPolicy.setForCurrentThread(etla, NEVER_REFILL_TLAB);
-                return markSweepSpace.allocate(size);
+                return allocateDirect(size);
             }
             // Allocate an initial TLAB and a refill policy. For simplicity, this one is allocated from the TLAB (see comment below).
             final Size tlabSize = initialTlabSize();
             allocateAndRefillTLAB(etla, tlabSize);
             // Let's do a bit of dirty meta-circularity. The TLAB is refilled, and no-one except the current thread can use it.
             // So the tlab allocation is going to succeed here
-            TLABRefillPolicy.setForCurrentThread(etla, new SimpleTLABRefillPolicy(tlabSize));
+            TLABRefillPolicy.setForCurrentThread(etla, createTLABRefillPolicy(tlabSize));
             // Now, address the initial request. Note that we may recurse down to handleTLABOverflow again here if the
             // request is larger than the TLAB size. However, this second call will succeed and allocate outside of the tlab.
             return tlabAllocate(size);
@@ -458,7 +901,7 @@ public final class MSEHeapScheme extends HeapSchemeWithTLABAdaptor implements He
         final Size nextTLABSize = refillPolicy.nextTlabSize();
         if (size.greaterThan(nextTLABSize)) {
             // This couldn't be allocated in a TLAB, so go directly to direct allocation routine.
-            return markSweepSpace.allocate(size);
+            return allocateDirect(size);
         }
         // TLAB may have been wiped out by a previous direct allocation routine.
         if (!tlabEnd.isZero()) {
@@ -470,6 +913,8 @@ public final class MSEHeapScheme extends HeapSchemeWithTLABAdaptor implements He
                 // Can actually fit the object in space left.
                 // zero-fill the headroom we left.
                 Memory.clearWords(tlabEnd, tlabHeadroomNumWords());
+                markTLABAllocatedBlack(etla);
+                markAllocatedCellBlack(cell);
                 if (nextChunk.isZero()) {
                     // Zero-out TLAB top and mark.
                     fastRefillTLAB(etla, Pointer.zero(), Size.zero());
@@ -485,7 +930,7 @@ public final class MSEHeapScheme extends HeapSchemeWithTLABAdaptor implements He
 
             if (!refillPolicy.shouldRefill(size, tlabMark)) {
                 // Size would fit in a new tlab, but the policy says we shouldn't refill the tlab yet, so allocate directly in the heap.
-                return markSweepSpace.allocate(size);
+                return allocateDirect(size);
             }
         }
         if (MaxineVM.isDebug() && RegionTable.inDebuggedRegion(tlabMark)) {
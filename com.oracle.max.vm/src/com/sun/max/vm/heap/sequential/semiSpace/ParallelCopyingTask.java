@@ -0,0 +1,533 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.vm.heap.sequential.semiSpace;
+
+import static com.sun.max.vm.VMOptions.*;
+
+import com.oracle.max.cri.intrinsics.*;
+import com.sun.max.annotate.*;
+import com.sun.max.memory.*;
+import com.sun.max.platform.*;
+import com.sun.max.unsafe.*;
+import com.sun.max.vm.*;
+import com.sun.max.vm.actor.holder.*;
+import com.sun.max.vm.code.*;
+import com.sun.max.vm.heap.*;
+import com.sun.max.vm.heap.GCTaskThreadPool.GCTask;
+import com.sun.max.vm.heap.debug.*;
+import com.sun.max.vm.layout.*;
+import com.sun.max.vm.reference.*;
+import com.sun.max.vm.runtime.*;
+import com.sun.max.vm.thread.*;
+import com.sun.max.vm.type.*;
+
+/**
+ * Parallel evacuation of the objects reachable from the roots of a {@link SemiSpaceHeapScheme}, run by the workers of the
+ * {@link GCTaskThreadPool}.
+ * <p>
+ * An evacuation runs in the same {@linkplain Phase phases} as the sequential Cheney scan of {@link SemiSpaceHeapScheme},
+ * so that each phase can be timed and logged the same way. In the root phases, workers claim roots one at a time: the thread
+ * locals and stack of each active thread and the references held by the monitor scheme, then the boot heap, the code regions
+ * and the immortal heap. Objects are copied into per-worker promotion-local allocation buffers (PLABs) carved out of to-space
+ * with a compare-and-swap on its allocation mark. Objects larger than a quarter of a PLAB are allocated directly in to-space.
+ * <p>
+ * An object is copied before its forwarding pointer is installed with a compare-and-swap on its hub word. The worker that
+ * loses the race undoes its allocation and uses the winner's copy. The copies a worker installs are pushed on the worker's
+ * {@linkplain WorkStealingMarkingStacks stack} of grey objects. In the copying phase, workers drain their own stack first,
+ * then steal from the stacks of other workers, and offer termination once all stacks are empty. A copy that doesn't fit on a
+ * full stack is left unscanned, and to-space is then scanned again sequentially from the lowest such copy once the workers
+ * are done.
+ * <p>
+ * The unused tail of each PLAB is formatted as a byte array so that to-space remains parsable.
+ * Special references are discovered under a lock. Their processing remains sequential.
+ */
+final class ParallelCopyingTask extends GCTask {
+    private static final VMSizeOption plabSizeOption =
+        register(new VMSizeOption("-XX:PLABSize=", Size.K.times(32), "Size of the buffers GC threads copy objects to during parallel evacuation."),
+                        MaxineVM.Phase.PRISTINE);
+
+    /**
+     * The phases of an evacuation. Each phase is run by all the workers.
+     */
+    enum Phase {
+        /**
+         * Scan the roots of the active threads and of the monitor scheme.
+         */
+        ROOTS,
+
+        /**
+         * Scan the boot heap.
+         */
+        BOOT_HEAP,
+
+        /**
+         * Scan the code regions.
+         */
+        CODE,
+
+        /**
+         * Scan the immortal heap.
+         */
+        IMMORTAL_HEAP,
+
+        /**
+         * Scan the copies pushed on the grey stacks until all of them are empty.
+         */
+        COPY
+    }
+
+    /**
+     * Per-worker evacuation state.
+     */
+    static final class Worker extends PointerIndexVisitor implements CellVisitor, Pointer.Procedure {
+        final ParallelCopyingTask task;
+        final int workerId;
+
+        /**
+         * Allocation mark of the worker's PLAB.
+         */
+        Pointer plabTop;
+
+        /**
+         * End of the worker's PLAB.
+         */
+        Pointer plabEnd;
+
+        /**
+         * Index of the next thread visited while claiming thread roots.
+         */
+        private int threadIndex;
+
+        /**
+         * Last root claimed by this worker.
+         */
+        private int claimedRoot;
+
+        /**
+         * Lowest copy left unscanned by this worker because its grey stack was full, or zero if there is none.
+         */
+        Pointer overflowCell;
+
+        Worker(ParallelCopyingTask task, int workerId) {
+            this.task = task;
+            this.workerId = workerId;
+        }
+
+        /**
+         * Allocate space for a copy in the worker's PLAB, refilling the PLAB if needed.
+         * Space for a filler object is always left at the end of the PLAB.
+         */
+        private Pointer allocate(Size size) {
+            if (size.greaterThan(task.maxPLABObjectSize)) {
+                return task.allocate(size, true);
+            }
+            Pointer cell = DebugHeap.adjustForDebugTag(plabTop);
+            if (cell.plus(size).plus(task.minFillerSize).greaterThan(plabEnd)) {
+                retirePLAB();
+                plabTop = task.allocate(task.plabSize, false);
+                plabEnd = plabTop.plus(task.plabSize);
+                cell = DebugHeap.adjustForDebugTag(plabTop);
+            }
+            plabTop = cell.plus(size);
+            return cell;
+        }
+
+        /**
+         * Give back the space allocated for a copy that lost the race to forward an object.
+         */
+        private void undoAllocation(Pointer cell, Size size) {
+            if (size.greaterThan(task.maxPLABObjectSize)) {
+                // Allocated directly in to-space.
+                fill(cell.minus(debugTagSize()), cell.plus(size));
+            } else {
+                plabTop = cell.minus(debugTagSize());
+            }
+        }
+
+        void retirePLAB() {
+            if (!plabTop.isZero()) {
+                fill(plabTop, plabEnd);
+            }
+            plabTop = Pointer.zero();
+            plabEnd = Pointer.zero();
+        }
+
+        private Reference mapRef(Reference ref) {
+            final Pointer fromOrigin = ref.toOrigin();
+            if (!task.fromSpace.contains(fromOrigin)) {
+                return ref;
+            }
+            final Reference hubRef = Layout.readHubReference(fromOrigin);
+            if (hubRef.isMarked()) {
+                return hubRef.unmarked();
+            }
+            task.scheme.verifyRef(ref);
+            // The object may be forwarded concurrently: compute its size from the hub read above, not from its header.
+            final Hub hub = UnsafeCast.asHub(hubRef.toJava());
+            final Size size = hub.specificLayout.isTupleLayout() ? hub.tupleSize : hub.specificLayout.specificSize(fromOrigin);
+            final Pointer toCell = allocate(size);
+            if (DebugHeap.isTagging()) {
+                DebugHeap.writeCellTag(toCell);
+            }
+            Memory.copyBytes(Layout.originToCell(fromOrigin), toCell, size);
+            final Reference toRef = Reference.fromOrigin(Layout.cellToOrigin(toCell));
+            // Make the copy visible before the forwarding pointer.
+            MemoryBarriers.barrier(MemoryBarriers.STORE_STORE);
+            final Reference witness = Layout.compareAndSwapForwardRef(fromOrigin, hubRef, toRef);
+            if (witness != hubRef) {
+                // Another worker forwarded the object first.
+                undoAllocation(toCell, size);
+                return witness.unmarked();
+            }
+            if (!task.greyStacks.push(workerId, toCell)) {
+                // Leave the copy unscanned. It will be visited by the sequential scan of to-space.
+                if (overflowCell.isZero() || toCell.lessThan(overflowCell)) {
+                    overflowCell = toCell;
+                }
+            }
+            return toRef;
+        }
+
+        @Override
+        public void visit(Pointer pointer, int wordIndex) {
+            final Reference oldRef = pointer.getReference(wordIndex);
+            final Reference newRef = mapRef(oldRef);
+            if (newRef != oldRef) {
+                pointer.setReference(wordIndex, newRef);
+            }
+        }
+
+        private void scanReferenceArray(Pointer origin) {
+            final int length = Layout.readArrayLength(origin);
+            for (int index = 0; index < length; index++) {
+                final Reference oldRef = Layout.getReference(origin, index);
+                final Reference newRef = mapRef(oldRef);
+                if (newRef != oldRef) {
+                    Layout.setReference(origin, index, newRef);
+                }
+            }
+        }
+
+        /**
+         * Update the references of a cell copied to to-space by this worker, or of a cell in a root region.
+         * Same as {@link SemiSpaceHeapScheme#visitCell(Pointer)}.
+         */
+        public Pointer visitCell(Pointer cell) {
+            final Pointer origin = Layout.cellToOrigin(cell);
+            final Reference oldHubRef = Layout.readHubReference(origin);
+            final Reference newHubRef = mapRef(oldHubRef);
+            if (newHubRef != oldHubRef) {
+                Layout.writeHubReference(origin, newHubRef);
+            }
+            final Hub hub = UnsafeCast.asHub(newHubRef.toJava());
+            final SpecificLayout specificLayout = hub.specificLayout;
+            if (specificLayout.isTupleLayout()) {
+                TupleReferenceMap.visitReferences(hub, origin, this);
+                if (hub.isJLRReference) {
+                    task.discoverSpecialReference(cell);
+                }
+                return cell.plus(hub.tupleSize);
+            }
+            if (specificLayout.isReferenceArrayLayout()) {
+                scanReferenceArray(origin);
+            } else if (specificLayout.isHybridLayout()) {
+                TupleReferenceMap.visitReferences(hub, origin, this);
+            }
+            return cell.plus(Layout.size(origin));
+        }
+
+        /**
+         * Scan the roots of the thread whose thread locals are at {@code tla} if this worker claimed them.
+         */
+        public void run(Pointer tla) {
+            if (threadIndex == claimedRoot) {
+                if (Heap.logGCPhases()) {
+                    Heap.phaseLogger.logScanningThreadRoots(VmThread.fromTLA(tla));
+                }
+                VmThreadLocal.scanReferences(tla, this);
+                claimedRoot = task.claimRoot();
+            }
+            threadIndex++;
+        }
+
+        private void scanRoots() {
+            threadIndex = 0;
+            claimedRoot = task.claimRoot();
+            VmThreadMap.ACTIVE.forAllThreadLocals(null, this);
+            if (claimedRoot == threadIndex) {
+                VMConfiguration.vmConfig().monitorScheme().scanReferences(this);
+            }
+        }
+
+        private void drainGreyStack() {
+            Pointer cell = task.greyStacks.pop(workerId);
+            while (!cell.isZero()) {
+                visitCell(cell);
+                cell = task.greyStacks.pop(workerId);
+            }
+        }
+
+        void run(Phase phase, int numWorkers) {
+            switch (phase) {
+                case ROOTS:
+                    scanRoots();
+                    break;
+                case BOOT_HEAP:
+                    if (task.claimRoot() == 0) {
+                        Heap.bootHeapRegion.visitReferences(this);
+                    }
+                    break;
+                case CODE:
+                    if (task.claimRoot() == 0) {
+                        // References in the boot code region are immutable and only ever refer
+                        // to objects in the boot heap region.
+                        Code.visitCells(this, false);
+                    }
+                    break;
+                case IMMORTAL_HEAP:
+                    if (task.claimRoot() == 0) {
+                        ImmortalHeap.visitCells(this);
+                    }
+                    break;
+                default:
+                    copy(numWorkers);
+            }
+        }
+
+        private void copy(int numWorkers) {
+            while (true) {
+                drainGreyStack();
+                final Pointer cell = task.greyStacks.stealFromOthers(workerId);
+                if (!cell.isZero()) {
+                    visitCell(cell);
+                    continue;
+                }
+                if (task.offerTermination(numWorkers)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    final SemiSpaceHeapScheme scheme;
+    final WorkStealingMarkingStacks greyStacks = new WorkStealingMarkingStacks();
+    private Worker [] workers;
+
+    Size plabSize;
+    Size maxPLABObjectSize;
+
+    /**
+     * Space reserved at the end of a PLAB to format its unused tail as a filler object.
+     */
+    Size minFillerSize;
+
+    MemoryRegion fromSpace;
+    LinearAllocationMemoryRegion toSpace;
+
+    /**
+     * Limit of allocation in to-space.
+     */
+    Address top;
+
+    /**
+     * The phase the workers are running.
+     */
+    private Phase phase;
+
+    private volatile int nextRoot;
+    private volatile int discoveryLock;
+    private volatile int numIdleWorkers;
+
+    ParallelCopyingTask(SemiSpaceHeapScheme scheme) {
+        super("Parallel Copying");
+        this.scheme = scheme;
+    }
+
+    /**
+     * Allocate the per-worker state. Must be called with allocation directed to non-moving memory.
+     */
+    void initialize(int numWorkers) {
+        plabSize = plabSizeOption.getValue().wordAligned().asSize();
+        maxPLABObjectSize = plabSize.dividedBy(4);
+        minFillerSize = debugTagSize().plus(Layout.byteArrayLayout().getArraySize(Kind.BYTE, 0));
+        greyStacks.initialize(numWorkers);
+        workers = new Worker[numWorkers];
+        for (int i = 0; i < numWorkers; i++) {
+            workers[i] = new Worker(this, i);
+        }
+    }
+
+    boolean isEnabled() {
+        return workers != null;
+    }
+
+    @FOLD
+    private static int nextRootOffset() {
+        return ClassActor.fromJava(ParallelCopyingTask.class).findLocalInstanceFieldActor("nextRoot").offset();
+    }
+
+    @FOLD
+    private static int discoveryLockOffset() {
+        return ClassActor.fromJava(ParallelCopyingTask.class).findLocalInstanceFieldActor("discoveryLock").offset();
+    }
+
+    @FOLD
+    private static int numIdleWorkersOffset() {
+        return ClassActor.fromJava(ParallelCopyingTask.class).findLocalInstanceFieldActor("numIdleWorkers").offset();
+    }
+
+    private int fetchAndAdd(int offset, int delta) {
+        final Reference ref = Reference.fromJava(this);
+        int oldValue;
+        do {
+            oldValue = ref.readInt(offset);
+        } while (ref.compareAndSwapInt(offset, oldValue, oldValue + delta) != oldValue);
+        return oldValue;
+    }
+
+    int claimRoot() {
+        return fetchAndAdd(nextRootOffset(), 1);
+    }
+
+    void discoverSpecialReference(Pointer cell) {
+        final Reference ref = Reference.fromJava(this);
+        while (ref.compareAndSwapInt(discoveryLockOffset(), 0, 1) != 0) {
+            Intrinsics.pause();
+        }
+        SpecialReferenceManager.discoverSpecialReference(cell);
+        MemoryBarriers.barrier(MemoryBarriers.LOAD_STORE | MemoryBarriers.STORE_STORE);
+        ref.writeInt(discoveryLockOffset(), 0);
+    }
+
+    /**
+     * Called by a worker that ran out of work. Returns true when all workers have run out of work,
+     * or false if work became available in the meantime.
+     */
+    boolean offerTermination(int numWorkers) {
+        fetchAndAdd(numIdleWorkersOffset(), 1);
+        while (numIdleWorkers != numWorkers) {
+            if (!greyStacks.allEmpty()) {
+                fetchAndAdd(numIdleWorkersOffset(), -1);
+                return false;
+            }
+            Intrinsics.pause();
+        }
+        return true;
+    }
+
+    /**
+     * Allocate space in to-space with a compare-and-swap on its allocation mark.
+     *
+     * @param size the size of the cell, or of the PLAB, to allocate
+     * @param adjustForDebugTag specifies if an extra word is to be reserved before the cell for the debug tag word
+     */
+    Pointer allocate(Size size, boolean adjustForDebugTag) {
+        Pointer oldMark;
+        Pointer cell;
+        do {
+            oldMark = toSpace.mark();
+            cell = adjustForDebugTag ? DebugHeap.adjustForDebugTag(oldMark) : oldMark;
+            if (cell.plus(size).greaterThan(top)) {
+                throw FatalError.unexpected("GC allocation overflow");
+            }
+        } while (!toSpace.mark.compareAndSwap(oldMark, cell.plus(size)).equals(oldMark));
+        return cell;
+    }
+
+    /**
+     * Space reserved before a cell for its {@linkplain DebugHeap#writeCellTag(Pointer) debug tag}, if any.
+     */
+    @INLINE
+    static Size debugTagSize() {
+        return DebugHeap.adjustForDebugTag(Pointer.zero()).asSize();
+    }
+
+    /**
+     * Format dead space in to-space as a byte array.
+     */
+    static void fill(Pointer start, Pointer end) {
+        final Pointer cell = DebugHeap.adjustForDebugTag(start);
+        DebugHeap.writeCellTag(cell);
+        final Pointer origin = Layout.cellToOrigin(cell);
+        final int length = end.minus(cell).minus(Layout.byteArrayLayout().getArraySize(Kind.BYTE, 0)).toInt();
+        Layout.writeHubReference(origin, Reference.fromJava(ClassRegistry.BYTE_ARRAY.dynamicHub()));
+        Layout.writeMisc(origin, Word.zero());
+        if (Platform.target().arch.is32bit()) {
+            Layout.writeHash(origin, Word.zero());
+        }
+        Layout.writeArrayLength(origin, length);
+    }
+
+    @Override
+    public void run(int workerId, int numWorkers) {
+        workers[workerId].run(phase, numWorkers);
+    }
+
+    /**
+     * Prepare the copying of all objects reachable from the roots from {@code fromSpace} to {@code toSpace}.
+     */
+    void start(MemoryRegion fromSpace, LinearAllocationMemoryRegion toSpace, Address top) {
+        this.fromSpace = fromSpace;
+        this.toSpace = toSpace;
+        this.top = top;
+        for (int i = 0; i < greyStacks.numStacks(); i++) {
+            greyStacks.reset(i);
+        }
+        for (Worker worker : workers) {
+            worker.overflowCell = Pointer.zero();
+        }
+    }
+
+    /**
+     * Run a phase of the evacuation with all the workers.
+     */
+    void run(Phase phase) {
+        this.phase = phase;
+        nextRoot = 0;
+        numIdleWorkers = 0;
+        GCTaskThreadPool.theGCTaskThreadPool().run(this);
+    }
+
+    /**
+     * Complete the evacuation once all the phases have run: retire the PLABs and scan the copies left unscanned
+     * by the workers, along with all the cells copied after them.
+     */
+    void finish() {
+        Pointer overflowCell = Pointer.zero();
+        for (Worker worker : workers) {
+            worker.retirePLAB();
+            if (!worker.overflowCell.isZero() && (overflowCell.isZero() || worker.overflowCell.lessThan(overflowCell))) {
+                overflowCell = worker.overflowCell;
+            }
+        }
+        if (!overflowCell.isZero()) {
+            if (Heap.logGCPhases()) {
+                final boolean lockDisabledSafepoints = Log.lock();
+                Log.print("Parallel copying overflowed grey stacks, scanning to-space sequentially from ");
+                Log.println(overflowCell);
+                Log.unlock(lockDisabledSafepoints);
+            }
+            scheme.moveReachableObjects(overflowCell.minus(debugTagSize()));
+        }
+    }
+}
@@ -103,6 +103,20 @@ public class SemiSpaceHeapScheme extends HeapSchemeWithTLAB implements CellVisit
     }
 
 
+    /**
+     * A VM option for evacuating live objects in parallel with the GC task threads.
+     */
+    private static boolean ParallelCopying = true;
+    static {
+        VMOptions.addFieldOption("-XX:", "ParallelCopying", SemiSpaceHeapScheme.class,
+            "Evacuate live objects in parallel when more than one GC thread is available", MaxineVM.Phase.PRISTINE);
+    }
+
+    /**
+     * Task evacuating live objects in parallel, if {@link #ParallelCopying} is enabled.
+     */
+    private final ParallelCopyingTask parallelCopyingTask = new ParallelCopyingTask(this);
+
     private final CollectHeap collectHeap;
 
     @INSPECTED
@@ -209,6 +223,16 @@ public class SemiSpaceHeapScheme extends HeapSchemeWithTLAB implements CellVisit
 
             lastGCTime = System.currentTimeMillis();
 
+            if (ParallelCopying && GCTaskThreadPool.numWorkers() > 1) {
+                // The per-worker state of the parallel copying task must never move.
+                Heap.enableImmortalMemoryAllocation();
+                try {
+                    parallelCopyingTask.initialize(GCTaskThreadPool.numWorkers());
+                } finally {
+                    Heap.disableImmortalMemoryAllocation();
+                }
+            }
+
             // From now on we can allocate
 
             HeapScheme.Inspect.init(true);
@@ -321,6 +345,88 @@ public class SemiSpaceHeapScheme extends HeapSchemeWithTLAB implements CellVisit
         }
     }
 
+    /**
+     * Scan the roots and copy the objects reachable from them in a single Cheney scan of 'toSpace',
+     * or with the workers of the {@link ParallelCopyingTask} if it is enabled.
+     */
+    private void scanRootsAndMoveReachableObjects() {
+        final boolean parallel = parallelCopyingTask.isEnabled();
+        if (parallel) {
+            parallelCopyingTask.start(fromSpace, toSpace, top);
+        }
+
+        if (Heap.logGCPhases()) {
+            phaseLogger.logScanningRoots(VMLogger.Interval.BEGIN);
+        }
+        startTimer(rootScanTimer);
+        if (parallel) {
+            parallelCopyingTask.run(ParallelCopyingTask.Phase.ROOTS);
+        } else {
+            heapRootsScanner.run(); // Start scanning the reachable objects from my roots.
+        }
+        stopTimer(rootScanTimer);
+        if (Heap.logGCPhases()) {
+            phaseLogger.logScanningRoots(VMLogger.Interval.END);
+        }
+
+        if (Heap.logGCPhases()) {
+            phaseLogger.logScanningBootHeap(VMLogger.Interval.BEGIN);
+        }
+        startTimer(bootHeapScanTimer);
+        if (parallel) {
+            parallelCopyingTask.run(ParallelCopyingTask.Phase.BOOT_HEAP);
+        } else {
+            scanBootHeap();
+        }
+        stopTimer(bootHeapScanTimer);
+        if (Heap.logGCPhases()) {
+            phaseLogger.logScanningBootHeap(VMLogger.Interval.END);
+        }
+
+        if (Heap.logGCPhases()) {
+            phaseLogger.logScanningCode(VMLogger.Interval.BEGIN);
+        }
+        startTimer(codeScanTimer);
+        if (parallel) {
+            parallelCopyingTask.run(ParallelCopyingTask.Phase.CODE);
+        } else {
+            scanCode();
+        }
+        stopTimer(codeScanTimer);
+        if (Heap.logGCPhases()) {
+            phaseLogger.logScanningCode(VMLogger.Interval.END);
+        }
+
+        if (Heap.logGCPhases()) {
+            phaseLogger.logScanningImmortalHeap(VMLogger.Interval.BEGIN);
+        }
+        startTimer(immortalSpaceScanTimer);
+        if (parallel) {
+            parallelCopyingTask.run(ParallelCopyingTask.Phase.IMMORTAL_HEAP);
+        } else {
+            scanImmortalHeap();
+        }
+        stopTimer(immortalSpaceScanTimer);
+        if (Heap.logGCPhases()) {
+            phaseLogger.logScanningImmortalHeap(VMLogger.Interval.END);
+        }
+
+        if (Heap.logGCPhases()) {
+            phaseLogger.logMovingReachable(VMLogger.Interval.BEGIN);
+        }
+        startTimer(copyTimer);
+        if (parallel) {
+            parallelCopyingTask.run(ParallelCopyingTask.Phase.COPY);
+            parallelCopyingTask.finish();
+        } else {
+            moveReachableObjects(toSpace.start().asPointer());
+        }
+        stopTimer(copyTimer);
+        if (Heap.logGCPhases()) {
+            phaseLogger.logMovingReachable(VMLogger.Interval.END);
+        }
+    }
+
     /**
      * Routine that performs the actual garbage collection.
      */
@@ -352,55 +458,7 @@ public class SemiSpaceHeapScheme extends HeapSchemeWithTLAB implements CellVisit
                 stopTimer(clearTimer);
 
                 refVerifier.setValidSpaces(fromSpace, toSpace);
-                if (Heap.logGCPhases()) {
-                    phaseLogger.logScanningRoots(VMLogger.Interval.BEGIN);
-                }
-                startTimer(rootScanTimer);
-                heapRootsScanner.run(); // Start scanning the reachable objects from my roots.
-                stopTimer(rootScanTimer);
-                if (Heap.logGCPhases()) {
-                    phaseLogger.logScanningRoots(VMLogger.Interval.END);
-                }
-
-                if (Heap.logGCPhases()) {
-                    phaseLogger.logScanningBootHeap(VMLogger.Interval.BEGIN);
-                }
-                startTimer(bootHeapScanTimer);
-                scanBootHeap();
-                stopTimer(bootHeapScanTimer);
-                if (Heap.logGCPhases()) {
-                    phaseLogger.logScanningBootHeap(VMLogger.Interval.END);
-                }
-
-                if (Heap.logGCPhases()) {
-                    phaseLogger.logScanningCode(VMLogger.Interval.BEGIN);
-                }
-                startTimer(codeScanTimer);
-                scanCode();
-                stopTimer(codeScanTimer);
-                if (Heap.logGCPhases()) {
-                    phaseLogger.logScanningCode(VMLogger.Interval.END);
-                }
-
-                if (Heap.logGCPhases()) {
-                    phaseLogger.logScanningImmortalHeap(VMLogger.Interval.BEGIN);
-                }
-                startTimer(immortalSpaceScanTimer);
-                scanImmortalHeap();
-                stopTimer(immortalSpaceScanTimer);
-                if (Heap.logGCPhases()) {
-                    phaseLogger.logScanningImmortalHeap(VMLogger.Interval.END);
-                }
-
-                if (Heap.logGCPhases()) {
-                    phaseLogger.logMovingReachable(VMLogger.Interval.BEGIN);
-                }
-                startTimer(copyTimer);
-                moveReachableObjects(toSpace.start().asPointer());
-                stopTimer(copyTimer);
-                if (Heap.logGCPhases()) {
-                    phaseLogger.logMovingReachable(VMLogger.Interval.END);
-                }
+                scanRootsAndMoveReachableObjects();
 
                 if (Heap.logGCPhases()) {
                     phaseLogger.logProcessingSpecialReferences(VMLogger.Interval.BEGIN);
@@ -518,6 +576,15 @@ public class SemiSpaceHeapScheme extends HeapSchemeWithTLAB implements CellVisit
         }
     }
 
+    /**
+     * Verifies a reference about to be forwarded, if {@link #VerifyReferences} is enabled.
+     */
+    void verifyRef(Reference ref) {
+        if (VerifyReferences) {
+            refVerifier.verifyRefAtIndex(Address.zero(), 0, ref);
+        }
+    }
+
     private Size immediateFreeSpace() {
         return top.minus(allocationMark()).asSize();
     }
@@ -878,7 +945,7 @@ public class SemiSpaceHeapScheme extends HeapSchemeWithTLAB implements CellVisit
             allocateAndRefillTLAB(etla, tlabSize);
             // Let's do a bit of meta-circularity. The TLAB is refilled, and no-one except the current thread can use it.
             // So the TLAB allocation is going to succeed here
-            TLABRefillPolicy.setForCurrentThread(etla, new SimpleTLABRefillPolicy(tlabSize));
+            TLABRefillPolicy.setForCurrentThread(etla, createTLABRefillPolicy(tlabSize));
             // Now, address the initial request. Note that we may recurse down to handleTLABOverflow again here if the
             // request is larger than the TLAB size. However, this second call will succeed and allocate outside of the TLAB.
             return tlabAllocate(size);
@@ -113,7 +113,12 @@ public final class JmmFunctionsSource {
 
     @VM_ENTRY_POINT
     private static long GetLongAttribute(Pointer env, JniHandle obj, int att) {
-        return 0;
+        switch (att) {
+            case JMM_COMPILE_TOTAL_TIME_MS:
+                return CompilationManagement.getTotalCompilationTime();
+            default:
+                return 0;
+        }
     }
 
     @VM_ENTRY_POINT
@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.vm.management;
+
+import java.lang.management.*;
+import java.util.*;
+
+import javax.management.*;
+
+import com.sun.max.annotate.*;
+import com.sun.max.vm.*;
+import com.sun.max.vm.actor.holder.*;
+import com.sun.max.vm.actor.member.*;
+import com.sun.max.vm.compiler.target.*;
+
+/**
+ * This class provides the entry point to all the compilation management functions in Maxine.
+ * The counters are updated on every compilation, deoptimization and code eviction, and are cheap enough
+ * to be always enabled.
+ */
+public class CompilationManagement {
+
+    /**
+     * The name under which the {@link CompilationTelemetryMXBean} is registered with the platform MBean server.
+     */
+    public static final String OBJECT_NAME = "com.sun.max.vm:type=Compilation";
+
+    // Aggregated counters, guarded by the lock on this class except for those only updated at safepoints.
+    @RESET
+    private static long baselineCompilationCount;
+    @RESET
+    private static long baselineCompilationNanos;
+    @RESET
+    private static long optimizedCompilationCount;
+    @RESET
+    private static long optimizedCompilationNanos;
+    @RESET
+    private static long installedCodeBytes;
+    @RESET
+    private static long deoptimizationCount;
+    @RESET
+    private static long evictionCount;
+
+    private static CompilationTelemetryMXBean mxBean;
+
+    /**
+     * Records a completed compilation.
+     *
+     * @param tm the result of the compilation
+     * @param nanos the time spent in the compilation, excluding nested compilations
+     */
+    public static void recordCompilation(TargetMethod tm, long nanos) {
+        tm.setCompilationNanos(nanos);
+        synchronized (CompilationManagement.class) {
+            if (tm.isBaseline()) {
+                baselineCompilationCount++;
+                baselineCompilationNanos += nanos;
+            } else {
+                optimizedCompilationCount++;
+                optimizedCompilationNanos += nanos;
+            }
+            installedCodeBytes += tm.codeLength();
+        }
+    }
+
+    /**
+     * Records the deoptimization of a target method. Must only be called at a safepoint.
+     */
+    public static void recordDeoptimization(TargetMethod tm) {
+        deoptimizationCount++;
+        if (tm.classMethodActor != null) {
+            tm.classMethodActor.recordDeoptimization();
+        }
+    }
+
+    /**
+     * Records the eviction of a target method from the code cache. Must only be called at a safepoint.
+     */
+    public static void recordEviction(TargetMethod tm) {
+        evictionCount++;
+        if (tm.classMethodActor != null) {
+            tm.classMethodActor.recordEviction();
+        }
+    }
+
+    /**
+     * Gets the total time spent in compilation, in milliseconds.
+     */
+    public static synchronized long getTotalCompilationTime() {
+        return (baselineCompilationNanos + optimizedCompilationNanos) / 1000000;
+    }
+
+    public static synchronized long getBaselineCompilationCount() {
+        return baselineCompilationCount;
+    }
+
+    public static synchronized long getBaselineCompilationTime() {
+        return baselineCompilationNanos / 1000000;
+    }
+
+    public static synchronized long getOptimizedCompilationCount() {
+        return optimizedCompilationCount;
+    }
+
+    public static synchronized long getOptimizedCompilationTime() {
+        return optimizedCompilationNanos / 1000000;
+    }
+
+    public static synchronized long getInstalledCodeSize() {
+        return installedCodeBytes;
+    }
+
+    public static long getDeoptimizationCount() {
+        return deoptimizationCount;
+    }
+
+    public static long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Gets the telemetry of the compiled code currently installed for the methods of all loaded classes with a given name.
+     */
+    public static MethodCompilationInfo[] getMethodCompilationInfo(String className) {
+        final ArrayList<MethodCompilationInfo> result = new ArrayList<MethodCompilationInfo>();
+        final int largestClassID = ClassIDManager.largestClassId();
+        for (int id = 0; id <= largestClassID; ++id) {
+            final ClassActor ca = ClassIDManager.toClassActor(id);
+            if (ca != null && ca.name().equals(className)) {
+                for (ClassMethodActor cma : ca.localStaticMethodActors()) {
+                    addMethodCompilationInfo(cma, result);
+                }
+                for (ClassMethodActor cma : ca.localVirtualMethodActors()) {
+                    addMethodCompilationInfo(cma, result);
+                }
+            }
+        }
+        return result.toArray(new MethodCompilationInfo[result.size()]);
+    }
+
+    private static void addMethodCompilationInfo(ClassMethodActor cma, List<MethodCompilationInfo> result) {
+        Object compiledState = cma.compiledState;
+        if (compiledState instanceof Compilation) {
+            compiledState = ((Compilation) compiledState).prevCompilations;
+        }
+        final Compilations compilations = (Compilations) compiledState;
+        if (compilations.baseline != null) {
+            result.add(new MethodCompilationInfo(cma, compilations.baseline));
+        }
+        if (compilations.optimized != null) {
+            result.add(new MethodCompilationInfo(cma, compilations.optimized));
+        }
+        if (compilations.baseline == null && compilations.optimized == null && (cma.deoptimizationCount() != 0 || cma.evictionCount() != 0)) {
+            result.add(new MethodCompilationInfo(cma, null));
+        }
+    }
+
+    /**
+     * Gets the compilation telemetry MXBean, creating it if necessary.
+     */
+    public static synchronized CompilationTelemetryMXBean getCompilationTelemetryMXBean() {
+        if (mxBean == null) {
+            mxBean = new CompilationTelemetryMXBeanAdaptor();
+        }
+        return mxBean;
+    }
+
+    /**
+     * Registers the {@linkplain #getCompilationTelemetryMXBean() compilation telemetry MXBean} with the platform MBean server.
+     */
+    public static void registerMXBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(getCompilationTelemetryMXBean(), new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            Log.println("Could not register the compilation telemetry MXBean: " + e);
+        }
+    }
+}
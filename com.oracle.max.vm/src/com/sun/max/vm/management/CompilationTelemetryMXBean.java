@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.vm.management;
+
+import java.lang.management.*;
+
+/**
+ * Management interface for the compilers of Maxine. In addition to the standard {@link CompilationMXBean}
+ * attributes, this exposes the compilation counts and times per tier, the size of the installed code, the number of
+ * deoptimizations and code evictions, and the compiled code of individual methods.
+ * <p>
+ * All times are in milliseconds, except for the per-method compilation times.
+ */
+public interface CompilationTelemetryMXBean extends CompilationMXBean {
+
+    long getBaselineCompilationCount();
+
+    long getBaselineCompilationTime();
+
+    long getOptimizedCompilationCount();
+
+    long getOptimizedCompilationTime();
+
+    /**
+     * Gets the number of bytes of machine code installed by all compilations so far, including code that was evicted since.
+     */
+    long getInstalledCodeSize();
+
+    long getDeoptimizationCount();
+
+    long getEvictionCount();
+
+    /**
+     * Gets the number of compilations waiting in the background compilation queues.
+     */
+    int getCompilationQueueLength();
+
+    /**
+     * Gets the telemetry of the compiled code currently installed for the methods of the loaded classes with a given name.
+     *
+     * @param className a fully qualified class name, e.g. {@code java.lang.String}
+     */
+    MethodCompilationInfo[] getMethodCompilationInfo(String className);
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.vm.management;
+
+import javax.management.*;
+
+import com.sun.max.vm.*;
+import com.sun.max.vm.compiler.*;
+
+/**
+ * Maxine implementation of {@link CompilationTelemetryMXBean}, backed by the counters in {@link CompilationManagement}.
+ */
+public class CompilationTelemetryMXBeanAdaptor implements CompilationTelemetryMXBean {
+
+    public String getName() {
+        return VMProperty.SUN_MANAGEMENT_COMPILER.value();
+    }
+
+    public boolean isCompilationTimeMonitoringSupported() {
+        return true;
+    }
+
+    public long getTotalCompilationTime() {
+        return CompilationManagement.getTotalCompilationTime();
+    }
+
+    public long getBaselineCompilationCount() {
+        return CompilationManagement.getBaselineCompilationCount();
+    }
+
+    public long getBaselineCompilationTime() {
+        return CompilationManagement.getBaselineCompilationTime();
+    }
+
+    public long getOptimizedCompilationCount() {
+        return CompilationManagement.getOptimizedCompilationCount();
+    }
+
+    public long getOptimizedCompilationTime() {
+        return CompilationManagement.getOptimizedCompilationTime();
+    }
+
+    public long getInstalledCodeSize() {
+        return CompilationManagement.getInstalledCodeSize();
+    }
+
+    public long getDeoptimizationCount() {
+        return CompilationManagement.getDeoptimizationCount();
+    }
+
+    public long getEvictionCount() {
+        return CompilationManagement.getEvictionCount();
+    }
+
+    public int getCompilationQueueLength() {
+        return CompilationThreadPool.queueLength();
+    }
+
+    public MethodCompilationInfo[] getMethodCompilationInfo(String className) {
+        return CompilationManagement.getMethodCompilationInfo(className);
+    }
+
+    public ObjectName getObjectName() {
+        try {
+            return new ObjectName(CompilationManagement.OBJECT_NAME);
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
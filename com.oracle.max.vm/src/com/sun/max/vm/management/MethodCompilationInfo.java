@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.vm.management;
+
+import java.beans.*;
+
+import com.sun.max.vm.actor.member.*;
+import com.sun.max.vm.compiler.target.*;
+
+/**
+ * Compilation telemetry of a method, as exposed by the {@link CompilationTelemetryMXBean}.
+ */
+public class MethodCompilationInfo {
+
+    private final String method;
+    private final String tier;
+    private final long compilationTime;
+    private final int codeSize;
+    private final int deoptimizationCount;
+    private final int evictionCount;
+
+    @ConstructorProperties({"method", "tier", "compilationTime", "codeSize", "deoptimizationCount", "evictionCount"})
+    public MethodCompilationInfo(String method, String tier, long compilationTime, int codeSize, int deoptimizationCount, int evictionCount) {
+        this.method = method;
+        this.tier = tier;
+        this.compilationTime = compilationTime;
+        this.codeSize = codeSize;
+        this.deoptimizationCount = deoptimizationCount;
+        this.evictionCount = evictionCount;
+    }
+
+    /**
+     * Creates the telemetry of a given target method of a method, or of the method alone if {@code tm == null}.
+     */
+    MethodCompilationInfo(ClassMethodActor cma, TargetMethod tm) {
+        this(cma.format("%H.%n(%p)"), tm == null ? "none" : tm.isBaseline() ? "baseline" : "optimized",
+             tm == null ? 0 : tm.compilationNanos() / 1000, tm == null ? 0 : tm.codeLength(), cma.deoptimizationCount(), cma.evictionCount());
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * Gets the tier of the code: {@code "baseline"}, {@code "optimized"} or {@code "none"} if the method has no compiled code.
+     */
+    public String getTier() {
+        return tier;
+    }
+
+    /**
+     * Gets the time spent compiling the code, in microseconds.
+     */
+    public long getCompilationTime() {
+        return compilationTime;
+    }
+
+    /**
+     * Gets the size of the machine code, in bytes.
+     */
+    public int getCodeSize() {
+        return codeSize;
+    }
+
+    /**
+     * Gets the number of times compiled code of the method was deoptimized.
+     */
+    public int getDeoptimizationCount() {
+        return deoptimizationCount;
+    }
+
+    /**
+     * Gets the number of times compiled code of the method was evicted from the code cache.
+     */
+    public int getEvictionCount() {
+        return evictionCount;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.vm.management;
+
+import java.beans.*;
+
+import com.sun.max.vm.compiler.target.*;
+import com.sun.max.vm.runtime.*;
+
+/**
+ * Time-to-safepoint statistics of one VM operation, as exposed by the {@link SafepointStatisticsMXBean}.
+ */
+public class SafepointInfo {
+
+    private final String operation;
+    private final String mode;
+    private final long timestamp;
+    private final int threadCount;
+    private final long syncTime;
+    private final long operationTime;
+    private final long spinIterations;
+    private final long sleepIterations;
+    private final String slowestThread;
+    private final long slowestThreadSyncTime;
+    private final String slowestThreadFrame;
+
+    @ConstructorProperties({"operation", "mode", "timestamp", "threadCount", "syncTime", "operationTime", "spinIterations", "sleepIterations",
+                            "slowestThread", "slowestThreadSyncTime", "slowestThreadFrame"})
+    public SafepointInfo(String operation, String mode, long timestamp, int threadCount, long syncTime, long operationTime, long spinIterations,
+                         long sleepIterations, String slowestThread, long slowestThreadSyncTime, String slowestThreadFrame) {
+        this.operation = operation;
+        this.mode = mode;
+        this.timestamp = timestamp;
+        this.threadCount = threadCount;
+        this.syncTime = syncTime;
+        this.operationTime = operationTime;
+        this.spinIterations = spinIterations;
+        this.sleepIterations = sleepIterations;
+        this.slowestThread = slowestThread;
+        this.slowestThreadSyncTime = slowestThreadSyncTime;
+        this.slowestThreadFrame = slowestThreadFrame;
+    }
+
+    SafepointInfo(SafepointStatistics.Record record) {
+        this(record.operation(), record.mode().name(), record.timestamp(), record.threads(), record.syncNanos() / 1000, record.operationNanos() / 1000,
+             record.spins(), record.sleeps(), record.straggler() == null ? null : record.straggler().getName(), record.stragglerNanos() / 1000,
+             frame(record));
+    }
+
+    private static String frame(SafepointStatistics.Record record) {
+        final TargetMethod tm = record.stragglerMethod();
+        final String location = record.stragglerInNative() ? "native code from " : "safepoint in ";
+        if (tm == null) {
+            return record.straggler() == null ? null : location + "<unknown>";
+        }
+        return location + (tm.classMethodActor == null ? tm.toString() : tm.classMethodActor.format("%H.%n(%p)"));
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * Gets the {@linkplain com.sun.max.vm.runtime.VmOperation.Mode mode} of the operation.
+     */
+    public String getMode() {
+        return mode;
+    }
+
+    /**
+     * Gets the time at which the operation completed, in milliseconds since the epoch.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Gets the number of threads frozen by the operation.
+     */
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * Gets the time taken to bring the threads to a safepoint, in microseconds.
+     */
+    public long getSyncTime() {
+        return syncTime;
+    }
+
+    /**
+     * Gets the time taken by the operation once its threads were frozen, in microseconds.
+     */
+    public long getOperationTime() {
+        return operationTime;
+    }
+
+    public long getSpinIterations() {
+        return spinIterations;
+    }
+
+    public long getSleepIterations() {
+        return sleepIterations;
+    }
+
+    /**
+     * Gets the name of the thread that took the longest to freeze.
+     */
+    public String getSlowestThread() {
+        return slowestThread;
+    }
+
+    /**
+     * Gets the time spent waiting for the {@linkplain #getSlowestThread() slowest thread}, in microseconds.
+     */
+    public long getSlowestThreadSyncTime() {
+        return slowestThreadSyncTime;
+    }
+
+    /**
+     * Gets the last known Java frame of the {@linkplain #getSlowestThread() slowest thread} when it froze.
+     */
+    public String getSlowestThreadFrame() {
+        return slowestThreadFrame;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.vm.management;
+
+/**
+ * Management interface for the time-to-safepoint statistics of the VM operations, as recorded by
+ * {@link com.sun.max.vm.runtime.SafepointStatistics}.
+ * <p>
+ * Aggregate times are in milliseconds; the times of individual operations are in microseconds.
+ */
+public interface SafepointStatisticsMXBean {
+
+    /**
+     * Gets the number of VM operations that froze threads since the VM started.
+     */
+    long getSafepointCount();
+
+    /**
+     * Gets the total time spent bringing threads to safepoints.
+     */
+    long getTotalSyncTime();
+
+    /**
+     * Gets the longest time spent bringing the threads of a single VM operation to a safepoint, in microseconds.
+     */
+    long getMaxSyncTime();
+
+    /**
+     * Gets the total time spent in VM operations once their threads were frozen.
+     */
+    long getTotalOperationTime();
+
+    /**
+     * Gets the statistics of the most recent VM operations, from the oldest to the most recent.
+     */
+    SafepointInfo[] getRecentSafepoints();
+}
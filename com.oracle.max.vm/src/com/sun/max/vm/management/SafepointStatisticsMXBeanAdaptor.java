@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.vm.management;
+
+import java.lang.management.*;
+
+import javax.management.*;
+
+import com.sun.max.vm.*;
+import com.sun.max.vm.runtime.*;
+
+/**
+ * Maxine implementation of {@link SafepointStatisticsMXBean}, backed by {@link SafepointStatistics}.
+ */
+public class SafepointStatisticsMXBeanAdaptor implements SafepointStatisticsMXBean {
+
+    /**
+     * The name under which the {@link SafepointStatisticsMXBean} is registered with the platform MBean server.
+     */
+    public static final String OBJECT_NAME = "com.sun.max.vm:type=Safepoint";
+
+    public long getSafepointCount() {
+        return SafepointStatistics.count();
+    }
+
+    public long getTotalSyncTime() {
+        return SafepointStatistics.totalSyncNanos() / 1000000;
+    }
+
+    public long getMaxSyncTime() {
+        return SafepointStatistics.maxSyncNanos() / 1000;
+    }
+
+    public long getTotalOperationTime() {
+        return SafepointStatistics.totalOperationNanos() / 1000000;
+    }
+
+    public SafepointInfo[] getRecentSafepoints() {
+        final SafepointStatistics.Record[] records = SafepointStatistics.recentRecords();
+        final SafepointInfo[] result = new SafepointInfo[records.length];
+        for (int i = 0; i < records.length; i++) {
+            result[i] = new SafepointInfo(records[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Registers a {@link SafepointStatisticsMXBean} with the platform MBean server.
+     */
+    public static void registerMXBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new SafepointStatisticsMXBeanAdaptor(), new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            Log.println("Could not register the safepoint statistics MXBean: " + e);
+        }
+    }
+}
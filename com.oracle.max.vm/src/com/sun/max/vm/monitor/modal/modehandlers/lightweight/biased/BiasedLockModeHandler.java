@@ -20,6 +20,7 @@
  */
 package com.sun.max.vm.monitor.modal.modehandlers.lightweight.biased;
 
+import com.sun.max.annotate.*;
 import com.sun.max.unsafe.*;
 import com.sun.max.vm.*;
 import com.sun.max.vm.actor.holder.*;
@@ -100,11 +101,12 @@ public abstract class BiasedLockModeHandler extends AbstractModeHandler implemen
         final Object object;
         ModalLockword64 newLockword;
         RevokeBiasOperation(VmThread thread, Object object) {
-            super("RevokeBias", thread, Mode.Safepoint, false);
+            super("RevokeBias", thread, Mode.Handshake, false);
             this.object = object;
         }
         @Override
-        protected void doIt() {
+        protected void doThread(VmThread vmThread, Pointer ip, Pointer sp, Pointer fp) {
+            // The bias owner is stopped at a safepoint or in native code, so it cannot be updating the lockword
             newLockword = revokeBias(object);
         }
     }
@@ -370,16 +372,12 @@ public abstract class BiasedLockModeHandler extends AbstractModeHandler implemen
                 final BiasedLockEpoch64 classEpoch = ObjectAccess.readHub(object).biasedLockEpoch;
                 if (classEpoch.isBulkRevocation()) {
                     // Objects of this class are no longer eligible for biased locking
-                    if (biasedLockword.equals(biasedLockword.asAnonBiased())) {
-                        // Object is not biased or locked, change the lockword to the next locking mode
-                        final ModalLockword64 newLockword = delegate().prepareModalLockword(object, currentLockword);
-                        currentLockword = ModalLockword64.from(ObjectAccess.compareAndSwapMisc(object, biasedLockword, newLockword));
-                        if (!currentLockword.equals(biasedLockword)) {
-                            delegate().cancelPreparedModalLockword(newLockword);
-                        }
+                    if (biasedLockword.countUnderflow()) {
+                        // Object is not locked, and its bias (if any) is stale: change the lockword to the next locking mode
+                        currentLockword = revokeStaleBias(object, biasedLockword);
                         if (Monitor.TraceMonitors) {
                             final boolean lockDisabledSafepoints = Log.lock();
-                            Log.print("New object bulk revocation: ");
+                            Log.print("Bulk revoked object: ");
                             Log.println(object.getClass().getName());
                             Log.unlock(lockDisabledSafepoints);
                         }
@@ -397,8 +395,8 @@ public abstract class BiasedLockModeHandler extends AbstractModeHandler implemen
                     // We lock as normal. When the lock is released, the object will be rebiased.
                     ObjectAccess.writeMisc(object, biasedLockword.incrementCount());
                     return;
-                } else if (biasedLockword.equals(biasedLockword.asAnonBiased()) || !biasedLockword.getEpoch().equals(classEpoch)) {
-                    // Object is not biased or it's bias is not in the current epoch. Try to get the bias.
+                } else if (biasedLockword.equals(biasedLockword.asAnonBiased()) || isStaleAndUnlocked(biasedLockword, classEpoch)) {
+                    // Object is not biased or its bias is not in the current epoch. Try to get the bias.
                     final BiasedLockword64 newBiasedLockword = biasedLockword.asBiasedAndLockedOnceBy(lockwordThreadID, classEpoch);
                     currentLockword = ModalLockword64.from(ObjectAccess.compareAndSwapMisc(object, biasedLockword, newBiasedLockword));
                     if (currentLockword.equals(biasedLockword)) {
@@ -448,27 +446,52 @@ public abstract class BiasedLockModeHandler extends AbstractModeHandler implemen
                         return newHashcode;
                     }
                 }
-                if (biasedLockword.equals(biasedLockword.asAnonBiased()) || !biasedLockword.getEpoch().equals(classEpoch)) {
+                if (biasedLockword.equals(biasedLockword.asAnonBiased()) || isStaleAndUnlocked(biasedLockword, classEpoch)) {
                     lockword = ModalLockword64.from(ObjectAccess.compareAndSwapMisc(object, biasedLockword, biasedLockword.setHashcode(newHashcode)));
                     if (lockword.equals(biasedLockword)) {
                         return newHashcode;
                     }
                 } else {
                     // We have to revoke to set the hashcode...
-                    final int vmThreadMapThreadID = decodeLockwordThreadID(biasedLockword.getBiasOwnerID());
-                    lockword = revokeWithOwnerSafepointed(object, vmThreadMapThreadID, biasedLockword);
                     if (Monitor.TraceMonitors) {
                         final boolean lockDisabledSafepoints = Log.lock();
-                        Log.print("Safepointed revoke for hashcode: ");
+                        Log.print("Revoke for hashcode: ");
                         Log.println(object.getClass().getName());
                         Log.unlock(lockDisabledSafepoints);
                     }
+                    lockword = performRevocation(object, biasedLockword);
                 }
             }
             // Not a biased lock; delegate.
             return delegate().delegateMakeHashcode(object, lockword);
         }
 
+        /**
+         * Determines if a biased lock word is neither locked nor biased in the current epoch of the object's class. The
+         * bias owner cannot take the fast path on such a lock word, so any thread may update it with a CAS and without
+         * safepointing the owner. A lock word that is still locked must not be updated this way, as the owner updates
+         * the recursion count with plain stores.
+         */
+        @INLINE
+        private boolean isStaleAndUnlocked(BiasedLockword64 biasedLockword, BiasedLockEpoch64 classEpoch) {
+            return !biasedLockword.getEpoch().equals(classEpoch) && biasedLockword.countUnderflow();
+        }
+
+        /**
+         * Revokes the bias of an object whose class was bulk revoked, provided the object is not locked.
+         *
+         * @return the lock word of the object after the attempt
+         */
+        private ModalLockword64 revokeStaleBias(Object object, BiasedLockword64 biasedLockword) {
+            final ModalLockword64 newLockword = delegate().prepareModalLockword(object, biasedLockword);
+            final ModalLockword64 currentLockword = ModalLockword64.from(ObjectAccess.compareAndSwapMisc(object, biasedLockword, newLockword));
+            if (!currentLockword.equals(biasedLockword)) {
+                delegate().cancelPreparedModalLockword(newLockword);
+                return currentLockword;
+            }
+            return newLockword;
+        }
+
         private BiasedLockRevocationHeuristics getHeuristics(Object object) {
             final Hub hub = ObjectAccess.readHub(object);
             BiasedLockRevocationHeuristics revocationHeuristics = hub.biasedLockRevocationHeuristics();
@@ -554,7 +577,14 @@ public abstract class BiasedLockModeHandler extends AbstractModeHandler implemen
                 final Hub hub = ObjectAccess.readHub(object);
                 final BiasedLockEpoch64 epoch = hub.biasedLockEpoch;
                 hub.biasedLockEpoch = epoch.increment();
-                postRebiasLockword = revokeBias(object);
+                // All biases of objects of the class are now stale. Those of unlocked objects are taken over by the
+                // next thread locking them, without revocation. Locked objects keep their bias until they are released.
+                final ModalLockword64 lockword = ModalLockword64.from(ObjectAccess.readMisc(object));
+                if (BiasedLockword64.isBiasedLockword(lockword) && BiasedLockword64.from(lockword).countUnderflow()) {
+                    postRebiasLockword = lockword;
+                } else {
+                    postRebiasLockword = revokeBias(object);
+                }
             }
         }
 
@@ -23,18 +23,33 @@
 package com.sun.max.vm.monitor.modal.modehandlers.lightweight.biased;
 
 import com.sun.max.atomic.*;
+import com.sun.max.vm.*;
 
 /**
+ * Per-class heuristics deciding how to revoke the bias of a contended object. Objects of a class whose biases are
+ * revoked often are first bulk rebiased by incrementing the {@linkplain BiasedLockEpoch64 epoch} of the class, which
+ * invalidates all biases of its objects at once. If revocations continue, biased locking is disabled for the class by
+ * a bulk revocation.
  */
 public class BiasedLockRevocationHeuristics {
 
     enum RevocationType {SINGLE_OBJECT_REVOCATION, BULK_REBIAS, BULK_REVOCATION}
 
-    private static final int BULK_REBIAS_THRESHOLD = 20;
-    private static final int BULK_REVOCATION_THRESHOLD = 40;
-    private static final int BULK_REBIAS_DECAY_TIME = 25000;
+    private static int BiasedLockingBulkRebiasThreshold = 20;
+    private static int BiasedLockingBulkRevokeThreshold = 40;
+    private static int BiasedLockingDecayTime = 25000;
+
+    static {
+        VMOptions.addFieldOption("-XX:", "BiasedLockingBulkRebiasThreshold", BiasedLockRevocationHeuristics.class,
+            "Number of bias revocations for objects of a class that triggers a bulk rebias of the class.", MaxineVM.Phase.STARTING);
+        VMOptions.addFieldOption("-XX:", "BiasedLockingBulkRevokeThreshold", BiasedLockRevocationHeuristics.class,
+            "Number of bias revocations for objects of a class that disables biased locking for the class.", MaxineVM.Phase.STARTING);
+        VMOptions.addFieldOption("-XX:", "BiasedLockingDecayTime", BiasedLockRevocationHeuristics.class,
+            "Time (in ms) after a bulk rebias of a class after which its revocation count is reset.", MaxineVM.Phase.STARTING);
+    }
 
     private final AtomicInteger revocationCount = new AtomicInteger();
+    private volatile int bulkRebiasCount;
     private long lastBulkRebiasTime = 0;
 
     public RevocationType notifyContentionRevocationRequest() {
@@ -44,30 +59,45 @@ public class BiasedLockRevocationHeuristics {
         int currentRevocationCount = revocationCount.get();
         final long bulkRebiasTime = lastBulkRebiasTime;
         final long currentTime = System.currentTimeMillis();
-        if (currentRevocationCount >= BULK_REBIAS_THRESHOLD &&
-            currentRevocationCount < BULK_REVOCATION_THRESHOLD &&
+        if (currentRevocationCount >= BiasedLockingBulkRebiasThreshold &&
+            currentRevocationCount < BiasedLockingBulkRevokeThreshold &&
             lastBulkRebiasTime != 0 &&
-            currentTime - bulkRebiasTime > BULK_REBIAS_DECAY_TIME) {
+            currentTime - bulkRebiasTime > BiasedLockingDecayTime) {
             currentRevocationCount = 0;
             revocationCount.set(0);
         }
 
-        if (currentRevocationCount <= BULK_REVOCATION_THRESHOLD) {
+        if (currentRevocationCount <= BiasedLockingBulkRevokeThreshold) {
             currentRevocationCount = revocationCountAtomicInc();
         }
 
-        if (currentRevocationCount == BULK_REBIAS_THRESHOLD) {
+        if (currentRevocationCount == BiasedLockingBulkRebiasThreshold) {
             return RevocationType.BULK_REBIAS;
-        } else if (currentRevocationCount == BULK_REVOCATION_THRESHOLD) {
+        } else if (currentRevocationCount == BiasedLockingBulkRevokeThreshold) {
             return RevocationType.BULK_REVOCATION;
         }
         return RevocationType.SINGLE_OBJECT_REVOCATION;
     }
 
     public void notifyBulkRebiasComplete() {
+        bulkRebiasCount++;
         lastBulkRebiasTime = System.currentTimeMillis();
     }
 
+    /**
+     * Gets the number of bias revocations requested for objects of the class since its last bulk rebias decayed.
+     */
+    public int revocationCount() {
+        return revocationCount.get();
+    }
+
+    /**
+     * Gets the number of bulk rebiases performed for the class.
+     */
+    public int bulkRebiasCount() {
+        return bulkRebiasCount;
+    }
+
     private int revocationCountAtomicInc() {
         return revocationCount.getAndAdd(1) + 1;
     }
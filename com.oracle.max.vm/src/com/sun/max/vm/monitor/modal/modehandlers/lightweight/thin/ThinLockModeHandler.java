@@ -41,6 +41,27 @@ public abstract class ThinLockModeHandler extends AbstractModeHandler {
 
     private static final int THIN_LOCK_RETRIES = 20;
 
+    /**
+     * The maximum number of iterations spun between two attempts at acquiring a contended thin lock.
+     */
+    private static final int THIN_LOCK_MAX_SPINS = 1024;
+
+    /**
+     * Spins while the lockword of a given object is unchanged, for at most a given number of iterations.
+     *
+     * @return the last lockword read
+     */
+    private static ModalLockword64 spinWhileUnchanged(Object object, ModalLockword64 lockword, int spins) {
+        for (int i = 0; i < spins; i++) {
+            Intrinsics.pause();
+            final ModalLockword64 current = ModalLockword64.from(ObjectAccess.readMisc(object));
+            if (!current.equals(lockword)) {
+                return current;
+            }
+        }
+        return lockword;
+    }
+
     /**
      * Returns a ThinLockModeHandler with the required interface for fast-path entry from a MonitorScheme.
      */
@@ -138,9 +159,14 @@ public abstract class ThinLockModeHandler extends AbstractModeHandler {
                         return;
                     }
                     // This could be a hashcode, inflation or another thread got the lock.
-                    // Lets try again.
+                    // Lets try again, once the lock has been released if it is held by another thread.
                     newLockword = answer;
                     if (--retries > 0) {
+                        if (ThinLockword64.isThinLockword(answer) && !answer.equals(ThinLockword64.from(answer).asUnlocked())) {
+                            // Back off exponentially between attempts
+                            final int spins = Math.min(1 << (THIN_LOCK_RETRIES - retries), THIN_LOCK_MAX_SPINS);
+                            newLockword = spinWhileUnchanged(object, answer, spins);
+                        }
                         continue;
                     }
                 }
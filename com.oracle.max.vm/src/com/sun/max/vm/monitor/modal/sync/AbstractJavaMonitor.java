@@ -54,6 +54,32 @@ abstract class AbstractJavaMonitor implements ManagedMonitor {
     // Support for direct linked lists of JavaMonitors.
     private ManagedMonitor next;
 
+    private VmThread homeThread;
+
+    /**
+     * The number of iterations a thread spins on this monitor before blocking. It is learned from the outcome of
+     * recent contended acquisitions: doubled when spinning acquires the monitor and halved when it does not.
+     * Races on this field are benign.
+     */
+    private int spinBudget = MIN_SPIN_BUDGET;
+
+    /**
+     * Counts the contended acquisitions that skipped spinning because the {@linkplain #spinBudget spin budget} was exhausted.
+     */
+    private int spinSkips;
+
+    /**
+     * The number of consecutive garbage collections during which this monitor has not been entered.
+     */
+    protected int idleAge;
+
+    private static final int MIN_SPIN_BUDGET = 16;
+
+    /**
+     * Once spinning has stopped paying off for a monitor, it is only tried again on one out of this many contended acquisitions.
+     */
+    private static final int SPIN_PROBE_INTERVAL = 64;
+
     protected AbstractJavaMonitor() {
         bindingProtection = BindingProtection.PRE_ACQUIRE;
     }
@@ -72,6 +98,59 @@ abstract class AbstractJavaMonitor implements ManagedMonitor {
 
     public abstract void allocate();
 
+    /**
+     * Attempts to acquire the underlying lock of this monitor without blocking.
+     *
+     * @return true if the lock was acquired; false otherwise
+     */
+    protected abstract boolean tryAcquire();
+
+    /**
+     * Tries to acquire the underlying lock of this monitor once and, if it is held, spins for at most the
+     * {@linkplain #spinBudget spin budget} of this monitor, trying to acquire the lock whenever it appears to be free.
+     * Only the outcome of spinning adapts the budget, so that uncontended acquisitions do not inflate it.
+     *
+     * @return true if the lock was acquired; false if the caller should block
+     */
+    protected final boolean spinAcquire() {
+        if (tryAcquire()) {
+            return true;
+        }
+        final int spinLimit = JavaMonitorManager.MonitorSpinLimit;
+        if (spinLimit <= 0) {
+            return false;
+        }
+        int budget = spinBudget;
+        if (budget < MIN_SPIN_BUDGET) {
+            // Spinning has recently failed on this monitor: only probe occasionally
+            if (++spinSkips % SPIN_PROBE_INTERVAL != 0) {
+                return false;
+            }
+            budget = MIN_SPIN_BUDGET;
+        }
+        for (int i = 0; i < budget; i++) {
+            Intrinsics.pause();
+            if (ownerThread == null && tryAcquire()) {
+                spinBudget = Math.min(budget << 1, spinLimit);
+                return true;
+            }
+        }
+        spinBudget = budget >> 1;
+        return false;
+    }
+
+    public final VmThread homeThread() {
+        return homeThread;
+    }
+
+    public final void setHomeThread(VmThread thread) {
+        homeThread = thread;
+    }
+
+    public final int incrementIdleAge() {
+        return ++idleAge;
+    }
+
     public final boolean isOwnedBy(VmThread thread) {
         return ownerThread == thread;
     }
@@ -109,6 +188,10 @@ abstract class AbstractJavaMonitor implements ManagedMonitor {
         preGCLockword = Word.zero();
         preGCMiscword = Word.zero();
         bindingProtection = BindingProtection.PRE_ACQUIRE;
+        homeThread = null;
+        spinBudget = MIN_SPIN_BUDGET;
+        spinSkips = 0;
+        idleAge = 0;
     }
 
     public final void setBoundObject(Object object) {
@@ -181,6 +264,36 @@ abstract class AbstractJavaMonitor implements ManagedMonitor {
         this.next = next;
     }
 
+    /**
+     * Gets the next monitor in a list of monitors. Unlike an interface call to {@link #next()}, this accessor is
+     * always inlined, so that the lock-free and GC-updated monitor lists of {@link JavaMonitorManager} can be
+     * traversed without a safepoint poll.
+     */
+    @INLINE
+    static ManagedMonitor nextOf(ManagedMonitor monitor) {
+        return ((AbstractJavaMonitor) monitor).next;
+    }
+
+    /**
+     * Sets the next monitor in a list of monitors without a safepoint poll.
+     *
+     * @see #nextOf(ManagedMonitor)
+     */
+    @INLINE
+    static void setNextOf(ManagedMonitor monitor, ManagedMonitor next) {
+        ((AbstractJavaMonitor) monitor).next = next;
+    }
+
+    /**
+     * Sets the home thread of a monitor without a safepoint poll.
+     *
+     * @see #nextOf(ManagedMonitor)
+     */
+    @INLINE
+    static void setHomeThreadOf(ManagedMonitor monitor, VmThread thread) {
+        ((AbstractJavaMonitor) monitor).homeThread = thread;
+    }
+
     public void log() {
         Log.print(ObjectAccess.readClassActor(this).name.string);
         Log.print(" boundTo=");
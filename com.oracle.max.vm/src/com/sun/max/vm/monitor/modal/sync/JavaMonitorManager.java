@@ -23,6 +23,7 @@ package com.sun.max.vm.monitor.modal.sync;
 import static com.sun.max.vm.intrinsics.MaxineIntrinsicIDs.*;
 
 import java.util.*;
+import java.util.concurrent.atomic.*;
 
 import com.sun.max.annotate.*;
 import com.sun.max.platform.*;
@@ -33,6 +34,7 @@ import com.sun.max.vm.monitor.*;
 import com.sun.max.vm.monitor.modal.sync.JavaMonitorManager.ManagedMonitor.*;
 import com.sun.max.vm.monitor.modal.sync.nat.*;
 import com.sun.max.vm.object.*;
+import com.sun.max.vm.reference.*;
 import com.sun.max.vm.runtime.*;
 import com.sun.max.vm.thread.*;
 
@@ -41,9 +43,13 @@ import com.sun.max.vm.thread.*;
  * <p>
  * Binding can be performed at bootstrapping or runtime. If binding is performed while bootstrapping then either a default
  * or specialized monitor can be used. If binding is performed at runtime then an unbound monitor is taken from
- * a free list.
+ * the {@linkplain MonitorCache monitor cache} of the current thread. The caches are refilled in batches from a global,
+ * lock-free list of unbound monitors. Only refilling a cache from a nearly empty global list synchronizes, in order to
+ * trigger a GC or to expand the pool of monitors.
  * <p>
- * Unbinding is performed at global safepoints. All unowned, unbindable, bound monitors are unbound. Writing of unbound
+ * Unbinding is performed at global safepoints. All unowned, unbindable, bound monitors that have not been entered during
+ * the last {@link #MonitorDeflationAge} garbage collections are unbound, and returned to the cache of the thread that
+ * bound them if that thread is still alive. Writing of unbound
  * lockwords is delegated to an {@link UnboundMiscWordWriter} object (most likely the inflated mode handler of the ModalMonitorScheme).
  * This allows unbinding to be a transition to any other locking mode.
  * <p>
@@ -82,9 +88,9 @@ public class JavaMonitorManager {
     private static int unboundListGrowQty = 50;
 
     /**
-     * The current number of unbound monitors available.
+     * The current number of monitors on the global {@linkplain #unboundList unbound list}.
      */
-    private static int numberOfUnboundMonitors = 0;
+    private static final AtomicInteger numberOfUnboundMonitors = new AtomicInteger();
 
     /**
      * The unbound monitors high water mark.
@@ -94,9 +100,41 @@ public class JavaMonitorManager {
     private static int unboundMonitorsHwm;
 
     /**
-     * The head of the list of unbound monitors.
+     * The head of the global list of unbound monitors.
+     * <p>
+     * Monitors are popped from this list without locking. A pop is immune to the ABA problem because a monitor that
+     * has been popped is only pushed back at a global safepoint, and no safepoint can occur while a pop is in progress.
+     * This relies on the pop being free of safepoint polls, which is why the list is updated with
+     * {@link #compareAndSwapUnboundList} and traversed with the {@linkplain AbstractJavaMonitor#nextOf inlined
+     * accessors} of {@link AbstractJavaMonitor} rather than through calls. Mutator threads only push newly created
+     * monitors.
      */
-    private static ManagedMonitor unboundList;
+    private static volatile ManagedMonitor unboundList;
+
+    @FOLD
+    private static Object staticTuple() {
+        return ClassActor.fromJava(JavaMonitorManager.class).staticTuple();
+    }
+
+    @FOLD
+    private static int unboundListOffset() {
+        return ClassActor.fromJava(JavaMonitorManager.class).findLocalStaticFieldActor("unboundList").offset();
+    }
+
+    @INLINE
+    private static boolean compareAndSwapUnboundList(ManagedMonitor expectedValue, ManagedMonitor newValue) {
+        if (MaxineVM.isHosted()) {
+            synchronized (JavaMonitorManager.class) {
+                if (unboundList == expectedValue) {
+                    unboundList = newValue;
+                    return true;
+                }
+                return false;
+            }
+        }
+        final Reference expectedReference = Reference.fromJava(expectedValue);
+        return Reference.fromJava(staticTuple()).compareAndSwapReference(unboundListOffset(), expectedReference, Reference.fromJava(newValue)) == expectedReference;
+    }
 
     /**
      * The pool of monitors that can be bound to objects.
@@ -113,6 +151,57 @@ public class JavaMonitorManager {
 
     private static boolean inGlobalSafepoint = false;
 
+    /**
+     * Incremented at each global safepoint at which monitors are unbound, and used to detect
+     * {@linkplain MonitorCache monitor caches} whose thread has terminated.
+     */
+    private static int gcEpoch;
+
+    /**
+     * The number of times a {@linkplain MonitorCache monitor cache} has been refilled from the global list.
+     */
+    private static final AtomicLong numberOfCacheRefills = new AtomicLong();
+
+    /**
+     * The number of monitors held by the caches of live threads, as of the last global safepoint.
+     */
+    private static int numberOfCachedMonitors;
+
+    /**
+     * The number of bound monitors, excluding sticky monitors, as of the last global safepoint.
+     */
+    private static int numberOfBoundMonitors;
+
+    /**
+     * The maximum number of monitors that a thread caches.
+     */
+    static int MonitorCacheSize = 16;
+
+    static boolean TraceMonitorPool;
+
+    /**
+     * The maximum number of iterations a thread spins on a contended inflated monitor before blocking on its mutex.
+     * Spinning is disabled on a uniprocessor.
+     */
+    static int MonitorSpinLimit = 2000;
+
+    /**
+     * The number of consecutive garbage collections during which an unowned inflated monitor must not have been entered
+     * before it is deflated.
+     */
+    static int MonitorDeflationAge = 2;
+
+    static {
+        VMOptions.addFieldOption("-XX:", "MonitorSpinLimit", JavaMonitorManager.class,
+            "Maximum number of iterations to spin on a contended inflated monitor before blocking (0 disables spinning).", MaxineVM.Phase.STARTING);
+        VMOptions.addFieldOption("-XX:", "MonitorDeflationAge", JavaMonitorManager.class,
+            "Number of garbage collections during which an unowned inflated monitor must stay idle before it is deflated.", MaxineVM.Phase.STARTING);
+        VMOptions.addFieldOption("-XX:", "MonitorCacheSize", JavaMonitorManager.class,
+            "Maximum number of unbound monitors cached per thread.", MaxineVM.Phase.STARTING);
+        VMOptions.addFieldOption("-XX:", "TraceMonitorPool", JavaMonitorManager.class,
+            "Trace the occupancy of the monitor pool after monitors are unbound at a garbage collection.", MaxineVM.Phase.STARTING);
+    }
+
     /**
      * Lockword rewriting for objects in the process of being unbound is delegated to an UnboundMiscWordWriter.
      * This allows unbinding to transition a lock from 'inflated' to any other mode.
@@ -182,6 +271,13 @@ public class JavaMonitorManager {
             }
         } else if (phase == MaxineVM.Phase.STARTING) {
             assert numberOfBindableMonitors <= bindableMonitors.length;
+            if (MonitorCacheSize < 1) {
+                MonitorCacheSize = 1;
+            }
+            if (Runtime.getRuntime().availableProcessors() == 1) {
+                // The owner of a contended monitor cannot make progress while another thread spins
+                MonitorSpinLimit = 0;
+            }
             if (Monitor.TraceMonitors && stickyMonitors.length > 0) {
                 final boolean lockDisabledSafepoints = Log.lock();
                 Log.println("Sticky monitors:");
@@ -303,20 +399,107 @@ public class JavaMonitorManager {
         bindableMonitors[numberOfBindableMonitors++] = monitor;
     }
 
+    /**
+     * Pops at most {@code max} monitors from the global list of unbound monitors.
+     *
+     * @return the first of the popped monitors, linked in a {@code null} terminated list, or {@code null} if the global
+     *         list is empty
+     */
+    @NO_SAFEPOINT_POLLS("a popped monitor must not be pushed back by a GC until the pop completes")
+    private static ManagedMonitor takeFromUnboundList(int max) {
+        while (true) {
+            final ManagedMonitor first = unboundList;
+            if (first == null) {
+                return null;
+            }
+            ManagedMonitor last = first;
+            int n = 1;
+            while (n < max && AbstractJavaMonitor.nextOf(last) != null) {
+                last = AbstractJavaMonitor.nextOf(last);
+                n++;
+            }
+            if (compareAndSwapUnboundList(first, AbstractJavaMonitor.nextOf(last))) {
+                AbstractJavaMonitor.setNextOf(last, null);
+                numberOfUnboundMonitors.addAndGet(-n);
+                return first;
+            }
+        }
+    }
+
     private static ManagedMonitor takeFromUnboundList() {
-        // No safe points in here, so safe to touch the free list.
-        final ManagedMonitor monitor = unboundList;
-        unboundList = unboundList.next();
-        monitor.setNext(null);
-        numberOfUnboundMonitors--;
-        return monitor;
+        return takeFromUnboundList(1);
+    }
+
+    /**
+     * Pushes a list of monitors on the global list of unbound monitors. This must only be done with monitors that have
+     * never been on the list, or at a global safepoint.
+     */
+    private static void addToUnboundList(ManagedMonitor first, ManagedMonitor last, int n) {
+        ManagedMonitor head;
+        do {
+            head = unboundList;
+            AbstractJavaMonitor.setNextOf(last, head);
+        } while (!compareAndSwapUnboundList(head, first));
+        numberOfUnboundMonitors.addAndGet(n);
     }
 
     private static void addToUnboundList(ManagedMonitor monitor) {
-        // No safe points in here, so safe to touch the free list.
-        monitor.setNext(unboundList);
-        unboundList = monitor;
-        numberOfUnboundMonitors++;
+        addToUnboundList(monitor, monitor, 1);
+    }
+
+    /**
+     * A per-thread cache of unbound monitors, from which a thread binds monitors without synchronization.
+     * Monitors bound by a thread are returned to its cache when they are unbound at a global safepoint. The
+     * monitors cached by a terminated thread are returned to the global list at the next global safepoint.
+     */
+    public static final class MonitorCache {
+        // Caches are updated by the GC at global safepoints, so the methods updating a cache on behalf of its
+        // thread must not poll for safepoints. They access monitors through the inlined accessors of AbstractJavaMonitor.
+
+        ManagedMonitor head;
+        int size;
+
+        /**
+         * The {@linkplain JavaMonitorManager#gcEpoch epoch} at which the thread owning this cache was last seen alive.
+         */
+        int epoch;
+
+        /**
+         * Gets the number of monitors in this cache.
+         */
+        public int size() {
+            return size;
+        }
+
+        @NO_SAFEPOINT_POLLS("monitor caches are updated by the GC")
+        ManagedMonitor take() {
+            final ManagedMonitor monitor = head;
+            if (monitor != null) {
+                head = AbstractJavaMonitor.nextOf(monitor);
+                AbstractJavaMonitor.setNextOf(monitor, null);
+                size--;
+            }
+            return monitor;
+        }
+
+        /**
+         * Adds a list of monitors to this cache.
+         *
+         * @param first the first monitor of a {@code null} terminated list
+         * @param owner the thread owning this cache
+         */
+        @NO_SAFEPOINT_POLLS("monitor caches are updated by the GC")
+        void add(ManagedMonitor first, VmThread owner) {
+            ManagedMonitor monitor = first;
+            while (monitor != null) {
+                final ManagedMonitor next = AbstractJavaMonitor.nextOf(monitor);
+                AbstractJavaMonitor.setHomeThreadOf(monitor, owner);
+                AbstractJavaMonitor.setNextOf(monitor, head);
+                head = monitor;
+                size++;
+                monitor = next;
+            }
+        }
     }
 
     /**
@@ -341,16 +524,10 @@ public class JavaMonitorManager {
         if (inGlobalSafepoint) {
             monitor = takeFromUnboundList();
         } else {
-            synchronized (LOCK) {
-                if (numberOfUnboundMonitors < UNBOUNDLIST_MIN_QTY) {
-                    System.gc();
-                }
-
-                // If we didn't free up enough such that we are at least midway between min and hwm, expand
-                if (numberOfUnboundMonitors < (unboundMonitorsHwm + UNBOUNDLIST_MIN_QTY) >> 1) {
-                    expandUnboundList();
-                }
-                monitor = takeFromUnboundList();
+            final VmThread currentThread = VmThread.current();
+            monitor = currentThread.monitorCache.take();
+            if (monitor == null) {
+                monitor = refillMonitorCache(currentThread);
             }
         }
         monitor.setBoundObject(object);
@@ -364,6 +541,45 @@ public class JavaMonitorManager {
         return monitor;
     }
 
+    /**
+     * Refills the monitor cache of a given thread with a batch of monitors from the global list, and takes a monitor
+     * from it. If the global list is nearly empty, a GC is triggered and the pool of monitors is expanded as needed.
+     *
+     * @param thread the current thread
+     */
+    private static ManagedMonitor refillMonitorCache(VmThread thread) {
+        final MonitorCache cache = thread.monitorCache;
+        final int batch = (MonitorCacheSize + 1) >> 1;
+        while (true) {
+            ManagedMonitor monitors;
+            if (numberOfUnboundMonitors.get() < UNBOUNDLIST_MIN_QTY + batch) {
+                synchronized (LOCK) {
+                    if (numberOfUnboundMonitors.get() < UNBOUNDLIST_MIN_QTY) {
+                        System.gc();
+                        // The GC may have returned unbound monitors to this cache
+                        final ManagedMonitor monitor = cache.take();
+                        if (monitor != null) {
+                            return monitor;
+                        }
+                    }
+
+                    // If we didn't free up enough such that we are at least midway between min and hwm, expand
+                    if (numberOfUnboundMonitors.get() < (unboundMonitorsHwm + UNBOUNDLIST_MIN_QTY) >> 1) {
+                        expandUnboundList();
+                    }
+                    monitors = takeFromUnboundList(batch);
+                }
+            } else {
+                monitors = takeFromUnboundList(batch);
+            }
+            if (monitors != null) {
+                numberOfCacheRefills.incrementAndGet();
+                cache.add(monitors, thread);
+                return cache.take();
+            }
+        }
+    }
+
     /**
      * Places the given monitor back into the free list.
      * <p>
@@ -379,9 +595,9 @@ public class JavaMonitorManager {
         if (inGlobalSafepoint) {
             addToUnboundList(bindableMonitor);
         } else {
-            synchronized (LOCK) {
-                addToUnboundList(bindableMonitor);
-            }
+            // The monitor may have come from the global list, so it must not be pushed back on it
+            final VmThread currentThread = VmThread.current();
+            currentThread.monitorCache.add(bindableMonitor, currentThread);
         }
     }
 
@@ -425,15 +641,14 @@ public class JavaMonitorManager {
         }
         bindableMonitors = newAllBindable;
         unboundMonitorsHwm = newAllBindable.length;
-        ManagedMonitor monitor = newUnboundList;
-        while (monitor != null) {
-            newUnboundList = monitor.next();
-            addToUnboundList(monitor);
+        ManagedMonitor last = null;
+        for (ManagedMonitor monitor = newUnboundList; monitor != null; monitor = monitor.next()) {
             addToAllBindable(monitor);
-            monitor = newUnboundList;
+            last = monitor;
         }
         FatalError.check(bindableMonitors.length >= numberOfBindableMonitors, "corrupted bindableMonitors array");
         SafepointPoll.enable();
+        addToUnboundList(newUnboundList, last, unboundListGrowQty);
         FatalError.check(verifyBindableMonitors() == 0, "corrupted bindableMonitors array");
     }
 
@@ -481,6 +696,8 @@ public class JavaMonitorManager {
     private static class ProtectedMonitorGatherer implements Pointer.Procedure {
         public void run(Pointer tla) {
             VmThread thread = VmThread.fromTLA(tla);
+            thread.monitorCache.epoch = gcEpoch;
+            numberOfCachedMonitors += thread.monitorCache.size;
             final JavaMonitor monitor = thread.protectedMonitor;
             if (monitor != null) {
                 final ManagedMonitor managedMonitor = (ManagedMonitor) monitor;
@@ -497,15 +714,19 @@ public class JavaMonitorManager {
      * Must only be called on a global safepoint.
      */
     private static void unbindUnownedMonitors() {
-        // Mark all protected monitors
+        // Mark all protected monitors and the caches of live threads
+        gcEpoch++;
+        numberOfCachedMonitors = 0;
+        numberOfBoundMonitors = 0;
         VmThreadMap.ACTIVE.forAllThreadLocals(null, protectedMonitorGatherer);
-        // Deflate all non-protected and non-sticky monitors with no owner
+        // Deflate all non-protected and non-sticky monitors with no owner that have been idle long enough.
+        // Monitors that are still in use keep their binding (and their learned spin budget).
         for (int i = 0; i < numberOfBindableMonitors; i++) {
             final ManagedMonitor monitor = bindableMonitors[i];
             if (monitor.isHardBound() && monitor.bindingProtection() == BindingProtection.PRE_ACQUIRE) {
                 monitor.setBindingProtection(BindingProtection.UNPROTECTED);
             }
-            if (monitor.bindingProtection() == BindingProtection.UNPROTECTED) {
+            if (monitor.bindingProtection() == BindingProtection.UNPROTECTED && monitor.incrementIdleAge() >= MonitorDeflationAge) {
                 if (Monitor.TraceMonitors) {
                     final boolean lockDisabledSafepoints = Log.lock();
                     Log.print("Unbinding monitor: ");
@@ -518,15 +739,82 @@ public class JavaMonitorManager {
                 if (Platform.target().arch.is32bit()) {
                     unboundMiscWordWriter.writeUnboundHashWord(monitor.boundObject(), monitor.displacedHash());
                 }
+                final VmThread homeThread = monitor.homeThread();
                 monitor.reset();
-                // Put the monitor back on the unbound list.
-                // This is thread-safe as mutator thread access to the free-list is
-                // atomic with respect to safepointing.
-                addToUnboundList(monitor);
+                // Put the monitor back in the cache it came from, or on the unbound list.
+                // This is thread-safe as mutator thread access to the caches and to the
+                // free-list is atomic with respect to safepointing.
+                if (isLive(homeThread) && homeThread.monitorCache.size < MonitorCacheSize) {
+                    homeThread.monitorCache.add(monitor, homeThread);
+                    numberOfCachedMonitors++;
+                } else {
+                    addToUnboundList(monitor);
+                }
             } else if (monitor.isBound()) {
+                numberOfBoundMonitors++;
                 monitor.preGCPrepare();
+            } else if (monitor.homeThread() != null && !isLive(monitor.homeThread())) {
+                // The monitor is in the cache of a terminated thread
+                monitor.setHomeThread(null);
+                addToUnboundList(monitor);
             }
         }
+        if (TraceMonitorPool) {
+            final boolean lockDisabledSafepoints = Log.lock();
+            Log.print("Monitor pool: total=");
+            Log.print(numberOfBindableMonitors);
+            Log.print(" bound=");
+            Log.print(numberOfBoundMonitors);
+            Log.print(" unbound=");
+            Log.print(numberOfUnboundMonitors.get());
+            Log.print(" cached=");
+            Log.print(numberOfCachedMonitors);
+            Log.print(" refills=");
+            Log.println(numberOfCacheRefills.get());
+            Log.unlock(lockDisabledSafepoints);
+        }
+    }
+
+    /**
+     * Determines if the owner of a monitor cache was alive at the current global safepoint.
+     */
+    private static boolean isLive(VmThread thread) {
+        return thread != null && thread.monitorCache.epoch == gcEpoch;
+    }
+
+    /**
+     * Gets the number of monitors that can be bound to objects at runtime.
+     */
+    public static int numberOfMonitors() {
+        return numberOfBindableMonitors;
+    }
+
+    /**
+     * Gets the number of monitors on the global list of unbound monitors.
+     */
+    public static int numberOfUnboundMonitors() {
+        return numberOfUnboundMonitors.get();
+    }
+
+    /**
+     * Gets the number of monitors held by the caches of live threads, as of the last global safepoint.
+     */
+    public static int numberOfCachedMonitors() {
+        return numberOfCachedMonitors;
+    }
+
+    /**
+     * Gets the number of bound monitors, as of the last global safepoint.
+     */
+    public static int numberOfBoundMonitors() {
+        return numberOfBoundMonitors;
+    }
+
+    /**
+     * Gets the number of times a thread has refilled its monitor cache from the global list.
+     */
+    public static long numberOfCacheRefills() {
+        return numberOfCacheRefills.get();
     }
 
     /**
@@ -642,6 +930,20 @@ public class JavaMonitorManager {
          */
         void reset();
 
+        /**
+         * Gets the thread whose {@linkplain MonitorCache monitor cache} this monitor was last taken from or put in.
+         */
+        VmThread homeThread();
+
+        void setHomeThread(VmThread thread);
+
+        /**
+         * Records that this monitor has been found unowned and unprotected by a garbage collection.
+         *
+         * @return the number of consecutive garbage collections during which this monitor has not been entered
+         */
+        int incrementIdleAge();
+
         /**
          * Perform any pre-GC actions.
          */
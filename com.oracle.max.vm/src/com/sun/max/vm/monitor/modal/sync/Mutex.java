@@ -61,6 +61,13 @@ public abstract class Mutex {
       */
     public abstract boolean unlock();
 
+    /**
+     * Causes the current thread to lock the mutex if it is not locked, without blocking.
+     *
+     * @return true if the mutex was acquired; false otherwise
+     */
+    public abstract boolean tryLock();
+
     /**
      * Return an id suitable for logging purposes.
      */
@@ -76,6 +76,11 @@ public class StandardJavaMonitor extends AbstractJavaMonitor {
         mutex = MutexFactory.create();
     }
 
+    @Override
+    protected boolean tryAcquire() {
+        return mutex.tryLock();
+    }
+
     private static void raiseIllegalMonitorStateException(VmThread owner) {
         if (owner == null) {
             throw new IllegalMonitorStateException();
@@ -95,12 +100,15 @@ public class StandardJavaMonitor extends AbstractJavaMonitor {
             traceEndMonitorEnter(currentThread);
             return;
         }
-        currentThread.setState(Thread.State.BLOCKED);
-        mutex.lock();
-        currentThread.setState(Thread.State.RUNNABLE);
+        if (!spinAcquire()) {
+            currentThread.setState(Thread.State.BLOCKED);
+            mutex.lock();
+            currentThread.setState(Thread.State.RUNNABLE);
+        }
         ownerThread = currentThread;
         setBindingProtection(BindingProtection.PROTECTED);
         recursionCount = 1;
+        idleAge = 0;
         traceEndMonitorEnter(currentThread);
     }
 
@@ -77,7 +77,7 @@ public class MethodInstrumentation {
 
     @INLINE
     public static void recordEntrypoint(MethodProfile mpo, Object receiver) {
-        if (--mpo.entryBackedgeCount <= 0) {
+        if (--mpo.entryBackedgeCount <= 0 || mpo.installationPending) {
             CompilationBroker.instrumentationCounterOverflow(mpo, receiver);
         }
     }
@@ -87,9 +87,14 @@ public class MethodInstrumentation {
         incrementProfileCounterAtIndex(mpo, mpoIndex);
     }
 
+    /**
+     * Decrements the entry and backward branch counter. Without OSR, that is all: the overflow is handled on the next entry to the method.
+     */
     @INLINE
     public static void recordBackwardBranch(MethodProfile mpo) {
-        mpo.entryBackedgeCount--;
+        if (--mpo.entryBackedgeCount <= 0 && OnStackReplacement.enabled) {
+            CompilationBroker.backwardBranchCounterOverflow(mpo);
+        }
     }
 
     @INLINE
@@ -28,6 +28,7 @@ import java.util.*;
 import com.sun.max.annotate.*;
 import com.sun.max.program.*;
 import com.sun.max.vm.actor.holder.ClassIDManager;
+import com.sun.max.vm.compiler.*;
 import com.sun.max.vm.compiler.target.*;
 
 /**
@@ -112,6 +113,25 @@ public class MethodProfile {
      */
     public boolean compilationDisabled;
 
+    /**
+     * Set when an optimized target method of this method is available but calls may still reach {@link #method}.
+     * Only the entry instrumentation reads it (see {@link MethodInstrumentation#recordEntrypoint}), so that the next
+     * invocation of the baseline code patches its caller to the optimized code, whereas the backward branches of baseline
+     * frames that are already running keep counting down towards {@linkplain OnStackReplacement on-stack replacement}.
+     */
+    public boolean installationPending;
+
+    /**
+     * Set when a loop predicate of an optimized target method of this method failed. The optimizing compiler then
+     * neither hoists range checks nor loop invariant code out of the loops of this method.
+     */
+    public boolean loopPredicateFailed;
+
+    /**
+     * The target methods compiled for {@linkplain OnStackReplacement on-stack replacement} of frames of {@link #method}.
+     */
+    public OnStackReplacement.OSREntry osrEntries;
+
     protected MethodProfile() {
     }
 
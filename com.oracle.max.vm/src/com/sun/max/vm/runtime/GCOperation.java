@@ -193,6 +193,7 @@ public abstract class GCOperation extends VmOperation {
         }
 
         collect(invocationCount);
+        AdaptiveTLABRefillPolicy.endAllocationPeriod();
 
         if (Heap.verbose()) {
             final long afterUsed = Heap.reportUsedSpace();
@@ -0,0 +1,348 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.vm.runtime;
+
+import com.sun.max.annotate.*;
+import com.sun.max.vm.*;
+import com.sun.max.vm.code.*;
+import com.sun.max.vm.compiler.target.*;
+import com.sun.max.vm.management.*;
+import com.sun.max.vm.runtime.VmOperation.Mode;
+import com.sun.max.vm.thread.*;
+
+/**
+ * Time-to-safepoint statistics of {@linkplain VmOperation VM operations}. For each operation that freezes threads, the
+ * time taken to freeze them (the <i>sync time</i>) is recorded separately from the time taken by the operation itself,
+ * together with the number of iterations spent spinning and sleeping while waiting for the threads, and the thread that
+ * took the longest to freeze (the <i>straggler</i>) with the method it was frozen in.
+ * <p>
+ * The statistics of the last {@value #CAPACITY} operations are kept in a ring buffer of preallocated records, so that
+ * recording allocates nothing and can always be enabled. They are exposed by the {@link SafepointStatisticsMXBean} and
+ * printed at VM exit by {@code -XX:+PrintSafepointStatistics}. Operations whose sync time exceeds
+ * {@code -XX:SafepointStragglerThreshold} milliseconds are reported as they happen.
+ * <p>
+ * Records are only written by threads holding {@link VmThreadMap#THREAD_LOCK}, i.e. the VM operation thread or a thread
+ * performing a {@linkplain Mode#Handshake handshake}.
+ */
+public final class SafepointStatistics {
+
+    /**
+     * The number of records kept in the ring buffer.
+     */
+    public static final int CAPACITY = 256;
+
+    /**
+     * The time-to-safepoint statistics of one execution of a VM operation.
+     */
+    public static final class Record {
+        String operation;
+        Mode mode;
+        long timestamp;
+        int threads;
+        long syncNanos;
+        long operationNanos;
+        long spins;
+        long sleeps;
+        VmThread straggler;
+        long stragglerNanos;
+        TargetMethod stragglerMethod;
+        boolean stragglerInNative;
+
+        void copyFrom(Record other) {
+            operation = other.operation;
+            mode = other.mode;
+            timestamp = other.timestamp;
+            threads = other.threads;
+            syncNanos = other.syncNanos;
+            operationNanos = other.operationNanos;
+            spins = other.spins;
+            sleeps = other.sleeps;
+            straggler = other.straggler;
+            stragglerNanos = other.stragglerNanos;
+            stragglerMethod = other.stragglerMethod;
+            stragglerInNative = other.stragglerInNative;
+        }
+
+        /**
+         * Gets the {@linkplain VmOperation#name name} of the operation.
+         */
+        public String operation() {
+            return operation;
+        }
+
+        public Mode mode() {
+            return mode;
+        }
+
+        /**
+         * Gets the time at which the operation completed, in milliseconds since the epoch.
+         */
+        public long timestamp() {
+            return timestamp;
+        }
+
+        /**
+         * Gets the number of threads frozen by the operation.
+         */
+        public int threads() {
+            return threads;
+        }
+
+        /**
+         * Gets the time between the submission of the operation and the freezing of its last thread, in nanoseconds.
+         */
+        public long syncNanos() {
+            return syncNanos;
+        }
+
+        /**
+         * Gets the time taken by the operation once its threads were frozen, in nanoseconds.
+         */
+        public long operationNanos() {
+            return operationNanos;
+        }
+
+        /**
+         * Gets the number of iterations spent spinning while waiting for threads to freeze.
+         */
+        public long spins() {
+            return spins;
+        }
+
+        /**
+         * Gets the number of times the waiting thread slept while waiting for threads to freeze.
+         */
+        public long sleeps() {
+            return sleeps;
+        }
+
+        /**
+         * Gets the thread that took the longest to freeze.
+         */
+        public VmThread straggler() {
+            return straggler;
+        }
+
+        /**
+         * Gets the time spent waiting for the {@linkplain #straggler() straggler} to freeze, in nanoseconds.
+         */
+        public long stragglerNanos() {
+            return stragglerNanos;
+        }
+
+        /**
+         * Gets the last method executed by the {@linkplain #straggler() straggler} before it froze, or {@code null} if not known.
+         */
+        public TargetMethod stragglerMethod() {
+            return stragglerMethod;
+        }
+
+        /**
+         * Determines if the {@linkplain #straggler() straggler} was frozen in native code rather than at a safepoint.
+         */
+        public boolean stragglerInNative() {
+            return stragglerInNative;
+        }
+    }
+
+    private static final Record[] records = new Record[CAPACITY];
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            records[i] = new Record();
+        }
+    }
+
+    @RESET
+    private static long count;
+    @RESET
+    private static long totalSyncNanos;
+    @RESET
+    private static long maxSyncNanos;
+    @RESET
+    private static long totalOperationNanos;
+
+    static boolean PrintSafepointStatistics;
+    static int SafepointStragglerThreshold;
+    private static boolean RegisterSafepointMXBean;
+
+    static {
+        VMOptions.addFieldOption("-XX:", "PrintSafepointStatistics", SafepointStatistics.class,
+            "Print the time-to-safepoint statistics of the most recent VM operations at VM exit.");
+        VMOptions.addFieldOption("-XX:", "SafepointStragglerThreshold", SafepointStatistics.class,
+            "Report VM operations that take longer than this many milliseconds to freeze their threads (0 = disabled).");
+        VMOptions.addFieldOption("-XX:", "RegisterSafepointMXBean", SafepointStatistics.class,
+            "Register the safepoint statistics MXBean with the platform MBean server at startup.");
+    }
+
+    private SafepointStatistics() {
+    }
+
+    public static void initialize(MaxineVM.Phase phase) {
+        if (phase == MaxineVM.Phase.RUNNING && RegisterSafepointMXBean) {
+            SafepointStatisticsMXBeanAdaptor.registerMXBean();
+        }
+    }
+
+    /**
+     * Records the time-to-safepoint statistics gathered by an operation. The caller must hold {@link VmThreadMap#THREAD_LOCK}.
+     *
+     * @param operation the operation
+     * @param syncEndNanos the time at which the last thread targeted by the operation was frozen
+     * @param endNanos the time at which the operation completed
+     */
+    static void record(VmOperation operation, long syncEndNanos, long endNanos) {
+        final Record record = records[(int) (count % CAPACITY)];
+        record.operation = operation.name;
+        record.mode = operation.mode;
+        record.timestamp = System.currentTimeMillis();
+        record.threads = operation.frozenThreads;
+        record.syncNanos = syncEndNanos - operation.syncStartNanos;
+        record.operationNanos = endNanos - syncEndNanos;
+        record.spins = operation.syncSpins;
+        record.sleeps = operation.syncSleeps;
+        record.straggler = operation.straggler;
+        record.stragglerNanos = operation.stragglerNanos;
+        record.stragglerInNative = operation.stragglerInNative;
+        record.stragglerMethod = operation.stragglerIp.isZero() ? null : Code.codePointerToTargetMethod(operation.stragglerIp);
+        count++;
+        totalSyncNanos += record.syncNanos;
+        totalOperationNanos += record.operationNanos;
+        if (record.syncNanos > maxSyncNanos) {
+            maxSyncNanos = record.syncNanos;
+        }
+        if (SafepointStragglerThreshold > 0 && record.syncNanos >= SafepointStragglerThreshold * 1000000L) {
+            final boolean lockDisabledSafepoints = Log.lock();
+            Log.print("Slow safepoint: ");
+            print(record);
+            Log.unlock(lockDisabledSafepoints);
+        }
+    }
+
+    /**
+     * Gets the number of VM operations recorded since the VM started.
+     */
+    public static long count() {
+        return count;
+    }
+
+    /**
+     * Gets the total sync time of all recorded VM operations, in nanoseconds.
+     */
+    public static long totalSyncNanos() {
+        return totalSyncNanos;
+    }
+
+    /**
+     * Gets the longest sync time of any recorded VM operation, in nanoseconds.
+     */
+    public static long maxSyncNanos() {
+        return maxSyncNanos;
+    }
+
+    /**
+     * Gets the total time taken by all recorded VM operations once their threads were frozen, in nanoseconds.
+     */
+    public static long totalOperationNanos() {
+        return totalOperationNanos;
+    }
+
+    /**
+     * Gets a copy of the records in the ring buffer, from the oldest to the most recent.
+     */
+    public static Record[] recentRecords() {
+        // Allocate outside of the thread lock: a GC cannot be requested while holding it
+        final Record[] result = new Record[CAPACITY];
+        for (int i = 0; i < CAPACITY; i++) {
+            result[i] = new Record();
+        }
+        final int n;
+        synchronized (VmThreadMap.THREAD_LOCK) {
+            n = (int) Math.min(count, CAPACITY);
+            final long first = count - n;
+            for (int i = 0; i < n; i++) {
+                result[i].copyFrom(records[(int) ((first + i) % CAPACITY)]);
+            }
+        }
+        if (n == CAPACITY) {
+            return result;
+        }
+        final Record[] trimmed = new Record[n];
+        System.arraycopy(result, 0, trimmed, 0, n);
+        return trimmed;
+    }
+
+    private static void print(Record record) {
+        Log.print(record.operation);
+        Log.print(" synced ");
+        Log.print(record.threads);
+        Log.print(" thread(s) in ");
+        Log.print(record.syncNanos / 1000);
+        Log.print(" us (spins=");
+        Log.print(record.spins);
+        Log.print(", sleeps=");
+        Log.print(record.sleeps);
+        Log.print("), ran in ");
+        Log.print(record.operationNanos / 1000);
+        Log.print(" us");
+        if (record.straggler != null) {
+            Log.print(", slowest: ");
+            Log.printThread(record.straggler, false);
+            Log.print(" after ");
+            Log.print(record.stragglerNanos / 1000);
+            Log.print(" us ");
+            Log.print(record.stragglerInNative ? "in native code from " : "at safepoint in ");
+            if (record.stragglerMethod == null) {
+                Log.print("<unknown>");
+            } else {
+                Log.printMethod(record.stragglerMethod, false);
+            }
+        }
+        Log.println();
+    }
+
+    /**
+     * Prints the statistics to the {@linkplain Log log}, if {@code -XX:+PrintSafepointStatistics} is specified.
+     */
+    static void printAtExit() {
+        if (!PrintSafepointStatistics) {
+            return;
+        }
+        final boolean lockDisabledSafepoints = Log.lock();
+        Log.print("Safepoint statistics: operations=");
+        Log.print(count);
+        Log.print(" total sync=");
+        Log.print(totalSyncNanos / 1000);
+        Log.print(" us max sync=");
+        Log.print(maxSyncNanos / 1000);
+        Log.print(" us total operation=");
+        Log.print(totalOperationNanos / 1000);
+        Log.println(" us");
+        final int n = (int) Math.min(count, CAPACITY);
+        for (long i = count - n; i < count; i++) {
+            Log.print("  ");
+            print(records[(int) (i % CAPACITY)]);
+        }
+        Log.unlock(lockDisabledSafepoints);
+    }
+}
@@ -26,6 +26,7 @@ import static com.sun.max.vm.thread.VmThreadLocal.*;
 import java.util.*;
 
 import com.oracle.max.cri.intrinsics.*;
+import com.sun.max.annotate.*;
 import com.sun.max.unsafe.*;
 import com.sun.max.unsafe.Pointer.*;
 import com.sun.max.vm.*;
@@ -204,13 +205,27 @@ public class VmOperation {
          * and that the thread {@linkplain VmOperation#submit() submitting} the operation is
          * not blocked until the operation completes.
          */
-        AsyncSafepoint;
+        AsyncSafepoint,
+
+        /**
+         * Denotes an operation on a single thread that is {@linkplain VmOperation#handshake() performed} without the VM
+         * operation thread. The targeted thread performs the operation itself when it reaches its next safepoint, or the
+         * submitting thread performs it if the targeted thread is in native code. The targeted thread is never blocked
+         * on {@link VmThreadMap#THREAD_LOCK}, and no other thread is stopped. The thread
+         * {@linkplain VmOperation#submit() submitting} the operation is blocked until the operation completes.
+         * <p>
+         * A handshake operation is performed by {@link VmOperation#doThread(VmThread, Pointer, Pointer, Pointer)}, which must
+         * not allocate nor block, as the submitting thread holds {@link VmThreadMap#THREAD_LOCK} for the duration of the
+         * handshake. If the targeted thread is the submitting thread, the operation is performed as a {@link #Safepoint}
+         * operation.
+         */
+        Handshake;
 
         /**
          * Determines if this mode denotes that an operation requires its targeted threads to be synchronized at a safepoint.
          */
         public boolean requiresSafepoint() {
-            return this == Safepoint || this == AsyncSafepoint;
+            return this == Safepoint || this == AsyncSafepoint || this == Handshake;
         }
 
         /**
@@ -218,7 +233,7 @@ public class VmOperation {
          * blocked until the operation completes.
          */
         public boolean isBlocking() {
-            return this == Safepoint;
+            return this == Safepoint || this == Handshake;
         }
     }
 
@@ -267,6 +282,11 @@ public class VmOperation {
             FatalError.unexpected("Freezing thread trapped while in native code");
         }
 
+        if (handshaking) {
+            doHandshakeAtSafepoint(trapFrame);
+            return;
+        }
+
         // This thread must only transition to native code as a result of
         // the synchronization below.
         // Such a transition will be interpreted by the VM operation thread to
@@ -294,6 +314,130 @@ public class VmOperation {
         }
     }
 
+    /**
+     * Set while this operation is being performed as a {@linkplain Mode#Handshake handshake}.
+     */
+    private volatile boolean handshaking;
+
+    /**
+     * Set by the thread (the targeted thread or the submitting thread) that performs a handshake.
+     */
+    private volatile int handshakeClaimed;
+
+    /**
+     * Set once a handshake has been performed.
+     */
+    private volatile boolean handshakeDone;
+
+    @FOLD
+    private static int handshakeClaimedOffset() {
+        return ClassActor.fromJava(VmOperation.class).findLocalInstanceFieldActor("handshakeClaimed").offset();
+    }
+
+    /**
+     * Claims the right to perform this handshake. Exactly one of the targeted thread and the submitting thread succeeds.
+     */
+    private boolean claimHandshake() {
+        return Reference.fromJava(this).compareAndSwapInt(handshakeClaimedOffset(), 0, 1) == 0;
+    }
+
+    /**
+     * Disarms the safepoint of the thread targeted by this handshake and releases it for other operations.
+     */
+    private void completeHandshake(Pointer tla) {
+        final Pointer etla = ETLA.load(tla);
+        SAFEPOINT_LATCH.store(etla, ETLA.load(tla));
+        VM_OPERATION.store(etla, Reference.zero());
+        handshakeDone = true;
+    }
+
+    /**
+     * Performs this handshake on the current thread, which just hit a safepoint, unless the submitting
+     * thread already performs it.
+     */
+    private void doHandshakeAtSafepoint(Pointer trapFrame) {
+        if (claimHandshake()) {
+            final VmThread thread = VmThread.current();
+            final TrapFrameAccess tfa = MaxineVM.vm().trapFrameAccess;
+            try {
+                doThread(thread, tfa.getPC(trapFrame), tfa.getSP(trapFrame), tfa.getFP(trapFrame));
+            } finally {
+                completeHandshake(thread.tla());
+            }
+            if (TraceVmOperations) {
+                boolean lockDisabledSafepoints = Log.lock();
+                Log.printCurrentThread(false);
+                Log.print(": Performed handshake ");
+                Log.println(name);
+                Log.unlock(lockDisabledSafepoints);
+            }
+        }
+    }
+
+    /**
+     * Performs this {@linkplain Mode#Handshake handshake} operation on behalf of the current thread, which
+     * {@linkplain VmOperationThread#submit(VmOperation) submitted} it.
+     *
+     * @return {@code false} if the targeted thread is the current thread, in which case the operation must be
+     *         performed by the VM operation thread
+     */
+    final boolean handshake() {
+        final VmThread thread = singleThread;
+        if (thread == VmThread.current()) {
+            return false;
+        }
+        beginSync();
+        synchronized (VmThreadMap.THREAD_LOCK) {
+            // Holding the thread lock keeps the targeted thread alive, and ensures that no other
+            // operation contends for its VM_OPERATION thread local.
+            final Pointer tla = thread.tla();
+            if (tla.isZero()) {
+                tracePhase("Aborting handshake with single, non-running thread");
+                return true;
+            }
+            tracePhase("-- Begin handshake --");
+            handshakeClaimed = 0;
+            handshakeDone = false;
+            handshaking = true;
+            freezeThread(thread);
+            MemoryBarriers.barrier(MemoryBarriers.STORE_LOAD);
+
+            final Pointer etla = ETLA.load(tla);
+            int steps = 0;
+            try {
+                while (!handshakeDone) {
+                    if (MUTATOR_STATE.load(etla).equals(THREAD_IN_NATIVE) &&
+                        etla.compareAndSwapWord(MUTATOR_STATE.offset, THREAD_IN_NATIVE, THREAD_IS_FROZEN).equals(THREAD_IN_NATIVE)) {
+                        // The thread cannot return to Java code until it is thawed below
+                        try {
+                            if (claimHandshake()) {
+                                tracePhase("Performing handshake on thread in native code");
+                                try {
+                                    callDoThread(tla);
+                                } finally {
+                                    completeHandshake(tla);
+                                }
+                            }
+                        } finally {
+                            MUTATOR_STATE.store(etla, THREAD_IN_NATIVE);
+                        }
+                    } else {
+                        waitForThreadFreezePause(thread, steps);
+                        steps++;
+                    }
+                }
+            } finally {
+                handshaking = false;
+            }
+            // The whole handshake counts as sync time, as the target does not stop for longer
+            final long endNanos = System.nanoTime();
+            noteThreadFrozen(thread, steps, endNanos - syncStartNanos, Pointer.zero(), false);
+            SafepointStatistics.record(this, endNanos, endNanos);
+            tracePhase("-- End handshake --");
+        }
+        return true;
+    }
+
     /**
      * Called on the current thread (which just hit a safepoint) before it is frozen.
      *
@@ -385,14 +529,14 @@ public class VmOperation {
 
     /**
      * Predicate used with {@linkplain VmThreadMap#forAllThreadLocals(Predicate, com.sun.max.unsafe.Pointer.Procedure)}
-     * to filter out the VM operation thread and all threads for which {@link #operateOnThread(VmThread)} returns
+     * to filter out the VM operation thread, the {@linkplain VmThread#isGCTaskThread() GC task threads} and all threads for which {@link #operateOnThread(VmThread)} returns
      * {@code false}.
      */
     private final Pointer.Predicate threadPredicate = new Pointer.Predicate() {
         @Override
         public boolean evaluate(Pointer tla) {
             VmThread vmThread = VmThread.fromTLA(tla);
-            return !vmThread.isVmOperationThread() && operateOnThread(vmThread);
+            return !vmThread.isVmOperationThread() && !vmThread.isGCTaskThread() && operateOnThread(vmThread);
         }
     };
 
@@ -473,6 +617,48 @@ public class VmOperation {
      */
     private static boolean atSafepoint;
 
+    // Time-to-safepoint statistics of the current execution of this operation, see SafepointStatistics.
+    long syncStartNanos;
+    int frozenThreads;
+    long syncSpins;
+    long syncSleeps;
+    VmThread straggler;
+    long stragglerNanos;
+    Pointer stragglerIp;
+    boolean stragglerInNative;
+
+    private void beginSync() {
+        syncStartNanos = System.nanoTime();
+        frozenThreads = 0;
+        syncSpins = 0;
+        syncSleeps = 0;
+        straggler = null;
+        stragglerNanos = -1;
+        stragglerIp = Pointer.zero();
+        stragglerInNative = false;
+    }
+
+    /**
+     * Updates the time-to-safepoint statistics of this operation once a thread is frozen.
+     *
+     * @param thread the frozen thread
+     * @param steps the number of times {@link #waitForThreadFreezePause(VmThread, int)} was called for the thread
+     * @param waitNanos the time spent waiting for the thread to freeze
+     * @param ip the address of the last instruction executed by the thread in Java code, or zero if not known
+     * @param inNative specifies if the thread was frozen in native code
+     */
+    private void noteThreadFrozen(VmThread thread, int steps, long waitNanos, Pointer ip, boolean inNative) {
+        frozenThreads++;
+        syncSpins += Math.min(steps, SafepointSpinBeforeYield);
+        syncSleeps += Math.max(0, steps - SafepointSpinBeforeYield);
+        if (waitNanos > stragglerNanos) {
+            straggler = thread;
+            stragglerNanos = waitNanos;
+            stragglerIp = ip;
+            stragglerInNative = inNative;
+        }
+    }
+
     /**
      * Creates a VM operation.
      *
@@ -494,6 +680,7 @@ public class VmOperation {
         this.disAllowsNestedOperations = disAllowNestedOperations;
         this.singleThread = singleThread;
         assert singleThread == null || !singleThread.isVmOperationThread();
+        FatalError.check(mode != Mode.Handshake || singleThread != null, "A handshake must target a single thread");
         doThreadAdapter = new Pointer.Procedure() {
             public void run(Pointer tla) {
                 callDoThread(tla);
@@ -538,6 +725,8 @@ public class VmOperation {
 
         if (mode.requiresSafepoint()) {
             Throwable error = null;
+            // Waiting for the thread lock is part of the time to safepoint
+            beginSync();
             synchronized (VmThreadMap.THREAD_LOCK) {
 
                 if (singleThread != null && singleThread.tla().isZero()) {
@@ -556,6 +745,7 @@ public class VmOperation {
                 MemoryBarriers.barrier(MemoryBarriers.STORE_LOAD);
 
                 waitUntilFrozen();
+                final long syncEndNanos = System.nanoTime();
 
                 boolean oldAtSafepoint = atSafepoint;
                 try {
@@ -580,6 +770,7 @@ public class VmOperation {
 
                 thaw();
 
+                SafepointStatistics.record(this, syncEndNanos, System.nanoTime());
                 tracePhase("-- End --");
             }
 
@@ -763,6 +954,7 @@ public class VmOperation {
         Pointer tla = thread.tla();
         final Pointer etla = ETLA.load(tla);
 
+        final long startNanos = System.nanoTime();
         int steps = 0;
         if (!frozenByEnclosing(thread)) {
             if (UseCASBasedThreadFreezing) {
@@ -790,6 +982,15 @@ public class VmOperation {
             }
         }
 
+        final Pointer trapIp = TRAP_INSTRUCTION_POINTER.load(tla);
+        final boolean inNative = trapIp.isZero();
+        Pointer ip = trapIp;
+        if (inNative) {
+            final Pointer anchor = JavaFrameAnchor.from(tla);
+            ip = anchor.isZero() ? Pointer.zero() : JavaFrameAnchor.PC.get(anchor);
+        }
+        noteThreadFrozen(thread, steps, System.nanoTime() - startNanos, ip, inNative);
+
         doAfterFrozen(thread);
 
         if (TraceVmOperations) {
@@ -907,7 +1108,7 @@ public class VmOperation {
         }
 
         protected SuspendResumeThreadSet(String opName, VmThread singleVmThread) {
-            super(opName, singleVmThread, Mode.Safepoint);
+            super(opName, singleVmThread, Mode.Handshake);
             this.threadSet = null;
             this.singleVmThread = singleVmThread;
         }
@@ -939,6 +1140,11 @@ public class VmOperation {
             // There is no race condition associated with this flag since
             // it is not read until the thread has been thawed.
             Address val = SUSPEND.load(vmThread.tla());
+            if (vmThread == VmThread.current()) {
+                // Handshake performed by the thread itself at a safepoint: it suspends once
+                // it returns to the trap handler, and not in any native call before that.
+                val = val.or(SUSPEND_JAVA);
+            }
             SUSPEND.store(vmThread.tla(), val.or(SUSPEND_REQUEST));
         }
 
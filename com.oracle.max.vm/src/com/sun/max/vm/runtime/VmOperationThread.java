@@ -223,6 +223,12 @@ public class VmOperationThread extends Thread implements UncaughtExceptionHandle
                 return;
             }
 
+            if (operation.mode == VmOperation.Mode.Handshake && operation.handshake()) {
+                // The operation was performed without the VM operation thread
+                operation.doItEpilogue(false);
+                return;
+            }
+
             if (Thread.holdsLock(VmThreadMap.THREAD_LOCK)) {
                 // The VM operation thread requires this lock to proceed
                 throw VmOperationThread.HoldsThreadLockError.INSTANCE;
@@ -375,6 +381,8 @@ public class VmOperationThread extends Thread implements UncaughtExceptionHandle
                 }
             }
         }
+
+        SafepointStatistics.printAtExit();
     }
 
     @Override
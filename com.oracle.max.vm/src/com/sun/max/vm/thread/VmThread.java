@@ -281,6 +281,8 @@ public class VmThread {
 
     public JavaMonitor protectedMonitor;
 
+    public final JavaMonitorManager.MonitorCache monitorCache = new JavaMonitorManager.MonitorCache();
+
     private ConditionVariable waitingCondition = ConditionVariableFactory.create();
 
     public final HeapScheme.GCRequest gcRequest = VMConfiguration.vmConfig().heapScheme().createThreadLocalGCRequest(this);
@@ -295,6 +297,11 @@ public class VmThread {
      */
     private boolean jvmtiAgent;
 
+    /**
+     * Marks this as a thread of the {@link GCTaskThreadPool}. These are never frozen by VM operations.
+     */
+    private volatile boolean gcTaskThread;
+
     /**
      * Holds the exception object for the exception currently being raised. This value will only be
      * non-null during the unwinding process between calls to {@link #storeExceptionForHandler(Throwable, TargetMethod, int)}
@@ -607,6 +614,9 @@ public class VmThread {
         thread.stackDumpStackFrameWalker.setTLA(etla);
         thread.yellowZone = yellowZone;
 
+        // The thread lock is held, so SATB queues can't be (de)activated before the thread is added
+        SATBQueue.initializeThreadLocals(etla);
+
         VM_THREAD.store3(etla, Reference.fromJava(thread));
         VmThreadMap.addThreadLocals(thread, etla, daemon);
 
@@ -1131,6 +1141,23 @@ public class VmThread {
         jvmtiAgent = true;
     }
 
+    /**
+     * Determines if this is a GC task thread that has reached its task loop.
+     * Such a thread isn't frozen by {@linkplain VmOperation VM operations} and its stack isn't scanned for references.
+     */
+    public final boolean isGCTaskThread() {
+        return gcTaskThread;
+    }
+
+    /**
+     * Marks the current thread as a {@linkplain GCTaskThreadPool GC task thread}. Must be called while holding
+     * the {@linkplain VmThreadMap#THREAD_LOCK thread lock}.
+     */
+    public final void setAsGCTaskThread() {
+        FatalError.check(this == current() && Thread.holdsLock(VmThreadMap.THREAD_LOCK), "GC task thread must be set by the thread itself while holding the thread lock");
+        gcTaskThread = true;
+    }
+
     /**
      * Bind the given {@code Thread} to this VmThread.
      * @param javaThread thread to be bound
@@ -519,6 +519,8 @@ public class VmThreadLocal implements FormatWithToString {
     public static void scanReferences(Pointer tla, PointerIndexVisitor wordPointerIndexVisitor) {
         final VmThread thread = VmThread.fromTLA(tla);
         boolean isVmOperationThread = thread.isVmOperationThread();
+        // The stacks of GC task threads only hold references to non-moving objects, and aren't prepared for scanning anyway.
+        boolean isGCTaskThread = thread.isGCTaskThread();
 
         // Note: as a side effect, this lock serializes stack reference map scanning
         boolean tracing = logStackRootScanning();
@@ -535,7 +537,7 @@ public class VmThreadLocal implements FormatWithToString {
         VMLog.scanLogs(tla, wordPointerIndexVisitor);
 
         Pointer anchor = JavaFrameAnchor.from(tla);
-        if (!anchor.isZero()) {
+        if (!anchor.isZero() && !isGCTaskThread) {
             final Pointer lastJavaCallerStackPointer = JavaFrameAnchor.SP.get(anchor);
             final Pointer lowestActiveSlot = LOWEST_ACTIVE_STACK_SLOT_ADDRESS.load(tla);
             final Pointer highestSlot = HIGHEST_STACK_SLOT_ADDRESS.load(tla);